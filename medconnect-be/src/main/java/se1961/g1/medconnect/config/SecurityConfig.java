@@ -1,5 +1,6 @@
 package se1961.g1.medconnect.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -35,14 +36,18 @@ public class SecurityConfig {
                 // Health (public) - MUST BE FIRST!
                 .requestMatchers("/actuator/**").permitAll()
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                // Async re-dispatch of a request already authorized above (streamed responses)
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
 
                 // Public endpoints
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/appointments/doctor/*/available-slots").permitAll()
                 .requestMatchers("/api/appointments/doctor/{doctorId}/available-slots").permitAll()
+                .requestMatchers("/api/appointments/available-slots/search").permitAll()
                 .requestMatchers("/api/specialties/**").permitAll()
                 .requestMatchers("/api/specialities/**").permitAll() // backward compatibility
                 .requestMatchers("/api/doctors").permitAll() // public doctor list for dropdowns
+                .requestMatchers(HttpMethod.GET, "/api/doctors/search").permitAll() // public doctor search (booking page)
                 .requestMatchers("/api/doctor-applications").permitAll() // public doctor application form
                 .requestMatchers("/api/payment/ipn").permitAll() // VNPay webhook
                 .requestMatchers("/api/payment/confirm").permitAll() // VNPay callback  
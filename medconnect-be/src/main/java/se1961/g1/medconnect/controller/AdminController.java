@@ -2,12 +2,18 @@ package se1961.g1.medconnect.controller;
 
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import se1961.g1.medconnect.dto.AdminAppointmentRow;
 import se1961.g1.medconnect.dto.AdminDTO;
+import se1961.g1.medconnect.dto.AdminPaymentRow;
 import se1961.g1.medconnect.dto.CreateAdminRequest;
+import se1961.g1.medconnect.dto.DoctorCatalogRow;
 import se1961.g1.medconnect.dto.DoctorDTO;
+import se1961.g1.medconnect.dto.KeysetPage;
 import se1961.g1.medconnect.dto.UpdateAdminRequest;
 import se1961.g1.medconnect.enums.AppointmentStatus;
 import se1961.g1.medconnect.enums.PatientStatus;
@@ -17,10 +23,23 @@ import se1961.g1.medconnect.repository.DoctorRepository;
 import se1961.g1.medconnect.repository.PaymentRepository;
 import se1961.g1.medconnect.repository.VideoCallSessionRepository;
 import se1961.g1.medconnect.service.AdminService;
+import se1961.g1.medconnect.service.AppointmentReminderService;
 import se1961.g1.medconnect.service.AppointmentService;
+import se1961.g1.medconnect.service.AvailabilityIndex;
+import se1961.g1.medconnect.service.ChatbotKnowledgeBase;
+import se1961.g1.medconnect.service.ChatbotResponseCache;
+import se1961.g1.medconnect.service.DashboardStatsService;
+import se1961.g1.medconnect.service.DoctorCatalogService;
+import se1961.g1.medconnect.service.DoctorSearchIndex;
 import se1961.g1.medconnect.service.DoctorService;
+import se1961.g1.medconnect.service.EmailOutboxDispatcher;
+import se1961.g1.medconnect.service.FirebaseTokenCache;
+import se1961.g1.medconnect.service.GeminiClient;
 import se1961.g1.medconnect.service.PatientService;
+import se1961.g1.medconnect.service.PaymentReconciliationService;
 import se1961.g1.medconnect.service.PaymentService;
+import se1961.g1.medconnect.service.SlotBookingService;
+import se1961.g1.medconnect.service.SlotHoldService;
 import se1961.g1.medconnect.service.SpecialityService;
 
 import java.text.SimpleDateFormat;
@@ -59,12 +78,53 @@ public class AdminController {
     @Autowired
     private PaymentService paymentService;
 
+    @Autowired
+    private PaymentReconciliationService paymentReconciliationService;
+
+    @Autowired
+    private DoctorCatalogService doctorCatalogService;
+
+    @Autowired
+    private DoctorSearchIndex doctorSearchIndex;
+
+    @Autowired
+    private ChatbotKnowledgeBase chatbotKnowledgeBase;
+
+    @Autowired
+    private ChatbotResponseCache chatbotResponseCache;
+
+    @Autowired
+    private GeminiClient geminiClient;
+
     @Autowired
     private PaymentRepository paymentRepository;
 
     @Autowired
     private VideoCallSessionRepository videoCallSessionRepository;
 
+    @Autowired
+    private FirebaseTokenCache tokenCache;
+
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private SlotBookingService slotBookingService;
+
+    @Autowired
+    private SlotHoldService slotHoldService;
+
+    @Autowired
+    private DashboardStatsService dashboardStatsService;
+
+    @Autowired
+    private EmailOutboxDispatcher emailOutboxDispatcher;
+
+    @Autowired
+    private AppointmentReminderService appointmentReminderService;
+
+    private static final int MAX_PAGE_SIZE = 200;
+
     // ============= DASHBOARD STATS =============
     
     /**
@@ -75,44 +135,9 @@ public class AdminController {
     public ResponseEntity<Map<String, Object>> getDashboardStats() {
         try {
             Map<String, Object> response = new HashMap<>();
-            
-            // Đếm tổng số doctors
-            long totalDoctors = doctorRepository.count();
-            
-            // Đếm số bác sĩ ACTIVE
-            long activeDoctors = doctorRepository.findAll().stream()
-                .filter(d -> d.getStatus() == se1961.g1.medconnect.enums.DoctorStatus.ACTIVE)
-                .count();
-            
-            // Đếm tổng số patients
-            long totalPatients = patientService.getAllPatients().size();
-            
-            // Đếm appointments
-            List<Appointment> allAppointments = appointmentService.getAllAppointments();
-            long totalAppointments = allAppointments.size();
-            long pendingAppointments = allAppointments.stream()
-                .filter(a -> a.getStatus() == AppointmentStatus.PENDING)
-                .count();
-            long completedAppointments = allAppointments.stream()
-                .filter(a -> a.getStatus() == AppointmentStatus.FINISHED)
-                .count();
-            
-            // Tính tổng doanh thu (chỉ tính payments đã paid)
-            List<Payment> paidPayments = paymentRepository.findAll().stream()
-                .filter(p -> se1961.g1.medconnect.enums.PaymentStatus.PAID.equals(p.getStatus()))
-                .collect(Collectors.toList());
-            double totalRevenue = paidPayments.stream()
-                .mapToDouble(Payment::getAmount)
-                .sum();
-            
-            Map<String, Object> stats = new HashMap<>();
-            stats.put("totalDoctors", totalDoctors);
-            stats.put("activeDoctors", activeDoctors);
-            stats.put("totalPatients", totalPatients);
-            stats.put("totalAppointments", totalAppointments);
-            stats.put("totalRevenue", totalRevenue);
-            stats.put("pendingAppointments", pendingAppointments);
-            stats.put("completedAppointments", completedAppointments);
+
+            // Đọc từ bảng counter đã tổng hợp sẵn (không load toàn bộ bảng)
+            Map<String, Object> stats = dashboardStatsService.getDashboardStats();
             
             response.put("success", true);
             response.put("data", stats);
@@ -132,24 +157,18 @@ public class AdminController {
     @GetMapping("/dashboard/recent-appointments")
     public ResponseEntity<Map<String, Object>> getRecentAppointments() {
         try {
-            List<Appointment> allAppointments = appointmentService.getAllAppointments();
-            
-            // Lấy 10 appointments mới nhất, sắp xếp theo createdAt giảm dần
-            List<Map<String, Object>> recentAppointments = allAppointments.stream()
-                .sorted((a1, a2) -> {
-                    LocalDate d1 = a1.getCreatedAt() != null ? a1.getCreatedAt() : LocalDate.MIN;
-                    LocalDate d2 = a2.getCreatedAt() != null ? a2.getCreatedAt() : LocalDate.MIN;
-                    return d2.compareTo(d1);
-                })
-                .limit(10)
-                .map(appointment -> {
+            // Trang đầu của keyset (TOP 10 theo createdAt giảm dần)
+            List<AdminAppointmentRow> rows = appointmentService.getAdminAppointmentPage(null, 10).getItems();
+
+            List<Map<String, Object>> recentAppointments = rows.stream()
+                .map(row -> {
                     Map<String, Object> data = new HashMap<>();
-                    data.put("id", appointment.getAppointmentId());
-                    data.put("patientName", appointment.getPatient() != null ? appointment.getPatient().getName() : "N/A");
-                    data.put("doctorName", appointment.getDoctor() != null ? appointment.getDoctor().getName() : "N/A");
-                    data.put("date", appointment.getDate());
-                    data.put("slot", appointment.getSlot() != null ? appointment.getSlot().name() : "N/A");
-                    data.put("status", appointment.getStatus() != null ? appointment.getStatus().name() : "PENDING");
+                    data.put("id", row.getId());
+                    data.put("patientName", row.getPatientName() != null ? row.getPatientName() : "N/A");
+                    data.put("doctorName", row.getDoctorName() != null ? row.getDoctorName() : "N/A");
+                    data.put("date", row.getDate());
+                    data.put("slot", row.getSlot() != null ? row.getSlot().name() : "N/A");
+                    data.put("status", row.getStatus() != null ? row.getStatus().name() : "PENDING");
                     return data;
                 })
                 .collect(Collectors.toList());
@@ -166,6 +185,196 @@ public class AdminController {
         }
     }
 
+    // ============= SYSTEM METRICS =============
+
+    /**
+     * Tính lại toàn bộ counter dashboard từ DB (sửa sai lệch nếu có)
+     * POST /api/admin/dashboard/stats/rebuild
+     */
+    @PostMapping("/dashboard/stats/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildDashboardStats() {
+        try {
+            dashboardStatsService.rebuild();
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", dashboardStatsService.getDashboardStats());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Lỗi khi tính lại thống kê: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    /**
+     * Thống kê cache xác thực token (hit/miss)
+     * GET /api/admin/metrics/token-cache
+     */
+    @GetMapping("/metrics/token-cache")
+    public ResponseEntity<Map<String, Object>> getTokenCacheStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", tokenCache.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Thống kê index lịch trống của bác sĩ
+     * GET /api/admin/metrics/availability-index
+     */
+    @GetMapping("/metrics/availability-index")
+    public ResponseEntity<Map<String, Object>> getAvailabilityIndexStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", availabilityIndex.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Thống kê giữ chỗ khung giờ khi đặt lịch (số lần thắng/bị từ chối)
+     * GET /api/admin/metrics/slot-booking
+     */
+    @GetMapping("/metrics/slot-booking")
+    public ResponseEntity<Map<String, Object>> getSlotBookingStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", slotBookingService.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * IPN VNPay: số thông báo đã xử lý / trùng lặp (VNPay gửi lại) / bị từ chối
+     * GET /api/admin/metrics/payment-ipn
+     */
+    @GetMapping("/metrics/payment-ipn")
+    public ResponseEntity<Map<String, Object>> getPaymentIpnStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", paymentService.getIpnStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Danh mục bác sĩ trong bộ nhớ (phiên bản, số lần dựng lại, ETag hiện tại)
+     * GET /api/admin/metrics/doctor-catalog
+     */
+    @GetMapping("/metrics/doctor-catalog")
+    public ResponseEntity<Map<String, Object>> getDoctorCatalogStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", doctorCatalogService.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Chỉ mục tìm kiếm bác sĩ (số bác sĩ / từ khóa, số lần cập nhật)
+     * GET /api/admin/metrics/doctor-search
+     */
+    @GetMapping("/metrics/doctor-search")
+    public ResponseEntity<Map<String, Object>> getDoctorSearchStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", doctorSearchIndex.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Danh sách chuyên khoa + số bác sĩ mỗi chuyên khoa (snapshot dùng cho trang chủ)
+     * GET /api/admin/metrics/speciality-catalog
+     */
+    @GetMapping("/metrics/speciality-catalog")
+    public ResponseEntity<Map<String, Object>> getSpecialityCatalogStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", specialityService.getCatalogStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Chỉ mục BM25 của chatbot (số đoạn văn / từ khóa, thời gian tìm kiếm trung bình)
+     * GET /api/admin/metrics/chatbot-retrieval
+     */
+    @GetMapping("/metrics/chatbot-retrieval")
+    public ResponseEntity<Map<String, Object>> getChatbotRetrievalStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", chatbotKnowledgeBase.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Cache câu trả lời của chatbot (tỉ lệ trúng cache, số lần gọi Gemini, độ trễ trung bình)
+     * GET /api/admin/metrics/chatbot-cache
+     */
+    @GetMapping("/metrics/chatbot-cache")
+    public ResponseEntity<Map<String, Object>> getChatbotCacheStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", chatbotResponseCache.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Gemini client (trạng thái circuit breaker, số lần bị giới hạn 429, số request đang chờ)
+     * GET /api/admin/metrics/gemini
+     */
+    @GetMapping("/metrics/gemini")
+    public ResponseEntity<Map<String, Object>> getGeminiStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", geminiClient.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Đối soát thanh toán PENDING với VNPay (lần chạy gần nhất, tốc độ xử lý)
+     * GET /api/admin/metrics/payment-reconciliation
+     */
+    @GetMapping("/metrics/payment-reconciliation")
+    public ResponseEntity<Map<String, Object>> getPaymentReconciliationStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", paymentReconciliationService.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Giữ chỗ tạm thời khi chờ thanh toán (số lịch hẹn hết hạn bị hủy tự động)
+     * GET /api/admin/metrics/slot-holds
+     */
+    @GetMapping("/metrics/slot-holds")
+    public ResponseEntity<Map<String, Object>> getSlotHoldStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", slotHoldService.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Độ sâu hàng đợi email (outbox) và số email đã gửi/thử lại/thất bại
+     * GET /api/admin/metrics/email-outbox
+     */
+    @GetMapping("/metrics/email-outbox")
+    public ResponseEntity<Map<String, Object>> getEmailOutboxStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", emailOutboxDispatcher.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Trạng thái job nhắc lịch hẹn (cursor, số email đã xếp hàng)
+     * GET /api/admin/metrics/reminders
+     */
+    @GetMapping("/metrics/reminders")
+    public ResponseEntity<Map<String, Object>> getReminderStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", appointmentReminderService.getStats());
+        return ResponseEntity.ok(response);
+    }
+
     // ============= ADMIN MANAGEMENT =============
 
     /**
@@ -386,19 +595,23 @@ public class AdminController {
     }
 
     @GetMapping("/doctor/all")
-    public ResponseEntity<List<Map<String, Object>>> getAllDoctors() {
-        List<Doctor> doctors = doctorService.getAllDoctors();
-        List<Map<String, Object>> response = new ArrayList<>();
+    public ResponseEntity<List<Map<String, Object>>> getAllDoctors(WebRequest webRequest) {
+        DoctorCatalogService.Snapshot catalog = doctorCatalogService.getSnapshot();
+        String etag = catalog.etag("admin");
+        if (webRequest.checkNotModified(etag)) {
+            return null; // 304
+        }
+        List<Map<String, Object>> response = new ArrayList<>(catalog.doctors().size());
 
-        for (Doctor doctor : doctors) {
+        for (DoctorCatalogRow doctor : catalog.doctors()) {
             Map<String, Object> doctorData = new HashMap<>();
             doctorData.put("id", doctor.getUserId());
             doctorData.put("userId", doctor.getUserId());
             doctorData.put("name", doctor.getName());
             doctorData.put("email", doctor.getEmail());
             doctorData.put("phone", doctor.getPhone());
-            doctorData.put("specialty", doctor.getSpeciality() != null ? doctor.getSpeciality().getName() : "Chưa có");
-            doctorData.put("specialityId", doctor.getSpeciality() != null ? doctor.getSpeciality().getSpecialityId() : null);
+            doctorData.put("specialty", doctor.getSpecialityName() != null ? doctor.getSpecialityName() : "Chưa có");
+            doctorData.put("specialityId", doctor.getSpecialityId());
             doctorData.put("avatar", doctor.getAvatarUrl());
             doctorData.put("status", doctor.getStatus() != null ? doctor.getStatus().name() : null);
             doctorData.put("experienceYears", doctor.getExperienceYears());
@@ -422,7 +635,7 @@ public class AdminController {
             response.add(doctorData);
         }
 
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePrivate()).body(response);
     }
     
     /**
@@ -950,17 +1163,21 @@ public class AdminController {
      * GET /api/admin/appointments
      */
     @GetMapping("/appointments")
-    public ResponseEntity<Map<String, Object>> getAllAppointments() {
+    public ResponseEntity<Map<String, Object>> getAllAppointments(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
         try {
-            List<Appointment> appointments = appointmentService.getAllAppointments();
+            KeysetPage<AdminAppointmentRow> page = appointmentService.getAdminAppointmentPage(cursor, clampLimit(limit));
             
-            List<Map<String, Object>> appointmentList = appointments.stream()
-                    .map(this::mapAppointmentToResponse)
+            List<Map<String, Object>> appointmentList = page.getItems().stream()
+                    .map(this::mapAppointmentRowToResponse)
                     .collect(Collectors.toList());
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("data", appointmentList);
+            response.put("nextCursor", page.getNextCursor());
+            response.put("hasMore", page.isHasMore());
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -1174,17 +1391,21 @@ public class AdminController {
      * GET /api/admin/payments
      */
     @GetMapping("/payments")
-    public ResponseEntity<Map<String, Object>> getAllPayments() {
+    public ResponseEntity<Map<String, Object>> getAllPayments(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
         try {
-            List<Payment> payments = paymentService.getAllPayments();
+            KeysetPage<AdminPaymentRow> page = paymentService.getAdminPaymentPage(cursor, clampLimit(limit));
             
-            List<Map<String, Object>> paymentList = payments.stream()
-                    .map(this::mapPaymentToResponse)
+            List<Map<String, Object>> paymentList = page.getItems().stream()
+                    .map(this::mapPaymentRowToResponse)
                     .collect(Collectors.toList());
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("data", paymentList);
+            response.put("nextCursor", page.getNextCursor());
+            response.put("hasMore", page.isHasMore());
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -1196,6 +1417,21 @@ public class AdminController {
         }
     }
 
+    /**
+     * Đối soát ngay các thanh toán PENDING với cổng thanh toán (chạy nền)
+     * POST /api/admin/payments/reconcile
+     */
+    @PostMapping("/payments/reconcile")
+    public ResponseEntity<Map<String, Object>> reconcilePayments() {
+        Map<String, Object> response = new HashMap<>();
+        boolean started = paymentReconciliationService.triggerNow();
+        response.put("success", started);
+        response.put("message", started
+                ? "Đã bắt đầu đối soát thanh toán"
+                : "Đang có một lượt đối soát khác chạy");
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Cập nhật trạng thái thanh toán
      * PUT /api/admin/payments/{id}/status
@@ -1303,4 +1539,64 @@ public class AdminController {
         
         return response;
     }
+
+    /**
+     * Helper method to map an admin appointment projection to response format
+     */
+    private Map<String, Object> mapAppointmentRowToResponse(AdminAppointmentRow row) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", row.getId());
+        response.put("patientId", row.getPatientId());
+        response.put("patientName", row.getPatientName());
+        response.put("doctorId", row.getDoctorId());
+        response.put("doctorName", row.getDoctorName());
+        response.put("appointmentDate", row.getDate() != null ? row.getDate().toString() : "");
+        response.put("slot", row.getSlot() != null ? row.getSlot().name() : "");
+        response.put("slotTime", row.getSlot() != null ? row.getSlot().getTimeRange() : "");
+        response.put("status", row.getStatus() != null ? row.getStatus().name().toLowerCase() : "");
+        response.put("createdAt", row.getCreatedAt() != null ? row.getCreatedAt().toString() : "");
+        // Video call timestamps come from the same query (LEFT JOIN VideoCallSession)
+        response.put("videoCallStart", row.getVideoCallStart() != null ? row.getVideoCallStart().toString() : null);
+        response.put("videoCallEnd", row.getVideoCallEnd() != null ? row.getVideoCallEnd().toString() : null);
+        return response;
+    }
+
+    /**
+     * Helper method to map an admin payment projection to response format
+     */
+    private Map<String, Object> mapPaymentRowToResponse(AdminPaymentRow row) {
+        Map<String, Object> response = new HashMap<>();
+        
+        response.put("id", row.getId());
+        response.put("amount", row.getAmount());
+        response.put("status", row.getStatus() != null ? row.getStatus().name().toLowerCase() : "");
+        response.put("transactionId", row.getTransactionId() != null ? row.getTransactionId() : "");
+        response.put("paymentMethod", row.getPaymentMethod() != null ? row.getPaymentMethod() : "");
+        response.put("gatewayName", row.getGatewayName() != null ? row.getGatewayName() : "");
+        
+        // Appointment info
+        if (row.getAppointmentId() != null) {
+            response.put("appointmentId", row.getAppointmentId());
+            response.put("patientName", row.getAppointmentPatientName());
+            response.put("doctorName", row.getDoctorName());
+            response.put("appointmentDate", row.getAppointmentDate() != null ? row.getAppointmentDate().toString() : "");
+            response.put("appointmentSlot", row.getAppointmentSlot() != null ? row.getAppointmentSlot().getTimeRange() : "");
+        } else {
+            response.put("appointmentId", null);
+            response.put("patientName", row.getPaymentPatientName() != null ? row.getPaymentPatientName() : "");
+            response.put("doctorName", "");
+            response.put("appointmentDate", "");
+            response.put("appointmentSlot", "");
+        }
+        
+        // Timestamps
+        response.put("createdAt", row.getCreatedAt() != null ? row.getCreatedAt().toString() : "");
+        response.put("paidAt", row.getPaidAt() != null ? row.getPaidAt().toString() : "");
+        
+        return response;
+    }
+
+    private static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
 }
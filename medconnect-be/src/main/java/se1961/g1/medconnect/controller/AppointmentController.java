@@ -5,18 +5,20 @@ import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import se1961.g1.medconnect.dto.AppointmentDTO;
+import se1961.g1.medconnect.dto.AvailableSlotDTO;
 import se1961.g1.medconnect.dto.CreateAppointmentRequest;
+import se1961.g1.medconnect.enums.AppointmentType;
 import se1961.g1.medconnect.pojo.Appointment;
-import se1961.g1.medconnect.pojo.MedicalRecord;
 import se1961.g1.medconnect.service.AppointmentService;
 import se1961.g1.medconnect.service.MedicalRecordService;
 
 import java.time.LocalDate;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/appointments")
@@ -28,8 +30,6 @@ public class AppointmentController {
     @Autowired
     private MedicalRecordService medicalRecordService;
     
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    
     private Map<String, Object> normalizeReason(String reason) {
         Map<String, Object> r = new HashMap<>();
         r.put("reason", reason != null ? reason : "");
@@ -39,8 +39,9 @@ public class AppointmentController {
     
     /**
      * Helper method to build patient info with ID photo from EMR
+     * (idPhotoUrl comes from MedicalRecordService.getIdPhotoUrls, batch-fetched by the caller)
      */
-    private Map<String, Object> buildPatientInfo(se1961.g1.medconnect.pojo.Patient patient) {
+    private Map<String, Object> buildPatientInfo(se1961.g1.medconnect.pojo.Patient patient, String idPhotoUrl) {
         Map<String, Object> patientInfo = new HashMap<>();
         patientInfo.put("id", patient.getUserId());
         patientInfo.put("firebaseUid", patient.getFirebaseUid());
@@ -50,26 +51,9 @@ public class AppointmentController {
         patientInfo.put("dateOfBirth", patient.getDateOfBirth());
         patientInfo.put("address", patient.getAddress());
         patientInfo.put("avatar", patient.getAvatarUrl());
-        
-        // Fetch ID photo from EMR
-        try {
-            MedicalRecord record = medicalRecordService.getByPatientFirebaseUid(patient.getFirebaseUid());
-            if (record != null && record.getDetail() != null) {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> emrData = objectMapper.readValue(record.getDetail(), Map.class);
-                if (emrData.containsKey("patient_profile")) {
-                    @SuppressWarnings("unchecked")
-                    Map<String, Object> profile = (Map<String, Object>) emrData.get("patient_profile");
-                    if (profile != null && profile.containsKey("id_photo_url")) {
-                        patientInfo.put("idPhotoUrl", profile.get("id_photo_url"));
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // Ignore EMR fetch errors, just don't include ID photo
-            System.err.println("Failed to fetch ID photo from EMR: " + e.getMessage());
+        if (idPhotoUrl != null) {
+            patientInfo.put("idPhotoUrl", idPhotoUrl);
         }
-        
         return patientInfo;
     }
 
@@ -132,7 +116,9 @@ public class AppointmentController {
             
             // Patient details (with ID photo from EMR)
             if (appointment.getPatient() != null) {
-                Map<String, Object> patientInfo = buildPatientInfo(appointment.getPatient());
+                Long patientId = appointment.getPatient().getUserId();
+                String idPhotoUrl = medicalRecordService.getIdPhotoUrls(List.of(patientId)).get(patientId);
+                Map<String, Object> patientInfo = buildPatientInfo(appointment.getPatient(), idPhotoUrl);
                 response.put("patient", patientInfo);
                 response.put("patientUserId", appointment.getPatient().getUserId());
                 response.put("patientId", appointment.getPatient().getUserId());
@@ -272,6 +258,15 @@ public class AppointmentController {
                 }
             }
             
+            // ID photos of all patients in one query
+            Set<Long> patientIds = new HashSet<>();
+            for (Appointment appointment : appointments) {
+                if (appointment.getPatient() != null) {
+                    patientIds.add(appointment.getPatient().getUserId());
+                }
+            }
+            Map<Long, String> idPhotoUrls = medicalRecordService.getIdPhotoUrls(patientIds);
+            
             // Convert to safe response format
             List<Map<String, Object>> response = appointments.stream()
                 .map(appointment -> {
@@ -288,7 +283,8 @@ public class AppointmentController {
                     
                     // Patient info (with ID photo from EMR)
                     if (appointment.getPatient() != null) {
-                        Map<String, Object> patientInfo = buildPatientInfo(appointment.getPatient());
+                        Map<String, Object> patientInfo = buildPatientInfo(appointment.getPatient(),
+                                idPhotoUrls.get(appointment.getPatient().getUserId()));
                         apt.put("patient", patientInfo);
                         apt.put("patientUserId", appointment.getPatient().getUserId());
                         apt.put("patientId", appointment.getPatient().getUserId());
@@ -326,6 +322,35 @@ public class AppointmentController {
         }
     }
 
+    /**
+     * Search earliest free slots across doctors of a speciality
+     * GET /api/appointments/available-slots/search?specialityId=1&provinceCode=79&from=...&to=...&type=ONLINE&limit=20
+     */
+    @GetMapping("/available-slots/search")
+    public ResponseEntity<?> searchAvailableSlots(
+            @RequestParam Integer specialityId,
+            @RequestParam(required = false) Integer provinceCode,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "ONLINE") String type,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        try {
+            AppointmentType appointmentType;
+            try {
+                appointmentType = AppointmentType.valueOf(type.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new Exception("Invalid type: " + type);
+            }
+            int safeLimit = Math.max(1, Math.min(limit, 100));
+            List<AvailableSlotDTO> slots = appointmentService.searchAvailableSlots(
+                    specialityId, provinceCode, from, to, appointmentType, safeLimit);
+            return ResponseEntity.ok(Map.of("slots", slots, "total", slots.size()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * Create new appointment
      */
@@ -1,15 +1,23 @@
 package se1961.g1.medconnect.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import se1961.g1.medconnect.dto.ChatbotRequest;
 import se1961.g1.medconnect.dto.ChatbotResponse;
 import se1961.g1.medconnect.service.ChatbotService;
+import se1961.g1.medconnect.service.GeminiClient;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/chatbot")
@@ -21,36 +29,124 @@ public class ChatbotController {
     /**
      * Chat endpoint với RAG
      * POST /api/chatbot/chat
+     * Trả về CompletableFuture: thread của Tomcat được giải phóng trong lúc chờ Gemini
      */
     @PostMapping("/chat")
-    public ResponseEntity<ChatbotResponse> chat(@RequestBody ChatbotRequest request) {
+    public CompletableFuture<ResponseEntity<ChatbotResponse>> chat(@RequestBody ChatbotRequest request) {
+        if (request == null || request.getMessage() == null || request.getMessage().trim().isEmpty()) {
+            System.out.println("[ChatbotController] Empty message received");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(ChatbotResponse.error("Câu hỏi không được để trống")));
+        }
+
+        String userMessage = request.getMessage().trim();
+        System.out.println("[ChatbotController] Received message (length: " + userMessage.length() + "): " + userMessage);
+
+        // Generate response using RAG - chỉ dùng message hiện tại, không maintain conversation history
+        CompletableFuture<String> answer;
         try {
-            if (request == null || request.getMessage() == null || request.getMessage().trim().isEmpty()) {
-                System.out.println("[ChatbotController] Empty message received");
-                return ResponseEntity.badRequest()
-                        .body(ChatbotResponse.error("Câu hỏi không được để trống"));
-            }
+            answer = chatbotService.generateResponseAsync(userMessage);
+        } catch (Exception e) {
+            answer = CompletableFuture.failedFuture(e);
+        }
+        return answer
+                .thenApply(response -> {
+                    System.out.println("[ChatbotController] Generated response length: " + (response != null ? response.length() : 0));
+                    // Không cần conversationId nữa vì mỗi request độc lập
+                    return ResponseEntity.ok(new ChatbotResponse(response, true));
+                })
+                .exceptionally(this::errorResponse);
+    }
 
-            String userMessage = request.getMessage().trim();
-            System.out.println("[ChatbotController] Received message (length: " + userMessage.length() + "): " + userMessage);
-            
-            // Generate response using RAG - chỉ dùng message hiện tại, không maintain conversation history
-            String response = chatbotService.generateResponse(userMessage);
-            System.out.println("[ChatbotController] Generated response length: " + (response != null ? response.length() : 0));
+    /**
+     * Chat endpoint dạng stream (Server-Sent Events): câu trả lời được gửi dần theo từng đoạn Gemini sinh ra
+     * POST /api/chatbot/chat/stream
+     * Events: "chunk" {"text": "..."} (nhiều lần), rồi "done" hoặc "error" {"error": "...", "retryAfter": giây}
+     * Client ngắt kết nối -> dừng đọc từ Gemini
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter chatStream(@RequestBody ChatbotRequest request) {
+        SseEmitter emitter = new SseEmitter();
+        if (request == null || request.getMessage() == null || request.getMessage().trim().isEmpty()) {
+            System.out.println("[ChatbotController] Empty message received");
+            sendError(emitter, new IllegalArgumentException("Câu hỏi không được để trống"));
+            return emitter;
+        }
 
-            // Không cần conversationId nữa vì mỗi request độc lập
-            return ResponseEntity.ok(new ChatbotResponse(response, true));
+        String userMessage = request.getMessage().trim();
+        System.out.println("[ChatbotController] Received stream message (length: " + userMessage.length() + "): " + userMessage);
 
+        GeminiClient.StreamCall call;
+        try {
+            call = chatbotService.streamResponse(userMessage, chunk -> {
+                try {
+                    emitter.send(SseEmitter.event().name("chunk").data(Map.of("text", chunk)));
+                } catch (IOException e) {
+                    // Client went away: the exception stops the upstream stream
+                    throw new UncheckedIOException(e);
+                }
+            });
         } catch (Exception e) {
-            System.err.println("[ChatbotController] Error in chat endpoint: " + e.getMessage());
-            e.printStackTrace();
-            String errorMsg = e.getMessage();
-            if (errorMsg == null || errorMsg.isEmpty()) {
-                errorMsg = "Đã có lỗi xảy ra khi xử lý yêu cầu";
+            sendError(emitter, e);
+            return emitter;
+        }
+        emitter.onTimeout(call::cancel);
+        emitter.onError(error -> call.cancel());
+        emitter.onCompletion(call::cancel);
+
+        call.done().whenComplete((ignored, error) -> {
+            if (call.isCancelled()) {
+                return;
             }
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+            if (error != null) {
+                sendError(emitter, error);
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name("done").data(Map.of("success", true)));
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    private void sendError(SseEmitter emitter, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        System.err.println("[ChatbotController] Error in chat stream: " + cause.getMessage());
+        String errorMsg = cause.getMessage();
+        if (errorMsg == null || errorMsg.isEmpty()) {
+            errorMsg = "Đã có lỗi xảy ra khi xử lý yêu cầu";
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("error", errorMsg);
+        if (cause instanceof GeminiClient.RateLimitedException limited) {
+            data.put("retryAfter", limited.getRetryAfterSeconds());
+        }
+        try {
+            emitter.send(SseEmitter.event().name("error").data(data));
+            emitter.complete();
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private ResponseEntity<ChatbotResponse> errorResponse(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        System.err.println("[ChatbotController] Error in chat endpoint: " + cause.getMessage());
+        String errorMsg = cause.getMessage();
+        if (errorMsg == null || errorMsg.isEmpty()) {
+            errorMsg = "Đã có lỗi xảy ra khi xử lý yêu cầu";
+        }
+        // Gemini quota: 429 + Retry-After instead of a generic 500
+        if (cause instanceof GeminiClient.RateLimitedException limited) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(limited.getRetryAfterSeconds()))
                     .body(ChatbotResponse.error(errorMsg));
         }
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(ChatbotResponse.error(errorMsg));
     }
 
     /**
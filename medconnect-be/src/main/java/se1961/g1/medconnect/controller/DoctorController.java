@@ -2,10 +2,13 @@ package se1961.g1.medconnect.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import se1961.g1.medconnect.dto.AppointmentDTO;
+import se1961.g1.medconnect.dto.DoctorCatalogRow;
 import se1961.g1.medconnect.dto.ScheduleDTO;
 import se1961.g1.medconnect.enums.ScheduleStatus;
 import se1961.g1.medconnect.pojo.*;
@@ -26,22 +29,28 @@ public class DoctorController {
     private ScheduleService scheduleService;
     @Autowired
     private SpecialityRepository specialityRepository;
+    @Autowired
+    private DoctorCatalogService doctorCatalogService;
 
     /**
      * Get all doctors (Public - for patient booking)
      */
     @GetMapping("/all")
-    public ResponseEntity<List<Map<String, Object>>> getAllDoctors() {
-        List<Doctor> doctors = doctorService.getAllDoctors();
-        List<Map<String, Object>> response = new ArrayList<>();
+    public ResponseEntity<List<Map<String, Object>>> getAllDoctors(WebRequest webRequest) {
+        DoctorCatalogService.Snapshot catalog = doctorCatalogService.getSnapshot();
+        String etag = catalog.etag("doctor-all");
+        if (webRequest.checkNotModified(etag)) {
+            return null; // 304, browser copy is current
+        }
+        List<Map<String, Object>> response = new ArrayList<>(catalog.doctors().size());
         
-        for (Doctor doctor : doctors) {
+        for (DoctorCatalogRow doctor : catalog.doctors()) {
             Map<String, Object> doctorData = new HashMap<>();
             doctorData.put("id", doctor.getUserId());
             doctorData.put("name", doctor.getName());
             doctorData.put("email", doctor.getEmail());
             doctorData.put("phone", doctor.getPhone());
-            doctorData.put("specialty", doctor.getSpeciality() != null ? doctor.getSpeciality().getName() : "Chưa có");
+            doctorData.put("specialty", doctor.getSpecialityName() != null ? doctor.getSpecialityName() : "Chưa có");
             doctorData.put("avatar", doctor.getAvatarUrl());
             doctorData.put("status", doctor.getStatus() != null ? doctor.getStatus().name() : null);
             doctorData.put("experienceYears", doctor.getExperienceYears());
@@ -54,9 +63,9 @@ public class DoctorController {
             doctorData.put("ward_code", doctor.getWardCode());
             
             // Add pricing information from speciality
-            if (doctor.getSpeciality() != null) {
-                Integer onlinePrice = doctor.getSpeciality().getOnlinePrice();
-                Integer offlinePrice = doctor.getSpeciality().getOfflinePrice();
+            if (doctor.getSpecialityId() != null) {
+                Integer onlinePrice = doctor.getOnlinePrice();
+                Integer offlinePrice = doctor.getOfflinePrice();
                 
                 if (onlinePrice != null && offlinePrice != null) {
                     String priceRange = String.format("%,d - %,d VND", onlinePrice, offlinePrice);
@@ -80,7 +89,7 @@ public class DoctorController {
             response.add(doctorData);
         }
         
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(response);
     }
 
     @GetMapping("/appointments")
@@ -31,9 +31,9 @@ public class EMRController {
                 return ResponseEntity.notFound().build();
             }
 
-            // Parse JSON data and return
+            // Parse JSON data (profile + entries) and return
             @SuppressWarnings("unchecked")
-            Map<String, Object> emrData = objectMapper.readValue(record.getDetail(), Map.class);
+            Map<String, Object> emrData = objectMapper.readValue(medicalRecordService.composeDetail(record), Map.class);
             
             return ResponseEntity.ok(emrData);
         } catch (Exception e) {
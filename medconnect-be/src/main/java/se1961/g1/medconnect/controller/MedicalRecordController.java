@@ -1,24 +1,26 @@
 package se1961.g1.medconnect.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import se1961.g1.medconnect.pojo.Appointment;
 import se1961.g1.medconnect.pojo.MedicalRecord;
+import se1961.g1.medconnect.pojo.MedicalRecordEntry;
 import se1961.g1.medconnect.pojo.Patient;
 import se1961.g1.medconnect.pojo.User;
 import se1961.g1.medconnect.repository.PatientRepository;
 import se1961.g1.medconnect.repository.UserRepository;
 import se1961.g1.medconnect.service.AppointmentService;
 import se1961.g1.medconnect.service.MedicalRecordService;
+import se1961.g1.medconnect.util.EmrJsonStreams;
 
 import java.util.List;
 import java.util.Map;
-import java.util.ArrayList;
-import java.util.HashMap;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 @RestController
 @RequestMapping("/api/medical-records")
@@ -36,8 +38,6 @@ public class MedicalRecordController {
     @Autowired
     private AppointmentService appointmentService;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
-
     /**
      * Get my EMR profile (patient)
      */
@@ -58,7 +58,7 @@ public class MedicalRecordController {
             System.out.println("Detail starts with: " + record.getDetail().substring(0, Math.min(50, record.getDetail().length())));
             System.out.println("=== END DEBUG ===");
             
-            return ResponseEntity.ok(record);
+            return ResponseEntity.ok(medicalRecordService.withEntries(record));
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -89,7 +89,7 @@ public class MedicalRecordController {
             
             return ResponseEntity.status(HttpStatus.CREATED).body(Map.of(
                 "message", "Medical record created successfully",
-                "record", record
+                "record", medicalRecordService.withEntries(record)
             ));
         } catch (IllegalStateException e) {
             return ResponseEntity.status(HttpStatus.CONFLICT)
@@ -111,16 +111,21 @@ public class MedicalRecordController {
         try {
             String firebaseUid = authentication.getName();
             String detail = (String) request.get("detail");
+            // Version the client read (optional): stale updates are rejected with 409
+            Long version = request.get("version") instanceof Number n ? n.longValue() : null;
             
-            MedicalRecord updated = medicalRecordService.updatePatientProfile(firebaseUid, detail);
+            MedicalRecord updated = medicalRecordService.updatePatientProfile(firebaseUid, detail, version);
             
             return ResponseEntity.ok(Map.of(
                 "message", "Medical record updated successfully",
-                "record", updated
+                "record", medicalRecordService.withEntries(updated)
             ));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                 .body(Map.of("error", e.getMessage()));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "Medical record was modified by someone else, please reload"));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
@@ -143,7 +148,7 @@ public class MedicalRecordController {
                     .body(Map.of("message", "No medical record found"));
             }
             
-            return ResponseEntity.ok(record);
+            return ResponseEntity.ok(medicalRecordService.withEntries(record));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
@@ -187,18 +192,15 @@ public class MedicalRecordController {
                     .body(Map.of("error", "Access denied. You can only access your own medical records."));
             }
             
-            MedicalRecord record = medicalRecordService.getByPatientUserId(patientUserId);
-            if (record == null || record.getDetail() == null) {
+            if (!medicalRecordService.hasRecord(patientUserId)) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("message", "No medical record found"));
             }
-            @SuppressWarnings("unchecked")
-            Map<String, Object> emr = objectMapper.readValue(record.getDetail(), Map.class);
-            Object entries = emr.get("medical_records");
-            if (!(entries instanceof List<?>)) {
-                entries = new ArrayList<>();
-            }
-            return ResponseEntity.ok(entries);
+            // Entry rows, indexed by patient (the profile blob is not read);
+            // stored JSON is copied to the response as-is, no Map in between
+            List<String> entries = medicalRecordService.getEntryContents(patientUserId);
+            StreamingResponseBody body = out -> EmrJsonStreams.writeRawArray(entries, out);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                 .body(Map.of("error", e.getMessage()));
@@ -258,61 +260,19 @@ public class MedicalRecordController {
             }
             
             // Get medical record entries
-            MedicalRecord record = medicalRecordService.getByPatientUserId(appointmentPatient.getUserId());
-            if (record == null || record.getDetail() == null) {
+            if (!medicalRecordService.hasRecord(appointmentPatient.getUserId())) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("message", "No medical record found"));
             }
             
-            @SuppressWarnings("unchecked")
-            Map<String, Object> emr = objectMapper.readValue(record.getDetail(), Map.class);
-            Object entries = emr.get("medical_records");
-            if (!(entries instanceof List<?>)) {
-                entries = new ArrayList<>();
-            }
-            
-            // Find entry matching this appointment
-            // Try to match by appointment_id or visit_id
-            List<Map<String, Object>> matchingEntries = new ArrayList<>();
-            if (entries instanceof List<?>) {
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> entriesList = (List<Map<String, Object>>) entries;
-                for (Map<String, Object> entry : entriesList) {
-                    // Check if entry has appointment_id matching
-                    if (entry.containsKey("appointment_id") 
-                        && entry.get("appointment_id") != null
-                        && entry.get("appointment_id").equals(appointmentId)) {
-                        matchingEntries.add(entry);
-                        break;
-                    }
-                }
-            }
-            
-            // If no exact match, return the most recent entry (as fallback)
-            if (matchingEntries.isEmpty() && entries instanceof List<?> && !((List<?>) entries).isEmpty()) {
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> entriesList = (List<Map<String, Object>>) entries;
-                if (!entriesList.isEmpty()) {
-                    matchingEntries.add(entriesList.get(entriesList.size() - 1));
-                }
-            }
+            // Entry written for this appointment, or the most recent entry (as fallback)
+            String entry = medicalRecordService.getEntryContentForAppointment(
+                appointmentId, appointmentPatient.getUserId());
             
             // Return prescription data in format expected by frontend
-            if (!matchingEntries.isEmpty()) {
-                Map<String, Object> entry = matchingEntries.get(0);
-                Map<String, Object> response = new HashMap<>();
-                response.put("medications", entry.get("prescriptions"));
-                response.put("note", entry.get("notes"));
-                response.put("diagnosis", entry.get("diagnosis"));
-                return ResponseEntity.ok(response);
-            } else {
-                // No matching entry found, return empty
-                Map<String, Object> response = new HashMap<>();
-                response.put("medications", new ArrayList<>());
-                response.put("note", "");
-                response.put("diagnosis", null);
-                return ResponseEntity.ok(response);
-            }
+            // (streamed field by field; empty medications/note when no entry)
+            StreamingResponseBody body = out -> EmrJsonStreams.writeEntrySummary(entry, out);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                 .body(Map.of("error", e.getMessage()));
@@ -334,17 +294,21 @@ public class MedicalRecordController {
         try {
             // String firebaseUid = authentication.getName();
             Object entryData = request.get("entry");
+            if (entryData == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Missing entry"));
+            }
             
             // TODO: Verify doctor has permission
             
-            MedicalRecord updated = medicalRecordService.addMedicalRecordEntry(
+            MedicalRecordEntry added = medicalRecordService.addMedicalRecordEntry(
                 patientUserId, 
                 entryData
             );
             
             return ResponseEntity.ok(Map.of(
                 "message", "Medical entry added successfully",
-                "record", updated
+                "entryId", added.getEntryId(),
+                "entry", entryData
             ));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
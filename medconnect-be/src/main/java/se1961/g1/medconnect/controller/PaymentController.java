@@ -40,13 +40,9 @@ public class PaymentController {
      */
     @PostMapping("/ipn")
     public ResponseEntity<?> handleIPN(@RequestParam Map<String, String> ipnParams) {
-        try {
-            Payment payment = paymentService.handleIPN(ipnParams);
-            return ResponseEntity.ok(Map.of("RspCode", "00", "Message", "Confirm Success"));
-        } catch (Exception e) {
-            // Always return 200 so VNPAY knows IPN was received
-            return ResponseEntity.ok(Map.of("RspCode", "99", "Message", e.getMessage()));
-        }
+        // Always return 200 so VNPAY knows IPN was received; RspCode tells it whether to retry
+        PaymentService.IpnResult result = paymentService.processIpn(ipnParams);
+        return ResponseEntity.ok(Map.of("RspCode", result.rspCode(), "Message", result.message()));
     }
 
     /**
@@ -1,11 +1,15 @@
 package se1961.g1.medconnect.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import se1961.g1.medconnect.pojo.Doctor;
-import se1961.g1.medconnect.service.DoctorService;
+import org.springframework.web.context.request.WebRequest;
+import se1961.g1.medconnect.dto.DoctorCatalogRow;
+import se1961.g1.medconnect.enums.DoctorStatus;
+import se1961.g1.medconnect.service.DoctorCatalogService;
+import se1961.g1.medconnect.service.DoctorSearchIndex;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -18,28 +22,88 @@ import java.util.stream.Collectors;
 public class PublicController {
     
     @Autowired
-    private DoctorService doctorService;
+    private DoctorCatalogService doctorCatalogService;
+
+    @Autowired
+    private DoctorSearchIndex doctorSearchIndex;
 
     /**
      * Lấy danh sách tất cả bác sĩ (cho dropdown - không cần auth)
      * GET /api/doctors
      */
     @GetMapping("/doctors")
-    public ResponseEntity<List<Map<String, Object>>> getAllDoctors() {
+    public ResponseEntity<List<Map<String, Object>>> getAllDoctors(WebRequest webRequest) {
         try {
-            List<Doctor> doctors = doctorService.getAllDoctors();
+            DoctorCatalogService.Snapshot catalog = doctorCatalogService.getSnapshot();
+            String etag = catalog.etag("public");
+            if (webRequest.checkNotModified(etag)) {
+                return null; // 304
+            }
             
-            List<Map<String, Object>> response = doctors.stream().map(doctor -> {
+            List<Map<String, Object>> response = catalog.doctors().stream().map(doctor -> {
                 Map<String, Object> doctorData = new HashMap<>();
                 doctorData.put("id", doctor.getUserId());
                 doctorData.put("name", doctor.getName());
-                doctorData.put("speciality", doctor.getSpecializationName());
+                doctorData.put("speciality", doctor.getSpecialityName());
                 return doctorData;
             }).collect(Collectors.toList());
             
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(response);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ArrayList<>());
         }
     }
+
+    /**
+     * Tìm kiếm bác sĩ (không dấu, theo tiền tố) + lọc chuyên khoa / tỉnh, có phân trang và đếm theo nhóm
+     * GET /api/doctors/search?q=nguyen tim&specialityId=3&provinceCode=1&page=0&size=20
+     */
+    @GetMapping("/doctors/search")
+    public ResponseEntity<Map<String, Object>> searchDoctors(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Integer specialityId,
+            @RequestParam(required = false) Integer provinceCode,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            DoctorSearchIndex.Result result = doctorSearchIndex.search(new DoctorSearchIndex.Query(
+                    q, specialityId, provinceCode, DoctorStatus.ACTIVE, page, size));
+
+            List<Map<String, Object>> items = new ArrayList<>();
+            for (DoctorCatalogRow doctor : result.items()) {
+                Map<String, Object> card = new HashMap<>();
+                card.put("id", doctor.getUserId());
+                card.put("name", doctor.getName());
+                card.put("avatar", doctor.getAvatarUrl());
+                card.put("specialityId", doctor.getSpecialityId());
+                card.put("speciality", doctor.getSpecialityName());
+                card.put("experienceYears", doctor.getExperienceYears());
+                card.put("provinceName", doctor.getProvinceName());
+                card.put("districtName", doctor.getDistrictName());
+                card.put("onlinePrice", doctor.getOnlinePrice());
+                card.put("offlinePrice", doctor.getOfflinePrice());
+                items.add(card);
+            }
+
+            Map<String, Object> facets = new HashMap<>();
+            facets.put("specialities", result.specialities());
+            facets.put("provinces", result.provinces());
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("items", items);
+            data.put("total", result.total());
+            data.put("page", result.page());
+            data.put("size", result.size());
+            data.put("facets", facets);
+
+            response.put("success", true);
+            response.put("data", data);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Lỗi khi tìm kiếm bác sĩ: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
 }
@@ -6,6 +6,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import se1961.g1.medconnect.dto.ScheduleDTO;
+import se1961.g1.medconnect.dto.ScheduleRangeDTO;
 import se1961.g1.medconnect.enums.ScheduleStatus;
 import se1961.g1.medconnect.pojo.Doctor;
 import se1961.g1.medconnect.repository.DoctorRepository;
@@ -50,6 +51,37 @@ public class ScheduleController {
         }
     }
 
+    /**
+     * Get schedule for an arbitrary range (month/quarter) in compact form.
+     * Admin may pass doctorId to view any doctor; doctors always get their own schedule.
+     */
+    @GetMapping("/range")
+    public ResponseEntity<?> getScheduleRange(
+            Authentication authentication,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) Long doctorId
+    ) {
+        try {
+            boolean isAdmin = authentication.getAuthorities().stream()
+                    .anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()));
+            Long userId;
+            if (isAdmin && doctorId != null) {
+                userId = doctorId;
+            } else {
+                String firebaseUid = (String) authentication.getPrincipal();
+                Doctor doctor = doctorRepository.findByFirebaseUid(firebaseUid)
+                        .orElseThrow(() -> new Exception("Doctor not found"));
+                userId = doctor.getUserId();
+            }
+
+            ScheduleRangeDTO range = scheduleService.getScheduleRange(userId, startDate, endDate);
+            return ResponseEntity.ok(range);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * Add new schedule slot
      */
@@ -24,7 +24,7 @@ public class SpecialityController {
      */
     @GetMapping
     public ResponseEntity<List<Map<String, Object>>> getAllSpecialities() {
-        List<Speciality> specialities = specialityService.getAllSpecialities();
+        List<Speciality> specialities = specialityService.getCatalog().specialities();
         
         List<Map<String, Object>> result = specialities.stream()
                 .map(this::mapSpecialityToResponse)
@@ -145,7 +145,7 @@ public class SpecialityController {
      */
     @GetMapping("/dropdown")
     public ResponseEntity<List<Map<String, Object>>> getSpecialitiesForDropdown() {
-        List<Speciality> specialities = specialityService.getAllSpecialities();
+        List<Speciality> specialities = specialityService.getCatalog().specialities();
         
         List<Map<String, Object>> result = specialities.stream()
                 .map(s -> {
@@ -166,9 +166,9 @@ public class SpecialityController {
      */
     @GetMapping("/public")
     public ResponseEntity<List<Map<String, Object>>> getSpecialitiesForPublic() {
-        List<Speciality> specialities = specialityService.getAllSpecialitiesWithDoctorCount();
+        SpecialityService.Catalog catalog = specialityService.getCatalog();
         
-        List<Map<String, Object>> result = specialities.stream()
+        List<Map<String, Object>> result = catalog.specialities().stream()
                 .map(s -> {
                     Map<String, Object> map = new HashMap<>();
                     map.put("id", s.getSpecialityId());
@@ -176,9 +176,8 @@ public class SpecialityController {
                     map.put("description", s.getDescription());
                     map.put("onlinePrice", s.getOnlinePrice());
                     map.put("offlinePrice", s.getOfflinePrice());
-                    // Get doctor count for this specialty
-                    long doctorCount = specialityService.getDoctorCountBySpecialityId(s.getSpecialityId());
-                    map.put("doctorCount", doctorCount);
+                    // Counted for all specialities at once (GROUP BY) when the snapshot was built
+                    map.put("doctorCount", catalog.doctorCount(s.getSpecialityId()));
                     return map;
                 })
                 .collect(Collectors.toList());
@@ -0,0 +1,28 @@
+package se1961.g1.medconnect.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import se1961.g1.medconnect.enums.AppointmentStatus;
+import se1961.g1.medconnect.enums.Slot;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Flat projection of an appointment for admin lists (no entity hydration)
+ */
+@Data
+@AllArgsConstructor
+public class AdminAppointmentRow {
+    private Long id;
+    private Long patientId;
+    private String patientName;
+    private Long doctorId;
+    private String doctorName;
+    private LocalDate date;
+    private Slot slot;
+    private AppointmentStatus status;
+    private LocalDate createdAt;
+    private LocalDateTime videoCallStart;
+    private LocalDateTime videoCallEnd;
+}
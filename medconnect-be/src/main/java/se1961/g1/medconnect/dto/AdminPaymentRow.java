@@ -0,0 +1,31 @@
+package se1961.g1.medconnect.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import se1961.g1.medconnect.enums.PaymentStatus;
+import se1961.g1.medconnect.enums.Slot;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Flat projection of a payment and its appointment for admin lists (no entity hydration)
+ */
+@Data
+@AllArgsConstructor
+public class AdminPaymentRow {
+    private Long id;
+    private Double amount;
+    private PaymentStatus status;
+    private String transactionId;
+    private String paymentMethod;
+    private String gatewayName;
+    private Long appointmentId;
+    private String appointmentPatientName;
+    private String paymentPatientName;
+    private String doctorName;
+    private LocalDate appointmentDate;
+    private Slot appointmentSlot;
+    private LocalDateTime createdAt;
+    private LocalDateTime paidAt;
+}
@@ -0,0 +1,27 @@
+package se1961.g1.medconnect.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One free slot returned by the multi-doctor availability search
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AvailableSlotDTO {
+    private Long doctorId;
+    private String doctorName;
+    private String avatar;
+    private String specialityName;
+    private String provinceName;
+    private LocalDate date;
+    private String slot;
+    private String time;
+    private LocalDateTime start;
+    private Integer fee;
+}
@@ -0,0 +1,65 @@
+package se1961.g1.medconnect.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import se1961.g1.medconnect.enums.DoctorStatus;
+import se1961.g1.medconnect.pojo.License;
+
+/**
+ * One doctor of the catalogue (doctor + speciality columns from one JPQL projection,
+ * active licence attached afterwards from a second query). Shared by every doctor list endpoint.
+ */
+@Data
+public class DoctorCatalogRow {
+    private Long userId;
+    private String name;
+    private String email;
+    private String phone;
+    private String avatarUrl;
+    private DoctorStatus status;
+    private Integer experienceYears;
+    private String bio;
+    private String educationLevel;
+    private String clinicAddress;
+    private Integer provinceCode;
+    private String provinceName;
+    private Integer districtCode;
+    private String districtName;
+    private Integer wardCode;
+    private Integer specialityId;
+    private String specialityName;
+    private Integer onlinePrice;
+    private Integer offlinePrice;
+
+    // First valid licence (same rule as Doctor.getActiveLicense), detached
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private License activeLicense;
+
+    public DoctorCatalogRow(Long userId, String name, String email, String phone, String avatarUrl,
+                            DoctorStatus status, Integer experienceYears, String bio, String educationLevel,
+                            String clinicAddress, Integer provinceCode, String provinceName,
+                            Integer districtCode, String districtName, Integer wardCode, Integer specialityId,
+                            String specialityName, Integer onlinePrice, Integer offlinePrice) {
+        this.userId = userId;
+        this.name = name;
+        this.email = email;
+        this.phone = phone;
+        this.avatarUrl = avatarUrl;
+        this.status = status;
+        this.experienceYears = experienceYears;
+        this.bio = bio;
+        this.educationLevel = educationLevel;
+        this.clinicAddress = clinicAddress;
+        this.provinceCode = provinceCode;
+        this.provinceName = provinceName;
+        this.districtCode = districtCode;
+        this.districtName = districtName;
+        this.wardCode = wardCode;
+        this.specialityId = specialityId;
+        this.specialityName = specialityName;
+        this.onlinePrice = onlinePrice;
+        this.offlinePrice = offlinePrice;
+    }
+}
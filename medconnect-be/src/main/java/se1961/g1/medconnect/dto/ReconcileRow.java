@@ -0,0 +1,14 @@
+package se1961.g1.medconnect.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * PENDING payment as seen by the reconciliation job, read without hydrating the entity
+ */
+@Data
+@AllArgsConstructor
+public class ReconcileRow {
+    private Long paymentId;
+    private String transactionId;
+}
@@ -0,0 +1,21 @@
+package se1961.g1.medconnect.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import se1961.g1.medconnect.enums.Slot;
+
+import java.time.LocalDate;
+
+/**
+ * What a reminder email needs from an appointment, read without hydrating the entity
+ */
+@Data
+@AllArgsConstructor
+public class ReminderRow {
+    private Long appointmentId;
+    private LocalDate date;
+    private Slot slot;
+    private String patientEmail;
+    private String patientName;
+    private String doctorName;
+}
@@ -0,0 +1,32 @@
+package se1961.g1.medconnect.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Compact schedule for long ranges (month, quarter):
+ * one mask pair per non-empty day + only the populated cells.
+ * Bit i of a mask = Slot.values()[i].
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ScheduleRangeDTO {
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private List<DayMask> days;
+    private List<ScheduleDTO> cells;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class DayMask {
+        private LocalDate date;
+        private int openMask;
+        private int busyMask;
+    }
+}
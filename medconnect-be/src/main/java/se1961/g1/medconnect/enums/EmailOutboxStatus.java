@@ -0,0 +1,7 @@
+package se1961.g1.medconnect.enums;
+
+public enum EmailOutboxStatus {
+    PENDING,
+    SENT,
+    FAILED
+}
@@ -31,6 +31,11 @@ public enum Slot {
 
     public LocalTime getStart() { return start; }
     public LocalTime getEnd() { return end; }
+
+    /**
+     * Bit of this slot in a 12-bit day mask (SLOT_1 = bit 0)
+     */
+    public int bit() { return 1 << ordinal(); }
     
     public String getTimeRange() {
         return String.format("%02d:%02d - %02d:%02d", 
@@ -14,11 +14,11 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import se1961.g1.medconnect.enums.Role;
 import se1961.g1.medconnect.pojo.User;
 import se1961.g1.medconnect.service.FirebaseService;
+import se1961.g1.medconnect.service.FirebaseTokenCache;
 import se1961.g1.medconnect.service.UserService;
 
 import java.io.IOException;
 import java.util.Collections;
-import java.util.Optional;
 
 @Component
 public class FirebaseFilter extends OncePerRequestFilter {
@@ -26,6 +26,8 @@ public class FirebaseFilter extends OncePerRequestFilter {
     private FirebaseService firebaseService;
     @Autowired
     private UserService userService;
+    @Autowired
+    private FirebaseTokenCache tokenCache;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -40,30 +42,31 @@ public class FirebaseFilter extends OncePerRequestFilter {
         if(authHeader != null && authHeader.startsWith("Bearer ")) {
             try{
                 String token = authHeader.substring(7);
-                FirebaseToken decodedToken = firebaseService.getDecodedToken(token);
-                String uid = decodedToken.getUid();
-                String email = decodedToken.getEmail();
 
-                Optional<User> userOpt = userService.getUser(uid);
-                if(userOpt.isPresent()) {
-                    // User exists in database - set role
-                    Role role = userOpt.get().getRole();
-                    UsernamePasswordAuthenticationToken authentication =
-                            new UsernamePasswordAuthenticationToken(uid, null,
-                                    Collections.singletonList(
-                                            new SimpleGrantedAuthority("ROLE_" + role.name())));
-                    authentication.setDetails(email);
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
-                } else {
-                    // User authenticated with Firebase but not in DB yet
-                    // Set as authenticated user without specific role
-                    UsernamePasswordAuthenticationToken authentication =
-                            new UsernamePasswordAuthenticationToken(uid, null,
-                                    Collections.singletonList(
-                                            new SimpleGrantedAuthority("ROLE_PATIENT"))); // Default role
-                    authentication.setDetails(email);
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                // Same token is sent by many calls of one page load -> skip verify + DB lookup
+                FirebaseTokenCache.CachedToken cached = tokenCache.get(token);
+                if (cached == null) {
+                    FirebaseToken decodedToken = firebaseService.getDecodedToken(token);
+                    String uid = decodedToken.getUid();
+                    String email = decodedToken.getEmail();
+
+                    // role == null: user authenticated with Firebase but not in DB yet
+                    Role role = userService.getUser(uid).map(User::getRole).orElse(null);
+                    Object exp = decodedToken.getClaims().get("exp");
+                    if (exp instanceof Number) {
+                        tokenCache.put(token, uid, email, role, ((Number) exp).longValue());
+                    }
+                    cached = new FirebaseTokenCache.CachedToken(uid, email, role, 0L);
                 }
+
+                // Default role for users not in DB yet
+                Role role = cached.role() != null ? cached.role() : Role.PATIENT;
+                UsernamePasswordAuthenticationToken authentication =
+                        new UsernamePasswordAuthenticationToken(cached.uid(), null,
+                                Collections.singletonList(
+                                        new SimpleGrantedAuthority("ROLE_" + role.name())));
+                authentication.setDetails(cached.email());
+                SecurityContextHolder.getContext().setAuthentication(authentication);
             } catch (Exception e) {
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 return;
@@ -85,6 +88,7 @@ public class FirebaseFilter extends OncePerRequestFilter {
                path.startsWith("/api/chatbot") || // Skip filter for chatbot endpoint
                path.startsWith("/api/api/chatbot") || // Handle duplicate /api/api case
                path.startsWith("/doctor/dashboard/all") ||
-               path.matches("/api/appointments/doctor/\\d+/available-slots.*");
+               path.matches("/api/appointments/doctor/\\d+/available-slots.*") ||
+               path.startsWith("/api/appointments/available-slots/search");
     }
 }
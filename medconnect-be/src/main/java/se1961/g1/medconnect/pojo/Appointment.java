@@ -8,8 +8,10 @@ import org.hibernate.annotations.CreationTimestamp;
 import se1961.g1.medconnect.enums.AppointmentStatus;
 import se1961.g1.medconnect.enums.AppointmentType;
 import se1961.g1.medconnect.enums.Slot;
+import se1961.g1.medconnect.service.DashboardStatsListener;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 @Entity
 @Table(
@@ -17,8 +19,17 @@ import java.time.LocalDate;
     uniqueConstraints = {
         // Prevent a patient from booking multiple doctors in the same date and slot
         @UniqueConstraint(name = "uk_patient_date_slot", columnNames = {"patient_id", "date", "slot"})
+    },
+    indexes = {
+        // Keyset pagination of admin lists (newest first)
+        @Index(name = "idx_appointment_created", columnList = "createdAt, appointmentId"),
+        // Reminder scan: CONFIRMED appointments of a date/slot range
+        @Index(name = "idx_appointment_reminder", columnList = "status, date, slot, appointmentId"),
+        // Hold sweeper: expired unpaid bookings
+        @Index(name = "idx_appointment_hold", columnList = "holdExpiresAt")
     }
 )
+@EntityListeners(DashboardStatsListener.class)
 @Getter
 @Setter
 public class Appointment {
@@ -40,6 +51,12 @@ public class Appointment {
     @Enumerated(EnumType.STRING)
     private AppointmentType type;
 
+    // Slot is only held until then unless payment succeeds (null = no hold: paid, or created by admin)
+    private LocalDateTime holdExpiresAt;
+
+    // When the hold was taken: extensions for payment are capped relative to it
+    private LocalDateTime holdStartedAt;
+
     @Column(columnDefinition = "NVARCHAR(MAX)")
     private String reason; // Lý do khám bệnh
 
@@ -58,5 +75,9 @@ public class Appointment {
 
     @OneToOne(mappedBy = "appointment", cascade = CascadeType.ALL)
     private VideoCallSession videoCallSession;
-}
 
+    // Status as last loaded/written, used to compute dashboard counter transitions
+    @Transient
+    @JsonIgnore
+    private AppointmentStatus loadedStatus;
+}
@@ -4,11 +4,13 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 import se1961.g1.medconnect.enums.DoctorStatus;
+import se1961.g1.medconnect.service.DoctorCatalogListener;
 
 import java.util.List;
 
 @Entity
 @Table(name = "Doctor")
+@EntityListeners(DoctorCatalogListener.class)
 @Getter
 @Setter
 public class Doctor extends User{
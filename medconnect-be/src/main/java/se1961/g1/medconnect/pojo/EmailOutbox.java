@@ -0,0 +1,62 @@
+package se1961.g1.medconnect.pojo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+import se1961.g1.medconnect.enums.EmailOutboxStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Transactional email outbox. A row is written in the same transaction as the state change
+ * (payment PAID, appointment CONFIRMED...) and sent later by EmailOutboxDispatcher,
+ * so a slow or failing Resend call never holds a request thread or a DB connection.
+ */
+@Entity
+@Table(name = "EmailOutbox", indexes = {
+        @Index(name = "idx_email_outbox_due", columnList = "status, nextAttemptAt")
+})
+@Getter
+@Setter
+public class EmailOutbox {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // e.g. "appointment-confirmed:42"; the same key is never queued twice
+    @Column(nullable = false, unique = true, length = 191)
+    private String idempotencyKey;
+
+    @Column(nullable = false, length = 320)
+    private String recipient;
+
+    @Column(nullable = false, length = 500)
+    private String subject;
+
+    @Column(columnDefinition = "NVARCHAR(MAX)", nullable = false)
+    private String html;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private EmailOutboxStatus status = EmailOutboxStatus.PENDING;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    // Due time while PENDING; also used as a lease while a dispatcher is sending the row
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    // Resend email id once sent
+    @Column(length = 100)
+    private String providerMessageId;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    private LocalDateTime sentAt;
+}
@@ -0,0 +1,35 @@
+package se1961.g1.medconnect.pojo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row per background job. Only the node holding an unexpired lease runs the job,
+ * so scheduled jobs run once across several backend nodes; cursorAt records how far
+ * the job has progressed so a restart resumes where it stopped.
+ */
+@Entity
+@Table(name = "JobLease")
+@Getter
+@Setter
+@NoArgsConstructor
+public class JobLease {
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(length = 100)
+    private String owner;
+
+    private LocalDateTime leaseUntil;
+
+    private LocalDateTime cursorAt;
+
+    public JobLease(String name) {
+        this.name = name;
+    }
+}
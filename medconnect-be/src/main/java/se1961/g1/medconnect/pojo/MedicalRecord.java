@@ -9,7 +9,9 @@ import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "MedicalRecord")
+@Table(name = "MedicalRecord", indexes = {
+        @Index(name = "idx_medical_record_patient", columnList = "patient_id")
+})
 @Getter
 @Setter
 public class MedicalRecord {
@@ -24,6 +26,22 @@ public class MedicalRecord {
     @JoinColumn(name = "patient_id")
     private Patient patient;
 
+    // Hot profile fields copied out of detail.patient_profile on every write,
+    // so lists can read them without parsing the whole JSON
+    @Column(length = 1000)
+    private String idPhotoUrl;
+
+    // null = legacy row written before profile fields were extracted (backfilled at startup)
+    private Boolean profileIndexed;
+
+    // null = legacy row whose medical_records still live in detail (moved to MedicalRecordEntry at startup)
+    private Boolean entriesMigrated;
+
+    // Optimistic lock on the profile section (detail); entries are separate rows
+    @Version
+    @Column(nullable = false, columnDefinition = "BIGINT DEFAULT 0")
+    private Long version;
+
     @CreationTimestamp
     private LocalDateTime createdAt;
 
@@ -0,0 +1,42 @@
+package se1961.g1.medconnect.pojo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * One EMR visit entry (append-only). Previously an element of MedicalRecord.detail.medical_records;
+ * now one row per entry keyed by patient and appointment, so adding a visit never rewrites history.
+ * Plain id columns (no FK) so the Patient -> MR cascade delete is not blocked.
+ */
+@Entity
+@Table(name = "MedicalRecordEntry", indexes = {
+        @Index(name = "idx_mr_entry_patient", columnList = "patientUserId, entryId"),
+        @Index(name = "idx_mr_entry_appointment", columnList = "appointmentId")
+})
+@Getter
+@Setter
+public class MedicalRecordEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long entryId;
+
+    @Column(nullable = false)
+    private Long recordId;
+
+    @Column(nullable = false)
+    private Long patientUserId;
+
+    // From entry.appointment_id when present
+    private Long appointmentId;
+
+    // Entry JSON exactly as sent by the doctor
+    @Column(columnDefinition = "NVARCHAR(MAX)", nullable = false)
+    private String content;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+}
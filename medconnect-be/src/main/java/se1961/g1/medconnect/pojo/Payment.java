@@ -1,14 +1,22 @@
 package se1961.g1.medconnect.pojo;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.annotations.CreationTimestamp;
 import se1961.g1.medconnect.enums.PaymentStatus;
+import se1961.g1.medconnect.service.DashboardStatsListener;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "Payment")
+@Table(name = "Payment", indexes = {
+        // Keyset pagination of admin lists (newest first)
+        @Index(name = "idx_payment_created", columnList = "createdAt, paymentId"),
+        // Reconciliation scan of PENDING payments by id
+        @Index(name = "idx_payment_status", columnList = "status, paymentId")
+})
+@EntityListeners(DashboardStatsListener.class)
 @Getter
 @Setter
 public class Payment {
@@ -21,6 +29,9 @@ public class Payment {
     
     private LocalDateTime paidAt;
 
+    // Start of the current checkout attempt (the row is reused when the patient pays again)
+    private LocalDateTime attemptedAt;
+
     @Enumerated(EnumType.STRING)
     private PaymentStatus status;
 
@@ -44,5 +55,13 @@ public class Payment {
     @OneToOne
     @JoinColumn(name = "appointment_id")
     private Appointment appointment;
-}
 
+    // Status/amount as last loaded/written, used to compute dashboard counter transitions
+    @Transient
+    @JsonIgnore
+    private PaymentStatus loadedStatus;
+
+    @Transient
+    @JsonIgnore
+    private Double loadedAmount;
+}
@@ -0,0 +1,47 @@
+package se1961.g1.medconnect.pojo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row per VNPay transaction reference whose IPN has been applied.
+ * The unique txnRef is what makes IPN processing idempotent: VNPay retries the same
+ * notification until it gets RspCode 00/02, and only the first insert wins.
+ */
+@Entity
+@Table(name = "PaymentIpnLog")
+@Getter
+@Setter
+public class PaymentIpnLog {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // vnp_TxnRef, e.g. "42-1730189283123"
+    @Column(nullable = false, unique = true, length = 100)
+    private String txnRef;
+
+    @Column(nullable = false)
+    private Long paymentId;
+
+    @Column(length = 10)
+    private String responseCode;
+
+    // vnp_TransactionNo, VNPay's own id for the transaction
+    @Column(length = 50)
+    private String transactionNo;
+
+    // vnp_Amount (VND x 100)
+    private Long amount;
+
+    // Full signed query as received, for audits/disputes
+    @Column(columnDefinition = "NVARCHAR(MAX)")
+    private String payload;
+
+    @CreationTimestamp
+    private LocalDateTime receivedAt;
+}
@@ -28,6 +28,10 @@ public class Schedule {
     @Enumerated(EnumType.STRING)
     private Slot slot;
 
+    // Held by an active (not CANCELLED/DENIED) appointment. Claimed with a conditional UPDATE
+    // (false -> true) so that only one booking can win the slot; see SlotBookingService
+    private Boolean booked;
+
     @ManyToOne
     @JoinColumn(name = "user_id")
     @JsonIgnore
@@ -6,12 +6,14 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import se1961.g1.medconnect.service.DoctorCatalogListener;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
 @Table(name = "speciality")
+@EntityListeners(DoctorCatalogListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
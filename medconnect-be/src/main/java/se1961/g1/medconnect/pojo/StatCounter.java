@@ -0,0 +1,34 @@
+package se1961.g1.medconnect.pojo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Pre-aggregated dashboard counter, one row per (entity, status), e.g. "APPOINTMENT.PENDING".
+ * Kept current by DashboardStatsListener on every appointment/payment insert, status change and delete.
+ */
+@Entity
+@Table(name = "StatCounter")
+@Getter
+@Setter
+@NoArgsConstructor
+public class StatCounter {
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(nullable = false)
+    private Long count = 0L;
+
+    // Sum of Payment.amount for payment counters, 0 for appointment counters
+    @Column(nullable = false)
+    private Double amount = 0.0;
+
+    public StatCounter(String name, Long count, Double amount) {
+        this.name = name;
+        this.count = count;
+        this.amount = amount;
+    }
+}
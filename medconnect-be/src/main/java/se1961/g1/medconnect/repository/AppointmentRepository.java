@@ -1,6 +1,16 @@
 package se1961.g1.medconnect.repository;
 
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import se1961.g1.medconnect.dto.AdminAppointmentRow;
+import se1961.g1.medconnect.dto.ReminderRow;
+import se1961.g1.medconnect.enums.DoctorStatus;
 import se1961.g1.medconnect.enums.AppointmentStatus;
 import se1961.g1.medconnect.enums.Slot;
 import se1961.g1.medconnect.pojo.Appointment;
@@ -8,6 +18,8 @@ import se1961.g1.medconnect.pojo.Doctor;
 import se1961.g1.medconnect.pojo.Patient;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
@@ -19,4 +31,91 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
     List<Appointment> findByDoctorAndDate(Doctor doctor, LocalDate date);
     // Check if patient has appointment in same date and slot (to prevent double booking)
     List<Appointment> findByPatientAndDateAndSlot(Patient patient, LocalDate date, Slot slot);
+
+    /**
+     * Active bookings (not CANCELLED/DENIED) of all doctors matching an availability search
+     */
+    @Query("SELECT a.doctor.userId AS doctorId, a.date AS date, a.slot AS slot FROM Appointment a " +
+           "WHERE a.doctor.speciality.specialityId = :specialityId " +
+           "AND (:provinceCode IS NULL OR a.doctor.provinceCode = :provinceCode) AND a.doctor.status = :status " +
+           "AND a.date BETWEEN :start AND :end " +
+           "AND a.status NOT IN (se1961.g1.medconnect.enums.AppointmentStatus.CANCELLED, se1961.g1.medconnect.enums.AppointmentStatus.DENIED)")
+    List<DoctorSlotRow> findBookedSlotsForSearch(@Param("specialityId") Integer specialityId,
+                                                 @Param("provinceCode") Integer provinceCode,
+                                                 @Param("status") DoctorStatus status,
+                                                 @Param("start") LocalDate start,
+                                                 @Param("end") LocalDate end);
+
+    @Query("SELECT COUNT(a) FROM Appointment a WHERE a.doctor.userId = :doctorId AND a.date = :date AND a.slot = :slot " +
+           "AND a.status NOT IN (se1961.g1.medconnect.enums.AppointmentStatus.CANCELLED, se1961.g1.medconnect.enums.AppointmentStatus.DENIED)")
+    long countActiveInSlot(@Param("doctorId") Long doctorId, @Param("date") LocalDate date, @Param("slot") Slot slot);
+
+    @Query("SELECT a.status AS status, COUNT(a) AS count FROM Appointment a GROUP BY a.status")
+    List<StatusCountRow> countGroupByStatus();
+
+    // ============================================
+    // ADMIN LIST: keyset pagination on (createdAt DESC, appointmentId DESC)
+    // ============================================
+
+    String ADMIN_ROW = "SELECT new se1961.g1.medconnect.dto.AdminAppointmentRow(a.appointmentId, p.userId, p.name, " +
+            "d.userId, d.name, a.date, a.slot, a.status, a.createdAt, v.startTime, v.endTime) " +
+            "FROM Appointment a LEFT JOIN a.patient p LEFT JOIN a.doctor d LEFT JOIN a.videoCallSession v ";
+
+    String ADMIN_ORDER = " ORDER BY a.createdAt DESC, a.appointmentId DESC";
+
+    @Query(ADMIN_ROW + ADMIN_ORDER)
+    List<AdminAppointmentRow> findAdminPage(Pageable page);
+
+    // Rows without createdAt (legacy) sort last and are reached after all timestamped rows
+    @Query(ADMIN_ROW + "WHERE a.createdAt < :createdAt OR (a.createdAt = :createdAt AND a.appointmentId < :id) " +
+           "OR a.createdAt IS NULL" + ADMIN_ORDER)
+    List<AdminAppointmentRow> findAdminPageAfter(@Param("createdAt") LocalDate createdAt, @Param("id") Long id, Pageable page);
+
+    @Query(ADMIN_ROW + "WHERE a.createdAt IS NULL AND a.appointmentId < :id" + ADMIN_ORDER)
+    List<AdminAppointmentRow> findAdminPageAfterUndated(@Param("id") Long id, Pageable page);
+
+    // ============================================
+    // SLOT HOLDS: unpaid PENDING bookings past their hold (see SlotHoldService)
+    // ============================================
+
+    @Query("SELECT a.appointmentId FROM Appointment a WHERE a.holdExpiresAt < :now " +
+           "AND a.status = se1961.g1.medconnect.enums.AppointmentStatus.PENDING ORDER BY a.holdExpiresAt ASC")
+    List<Long> findExpiredHoldIds(@Param("now") LocalDateTime now, Pageable page);
+
+    // Row-locked re-check, so a payment confirmed meanwhile is never expired
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Appointment a WHERE a.appointmentId IN :ids AND a.holdExpiresAt < :now " +
+           "AND a.status = se1961.g1.medconnect.enums.AppointmentStatus.PENDING")
+    List<Appointment> lockExpiredHolds(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // Current status straight from the DB (bypasses a possibly stale persistence context)
+    @Query("SELECT a.status FROM Appointment a WHERE a.appointmentId = :id")
+    AppointmentStatus findStatusById(@Param("id") Long appointmentId);
+
+    /**
+     * Turn the hold into a booking once paid. Returns 0 when the hold already expired (appointment cancelled).
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Appointment a SET a.holdExpiresAt = NULL WHERE a.appointmentId = :id " +
+           "AND a.status = se1961.g1.medconnect.enums.AppointmentStatus.PENDING")
+    int clearHold(@Param("id") Long appointmentId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Appointment a SET a.holdExpiresAt = :until WHERE a.appointmentId = :id " +
+           "AND a.status = se1961.g1.medconnect.enums.AppointmentStatus.PENDING AND a.holdExpiresAt IS NOT NULL " +
+           "AND a.holdExpiresAt < :until")
+    int extendHold(@Param("id") Long appointmentId, @Param("until") LocalDateTime until);
+
+    // ============================================
+    // REMINDERS: CONFIRMED appointments of one date/slot set, in appointmentId batches
+    // ============================================
+
+    @Query("SELECT new se1961.g1.medconnect.dto.ReminderRow(a.appointmentId, a.date, a.slot, p.email, p.name, d.name) " +
+           "FROM Appointment a JOIN a.patient p JOIN a.doctor d " +
+           "WHERE a.status = se1961.g1.medconnect.enums.AppointmentStatus.CONFIRMED " +
+           "AND a.date = :date AND a.slot IN :slots AND a.appointmentId > :afterId ORDER BY a.appointmentId ASC")
+    List<ReminderRow> findReminderBatch(@Param("date") LocalDate date, @Param("slots") Collection<Slot> slots,
+                                        @Param("afterId") Long afterId, Pageable page);
 }
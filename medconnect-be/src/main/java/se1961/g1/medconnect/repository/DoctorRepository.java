@@ -3,7 +3,11 @@ package se1961.g1.medconnect.repository;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import se1961.g1.medconnect.dto.DoctorCatalogRow;
+import se1961.g1.medconnect.enums.DoctorStatus;
 import se1961.g1.medconnect.pojo.Doctor;
+
+import java.util.List;
 import java.util.Optional;
 
 public interface DoctorRepository extends JpaRepository<Doctor, Long> {
@@ -14,6 +18,37 @@ public interface DoctorRepository extends JpaRepository<Doctor, Long> {
      * Count doctors by speciality ID
      */
     long countBySpecialitySpecialityId(Integer specialityId);
+
+    /**
+     * Doctor count of every speciality in one grouped query: (specialityId, count)
+     */
+    @Query("SELECT d.speciality.specialityId, COUNT(d) FROM Doctor d WHERE d.speciality IS NOT NULL GROUP BY d.speciality.specialityId")
+    List<Object[]> countGroupBySpeciality();
+
+    long countByStatus(DoctorStatus status);
+
+    /**
+     * Doctors of a speciality, optionally restricted to one province
+     */
+    @Query("SELECT d FROM Doctor d WHERE d.speciality.specialityId = :specialityId " +
+           "AND (:provinceCode IS NULL OR d.provinceCode = :provinceCode) AND d.status = :status")
+    List<Doctor> findForAvailabilitySearch(@Param("specialityId") Integer specialityId,
+                                           @Param("provinceCode") Integer provinceCode,
+                                           @Param("status") DoctorStatus status);
+
+    /**
+     * Doctor catalogue in one query (Users + Doctor + speciality), no entity hydration
+     */
+    String CATALOG_ROW = "SELECT new se1961.g1.medconnect.dto.DoctorCatalogRow(d.userId, d.name, d.email, d.phone, d.avatarUrl, " +
+           "d.status, d.experienceYears, d.bio, d.educationLevel, d.clinicAddress, d.provinceCode, d.provinceName, " +
+           "d.districtCode, d.districtName, d.wardCode, s.specialityId, s.name, s.onlinePrice, s.offlinePrice) " +
+           "FROM Doctor d LEFT JOIN d.speciality s ";
+
+    @Query(CATALOG_ROW + "ORDER BY d.userId")
+    List<DoctorCatalogRow> findCatalogRows();
+
+    @Query(CATALOG_ROW + "WHERE d.userId = :id")
+    Optional<DoctorCatalogRow> findCatalogRow(@Param("id") Long id);
     
 //    List<Appointment> findAppointments(Doctor doctor);
 }
@@ -0,0 +1,14 @@
+package se1961.g1.medconnect.repository;
+
+import se1961.g1.medconnect.enums.Slot;
+
+import java.time.LocalDate;
+
+/**
+ * Projection of one (doctor, date, slot) cell, used by set-based availability queries
+ */
+public interface DoctorSlotRow {
+    Long getDoctorId();
+    LocalDate getDate();
+    Slot getSlot();
+}
@@ -0,0 +1,65 @@
+package se1961.g1.medconnect.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import se1961.g1.medconnect.enums.EmailOutboxStatus;
+import se1961.g1.medconnect.pojo.EmailOutbox;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+    @Query("SELECT e.id FROM EmailOutbox e WHERE e.idempotencyKey = :key")
+    Optional<Long> findIdByIdempotencyKey(@Param("key") String idempotencyKey);
+
+    long countByStatus(EmailOutboxStatus status);
+
+    /**
+     * Insert a PENDING row unless this idempotency key is already queued, in the caller's transaction.
+     * UPDLOCK + HOLDLOCK take a key-range lock on the NOT EXISTS probe, so a concurrent insert of the
+     * same key waits for this transaction and then inserts nothing instead of hitting the unique constraint.
+     * Returns 1 when inserted, 0 when the key was already queued.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO email_outbox (idempotency_key, recipient, subject, html, status, attempts, next_attempt_at, created_at) " +
+            "SELECT :key, :recipient, :subject, :html, 'PENDING', 0, :now, :now " +
+            "WHERE NOT EXISTS (SELECT 1 FROM email_outbox WITH (UPDLOCK, HOLDLOCK) WHERE idempotency_key = :key)",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("key") String idempotencyKey, @Param("recipient") String recipient,
+                       @Param("subject") String subject, @Param("html") String html, @Param("now") LocalDateTime now);
+
+    @Query("SELECT e.id FROM EmailOutbox e WHERE e.status = se1961.g1.medconnect.enums.EmailOutboxStatus.PENDING " +
+            "AND e.nextAttemptAt <= :now ORDER BY e.nextAttemptAt ASC")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Query("SELECT MIN(e.createdAt) FROM EmailOutbox e WHERE e.status = se1961.g1.medconnect.enums.EmailOutboxStatus.PENDING")
+    LocalDateTime findOldestPendingCreatedAt();
+
+    /**
+     * Take a due row by pushing its nextAttemptAt to the end of the lease.
+     * Returns 0 when another dispatcher (or instance) claimed it first.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutbox e SET e.nextAttemptAt = :leaseUntil WHERE e.id = :id " +
+            "AND e.status = se1961.g1.medconnect.enums.EmailOutboxStatus.PENDING AND e.nextAttemptAt <= :now")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * Give claimed rows back when they could not be handed to the executor
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutbox e SET e.nextAttemptAt = :now WHERE e.id IN :ids " +
+            "AND e.status = se1961.g1.medconnect.enums.EmailOutboxStatus.PENDING")
+    int release(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+}
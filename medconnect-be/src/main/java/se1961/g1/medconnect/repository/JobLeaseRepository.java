@@ -0,0 +1,33 @@
+package se1961.g1.medconnect.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import se1961.g1.medconnect.pojo.JobLease;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+    /**
+     * Take or renew the lease: succeeds when it is free, expired, or already ours
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE JobLease j SET j.owner = :owner, j.leaseUntil = :until WHERE j.name = :name " +
+            "AND (j.owner IS NULL OR j.owner = :owner OR j.leaseUntil IS NULL OR j.leaseUntil < :now)")
+    int acquire(@Param("name") String name, @Param("owner") String owner,
+                @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE JobLease j SET j.cursorAt = :cursorAt WHERE j.name = :name AND j.owner = :owner")
+    int advanceCursor(@Param("name") String name, @Param("owner") String owner, @Param("cursorAt") LocalDateTime cursorAt);
+
+    @Query("SELECT j.cursorAt FROM JobLease j WHERE j.name = :name")
+    LocalDateTime findCursor(@Param("name") String name);
+}
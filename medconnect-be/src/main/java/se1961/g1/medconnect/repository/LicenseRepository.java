@@ -25,5 +25,9 @@ public interface LicenseRepository extends JpaRepository<License, Integer> {
     // Tìm giấy phép còn hiệu lực nhất của một bác sĩ
     @Query("SELECT l FROM License l WHERE l.doctor = ?1 AND l.isActive = true ORDER BY l.issuedDate DESC")
     Optional<License> findActiveLicenseByDoctor(Doctor doctor);
+
+    // Giấy phép đang dùng của tất cả bác sĩ (doctorId, license) cho danh mục bác sĩ
+    @Query("SELECT l.doctor.userId, l FROM License l WHERE l.isActive = true ORDER BY l.licenseId")
+    List<Object[]> findAllActiveWithDoctorId();
 }
 
@@ -0,0 +1,26 @@
+package se1961.g1.medconnect.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import se1961.g1.medconnect.pojo.MedicalRecordEntry;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MedicalRecordEntryRepository extends JpaRepository<MedicalRecordEntry, Long> {
+    List<MedicalRecordEntry> findByPatientUserIdOrderByEntryIdAsc(Long patientUserId);
+
+    Optional<MedicalRecordEntry> findFirstByAppointmentIdOrderByEntryIdDesc(Long appointmentId);
+
+    Optional<MedicalRecordEntry> findFirstByPatientUserIdOrderByEntryIdDesc(Long patientUserId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MedicalRecordEntry e WHERE e.patientUserId = :patientUserId")
+    int deleteByPatientUserId(@Param("patientUserId") Long patientUserId);
+}
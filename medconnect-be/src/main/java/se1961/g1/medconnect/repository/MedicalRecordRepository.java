@@ -1,14 +1,41 @@
 package se1961.g1.medconnect.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import se1961.g1.medconnect.pojo.MedicalRecord;
 import se1961.g1.medconnect.pojo.Patient;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface MedicalRecordRepository extends JpaRepository<MedicalRecord, Long> {
     Optional<MedicalRecord> findByPatient(Patient patient);
+
+    boolean existsByPatientUserId(Long patientUserId);
+
+    /**
+     * Extracted ID photo URLs of many patients in one IN query
+     */
+    @Query("SELECT r.patient.userId AS patientId, r.idPhotoUrl AS idPhotoUrl FROM MedicalRecord r " +
+           "WHERE r.patient.userId IN :patientIds")
+    List<PatientPhotoRow> findIdPhotoUrls(@Param("patientIds") Collection<Long> patientIds);
+
+    @Query("SELECT r.recordId FROM MedicalRecord r WHERE r.profileIndexed IS NULL")
+    List<Long> findUnindexedIds();
+
+    @Query("SELECT r.recordId FROM MedicalRecord r WHERE r.entriesMigrated IS NULL")
+    List<Long> findUnmigratedIds();
+
+    // Bulk update on purpose: backfill must not bump updatedAt
+    @Modifying
+    @Transactional
+    @Query("UPDATE MedicalRecord r SET r.idPhotoUrl = :idPhotoUrl, r.profileIndexed = true WHERE r.recordId = :recordId")
+    int updateProfileFields(@Param("recordId") Long recordId, @Param("idPhotoUrl") String idPhotoUrl);
 }
 
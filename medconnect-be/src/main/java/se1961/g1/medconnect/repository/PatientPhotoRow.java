@@ -0,0 +1,6 @@
+package se1961.g1.medconnect.repository;
+
+public interface PatientPhotoRow {
+    Long getPatientId();
+    String getIdPhotoUrl();
+}
@@ -0,0 +1,10 @@
+package se1961.g1.medconnect.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import se1961.g1.medconnect.pojo.PaymentIpnLog;
+
+@Repository
+public interface PaymentIpnLogRepository extends JpaRepository<PaymentIpnLog, Long> {
+    boolean existsByTxnRef(String txnRef);
+}
@@ -1,21 +1,76 @@
 package se1961.g1.medconnect.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import se1961.g1.medconnect.dto.AdminPaymentRow;
+import se1961.g1.medconnect.dto.ReconcileRow;
 import se1961.g1.medconnect.enums.PaymentStatus;
 import se1961.g1.medconnect.pojo.Appointment;
 import se1961.g1.medconnect.pojo.Payment;
 import se1961.g1.medconnect.pojo.Patient;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     Optional<Payment> findByAppointment(Appointment appointment);
+    List<Payment> findByAppointmentIn(Collection<Appointment> appointments);
     Optional<Payment> findByAppointmentAppointmentId(Long appoimentId);
     Optional<Payment> findByTransactionId(String transactionId);
     List<Payment> findByPatient(Patient patient);
     List<Payment> findByPatientAndStatus(Patient patient, PaymentStatus status);
     List<Payment> findByStatus(PaymentStatus status);
     void deleteByAppointment(Appointment appointment);
-}
 
+    @Query("SELECT p.status AS status, COUNT(p) AS count, COALESCE(SUM(p.amount), 0) AS amount FROM Payment p GROUP BY p.status")
+    List<StatusCountRow> countGroupByStatus();
+
+    // ============================================
+    // RECONCILIATION: PENDING payments whose checkout attempt is older than a cutoff, keyset on paymentId
+    // ============================================
+
+    // attemptedAt, not createdAt: a retried checkout reuses an old row with a fresh txnRef
+    @Query("SELECT new se1961.g1.medconnect.dto.ReconcileRow(p.paymentId, p.transactionId) FROM Payment p " +
+           "WHERE p.status = se1961.g1.medconnect.enums.PaymentStatus.PENDING AND p.paymentId > :afterId " +
+           "AND (COALESCE(p.attemptedAt, p.createdAt) < :before OR (p.attemptedAt IS NULL AND p.createdAt IS NULL)) " +
+           "ORDER BY p.paymentId ASC")
+    List<ReconcileRow> findPendingForReconcile(@Param("before") LocalDateTime before, @Param("afterId") Long afterId, Pageable page);
+
+    /**
+     * PENDING -> FAILED only if the payment is still PENDING on the same checkout attempt.
+     * Returns 0 when an IPN (or a new checkout) changed it since it was read; the row stays locked until commit.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Payment p SET p.status = se1961.g1.medconnect.enums.PaymentStatus.FAILED WHERE p.paymentId = :id " +
+           "AND p.status = se1961.g1.medconnect.enums.PaymentStatus.PENDING AND p.transactionId = :txnRef")
+    int failIfPending(@Param("id") Long paymentId, @Param("txnRef") String txnRef);
+
+    // ============================================
+    // ADMIN LIST: keyset pagination on (createdAt DESC, paymentId DESC)
+    // ============================================
+
+    String ADMIN_ROW = "SELECT new se1961.g1.medconnect.dto.AdminPaymentRow(p.paymentId, p.amount, p.status, " +
+            "p.transactionId, p.paymentMethod, p.gatewayName, a.appointmentId, ap.name, pp.name, d.name, " +
+            "a.date, a.slot, p.createdAt, p.paidAt) " +
+            "FROM Payment p LEFT JOIN p.appointment a LEFT JOIN a.patient ap LEFT JOIN a.doctor d LEFT JOIN p.patient pp ";
+
+    String ADMIN_ORDER = " ORDER BY p.createdAt DESC, p.paymentId DESC";
+
+    @Query(ADMIN_ROW + ADMIN_ORDER)
+    List<AdminPaymentRow> findAdminPage(Pageable page);
+
+    // Rows without createdAt (legacy) sort last and are reached after all timestamped rows
+    @Query(ADMIN_ROW + "WHERE p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.paymentId < :id) " +
+           "OR p.createdAt IS NULL" + ADMIN_ORDER)
+    List<AdminPaymentRow> findAdminPageAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable page);
+
+    @Query(ADMIN_ROW + "WHERE p.createdAt IS NULL AND p.paymentId < :id" + ADMIN_ORDER)
+    List<AdminPaymentRow> findAdminPageAfterUndated(@Param("id") Long id, Pageable page);
+}
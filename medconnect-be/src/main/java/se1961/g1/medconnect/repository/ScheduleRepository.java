@@ -1,6 +1,11 @@
 package se1961.g1.medconnect.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import se1961.g1.medconnect.enums.DoctorStatus;
 import se1961.g1.medconnect.enums.Slot;
 import se1961.g1.medconnect.pojo.Schedule;
 import se1961.g1.medconnect.pojo.User;
@@ -18,4 +23,51 @@ public interface ScheduleRepository extends JpaRepository<Schedule, Long> {
     List<Schedule> findByUserAndDate(User user, LocalDate date);
     List<Schedule> findByUser(User user);
     void deleteByUser(User user);
+
+    /**
+     * Opened slots of all doctors of a speciality (optionally in one province) within a date range
+     */
+    @Query("SELECT s.user.userId AS doctorId, s.date AS date, s.slot AS slot FROM Schedule s, Doctor d " +
+           "WHERE d.userId = s.user.userId AND d.speciality.specialityId = :specialityId " +
+           "AND (:provinceCode IS NULL OR d.provinceCode = :provinceCode) AND d.status = :status " +
+           "AND s.status = se1961.g1.medconnect.enums.ScheduleStatus.RESERVED AND s.date BETWEEN :start AND :end")
+    List<DoctorSlotRow> findOpenSlotsForSearch(@Param("specialityId") Integer specialityId,
+                                               @Param("provinceCode") Integer provinceCode,
+                                               @Param("status") DoctorStatus status,
+                                               @Param("start") LocalDate start,
+                                               @Param("end") LocalDate end);
+
+    // ============================================
+    // BOOKING CLAIM (see SlotBookingService)
+    // ============================================
+
+    /**
+     * Take an opened (RESERVED) slot for a new booking. Returns 0 when the slot is not opened
+     * (no row, or a closed EMPTY / BUSY row) or already taken.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Schedule s SET s.booked = true WHERE s.user.userId = :doctorId AND s.date = :date " +
+           "AND s.slot = :slot AND s.status = se1961.g1.medconnect.enums.ScheduleStatus.RESERVED " +
+           "AND (s.booked = false OR s.booked IS NULL)")
+    int claimSlot(@Param("doctorId") Long doctorId, @Param("date") LocalDate date, @Param("slot") Slot slot);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Schedule s SET s.booked = :booked WHERE s.user.userId = :doctorId AND s.date = :date AND s.slot = :slot")
+    int setBooked(@Param("doctorId") Long doctorId, @Param("date") LocalDate date, @Param("slot") Slot slot,
+                  @Param("booked") boolean booked);
+
+    // Backfill for rows created before the booked column existed
+    @Modifying
+    @Transactional
+    @Query("UPDATE Schedule s SET s.booked = true WHERE s.booked IS NULL AND EXISTS (SELECT a.appointmentId FROM Appointment a " +
+           "WHERE a.doctor.userId = s.user.userId AND a.date = s.date AND a.slot = s.slot " +
+           "AND a.status NOT IN (se1961.g1.medconnect.enums.AppointmentStatus.CANCELLED, se1961.g1.medconnect.enums.AppointmentStatus.DENIED))")
+    int markBookedFromAppointments();
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Schedule s SET s.booked = false WHERE s.booked IS NULL")
+    int markRemainingFree();
 }
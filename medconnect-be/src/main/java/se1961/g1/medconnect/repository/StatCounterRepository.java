@@ -0,0 +1,14 @@
+package se1961.g1.medconnect.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import se1961.g1.medconnect.pojo.StatCounter;
+
+public interface StatCounterRepository extends JpaRepository<StatCounter, String> {
+
+    @Modifying
+    @Query("UPDATE StatCounter c SET c.count = c.count + :count, c.amount = c.amount + :amount WHERE c.name = :name")
+    int increment(@Param("name") String name, @Param("count") long count, @Param("amount") double amount);
+}
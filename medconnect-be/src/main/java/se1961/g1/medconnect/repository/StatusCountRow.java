@@ -0,0 +1,10 @@
+package se1961.g1.medconnect.repository;
+
+/**
+ * Row of a COUNT ... GROUP BY status aggregate; amount is the SUM of Payment.amount (null for appointments)
+ */
+public interface StatusCountRow {
+    Enum<?> getStatus();
+    Long getCount();
+    Double getAmount();
+}
@@ -36,6 +36,9 @@ public class AdminService {
     @Autowired
     private TransactionTemplate transactionTemplate;
 
+    @Autowired
+    private FirebaseTokenCache tokenCache;
+
     /**
      * Lấy danh sách tất cả admin
      */
@@ -191,6 +194,7 @@ public class AdminService {
 
         // Xóa trong database
         userRepository.deleteById(userId);
+        tokenCache.invalidateUser(user.getFirebaseUid());
     }
 
     /**
@@ -210,6 +214,7 @@ public class AdminService {
         UserRecord.UpdateRequest updateRequest = new UserRecord.UpdateRequest(user.getFirebaseUid())
                 .setDisabled(disabled);
         firebaseAuth.updateUser(updateRequest);
+        tokenCache.invalidateUser(user.getFirebaseUid());
 
         return convertToDTO(user);
     }
@@ -0,0 +1,229 @@
+package se1961.g1.medconnect.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se1961.g1.medconnect.dto.ReminderRow;
+import se1961.g1.medconnect.enums.Slot;
+import se1961.g1.medconnect.repository.AppointmentRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queues appointment reminder emails at fixed offsets before the slot starts (default 24h and 1h).
+ * Each run scans the time bucket (cursor, now]: for offset o, CONFIRMED appointments starting in
+ * (cursor + o, now + o], via the (status, date, slot) index in appointmentId batches.
+ * Runs on one node at a time (JobLease), resumes from the stored cursor after a restart,
+ * and the outbox key "appointment-reminder:{id}:{offset}" makes a replayed bucket harmless.
+ */
+@Service
+public class AppointmentReminderService {
+
+    static final String JOB = "appointment-reminders";
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private JobLeaseService jobLeaseService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${reminder.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${reminder.offsets:24h,1h}")
+    private String[] offsetValues = {"24h", "1h"};
+
+    @Value("${reminder.batch-size:500}")
+    private int batchSize = 500;
+
+    // Appointment date/slot are clinic local time
+    @Value("${reminder.zone:Asia/Ho_Chi_Minh}")
+    private String zone = "Asia/Ho_Chi_Minh";
+
+    // After a long outage, only buckets this recent are replayed
+    @Value("${reminder.max-lag:6h}")
+    private String maxLagValue = "6h";
+
+    @Value("${reminder.lease:5m}")
+    private String leaseValue = "5m";
+
+    private List<Duration> offsets;
+    private Duration maxLag;
+    private Duration lease;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMillis;
+
+    @PostConstruct
+    void init() {
+        offsets = new ArrayList<>();
+        for (String value : offsetValues) {
+            offsets.add(DurationStyle.detectAndParse(value.trim()));
+        }
+        maxLag = DurationStyle.detectAndParse(maxLagValue);
+        lease = DurationStyle.detectAndParse(leaseValue);
+    }
+
+    @Scheduled(fixedDelayString = "${reminder.poll-interval-ms:60000}", initialDelayString = "${reminder.initial-delay-ms:30000}")
+    public void run() {
+        run(LocalDateTime.now(ZoneId.of(zone)));
+    }
+
+    /**
+     * One run with "now" given (wall-clock time in reminder.zone)
+     */
+    void run(LocalDateTime now) {
+        if (!enabled || !jobLeaseService.tryAcquire(JOB, lease)) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        try {
+            LocalDateTime from = now.minus(maxLag);
+            LocalDateTime cursor = jobLeaseService.getCursor(JOB);
+            if (cursor != null && cursor.isAfter(from)) {
+                from = cursor;
+            }
+            if (!from.isBefore(now)) {
+                return;
+            }
+
+            int count = 0;
+            for (Duration offset : offsets) {
+                // Never remind about an appointment that has already started
+                LocalDateTime start = from.plus(offset);
+                if (start.isBefore(now)) {
+                    start = now;
+                }
+                count += queueReminders(start, now.plus(offset), offset);
+            }
+
+            jobLeaseService.advanceCursor(JOB, now);
+            runs.incrementAndGet();
+            if (count > 0) {
+                System.out.println("[Reminder] Queued " + count + " reminder(s) for bucket (" + from + ", " + now + "]");
+            }
+        } catch (Exception e) {
+            // Cursor not advanced: the same bucket is retried on the next run
+            errors.incrementAndGet();
+            System.err.println("[Reminder] Run failed: " + e.getMessage());
+        } finally {
+            lastRunAt = LocalDateTime.now();
+            lastRunMillis = System.currentTimeMillis() - started;
+        }
+    }
+
+    /**
+     * Queue reminders for appointments starting in (fromExclusive, toInclusive]
+     */
+    private int queueReminders(LocalDateTime fromExclusive, LocalDateTime toInclusive, Duration offset) {
+        int count = 0;
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        for (Map.Entry<LocalDate, EnumSet<Slot>> bucket : slotsStartingIn(fromExclusive, toInclusive).entrySet()) {
+            long afterId = 0;
+            while (true) {
+                List<ReminderRow> batch = appointmentRepository.findReminderBatch(
+                        bucket.getKey(), bucket.getValue(), afterId, PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                // One transaction per batch: the outbox rows of a batch commit together
+                Integer queuedInBatch = tx.execute(status -> {
+                    int n = 0;
+                    for (ReminderRow row : batch) {
+                        if (queueReminder(row, offset)) {
+                            n++;
+                        }
+                    }
+                    return n;
+                });
+                count += queuedInBatch != null ? queuedInBatch : 0;
+                afterId = batch.get(batch.size() - 1).getAppointmentId();
+                if (batch.size() < batchSize) {
+                    break;
+                }
+            }
+        }
+        queued.addAndGet(count);
+        return count;
+    }
+
+    private boolean queueReminder(ReminderRow row, Duration offset) {
+        if (row.getPatientEmail() == null || row.getPatientEmail().isBlank()) {
+            return false;
+        }
+        try {
+            emailService.sendAppointmentReminder(
+                    "appointment-reminder:" + row.getAppointmentId() + ":" + offset.toMinutes() + "m",
+                    row.getPatientEmail(),
+                    row.getPatientName(),
+                    row.getDoctorName(),
+                    row.getDate().toString(),
+                    row.getSlot().getTimeRange()
+            );
+            return true;
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            System.err.println("[Reminder] Failed to queue reminder for appointment " + row.getAppointmentId() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Time bucket -> (date, slots) pairs: slots whose start lies in (fromExclusive, toInclusive]
+     */
+    static Map<LocalDate, EnumSet<Slot>> slotsStartingIn(LocalDateTime fromExclusive, LocalDateTime toInclusive) {
+        Map<LocalDate, EnumSet<Slot>> buckets = new LinkedHashMap<>();
+        for (LocalDate date = fromExclusive.toLocalDate(); !date.isAfter(toInclusive.toLocalDate()); date = date.plusDays(1)) {
+            EnumSet<Slot> slots = EnumSet.noneOf(Slot.class);
+            for (Slot slot : Slot.values()) {
+                LocalDateTime start = date.atTime(slot.getStart());
+                if (start.isAfter(fromExclusive) && !start.isAfter(toInclusive)) {
+                    slots.add(slot);
+                }
+            }
+            if (!slots.isEmpty()) {
+                buckets.put(date, slots);
+            }
+        }
+        return buckets;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("offsets", offsets.stream().map(Duration::toString).toList());
+        stats.put("cursor", jobLeaseService.getCursor(JOB));
+        stats.put("node", jobLeaseService.getNodeId());
+        stats.put("runs", runs.get());
+        stats.put("queued", queued.get());
+        stats.put("errors", errors.get());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastRunMillis", lastRunMillis);
+        return stats;
+    }
+}
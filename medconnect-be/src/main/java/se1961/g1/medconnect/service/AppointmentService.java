@@ -1,32 +1,43 @@
 package se1961.g1.medconnect.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import se1961.g1.medconnect.dto.AdminAppointmentRow;
 import se1961.g1.medconnect.dto.AppointmentDTO;
+import se1961.g1.medconnect.dto.AvailableSlotDTO;
 import se1961.g1.medconnect.dto.CreateAppointmentRequest;
+import se1961.g1.medconnect.dto.KeysetPage;
 import se1961.g1.medconnect.enums.AppointmentStatus;
 import se1961.g1.medconnect.enums.AppointmentType;
+import se1961.g1.medconnect.enums.DoctorStatus;
 import se1961.g1.medconnect.enums.Slot;
 import se1961.g1.medconnect.pojo.Appointment;
 import se1961.g1.medconnect.pojo.Doctor;
 import se1961.g1.medconnect.pojo.Patient;
-import se1961.g1.medconnect.pojo.Schedule;
 import se1961.g1.medconnect.pojo.Payment;
 import se1961.g1.medconnect.pojo.VideoCallSession;
 import se1961.g1.medconnect.repository.AppointmentRepository;
 import se1961.g1.medconnect.repository.DoctorRepository;
+import se1961.g1.medconnect.repository.DoctorSlotRow;
 import se1961.g1.medconnect.repository.PatientRepository;
 import se1961.g1.medconnect.repository.ScheduleRepository;
 import se1961.g1.medconnect.repository.PaymentRepository;
 import se1961.g1.medconnect.repository.VideoCallSessionRepository;
 import se1961.g1.medconnect.enums.PaymentStatus;
+import se1961.g1.medconnect.util.KeysetCursor;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -53,6 +64,17 @@ public class AppointmentService {
     @Autowired
     private VideoCallSessionRepository videoCallSessionRepository;
 
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private SlotBookingService slotBookingService;
+
+    @Autowired
+    private SlotHoldService slotHoldService;
+
+    public static final int MAX_SEARCH_DAYS = 31;
+
     // ============================================
     // GET APPOINTMENTS
     // ============================================
@@ -65,6 +87,23 @@ public class AppointmentService {
         return appointmentRepository.findAll();
     }
 
+    /**
+     * Admin list, newest first, one keyset page at a time (cursor == null: first page)
+     */
+    public KeysetPage<AdminAppointmentRow> getAdminAppointmentPage(String cursor, int limit) throws Exception {
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<AdminAppointmentRow> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = appointmentRepository.findAdminPage(page);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            rows = after.createdAt() == null
+                    ? appointmentRepository.findAdminPageAfterUndated(after.id(), page)
+                    : appointmentRepository.findAdminPageAfter(LocalDate.parse(after.createdAt()), after.id(), page);
+        }
+        return KeysetPage.of(rows, limit, r -> KeysetCursor.encode(r.getCreatedAt(), r.getId()));
+    }
+
     public List<Appointment> getAppointmentsByPatientFirebaseUid(String firebaseUid) throws Exception {
         Patient patient = patientRepository.findByFirebaseUid(firebaseUid)
                 .orElseThrow(() -> new Exception("Patient not found"));
@@ -121,61 +160,103 @@ public class AppointmentService {
     // GET AVAILABLE SLOTS FOR BOOKING
     // ============================================
     
+    /**
+     * Available = opened slots - active bookings, answered from the in-memory AvailabilityIndex
+     * (DB is only hit the first time a doctor/date is requested)
+     */
     public List<String> getAvailableSlots(Long doctorId, LocalDate date) throws Exception {
-        System.out.println("[getAvailableSlots] ========== START ==========");
-        System.out.println("[getAvailableSlots] Doctor ID: " + doctorId);
-        System.out.println("[getAvailableSlots] Date: " + date);
-        
-        // 1. Get doctor
-        Doctor doctor = doctorRepository.findById(doctorId)
-                .orElseThrow(() -> new Exception("Doctor not found"));
-        System.out.println("[getAvailableSlots] Doctor: " + doctor.getName());
-        
-        // 2. Get doctor's schedules for this date (slots doctor has opened)
-        List<Schedule> schedules = scheduleRepository.findByUserAndDate(doctor, date);
-        System.out.println("[getAvailableSlots] Doctor has opened " + schedules.size() + " slots for this date");
-        
-        if (schedules.isEmpty()) {
-            System.out.println("[getAvailableSlots] No schedules - returning empty");
-            return new ArrayList<>();
+        return AvailabilityIndex.toSlotNames(availabilityIndex.getAvailableMask(doctorId, date));
+    }
+
+    /**
+     * Earliest free slots across all doctors of a speciality (optionally one province) in a date range.
+     * Uses 3 set-based queries (doctors, opened slots, active bookings) instead of one call per doctor/date,
+     * results are ordered by start time then doctor.
+     */
+    public List<AvailableSlotDTO> searchAvailableSlots(Integer specialityId, Integer provinceCode,
+                                                       LocalDate from, LocalDate to,
+                                                       AppointmentType type, int limit) throws Exception {
+        if (from.isAfter(to)) {
+            throw new Exception("Invalid date range");
         }
-        
-        // 3. Get all slot names from schedules
-        List<String> openSlots = schedules.stream()
-                .map(s -> s.getSlot().name())
-                .collect(Collectors.toList());
-        System.out.println("[getAvailableSlots] Open slots: " + openSlots);
-        
-        // 4. Get already booked appointments for this doctor on this date
-        List<Appointment> appointments = appointmentRepository.findByDoctorAndDate(doctor, date);
-        System.out.println("[getAvailableSlots] Found " + appointments.size() + " appointments for this date");
-        
-        // Log all appointments with their statuses
-        appointments.forEach(a -> {
-            System.out.println("[getAvailableSlots] Appointment ID: " + a.getAppointmentId() 
-                + ", Slot: " + a.getSlot().name() 
-                + ", Status: " + a.getStatus());
-        });
-        
-        // 5. Get booked slot names (excluding cancelled/denied)
-        List<String> bookedSlots = appointments.stream()
-                .filter(a -> {
-                    boolean isActive = a.getStatus() != AppointmentStatus.CANCELLED && a.getStatus() != AppointmentStatus.DENIED;
-                    if (!isActive) {
-                        System.out.println("[getAvailableSlots] Excluding cancelled/denied appointment ID: " + a.getAppointmentId() + ", Status: " + a.getStatus());
+        // Inclusive range: from..to covers DAYS.between + 1 days
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_SEARCH_DAYS) {
+            throw new Exception("Date range must not exceed " + MAX_SEARCH_DAYS + " days");
+        }
+        LocalDate today = LocalDate.now();
+        if (from.isBefore(today)) {
+            from = today;
+        }
+        List<AvailableSlotDTO> result = new ArrayList<>();
+        if (from.isAfter(to)) {
+            return result;
+        }
+
+        Map<Long, Doctor> doctors = new HashMap<>();
+        for (Doctor d : doctorRepository.findForAvailabilitySearch(specialityId, provinceCode, DoctorStatus.ACTIVE)) {
+            doctors.put(d.getUserId(), d);
+        }
+        if (doctors.isEmpty()) {
+            return result;
+        }
+
+        // date -> doctorId -> available slot mask (TreeMaps keep dates and doctors ordered)
+        TreeMap<LocalDate, TreeMap<Long, Integer>> available = new TreeMap<>();
+        for (DoctorSlotRow row : scheduleRepository.findOpenSlotsForSearch(specialityId, provinceCode, DoctorStatus.ACTIVE, from, to)) {
+            available.computeIfAbsent(row.getDate(), d -> new TreeMap<>())
+                    .merge(row.getDoctorId(), row.getSlot().bit(), (a, b) -> a | b);
+        }
+        for (DoctorSlotRow row : appointmentRepository.findBookedSlotsForSearch(specialityId, provinceCode, DoctorStatus.ACTIVE, from, to)) {
+            TreeMap<Long, Integer> byDoctor = available.get(row.getDate());
+            if (byDoctor != null) {
+                byDoctor.computeIfPresent(row.getDoctorId(), (id, mask) -> mask & ~row.getSlot().bit());
+            }
+        }
+
+        LocalTime now = LocalTime.now();
+        for (Map.Entry<LocalDate, TreeMap<Long, Integer>> day : available.entrySet()) {
+            LocalDate date = day.getKey();
+            for (Slot slot : Slot.values()) {
+                if (date.equals(today) && !slot.getStart().isAfter(now)) {
+                    continue; // already started
+                }
+                for (Map.Entry<Long, Integer> doctorMask : day.getValue().entrySet()) {
+                    if ((doctorMask.getValue() & slot.bit()) == 0) {
+                        continue;
+                    }
+                    Doctor doctor = doctors.get(doctorMask.getKey());
+                    if (doctor == null) {
+                        continue;
+                    }
+                    result.add(toAvailableSlot(doctor, date, slot, type));
+                    if (result.size() >= limit) {
+                        return result;
                     }
-                    return isActive;
-                })
-                .map(a -> a.getSlot().name())
-                .collect(Collectors.toList());
-        System.out.println("[getAvailableSlots] Booked slots (after filtering cancelled/denied): " + bookedSlots);
-        
-        // 6. Available = Open - Booked
-        openSlots.removeAll(bookedSlots);
-        System.out.println("[getAvailableSlots] Final available slots: " + openSlots);
-        System.out.println("[getAvailableSlots] ========== END ==========");
-        
-        return openSlots;
+                }
+            }
+        }
+        return result;
+    }
+
+    private AvailableSlotDTO toAvailableSlot(Doctor doctor, LocalDate date, Slot slot, AppointmentType type) {
+        Integer fee = null;
+        if (doctor.getSpeciality() != null) {
+            fee = type == AppointmentType.OFFLINE
+                    ? doctor.getSpeciality().getOfflinePrice()
+                    : doctor.getSpeciality().getOnlinePrice();
+        }
+        return new AvailableSlotDTO(
+                doctor.getUserId(),
+                doctor.getName(),
+                doctor.getAvatarUrl(),
+                doctor.getSpecializationName(),
+                doctor.getProvinceName(),
+                date,
+                slot.name(),
+                slot.getTimeRange(),
+                date.atTime(slot.getStart()),
+                fee
+        );
     }
 
     // ============================================
@@ -298,6 +379,9 @@ public class AppointmentService {
             throw new Exception("Slot is not available");
         }
         System.out.println("[createAppointment] ✅ Slot is available for this doctor");
+
+        // 7b. Claim the slot (one winner per doctor/date/slot, others rejected without a DB error)
+        slotBookingService.claim(doctor.getUserId(), request.getDate(), slot);
         
         // 8. Create appointment
         Appointment appointment = new Appointment();
@@ -308,12 +392,16 @@ public class AppointmentService {
         appointment.setType(type);
         appointment.setReason(request.getReason());
         appointment.setStatus(AppointmentStatus.PENDING);
+        // Slot is held until paid; released by SlotHoldService if the checkout is abandoned
+        appointment.setHoldStartedAt(LocalDateTime.now());
+        appointment.setHoldExpiresAt(slotHoldService.newHoldExpiry());
         
         System.out.println("[createAppointment] Doctor set in appointment: " + appointment.getDoctor().getName());
         System.out.println("[createAppointment] Doctor user_id in appointment: " + appointment.getDoctor().getUserId());
         
         // 9. Save
         Appointment saved = appointmentRepository.save(appointment);
+        availabilityIndex.book(saved);
         
         System.out.println("[createAppointment] ✅ Appointment created!");
         System.out.println("[createAppointment] Appointment ID: " + saved.getAppointmentId());
@@ -331,7 +419,10 @@ public class AppointmentService {
         Appointment appointment = getAppointmentById(id)
                 .orElseThrow(() -> new Exception("Appointment not found"));
         appointment.setStatus(status);
-        return appointmentRepository.save(appointment);
+        Appointment saved = appointmentRepository.save(appointment);
+        availabilityIndex.evict(saved);
+        slotBookingService.resync(saved);
+        return saved;
     }
     
     public AppointmentDTO updateAppointment(Long id, AppointmentDTO dto) throws Exception {
@@ -347,6 +438,8 @@ public class AppointmentService {
         }
         
         Appointment saved = appointmentRepository.save(appointment);
+        availabilityIndex.evict(saved);
+        slotBookingService.resync(saved);
         return new AppointmentDTO(saved);
     }
     
@@ -374,8 +467,13 @@ public class AppointmentService {
     public void cancelAppointment(Long id) throws Exception {
         Appointment appointment = getAppointmentById(id)
                 .orElseThrow(() -> new Exception("Appointment not found"));
+        boolean wasActive = AvailabilityIndex.isActive(appointment.getStatus());
         appointment.setStatus(AppointmentStatus.CANCELLED);
         appointmentRepository.save(appointment);
+        if (wasActive) {
+            availabilityIndex.release(appointment);
+            slotBookingService.release(appointment);
+        }
     }
     
     public Appointment confirmAppointment(Long id) throws Exception {
@@ -408,6 +506,7 @@ public class AppointmentService {
             String specialization = doctor.getSpeciality() != null ? doctor.getSpeciality().getName() : "Tổng quát";
             
             emailService.sendAppointmentConfirmation(
+                "appointment-confirmed:" + appointment.getAppointmentId(),
                 patientEmail,
                 patientName,
                 doctorName,
@@ -416,7 +515,7 @@ public class AppointmentService {
                 specialization
             );
             
-            System.out.println("✅ Confirmation email sent to: " + patientEmail);
+            System.out.println("✅ Confirmation email queued for: " + patientEmail);
         } catch (Exception emailError) {
             System.err.println("⚠️ Failed to send confirmation email: " + emailError.getMessage());
             // Don't fail the confirmation if email fails
@@ -434,7 +533,10 @@ public class AppointmentService {
         }
         
         appointment.setStatus(AppointmentStatus.DENIED);
-        return appointmentRepository.save(appointment);
+        Appointment saved = appointmentRepository.save(appointment);
+        availabilityIndex.release(saved);
+        slotBookingService.release(saved);
+        return saved;
     }
     
     public Appointment startAppointment(Long id) throws Exception {
@@ -509,10 +611,15 @@ public class AppointmentService {
         
         // 3. Delete the appointment
         appointmentRepository.deleteById(id);
+        availabilityIndex.evict(appointment);
+        slotBookingService.resync(appointment);
         System.out.println("[deleteAppointment] ✅ Deleted appointment ID: " + id);
     }
 
     public Appointment saveAppointment(Appointment appointment) {
-        return appointmentRepository.save(appointment);
+        Appointment saved = appointmentRepository.save(appointment);
+        availabilityIndex.evict(saved);
+        slotBookingService.resync(saved);
+        return saved;
     }
 }
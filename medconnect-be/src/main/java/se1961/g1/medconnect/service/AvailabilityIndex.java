@@ -0,0 +1,234 @@
+package se1961.g1.medconnect.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Service;
+import se1961.g1.medconnect.enums.AppointmentStatus;
+import se1961.g1.medconnect.enums.ScheduleStatus;
+import se1961.g1.medconnect.enums.Slot;
+import se1961.g1.medconnect.pojo.Appointment;
+import se1961.g1.medconnect.pojo.Doctor;
+import se1961.g1.medconnect.pojo.Schedule;
+import se1961.g1.medconnect.repository.AppointmentRepository;
+import se1961.g1.medconnect.repository.DoctorRepository;
+import se1961.g1.medconnect.repository.ScheduleRepository;
+import se1961.g1.medconnect.util.AfterCommit;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory availability index: per (doctor, date) a 12-bit mask of opened slots
+ * and a 12-bit mask of active bookings (not CANCELLED/DENIED).
+ * Loaded lazily from DB on first read, then kept current by schedule/appointment writes.
+ * Updates are applied after the surrounding transaction commits, on this node only:
+ * a day is reloaded once it is older than availability.index.ttl, which bounds how long
+ * writes made on other nodes stay unseen here.
+ */
+@Service
+public class AvailabilityIndex {
+
+    public record Key(Long doctorId, LocalDate date) {}
+
+    public record DayAvailability(int openMask, int bookedMask) {
+        public int availableMask() {
+            return openMask & ~bookedMask;
+        }
+    }
+
+    /**
+     * Indexed day; loadedAtMillis is kept across local updates, so the TTL counts from the DB read
+     */
+    record Entry(DayAvailability day, long loadedAtMillis) {}
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Value("${availability.index.max-entries:50000}")
+    private int maxEntries = 50000;
+
+    @Value("${availability.index.ttl:1m}")
+    private String ttlValue = "1m";
+
+    private long ttlMillis;
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    // Bumped on every write so that a load racing with a write never installs stale masks
+    private final AtomicLong writeSeq = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        ttlMillis = DurationStyle.detectAndParse(ttlValue).toMillis();
+    }
+
+    // ============================================
+    // READ
+    // ============================================
+
+    public int getAvailableMask(Long doctorId, LocalDate date) throws Exception {
+        return getDay(doctorId, date).availableMask();
+    }
+
+    public DayAvailability getDay(Long doctorId, LocalDate date) throws Exception {
+        Key key = new Key(doctorId, date);
+        Entry cached = entries.get(key);
+        if (cached != null && System.currentTimeMillis() - cached.loadedAtMillis() < ttlMillis) {
+            hits.incrementAndGet();
+            return cached.day();
+        }
+        if (cached != null) {
+            expired.incrementAndGet();
+        }
+        misses.incrementAndGet();
+
+        long seqBefore = writeSeq.get();
+        Entry loaded = new Entry(load(doctorId, date), System.currentTimeMillis());
+        if (entries.size() >= maxEntries) {
+            trim();
+        }
+        // Check and install under the bin lock: a writer either bumps seq first (skip install)
+        // or waits for the install and then applies its change on top of it.
+        // An expired entry is replaced only if nobody refreshed it meanwhile.
+        entries.compute(key, (k, existing) -> {
+            if (existing != null && existing != cached) {
+                return existing;
+            }
+            return writeSeq.get() == seqBefore ? loaded : existing;
+        });
+        return loaded.day();
+    }
+
+    private DayAvailability load(Long doctorId, LocalDate date) throws Exception {
+        Doctor doctor = doctorRepository.findById(doctorId)
+                .orElseThrow(() -> new Exception("Doctor not found"));
+
+        int open = 0;
+        for (Schedule schedule : scheduleRepository.findByUserAndDate(doctor, date)) {
+            // Same rule as ScheduleRepository.claimSlot: only RESERVED rows can be booked
+            if (schedule.getStatus() == ScheduleStatus.RESERVED) {
+                open |= schedule.getSlot().bit();
+            }
+        }
+        int booked = 0;
+        for (Appointment appointment : appointmentRepository.findByDoctorAndDate(doctor, date)) {
+            if (isActive(appointment.getStatus())) {
+                booked |= appointment.getSlot().bit();
+            }
+        }
+        return new DayAvailability(open, booked);
+    }
+
+    // ============================================
+    // WRITE (called by ScheduleService / AppointmentService)
+    // ============================================
+
+    public void openSlot(Long doctorId, LocalDate date, Slot slot) {
+        AfterCommit.run(() -> update(doctorId, date, d -> new DayAvailability(d.openMask() | slot.bit(), d.bookedMask())));
+    }
+
+    public void closeSlot(Long doctorId, LocalDate date, Slot slot) {
+        AfterCommit.run(() -> update(doctorId, date, d -> new DayAvailability(d.openMask() & ~slot.bit(), d.bookedMask())));
+    }
+
+    public void book(Appointment appointment) {
+        if (!hasKey(appointment)) return;
+        Long doctorId = appointment.getDoctor().getUserId();
+        LocalDate date = appointment.getDate();
+        int bit = appointment.getSlot().bit();
+        AfterCommit.run(() -> update(doctorId, date, d -> new DayAvailability(d.openMask(), d.bookedMask() | bit)));
+    }
+
+    public void release(Appointment appointment) {
+        if (!hasKey(appointment)) return;
+        Long doctorId = appointment.getDoctor().getUserId();
+        LocalDate date = appointment.getDate();
+        int bit = appointment.getSlot().bit();
+        AfterCommit.run(() -> update(doctorId, date, d -> new DayAvailability(d.openMask(), d.bookedMask() & ~bit)));
+    }
+
+    /**
+     * Drop the day of this appointment; next read reloads it (used for arbitrary admin edits)
+     */
+    public void evict(Appointment appointment) {
+        if (appointment == null || appointment.getDoctor() == null || appointment.getDate() == null) return;
+        Long doctorId = appointment.getDoctor().getUserId();
+        LocalDate date = appointment.getDate();
+        AfterCommit.run(() -> {
+            writeSeq.incrementAndGet();
+            entries.remove(new Key(doctorId, date));
+        });
+    }
+
+    public void evictDoctor(Long doctorId) {
+        AfterCommit.run(() -> {
+            writeSeq.incrementAndGet();
+            entries.keySet().removeIf(k -> k.doctorId().equals(doctorId));
+        });
+    }
+
+    public static boolean isActive(AppointmentStatus status) {
+        return status != AppointmentStatus.CANCELLED && status != AppointmentStatus.DENIED;
+    }
+
+    public static List<String> toSlotNames(int mask) {
+        List<String> names = new ArrayList<>(Integer.bitCount(mask));
+        for (Slot slot : Slot.values()) {
+            if ((mask & slot.bit()) != 0) {
+                names.add(slot.name());
+            }
+        }
+        return names;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMillis", ttlMillis);
+        stats.put("expired", expired.get());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("writes", writeSeq.get());
+        return stats;
+    }
+
+    private boolean hasKey(Appointment appointment) {
+        return appointment != null && appointment.getDoctor() != null
+                && appointment.getDate() != null && appointment.getSlot() != null;
+    }
+
+    private void update(Long doctorId, LocalDate date, UnaryOperator<DayAvailability> change) {
+        writeSeq.incrementAndGet();
+        // Only days already in the index are updated; absent days are loaded fresh on next read
+        entries.computeIfPresent(new Key(doctorId, date), (k, e) -> new Entry(change.apply(e.day()), e.loadedAtMillis()));
+    }
+
+    /**
+     * Past days are never booked again: drop them first, then everything if still full
+     */
+    private void trim() {
+        LocalDate today = LocalDate.now();
+        entries.keySet().removeIf(k -> k.date().isBefore(today));
+        if (entries.size() >= maxEntries) {
+            entries.clear();
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package se1961.g1.medconnect.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+import se1961.g1.medconnect.util.Bm25Index;
+import se1961.g1.medconnect.util.HashedEmbedder;
+import se1961.g1.medconnect.util.MappedVectorIndex;
+import se1961.g1.medconnect.util.PassageSplitter;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RAG corpus of the chatbot: dataset/ (FAQ, policies, guides, diseases-symptoms.json) split into passages
+ * once at first use. A query returns the best passages, not whole files. Retrieval modes (chatbot.retrieval.mode):
+ * - keyword: BM25 (default)
+ * - semantic: cosine similarity of hashed n-gram embeddings, flat index in a memory-mapped file that is
+ *   written once per corpus version and reused across restarts
+ * - hybrid: both lists merged by reciprocal rank fusion
+ */
+@Service
+public class ChatbotKnowledgeBase {
+
+    static final String DATASET_PATH = "dataset/";
+    static final String[] TEXT_FILES = {
+            "faq/patient-faq.txt", "faq/doctor-faq.txt", "faq/system-faq.txt",
+            "policies/cancellation-policy.txt", "policies/payment-policy.txt",
+            "guides/video-call-guide.md", "guides/technical-specs.md"};
+    static final String MEDICAL_FILE = "medical/diseases-symptoms.json";
+
+    // Candidates taken from each list before fusion, and the usual RRF damping constant
+    static final int HYBRID_CANDIDATES = 20;
+    static final int RRF_K = 60;
+
+    public enum Mode {
+        KEYWORD, SEMANTIC, HYBRID
+    }
+
+    /**
+     * Loaded corpus: passage i is document i of the index
+     */
+    record Corpus(List<String> passages, Bm25Index index, long loadMillis) {
+    }
+
+    @Value("${chatbot.retrieval.mode:keyword}")
+    private String modeValue = "keyword";
+
+    @Value("${chatbot.embedding.cache-dir:}")
+    private String embeddingCacheDir = "";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HashedEmbedder embedder = new HashedEmbedder(HashedEmbedder.DEFAULT_DIM);
+    private volatile Corpus corpus;
+    private volatile MappedVectorIndex vectors;
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+
+    public List<String> search(String query, int maxResults) {
+        return search(query, maxResults, getMode());
+    }
+
+    public List<String> search(String query, int maxResults, Mode mode) {
+        Corpus current = getCorpus();
+        long start = System.nanoTime();
+        List<Integer> docs = switch (mode) {
+            case KEYWORD -> keywordDocs(current, query, maxResults);
+            case SEMANTIC -> semanticDocs(current, query, maxResults);
+            case HYBRID -> hybridDocs(current, query, maxResults);
+        };
+        List<String> results = new ArrayList<>(docs.size());
+        for (int doc : docs) {
+            results.add(current.passages().get(doc));
+        }
+        searchNanos.addAndGet(System.nanoTime() - start);
+        searches.incrementAndGet();
+        return results;
+    }
+
+    public Mode getMode() {
+        return Mode.valueOf(modeValue.trim().toUpperCase(Locale.ROOT));
+    }
+
+    private static List<Integer> keywordDocs(Corpus current, String query, int k) {
+        List<Integer> docs = new ArrayList<>(k);
+        for (Bm25Index.Hit hit : current.index().search(query, k)) {
+            docs.add(hit.doc());
+        }
+        return docs;
+    }
+
+    private List<Integer> semanticDocs(Corpus current, String query, int k) {
+        List<Integer> docs = new ArrayList<>(k);
+        for (MappedVectorIndex.Hit hit : getVectors(current).search(embedder.embed(query), k)) {
+            if (hit.score() > 0) {
+                docs.add(hit.doc());
+            }
+        }
+        return docs;
+    }
+
+    /**
+     * Reciprocal rank fusion: score = sum over lists of 1 / (RRF_K + rank), so neither score scale dominates
+     */
+    private List<Integer> hybridDocs(Corpus current, String query, int k) {
+        int candidates = Math.max(k, HYBRID_CANDIDATES);
+        Map<Integer, Double> fused = new HashMap<>();
+        int rank = 0;
+        for (int doc : keywordDocs(current, query, candidates)) {
+            fused.merge(doc, 1.0 / (RRF_K + ++rank), Double::sum);
+        }
+        rank = 0;
+        for (int doc : semanticDocs(current, query, candidates)) {
+            fused.merge(doc, 1.0 / (RRF_K + ++rank), Double::sum);
+        }
+        return fused.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(k)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Passage vectors, mapped from the cache file; embedded and written once when the corpus changed
+     */
+    MappedVectorIndex getVectors(Corpus current) {
+        MappedVectorIndex mapped = vectors;
+        if (mapped == null) {
+            synchronized (this) {
+                mapped = vectors;
+                if (mapped == null) {
+                    mapped = loadVectors(current.passages());
+                    vectors = mapped;
+                }
+            }
+        }
+        return mapped;
+    }
+
+    private MappedVectorIndex loadVectors(List<String> passages) {
+        long start = System.currentTimeMillis();
+        Path file = vectorFile(passages);
+        try {
+            MappedVectorIndex mapped = MappedVectorIndex.open(file, embedder.dim());
+            if (mapped != null && mapped.count() == passages.size()) {
+                System.out.println("[ChatbotKnowledgeBase] Mapped " + mapped.count() + " passage vectors from " + file);
+                return mapped;
+            }
+            List<float[]> rows = new ArrayList<>(passages.size());
+            for (String passage : passages) {
+                rows.add(embedder.embed(passage));
+            }
+            mapped = MappedVectorIndex.write(file, embedder.dim(), rows);
+            System.out.println("[ChatbotKnowledgeBase] Embedded " + rows.size() + " passages into " + file + " in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            return mapped;
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot build passage vectors in " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Cache file named after a hash of the passages and the embedder, so a dataset or embedder change gets a new file
+     */
+    private Path vectorFile(List<String> passages) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(("v" + HashedEmbedder.VERSION + "-d" + embedder.dim()).getBytes(StandardCharsets.UTF_8));
+            for (String passage : passages) {
+                digest.update(passage.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            String name = "chatbot-passages-" + HexFormat.of().formatHex(digest.digest(), 0, 8) + ".f32";
+            String dir = embeddingCacheDir == null || embeddingCacheDir.isBlank()
+                    ? System.getProperty("java.io.tmpdir") + "/medconnect-embeddings" : embeddingCacheDir;
+            return Path.of(dir, name);
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    Corpus getCorpus() {
+        Corpus current = corpus;
+        if (current == null) {
+            synchronized (this) {
+                current = corpus;
+                if (current == null) {
+                    current = load();
+                    corpus = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Corpus load() {
+        long start = System.currentTimeMillis();
+        List<String> passages = new ArrayList<>();
+        for (String file : TEXT_FILES) {
+            String content = readFile(DATASET_PATH + file);
+            if (content != null && !content.trim().isEmpty()) {
+                passages.addAll(PassageSplitter.split(content));
+            }
+        }
+        String medical = readFile(DATASET_PATH + MEDICAL_FILE);
+        if (medical != null && !medical.trim().isEmpty()) {
+            try {
+                for (JsonNode disease : objectMapper.readTree(medical).path("diseases")) {
+                    passages.add(diseasePassage(disease));
+                }
+            } catch (Exception e) {
+                System.err.println("[ChatbotKnowledgeBase] Error parsing " + MEDICAL_FILE + ": " + e.getMessage());
+            }
+        }
+        Bm25Index index = Bm25Index.build(passages);
+        long millis = System.currentTimeMillis() - start;
+        System.out.println("[ChatbotKnowledgeBase] Indexed " + passages.size() + " passages, " + index.termCount()
+                + " terms in " + millis + " ms");
+        return new Corpus(Collections.unmodifiableList(passages), index, millis);
+    }
+
+    /**
+     * One passage per disease, most useful fields first (the prompt keeps only the first 800 chars)
+     */
+    private static String diseasePassage(JsonNode d) {
+        StringBuilder sb = new StringBuilder("Thông tin y tế: ");
+        sb.append(d.path("name_vi").asText()).append(" (").append(d.path("name_en").asText())
+                .append(", ICD-10 ").append(d.path("icd10").asText()).append(") - Chuyên khoa ")
+                .append(d.path("category").asText()).append('\n');
+        sb.append(d.path("description").asText()).append('\n');
+        sb.append("Triệu chứng: ");
+        List<String> symptoms = new ArrayList<>();
+        for (JsonNode symptom : d.path("symptoms")) {
+            symptoms.add(symptom.path("name").asText() + " (" + symptom.path("medical_term").asText() + ")");
+        }
+        sb.append(String.join(", ", symptoms)).append('\n');
+        appendList(sb, "Yếu tố nguy cơ", d.path("risk_factors"));
+        appendList(sb, "Biến chứng", d.path("complications"));
+        sb.append("Chẩn đoán: ").append(d.path("diagnostic_criteria").asText()).append('\n');
+        sb.append("Điều trị: ").append(d.path("treatment_approach").asText());
+        return sb.toString();
+    }
+
+    private static void appendList(StringBuilder sb, String label, JsonNode items) {
+        List<String> values = new ArrayList<>();
+        for (JsonNode item : items) {
+            values.add(item.asText());
+        }
+        sb.append(label).append(": ").append(String.join(", ", values)).append('\n');
+    }
+
+    private static String readFile(String path) {
+        ClassPathResource resource = new ClassPathResource(path);
+        if (!resource.exists()) {
+            System.out.println("File not found: " + path);
+            return null;
+        }
+        try (InputStream in = resource.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            System.err.println("Error reading file " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Corpus current = corpus;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("mode", getMode().name());
+        stats.put("loaded", current != null);
+        if (current != null) {
+            stats.put("passages", current.passages().size());
+            stats.put("terms", current.index().termCount());
+            stats.put("postings", current.index().postingCount());
+            stats.put("loadMillis", current.loadMillis());
+        }
+        MappedVectorIndex mapped = vectors;
+        if (mapped != null) {
+            stats.put("vectors", mapped.count());
+            stats.put("vectorDim", mapped.dim());
+            stats.put("vectorFile", mapped.file().toString());
+        }
+        long n = searches.get();
+        stats.put("searches", n);
+        stats.put("avgSearchMicros", n == 0 ? 0 : searchNanos.get() / n / 1000);
+        return stats;
+    }
+}
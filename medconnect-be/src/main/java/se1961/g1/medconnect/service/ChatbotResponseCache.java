@@ -0,0 +1,243 @@
+package se1961.g1.medconnect.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Service;
+import se1961.g1.medconnect.util.HashedEmbedder;
+import se1961.g1.medconnect.util.VietnameseText;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Answers of the chatbot keyed by normalised question, in front of the Gemini call.
+ * - Key: diacritic-folded, punctuation/whitespace-collapsed question ("Làm sao để hủy lịch?" == "lam sao de huy lich").
+ * - Optional near-duplicate match: cosine of hashed n-gram embeddings above chatbot.cache.similarity (0 = off).
+ * - TTL + bounded LRU, like FirebaseTokenCache. Only successful answers are cached.
+ * - Identical questions already in flight share the one upstream call instead of starting their own.
+ * - Questions that normalise to nothing ("???", emoji only) bypass the cache: they would all share one key
+ *   and get whatever answer was cached first.
+ */
+@Service
+public class ChatbotResponseCache {
+
+    /**
+     * One cached answer; vector is only set when near-duplicate matching is on
+     */
+    record Entry(String answer, float[] vector, long expiresAtMillis) {
+        boolean isExpired(long now) {
+            return now >= expiresAtMillis;
+        }
+    }
+
+    @Value("${chatbot.cache.ttl:6h}")
+    private String ttlValue = "6h";
+
+    @Value("${chatbot.cache.max-size:1000}")
+    private int maxSize = 1000;
+
+    @Value("${chatbot.cache.similarity:0}")
+    private double similarity = 0;
+
+    private long ttlMillis;
+    private final HashedEmbedder embedder = new HashedEmbedder(HashedEmbedder.DEFAULT_DIM);
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > maxSize) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong nearHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong upstreamCalls = new AtomicLong();
+    private final AtomicLong upstreamErrors = new AtomicLong();
+    private final AtomicLong upstreamNanos = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong bypassed = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        ttlMillis = DurationStyle.detectAndParse(ttlValue).toMillis();
+    }
+
+    /**
+     * Cached answer, the pending answer of an identical question in flight, or a new upstream call
+     */
+    public CompletableFuture<String> getOrCompute(String question, Supplier<CompletableFuture<String>> upstream) {
+        String key = normalize(question);
+        if (key.isEmpty()) {
+            bypassed.incrementAndGet();
+            try {
+                return upstream.get();
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        float[] vector = similarity > 0 ? embedder.embed(question) : null;
+        String cached = lookup(key, vector);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> pending = inFlight.putIfAbsent(key, mine);
+        if (pending != null) {
+            coalesced.incrementAndGet();
+            return pending;
+        }
+        misses.incrementAndGet();
+        upstreamCalls.incrementAndGet();
+        long start = System.nanoTime();
+        CompletableFuture<String> call;
+        try {
+            call = upstream.get();
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((answer, error) -> {
+            upstreamNanos.addAndGet(System.nanoTime() - start);
+            if (error == null && answer != null) {
+                put(key, vector, answer);
+            } else {
+                upstreamErrors.incrementAndGet();
+            }
+            // Cached before leaving the in-flight map, so a new identical question finds one or the other
+            inFlight.remove(key, mine);
+            if (error != null) {
+                mine.completeExceptionally(error);
+            } else {
+                mine.complete(answer);
+            }
+        });
+        return mine;
+    }
+
+    /**
+     * Cached answer or null, without calling upstream (streaming answers are stored with put)
+     */
+    public String getIfPresent(String question) {
+        String key = normalize(question);
+        if (key.isEmpty()) {
+            bypassed.incrementAndGet();
+            return null;
+        }
+        String answer = lookup(key, similarity > 0 ? embedder.embed(question) : null);
+        if (answer == null) {
+            misses.incrementAndGet();
+        }
+        return answer;
+    }
+
+    public void put(String question, String answer) {
+        String key = normalize(question);
+        if (key.isEmpty()) {
+            return;
+        }
+        put(key, similarity > 0 ? embedder.embed(question) : null, answer);
+    }
+
+    private String lookup(String key, float[] vector) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && !entry.isExpired(now)) {
+                hits.incrementAndGet();
+                return entry.answer();
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+            if (vector != null) {
+                Entry best = null;
+                double bestScore = similarity;
+                for (Entry candidate : entries.values()) {
+                    if (candidate.vector() == null || candidate.isExpired(now)) {
+                        continue;
+                    }
+                    double score = dot(vector, candidate.vector());
+                    if (score >= bestScore) {
+                        best = candidate;
+                        bestScore = score;
+                    }
+                }
+                if (best != null) {
+                    nearHits.incrementAndGet();
+                    return best.answer();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void put(String key, float[] vector, String answer) {
+        Entry entry = new Entry(answer, vector, System.currentTimeMillis() + ttlMillis);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    static String normalize(String question) {
+        return String.join(" ", VietnameseText.tokens(question));
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Hit rate and upstream savings for monitoring
+     */
+    public Map<String, Object> getStats() {
+        long h = hits.get() + nearHits.get();
+        long c = coalesced.get();
+        long m = misses.get();
+        long calls = upstreamCalls.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", size());
+        stats.put("maxSize", maxSize);
+        stats.put("ttlMillis", ttlMillis);
+        stats.put("similarity", similarity);
+        stats.put("hits", hits.get());
+        stats.put("nearHits", nearHits.get());
+        stats.put("coalesced", c);
+        stats.put("misses", m);
+        stats.put("hitRate", (h + c + m) == 0 ? 0.0 : (double) (h + c) / (h + c + m));
+        stats.put("upstreamCalls", calls);
+        stats.put("upstreamErrors", upstreamErrors.get());
+        stats.put("avgUpstreamMillis", calls == 0 ? 0 : upstreamNanos.get() / calls / 1_000_000);
+        stats.put("inFlight", inFlight.size());
+        stats.put("evictions", evictions.get());
+        stats.put("bypassed", bypassed.get());
+        return stats;
+    }
+}
@@ -0,0 +1,75 @@
+package se1961.g1.medconnect.service;
+
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import se1961.g1.medconnect.pojo.Appointment;
+import se1961.g1.medconnect.pojo.Payment;
+
+/**
+ * JPA listener on Appointment and Payment: remembers the status loaded from DB
+ * and reports every status transition to DashboardStatsService.
+ * Catches all writers (services, admin edits, cascaded deletes) in one place.
+ */
+@Component
+public class DashboardStatsListener {
+
+    @Autowired
+    @Lazy
+    private DashboardStatsService statsService;
+
+    @PostLoad
+    public void onLoad(Object entity) {
+        remember(entity);
+    }
+
+    @PostPersist
+    public void onPersist(Object entity) {
+        if (entity instanceof Appointment a) {
+            statsService.appointmentChanged(null, a.getStatus());
+        } else if (entity instanceof Payment p) {
+            statsService.paymentChanged(null, 0, p.getStatus(), amount(p.getAmount()));
+        }
+        remember(entity);
+    }
+
+    @PostUpdate
+    public void onUpdate(Object entity) {
+        if (entity instanceof Appointment a) {
+            statsService.appointmentChanged(a.getLoadedStatus(), a.getStatus());
+        } else if (entity instanceof Payment p) {
+            statsService.paymentChanged(p.getLoadedStatus(), amount(p.getLoadedAmount()),
+                    p.getStatus(), amount(p.getAmount()));
+        }
+        remember(entity);
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        if (entity instanceof Appointment a) {
+            statsService.appointmentChanged(a.getLoadedStatus() != null ? a.getLoadedStatus() : a.getStatus(), null);
+        } else if (entity instanceof Payment p) {
+            boolean loaded = p.getLoadedStatus() != null;
+            statsService.paymentChanged(loaded ? p.getLoadedStatus() : p.getStatus(),
+                    amount(loaded ? p.getLoadedAmount() : p.getAmount()), null, 0);
+        }
+    }
+
+    // Next transition of the same managed instance starts from the state just written
+    private void remember(Object entity) {
+        if (entity instanceof Appointment a) {
+            a.setLoadedStatus(a.getStatus());
+        } else if (entity instanceof Payment p) {
+            p.setLoadedStatus(p.getStatus());
+            p.setLoadedAmount(p.getAmount());
+        }
+    }
+
+    private static double amount(Double amount) {
+        return amount != null ? amount : 0.0;
+    }
+}
@@ -0,0 +1,180 @@
+package se1961.g1.medconnect.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import se1961.g1.medconnect.enums.AppointmentStatus;
+import se1961.g1.medconnect.enums.DoctorStatus;
+import se1961.g1.medconnect.enums.PaymentStatus;
+import se1961.g1.medconnect.pojo.StatCounter;
+import se1961.g1.medconnect.repository.AppointmentRepository;
+import se1961.g1.medconnect.repository.DoctorRepository;
+import se1961.g1.medconnect.repository.PatientRepository;
+import se1961.g1.medconnect.repository.PaymentRepository;
+import se1961.g1.medconnect.repository.StatCounterRepository;
+import se1961.g1.medconnect.util.AfterCommit;
+import se1961.g1.medconnect.repository.StatusCountRow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin dashboard numbers served from the StatCounter table instead of loading every row.
+ * Counters are rebuilt from GROUP BY aggregates at startup (and on demand), then kept current
+ * by DashboardStatsListener: each appointment/payment insert, status change or delete applies
+ * a +/- delta once the surrounding transaction has committed.
+ */
+@Service
+public class DashboardStatsService {
+
+    static final String APPOINTMENT = "APPOINTMENT.";
+    static final String PAYMENT = "PAYMENT.";
+
+    @Autowired
+    private StatCounterRepository statCounterRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // ============================================
+    // READ
+    // ============================================
+
+    public Map<String, Object> getDashboardStats() {
+        long totalAppointments = 0;
+        long pendingAppointments = 0;
+        long completedAppointments = 0;
+        double totalRevenue = 0;
+
+        for (StatCounter counter : statCounterRepository.findAll()) {
+            String name = counter.getName();
+            if (name.startsWith(APPOINTMENT)) {
+                totalAppointments += counter.getCount();
+                if (name.equals(APPOINTMENT + AppointmentStatus.PENDING)) {
+                    pendingAppointments = counter.getCount();
+                } else if (name.equals(APPOINTMENT + AppointmentStatus.FINISHED)) {
+                    completedAppointments = counter.getCount();
+                }
+            } else if (name.equals(PAYMENT + PaymentStatus.PAID)) {
+                totalRevenue = counter.getAmount();
+            }
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalDoctors", doctorRepository.count());
+        stats.put("activeDoctors", doctorRepository.countByStatus(DoctorStatus.ACTIVE));
+        stats.put("totalPatients", patientRepository.count());
+        stats.put("totalAppointments", totalAppointments);
+        stats.put("totalRevenue", totalRevenue);
+        stats.put("pendingAppointments", pendingAppointments);
+        stats.put("completedAppointments", completedAppointments);
+        return stats;
+    }
+
+    // ============================================
+    // REBUILD
+    // ============================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            System.err.println("[DashboardStats] Failed to rebuild counters: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Recompute every counter from COUNT/SUM ... GROUP BY status (also corrects any drift)
+     */
+    public void rebuild() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(tx -> {
+            Map<String, StatCounter> counters = new HashMap<>();
+            for (AppointmentStatus status : AppointmentStatus.values()) {
+                counters.put(APPOINTMENT + status, new StatCounter(APPOINTMENT + status, 0L, 0.0));
+            }
+            for (PaymentStatus status : PaymentStatus.values()) {
+                counters.put(PAYMENT + status, new StatCounter(PAYMENT + status, 0L, 0.0));
+            }
+            apply(counters, APPOINTMENT, appointmentRepository.countGroupByStatus());
+            apply(counters, PAYMENT, paymentRepository.countGroupByStatus());
+            statCounterRepository.saveAll(counters.values());
+        });
+    }
+
+    private void apply(Map<String, StatCounter> counters, String prefix, List<StatusCountRow> rows) {
+        for (StatusCountRow row : rows) {
+            if (row.getStatus() == null) continue;
+            StatCounter counter = counters.get(prefix + row.getStatus().name());
+            counter.setCount(row.getCount());
+            counter.setAmount(row.getAmount() != null ? row.getAmount() : 0.0);
+        }
+    }
+
+    // ============================================
+    // TRANSITIONS (called by DashboardStatsListener)
+    // ============================================
+
+    /**
+     * from == null: inserted, to == null: deleted
+     */
+    public void appointmentChanged(AppointmentStatus from, AppointmentStatus to) {
+        if (from == to) return;
+        List<Delta> deltas = new ArrayList<>(2);
+        if (from != null) deltas.add(new Delta(APPOINTMENT + from, -1, 0));
+        if (to != null) deltas.add(new Delta(APPOINTMENT + to, 1, 0));
+        afterCommit(deltas);
+    }
+
+    /**
+     * from == null: inserted, to == null: deleted; amounts follow the status they belong to
+     */
+    public void paymentChanged(PaymentStatus from, double fromAmount, PaymentStatus to, double toAmount) {
+        if (from == to && fromAmount == toAmount) return;
+        List<Delta> deltas = new ArrayList<>(2);
+        if (from != null) deltas.add(new Delta(PAYMENT + from, -1, -fromAmount));
+        if (to != null) deltas.add(new Delta(PAYMENT + to, 1, toAmount));
+        afterCommit(deltas);
+    }
+
+    private record Delta(String name, long count, double amount) {}
+
+    private void afterCommit(List<Delta> deltas) {
+        if (deltas.isEmpty()) return;
+        AfterCommit.run(() -> applyDeltas(deltas));
+    }
+
+    private void applyDeltas(List<Delta> deltas) {
+        // The original transaction is already committed: apply in a fresh one
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            template.executeWithoutResult(tx -> {
+                for (Delta delta : deltas) {
+                    statCounterRepository.increment(delta.name(), delta.count(), delta.amount());
+                }
+            });
+        } catch (Exception e) {
+            // Never fail the business operation for a counter; next rebuild corrects it
+            System.err.println("[DashboardStats] Failed to apply counter deltas: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package se1961.g1.medconnect.service;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import se1961.g1.medconnect.pojo.Doctor;
+import se1961.g1.medconnect.pojo.Speciality;
+
+/**
+ * JPA listener on Doctor, License and Speciality: any write invalidates the doctor catalogue,
+ * the affected search index entries and (doctor / speciality writes) the speciality doctor counts.
+ * Catches every writer (DoctorService, licence/speciality admin, profile updates) in one place.
+ */
+@Component
+public class DoctorCatalogListener {
+
+    @Autowired
+    @Lazy
+    private DoctorCatalogService catalogService;
+
+    @Autowired
+    @Lazy
+    private DoctorSearchIndex searchIndex;
+
+    @Autowired
+    @Lazy
+    private SpecialityService specialityService;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        catalogService.invalidate();
+        if (entity instanceof Doctor doctor) {
+            searchIndex.markDirty(doctor.getUserId());
+            specialityService.invalidateCatalog();
+        } else if (entity instanceof Speciality) {
+            searchIndex.markAllDirty();
+            specialityService.invalidateCatalog();
+        }
+        // Licences are not searchable
+    }
+}
@@ -0,0 +1,131 @@
+package se1961.g1.medconnect.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Service;
+import se1961.g1.medconnect.dto.DoctorCatalogRow;
+import se1961.g1.medconnect.pojo.License;
+import se1961.g1.medconnect.repository.DoctorRepository;
+import se1961.g1.medconnect.repository.LicenseRepository;
+import se1961.g1.medconnect.util.VersionedSnapshot;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory doctor catalogue behind the doctor list endpoints (public booking page, doctor, admin).
+ * Built from two queries (doctor projection + active licences) instead of findAll() + N lazy licence loads,
+ * rebuilt on the next read after a doctor / licence / speciality write commits (DoctorCatalogListener),
+ * after doctor.catalog.ttl and once a day (licence validity depends on the date).
+ * Invalidation is in-process only: on other nodes a write shows up once their snapshot is older than the TTL.
+ * The ETag is a content hash, so nodes serving the same content send the same ETag.
+ */
+@Service
+public class DoctorCatalogService {
+
+    /**
+     * Immutable catalogue version
+     */
+    public record Snapshot(long version, List<DoctorCatalogRow> doctors, String hash, LocalDate builtOn) {
+        /**
+         * ETag of one rendering of this snapshot (each endpoint exposes different fields)
+         */
+        public String etag(String view) {
+            return "\"" + view + "-" + hash + "\"";
+        }
+    }
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private LicenseRepository licenseRepository;
+
+    // Bounds staleness on nodes that did not see the write
+    @Value("${doctor.catalog.ttl:1m}")
+    private String ttlValue = "1m";
+
+    private final VersionedSnapshot<Snapshot> snapshot = new VersionedSnapshot<>(0);
+    private volatile long lastRebuildMillis;
+
+    @PostConstruct
+    void init() {
+        snapshot.setTtlMillis(DurationStyle.detectAndParse(ttlValue).toMillis());
+    }
+
+    public Snapshot getSnapshot() {
+        // Also rebuilt once a day: licence validity depends on the date
+        return snapshot.get(s -> s.builtOn().equals(LocalDate.now()), this::build);
+    }
+
+    /**
+     * Called by DoctorCatalogListener: next read rebuilds once the write is committed
+     */
+    public void invalidate() {
+        snapshot.invalidate();
+    }
+
+    private Snapshot build(long version) {
+        long start = System.currentTimeMillis();
+        List<DoctorCatalogRow> rows = doctorRepository.findCatalogRows();
+
+        Map<Long, DoctorCatalogRow> byId = new HashMap<>(rows.size() * 2);
+        for (DoctorCatalogRow row : rows) {
+            byId.put(row.getUserId(), row);
+        }
+        // Ordered by licenseId: the first valid one wins, like Doctor.getActiveLicense()
+        for (Object[] pair : licenseRepository.findAllActiveWithDoctorId()) {
+            DoctorCatalogRow row = byId.get((Long) pair[0]);
+            License license = (License) pair[1];
+            if (row != null && row.getActiveLicense() == null && license.isValid()) {
+                row.setActiveLicense(license);
+            }
+        }
+
+        Snapshot built = new Snapshot(version, Collections.unmodifiableList(rows), hash(rows), LocalDate.now());
+        lastRebuildMillis = System.currentTimeMillis() - start;
+        return built;
+    }
+
+    private static String hash(List<DoctorCatalogRow> rows) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder sb = new StringBuilder(256);
+            for (DoctorCatalogRow row : rows) {
+                sb.setLength(0);
+                sb.append(row.toString());
+                License l = row.getActiveLicense();
+                if (l != null) {
+                    sb.append('|').append(l.getLicenseId()).append('|').append(l.getLicenseNumber())
+                            .append('|').append(l.getIssuedDate()).append('|').append(l.getExpiryDate())
+                            .append('|').append(l.getIssuedBy()).append('|').append(l.getIssuerTitle())
+                            .append('|').append(l.getScopeOfPractice()).append('|').append(l.getNotes())
+                            .append('|').append(l.getProofImages()).append('|').append(l.getDaysUntilExpiry());
+                }
+                sb.append('\n');
+                digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Snapshot current = snapshot.peek();
+        Map<String, Object> stats = snapshot.getStats();
+        stats.put("doctors", current != null ? current.doctors().size() : 0);
+        stats.put("etag", current != null ? current.hash() : null);
+        stats.put("lastRebuildMillis", lastRebuildMillis);
+        return stats;
+    }
+}
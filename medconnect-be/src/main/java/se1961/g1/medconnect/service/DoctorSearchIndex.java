@@ -0,0 +1,292 @@
+package se1961.g1.medconnect.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Service;
+import se1961.g1.medconnect.dto.DoctorCatalogRow;
+import se1961.g1.medconnect.enums.DoctorStatus;
+import se1961.g1.medconnect.repository.DoctorRepository;
+import se1961.g1.medconnect.util.AfterCommit;
+import se1961.g1.medconnect.util.VietnameseText;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index for doctor search (booking page).
+ * - Terms are diacritic-folded words ("nguyen" matches "Nguyễn") from name, speciality, province/district and bio,
+ *   weighted by field; every query word matches as a prefix ("ng" -> "nguyen", "ngoc").
+ * - Filters: speciality, province, status. Facets are disjunctive: speciality counts ignore the speciality filter,
+ *   province counts ignore the province filter, so the UI can show "Tim mạch (12)" next to the selected one.
+ * - Kept in sync by DoctorCatalogListener: doctor writes mark that doctor dirty, speciality writes mark everything
+ *   dirty; dirty entries are reloaded (one projection query each) on the next search after the commit.
+ * - Those marks only reach this node: the whole index is also rebuilt once it is older than doctor.search.ttl,
+ *   so writes made on other nodes show up within the TTL.
+ */
+@Service
+public class DoctorSearchIndex {
+
+    static final int MAX_PAGE_SIZE = 50;
+
+    // Field weights: a name hit ranks above a speciality hit, which ranks above location/bio
+    static final int NAME_WEIGHT = 3;
+    static final int SPECIALITY_WEIGHT = 2;
+    static final int LOCATION_WEIGHT = 1;
+    static final int BIO_WEIGHT = 1;
+    // Prefix-only hits score a bit less than whole-word hits
+    private static final double PREFIX_FACTOR = 0.7;
+
+    public record Query(String text, Integer specialityId, Integer provinceCode, DoctorStatus status, int page, int size) {
+    }
+
+    public record FacetCount(Integer id, String name, int count) {
+    }
+
+    public record Result(List<DoctorCatalogRow> items, int total, int page, int size,
+                         List<FacetCount> specialities, List<FacetCount> provinces) {
+    }
+
+    /**
+     * One indexed doctor; terms kept so the postings can be removed when the doctor changes
+     */
+    private record Entry(DoctorCatalogRow row, Map<String, Integer> terms) {
+    }
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    // Bounds staleness on nodes that did not see the write
+    @Value("${doctor.search.ttl:1m}")
+    private String ttlValue = "1m";
+
+    private long ttlMillis;
+    private volatile long builtAtMillis;
+
+    private final Map<Long, Entry> docs = new HashMap<>();
+    // term -> (doctorId -> weight); sorted so a prefix is one subMap range
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Set<Long> dirtyIds = ConcurrentHashMap.newKeySet();
+    private volatile boolean rebuildNeeded = true;
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong incrementalUpdates = new AtomicLong();
+    private volatile long lastRebuildMillis;
+
+    @PostConstruct
+    void init() {
+        ttlMillis = DurationStyle.detectAndParse(ttlValue).toMillis();
+    }
+
+    public Result search(Query query) {
+        refresh();
+        searches.incrementAndGet();
+        int size = Math.max(1, Math.min(query.size(), MAX_PAGE_SIZE));
+        int page = Math.max(0, query.page());
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = matchText(VietnameseText.tokens(query.text()));
+
+            List<Map.Entry<DoctorCatalogRow, Double>> hits = new ArrayList<>();
+            Map<Integer, FacetCount> specialityFacets = new HashMap<>();
+            Map<Integer, FacetCount> provinceFacets = new HashMap<>();
+            Iterable<Long> candidates = scores != null ? scores.keySet() : docs.keySet();
+            for (Long id : candidates) {
+                DoctorCatalogRow row = docs.get(id).row();
+                if (query.status() != null && query.status() != row.getStatus()) {
+                    continue;
+                }
+                boolean specialityOk = query.specialityId() == null || query.specialityId().equals(row.getSpecialityId());
+                boolean provinceOk = query.provinceCode() == null || query.provinceCode().equals(row.getProvinceCode());
+                if (provinceOk && row.getSpecialityId() != null) {
+                    count(specialityFacets, row.getSpecialityId(), row.getSpecialityName());
+                }
+                if (specialityOk && row.getProvinceCode() != null) {
+                    count(provinceFacets, row.getProvinceCode(), row.getProvinceName());
+                }
+                if (specialityOk && provinceOk) {
+                    hits.add(Map.entry(row, scores != null ? scores.get(id) : 0.0));
+                }
+            }
+
+            hits.sort(Comparator.<Map.Entry<DoctorCatalogRow, Double>>comparingDouble(Map.Entry::getValue).reversed()
+                    .thenComparing(e -> VietnameseText.fold(e.getKey().getName()))
+                    .thenComparing(e -> e.getKey().getUserId()));
+            // long: a huge page number must give an empty page, not overflow into a negative offset
+            int from = (int) Math.min((long) page * size, hits.size());
+            int to = Math.min(from + size, hits.size());
+            List<DoctorCatalogRow> items = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                items.add(hits.get(i).getKey());
+            }
+            return new Result(items, hits.size(), page, size, sortFacets(specialityFacets), sortFacets(provinceFacets));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Doctors matching every word (as a prefix) with their score; null when there is no text (no text filter)
+     */
+    private Map<Long, Double> matchText(List<String> words) {
+        if (words.isEmpty()) {
+            return null;
+        }
+        Map<Long, Double> scores = null;
+        for (String word : new LinkedHashSet<>(words)) {
+            Map<Long, Double> wordScores = new HashMap<>();
+            for (Map.Entry<String, Map<Long, Integer>> term : postings.subMap(word, true, word + Character.MAX_VALUE, false).entrySet()) {
+                double factor = term.getKey().length() == word.length() ? 1.0 : PREFIX_FACTOR;
+                for (Map.Entry<Long, Integer> posting : term.getValue().entrySet()) {
+                    wordScores.merge(posting.getKey(), posting.getValue() * factor, Math::max);
+                }
+            }
+            if (scores == null) {
+                scores = wordScores;
+            } else {
+                scores.keySet().retainAll(wordScores.keySet());
+                for (Map.Entry<Long, Double> e : scores.entrySet()) {
+                    e.setValue(e.getValue() + wordScores.get(e.getKey()));
+                }
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        return scores;
+    }
+
+    private static void count(Map<Integer, FacetCount> facets, Integer id, String name) {
+        facets.merge(id, new FacetCount(id, name, 1), (a, b) -> new FacetCount(id, a.name(), a.count() + 1));
+    }
+
+    private static List<FacetCount> sortFacets(Map<Integer, FacetCount> facets) {
+        List<FacetCount> sorted = new ArrayList<>(facets.values());
+        sorted.sort(Comparator.comparingInt(FacetCount::count).reversed().thenComparing(FacetCount::id));
+        return sorted;
+    }
+
+    /**
+     * Called by DoctorCatalogListener when a doctor is written: reindexed on the next search after commit
+     */
+    public void markDirty(Long doctorId) {
+        if (doctorId != null) {
+            AfterCommit.run(() -> dirtyIds.add(doctorId));
+        }
+    }
+
+    /**
+     * Speciality renamed/removed: every doctor's speciality terms may be stale
+     */
+    public void markAllDirty() {
+        AfterCommit.run(() -> rebuildNeeded = true);
+    }
+
+    private void refresh() {
+        if (!rebuildNeeded && dirtyIds.isEmpty() && !expired()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (rebuildNeeded || expired()) {
+                rebuildNeeded = false;
+                dirtyIds.clear();
+                rebuild();
+                return;
+            }
+            for (Iterator<Long> it = dirtyIds.iterator(); it.hasNext(); ) {
+                Long id = it.next();
+                it.remove();
+                remove(id);
+                doctorRepository.findCatalogRow(id).ifPresent(this::add);
+                incrementalUpdates.incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            // Try again on the next search rather than serving a half-built index forever
+            rebuildNeeded = true;
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean expired() {
+        return System.currentTimeMillis() - builtAtMillis >= ttlMillis;
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        docs.clear();
+        postings.clear();
+        for (DoctorCatalogRow row : doctorRepository.findCatalogRows()) {
+            add(row);
+        }
+        rebuilds.incrementAndGet();
+        builtAtMillis = start;
+        lastRebuildMillis = System.currentTimeMillis() - start;
+        System.out.println("[DoctorSearch] Indexed " + docs.size() + " doctors, " + postings.size() + " terms in " + lastRebuildMillis + " ms");
+    }
+
+    private void add(DoctorCatalogRow row) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, row.getName(), NAME_WEIGHT);
+        addTerms(terms, row.getSpecialityName(), SPECIALITY_WEIGHT);
+        addTerms(terms, row.getProvinceName(), LOCATION_WEIGHT);
+        addTerms(terms, row.getDistrictName(), LOCATION_WEIGHT);
+        addTerms(terms, row.getBio(), BIO_WEIGHT);
+        docs.put(row.getUserId(), new Entry(row, terms));
+        for (Map.Entry<String, Integer> term : terms.entrySet()) {
+            postings.computeIfAbsent(term.getKey(), k -> new HashMap<>()).put(row.getUserId(), term.getValue());
+        }
+    }
+
+    /**
+     * A word found in several fields gets the sum of their weights (once per field)
+     */
+    private static void addTerms(Map<String, Integer> terms, String text, int weight) {
+        for (String token : new HashSet<>(VietnameseText.tokens(text))) {
+            terms.merge(token, weight, Integer::sum);
+        }
+    }
+
+    private void remove(Long id) {
+        Entry entry = docs.remove(id);
+        if (entry == null) {
+            return;
+        }
+        for (String term : entry.terms().keySet()) {
+            Map<Long, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("doctors", docs.size());
+            stats.put("terms", postings.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("pendingUpdates", dirtyIds.size());
+        stats.put("searches", searches.get());
+        stats.put("rebuilds", rebuilds.get());
+        stats.put("incrementalUpdates", incrementalUpdates.get());
+        stats.put("lastRebuildMillis", lastRebuildMillis);
+        stats.put("ttlMillis", ttlMillis);
+        return stats;
+    }
+}
@@ -52,6 +52,10 @@ public class DoctorService {
     private LicenseRepository licenseRepository;
     @Autowired
     private EmailService emailService;
+    @Autowired
+    private FirebaseTokenCache tokenCache;
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
 
     public Optional<Doctor> getDoctor(String uid) throws Exception {
         return doctorRepository.findByFirebaseUid(uid);
@@ -276,7 +280,10 @@ public class DoctorService {
             }
         }
         
-        return doctorRepository.save(existing);
+        Doctor saved = doctorRepository.save(existing);
+        // Approval may link an existing Firebase account -> its cached tokens need the DOCTOR role
+        tokenCache.invalidateUser(saved.getFirebaseUid());
+        return saved;
     }
     
     /**
@@ -327,6 +334,8 @@ public class DoctorService {
         }
 
         doctorRepository.delete(existing);
+        tokenCache.invalidateUser(existing.getFirebaseUid());
+        availabilityIndex.evictDoctor(id);
     }
 
     /**
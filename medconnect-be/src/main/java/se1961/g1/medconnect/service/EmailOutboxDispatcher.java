@@ -0,0 +1,260 @@
+package se1961.g1.medconnect.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import se1961.g1.medconnect.enums.EmailOutboxStatus;
+import se1961.g1.medconnect.pojo.EmailOutbox;
+import se1961.g1.medconnect.repository.EmailOutboxRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the EmailOutbox table on a small bounded executor.
+ * - Due rows are claimed with a conditional UPDATE (lease), so several pollers/instances never send a row twice.
+ * - First attempts are sent together through the provider batch API; retries go one by one
+ *   so a single bad address cannot keep failing a whole batch.
+ * - Failures are retried with exponential backoff + jitter, then marked FAILED after max-attempts.
+ * - When the executor queue is full, claimed rows are released and picked up by a later poll.
+ */
+@Service
+public class EmailOutboxDispatcher {
+
+    static final long MAX_BACKOFF_SECONDS = 3600;
+
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
+    @Autowired
+    private EmailSender emailSender;
+
+    @Value("${email.outbox.batch-size:20}")
+    private int batchSize = 20;
+
+    @Value("${email.outbox.threads:2}")
+    private int threads = 2;
+
+    @Value("${email.outbox.queue-capacity:16}")
+    private int queueCapacity = 16;
+
+    @Value("${email.outbox.max-attempts:8}")
+    private int maxAttempts = 8;
+
+    @Value("${email.outbox.lease-seconds:120}")
+    private long leaseSeconds = 120;
+
+    @Value("${email.outbox.backoff-base-seconds:30}")
+    private long backoffBaseSeconds = 30;
+
+    private ThreadPoolExecutor executor;
+    private final AtomicBoolean wakeQueued = new AtomicBoolean();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "email-outbox-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Called once a new outbox row is committed: drain now instead of waiting for the next poll.
+     * Calls are coalesced, at most one wake-up is queued at a time.
+     */
+    public void wakeUp() {
+        if (executor == null || !wakeQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                wakeQueued.set(false);
+                poll();
+            });
+        } catch (RejectedExecutionException e) {
+            // Saturated: the scheduled poll will pick the row up
+            wakeQueued.set(false);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval-ms:2000}")
+    public void poll() {
+        try {
+            while (true) {
+                LocalDateTime now = LocalDateTime.now();
+                List<Long> due = outboxRepository.findDueIds(now, PageRequest.of(0, batchSize));
+                if (due.isEmpty()) {
+                    return;
+                }
+
+                LocalDateTime leaseUntil = now.plusSeconds(leaseSeconds);
+                List<Long> claimed = new ArrayList<>(due.size());
+                for (Long id : due) {
+                    if (outboxRepository.claim(id, now, leaseUntil) == 1) {
+                        claimed.add(id);
+                    }
+                }
+                if (!claimed.isEmpty() && !submit(claimed)) {
+                    return;
+                }
+                if (due.size() < batchSize) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("[EmailOutbox] Poll failed: " + e.getMessage());
+        }
+    }
+
+    private boolean submit(List<Long> ids) {
+        try {
+            executor.execute(() -> deliver(ids));
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            outboxRepository.release(ids, LocalDateTime.now());
+            return false;
+        }
+    }
+
+    /**
+     * Send claimed rows and record the outcome of each one
+     */
+    void deliver(List<Long> ids) {
+        try {
+            List<EmailOutbox> firstAttempts = new ArrayList<>();
+            List<EmailOutbox> retries = new ArrayList<>();
+            for (EmailOutbox row : outboxRepository.findAllById(ids)) {
+                if (row.getStatus() != EmailOutboxStatus.PENDING) {
+                    continue;
+                }
+                if (row.getAttempts() == 0) {
+                    firstAttempts.add(row);
+                } else {
+                    retries.add(row);
+                }
+            }
+
+            if (!firstAttempts.isEmpty()) {
+                sendBatch(firstAttempts);
+            }
+            for (EmailOutbox row : retries) {
+                sendBatch(List.of(row));
+            }
+
+            List<EmailOutbox> all = new ArrayList<>(firstAttempts);
+            all.addAll(retries);
+            outboxRepository.saveAll(all);
+        } catch (Exception e) {
+            // Rows stay PENDING under their lease and are retried when it expires
+            System.err.println("[EmailOutbox] Delivery of " + ids + " failed: " + e.getMessage());
+        }
+    }
+
+    private void sendBatch(List<EmailOutbox> rows) {
+        List<EmailSender.Message> messages = new ArrayList<>(rows.size());
+        for (EmailOutbox row : rows) {
+            messages.add(new EmailSender.Message(row.getRecipient(), row.getSubject(), row.getHtml()));
+        }
+        batches.incrementAndGet();
+        try {
+            List<String> providerIds = emailSender.sendBatch(messages);
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < rows.size(); i++) {
+                markSent(rows.get(i), i < providerIds.size() ? providerIds.get(i) : null, now);
+            }
+        } catch (Exception e) {
+            System.err.println("[EmailOutbox] Send failed for " + rows.size() + " email(s): " + e.getMessage());
+            for (EmailOutbox row : rows) {
+                markRetry(row, e.getMessage());
+            }
+        }
+    }
+
+    private void markSent(EmailOutbox row, String providerId, LocalDateTime now) {
+        row.setStatus(EmailOutboxStatus.SENT);
+        row.setAttempts(row.getAttempts() + 1);
+        row.setProviderMessageId(providerId);
+        row.setSentAt(now);
+        row.setLastError(null);
+        // Body may hold a temporary password: do not keep it once delivered
+        row.setHtml("");
+        sent.incrementAndGet();
+    }
+
+    private void markRetry(EmailOutbox row, String error) {
+        int attempts = row.getAttempts() + 1;
+        row.setAttempts(attempts);
+        row.setLastError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+        if (attempts >= maxAttempts) {
+            row.setStatus(EmailOutboxStatus.FAILED);
+            failed.incrementAndGet();
+            System.err.println("[EmailOutbox] Giving up on email " + row.getId() + " after " + attempts + " attempts");
+        } else {
+            row.setNextAttemptAt(LocalDateTime.now().plusSeconds(backoffSeconds(attempts, backoffBaseSeconds)));
+            retried.incrementAndGet();
+        }
+    }
+
+    /**
+     * base * 2^(attempts-1), capped at one hour, plus up to 20% jitter so retries of one burst spread out
+     */
+    static long backoffSeconds(int attempts, long baseSeconds) {
+        long delay = baseSeconds << Math.min(attempts - 1, 20);
+        delay = Math.min(delay, MAX_BACKOFF_SECONDS);
+        return delay + ThreadLocalRandom.current().nextLong(delay / 5 + 1);
+    }
+
+    /**
+     * Queue depth and delivery counters for monitoring
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        LocalDateTime oldest = outboxRepository.findOldestPendingCreatedAt();
+        stats.put("pending", outboxRepository.countByStatus(EmailOutboxStatus.PENDING));
+        stats.put("failedRows", outboxRepository.countByStatus(EmailOutboxStatus.FAILED));
+        stats.put("oldestPendingAgeSeconds", oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).getSeconds());
+        stats.put("executorQueued", executor != null ? executor.getQueue().size() : 0);
+        stats.put("executorActive", executor != null ? executor.getActiveCount() : 0);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("sent", sent.get());
+        stats.put("retried", retried.get());
+        stats.put("failed", failed.get());
+        stats.put("rejected", rejected.get());
+        stats.put("batches", batches.get());
+        return stats;
+    }
+}
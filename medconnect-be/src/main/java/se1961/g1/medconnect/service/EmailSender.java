@@ -0,0 +1,25 @@
+package se1961.g1.medconnect.service;
+
+import com.resend.core.exception.ResendException;
+
+import java.util.List;
+
+/**
+ * Transport used by EmailOutboxDispatcher. ResendEmailSender in production,
+ * LoggingEmailSender (email.transport=log) for local runs without a Resend key.
+ */
+public interface EmailSender {
+
+    record Message(String to, String subject, String html) {}
+
+    /**
+     * Send one message, returns the provider email id
+     */
+    String send(Message message) throws ResendException;
+
+    /**
+     * Send several messages in one provider call; ids are returned in the same order.
+     * All-or-nothing: an exception means none of them should be considered sent.
+     */
+    List<String> sendBatch(List<Message> messages) throws ResendException;
+}
@@ -1,54 +1,66 @@
 package se1961.g1.medconnect.service;
 
-import com.resend.Resend;
 import com.resend.core.exception.ResendException;
-import com.resend.services.emails.model.CreateEmailOptions;
-import com.resend.services.emails.model.CreateEmailResponse;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import se1961.g1.medconnect.repository.EmailOutboxRepository;
+import se1961.g1.medconnect.util.AfterCommit;
 import se1961.g1.medconnect.util.EmailTemplateLoader;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class EmailService {
 
-    private final Resend resend;
+    @Autowired
+    private EmailSender emailSender;
+
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
+    @Autowired
+    private EmailOutboxDispatcher outboxDispatcher;
     
     @Autowired
     private EmailTemplateLoader templateLoader;
 
-    @Value("${resend.from-email}")
-    private String fromEmail;
+    // Variables each template is rendered with (checked against the template files at startup)
+    static final Map<String, Set<String>> TEMPLATE_VARIABLES = Map.of(
+            "appointment-pending", Set.of("patientName", "doctorName", "appointmentDate", "appointmentTime", "appointmentType"),
+            "appointment-confirmation", Set.of("patientName", "doctorName", "appointmentDate", "appointmentTime", "specialization"),
+            "appointment-reminder", Set.of("patientName", "doctorName", "appointmentDate", "appointmentTime"),
+            "password-reset", Set.of("userName", "resetLink"),
+            "welcome", Set.of("userName"),
+            "account-created", Set.of("userName", "email", "password", "roleName"),
+            "doctor-approval", Set.of("doctorName", "email", "password")
+    );
 
-    public EmailService(@Value("${resend.api-key}") String apiKey) {
-        this.resend = new Resend(apiKey);
+    @PostConstruct
+    void validateTemplates() {
+        templateLoader.validate(TEMPLATE_VARIABLES);
     }
 
     /**
-     * Send a simple text email
+     * Send a simple email right now (synchronous, used by the test endpoint).
+     * Business flows use queueEmail instead.
      */
     public String sendEmail(String to, String subject, String htmlContent) throws ResendException {
         System.out.println("=== EmailService.sendEmail ===");
-        System.out.println("From: " + fromEmail);
         System.out.println("To: " + to);
         System.out.println("Subject: " + subject);
         System.out.println("HTML Content Length: " + (htmlContent != null ? htmlContent.length() : 0));
         
         try {
-        CreateEmailOptions params = CreateEmailOptions.builder()
-                .from(fromEmail)
-                .to(to)
-                .subject(subject)
-                .html(htmlContent)
-                .build();
-
-            System.out.println("Sending email via Resend...");
-        CreateEmailResponse response = resend.emails().send(params);
-            String emailId = response.getId();
+            String emailId = emailSender.send(new EmailSender.Message(to, subject, htmlContent));
             System.out.println("✅ Email sent successfully! Email ID: " + emailId);
             return emailId;
         } catch (ResendException e) {
@@ -63,6 +75,29 @@ public class EmailService {
         }
     }
 
+    /**
+     * Queue an email in the outbox. Joins the caller's transaction when there is one, so the email
+     * exists if and only if the state change commits; EmailOutboxDispatcher sends it afterwards.
+     * idempotencyKey == null: key derived from recipient + subject + content.
+     * Returns the outbox id (the existing one when this key was already queued).
+     * Insert-if-absent rather than check-then-save: a concurrent duplicate never raises a constraint
+     * violation, which would mark the caller's transaction rollback-only.
+     */
+    public String queueEmail(String idempotencyKey, String to, String subject, String htmlContent) {
+        String key = idempotencyKey != null ? idempotencyKey : contentKey(to, subject, htmlContent);
+        int inserted = outboxRepository.insertIfAbsent(key, to, subject, htmlContent, LocalDateTime.now());
+        Long id = outboxRepository.findIdByIdempotencyKey(key)
+                .orElseThrow(() -> new IllegalStateException("Outbox row missing for key " + key));
+        if (inserted == 0) {
+            System.out.println("[EmailOutbox] Already queued: " + key);
+            return String.valueOf(id);
+        }
+        System.out.println("[EmailOutbox] Queued email " + id + " to " + to + ": " + subject);
+
+        AfterCommit.run(outboxDispatcher::wakeUp);
+        return String.valueOf(id);
+    }
+
     /**
      * Send appointment PENDING confirmation email (ORANGE/CAM - After Payment)
      * Sent after payment is successful, waiting for doctor confirmation
@@ -74,6 +109,21 @@ public class EmailService {
             String appointmentDate,
             String appointmentTime,
             String appointmentType
+    ) throws ResendException {
+        return sendAppointmentPendingConfirmation(null, to, patientName, doctorName, appointmentDate, appointmentTime, appointmentType);
+    }
+
+    /**
+     * Same as above, deduplicated by idempotencyKey (e.g. one email per appointment)
+     */
+    public String sendAppointmentPendingConfirmation(
+            String idempotencyKey,
+            String to,
+            String patientName,
+            String doctorName,
+            String appointmentDate,
+            String appointmentTime,
+            String appointmentType
     ) throws ResendException {
         try {
             Map<String, String> variables = new HashMap<>();
@@ -86,7 +136,7 @@ public class EmailService {
             String html = templateLoader.loadTemplate("appointment-pending", variables);
             String subject = "Đơn đặt lịch đang chờ xác nhận - MedConnect";
             
-            return sendEmail(to, subject, html);
+            return queueEmail(idempotencyKey, to, subject, html);
         } catch (IOException e) {
             throw new ResendException("Failed to load email template: " + e.getMessage());
         }
@@ -103,6 +153,21 @@ public class EmailService {
             String appointmentDate,
             String appointmentTime,
             String specialization
+    ) throws ResendException {
+        return sendAppointmentConfirmation(null, to, patientName, doctorName, appointmentDate, appointmentTime, specialization);
+    }
+
+    /**
+     * Same as above, deduplicated by idempotencyKey (e.g. one email per appointment)
+     */
+    public String sendAppointmentConfirmation(
+            String idempotencyKey,
+            String to,
+            String patientName,
+            String doctorName,
+            String appointmentDate,
+            String appointmentTime,
+            String specialization
     ) throws ResendException {
         try {
             Map<String, String> variables = new HashMap<>();
@@ -115,7 +180,7 @@ public class EmailService {
             String html = templateLoader.loadTemplate("appointment-confirmation", variables);
             String subject = "Xác nhận đặt lịch khám - MedConnect";
             
-            return sendEmail(to, subject, html);
+            return queueEmail(idempotencyKey, to, subject, html);
         } catch (IOException e) {
             throw new ResendException("Failed to load email template: " + e.getMessage());
         }
@@ -130,6 +195,20 @@ public class EmailService {
             String doctorName,
             String appointmentDate,
             String appointmentTime
+    ) throws ResendException {
+        return sendAppointmentReminder(null, to, patientName, doctorName, appointmentDate, appointmentTime);
+    }
+
+    /**
+     * Same as above, deduplicated by idempotencyKey (one email per appointment and reminder offset)
+     */
+    public String sendAppointmentReminder(
+            String idempotencyKey,
+            String to,
+            String patientName,
+            String doctorName,
+            String appointmentDate,
+            String appointmentTime
     ) throws ResendException {
         try {
             Map<String, String> variables = new HashMap<>();
@@ -141,7 +220,7 @@ public class EmailService {
             String html = templateLoader.loadTemplate("appointment-reminder", variables);
             String subject = "Nhắc nhở: Lịch khám sắp tới - MedConnect";
             
-            return sendEmail(to, subject, html);
+            return queueEmail(idempotencyKey, to, subject, html);
         } catch (IOException e) {
             throw new ResendException("Failed to load email template: " + e.getMessage());
         }
@@ -163,7 +242,7 @@ public class EmailService {
             String html = templateLoader.loadTemplate("password-reset", variables);
             String subject = "Đặt lại mật khẩu - MedConnect";
             
-            return sendEmail(to, subject, html);
+            return queueEmail(null, to, subject, html);
         } catch (IOException e) {
             throw new ResendException("Failed to load email template: " + e.getMessage());
         }
@@ -183,7 +262,7 @@ public class EmailService {
             String html = templateLoader.loadTemplate("welcome", variables);
             String subject = "Chào mừng đến với MedConnect!";
             
-            return sendEmail(to, subject, html);
+            return queueEmail(null, to, subject, html);
         } catch (IOException e) {
             throw new ResendException("Failed to load email template: " + e.getMessage());
         }
@@ -195,8 +274,8 @@ public class EmailService {
     public void sendDoctorApplicationWelcomeEmail(String toEmail, String doctorName, String phone) {
         try {
             String htmlContent = buildDoctorWelcomeEmailHtml(doctorName, toEmail, phone);
-            sendEmail(toEmail, "Chào mừng bạn đến với MedConnect - Thông tin tài khoản", htmlContent);
-        } catch (ResendException e) {
+            queueEmail(null, toEmail, "Chào mừng bạn đến với MedConnect - Thông tin tài khoản", htmlContent);
+        } catch (Exception e) {
             System.err.println("Failed to send doctor welcome email: " + e.getMessage());
             // Don't throw - email failure shouldn't break registration
         }
@@ -217,24 +296,20 @@ public class EmailService {
             System.out.println("Role: " + roleName);
             
             Map<String, String> variables = new HashMap<>();
-            variables.put("userName", userName != null ? escapeHtml(userName) : "");
-            variables.put("email", toEmail != null ? escapeHtml(toEmail) : "");
-            variables.put("password", password != null ? escapeHtml(password) : "");
-            variables.put("roleName", roleName != null ? escapeHtml(roleName) : "");
+            variables.put("userName", userName);
+            variables.put("email", toEmail);
+            variables.put("password", password);
+            variables.put("roleName", roleName);
             
             String htmlContent = templateLoader.loadTemplate("account-created", variables);
             System.out.println("Email HTML content loaded from template, length: " + htmlContent.length());
             
-            String emailId = sendEmail(toEmail, "Chào mừng đến với MedConnect - Thông tin tài khoản", htmlContent);
-            System.out.println("✅ Email sent successfully! Email ID: " + emailId);
+            String emailId = queueEmail(null, toEmail, "Chào mừng đến với MedConnect - Thông tin tài khoản", htmlContent);
+            System.out.println("✅ Email queued! Outbox ID: " + emailId);
         } catch (IOException e) {
             System.err.println("❌ Failed to load account created email template: " + e.getMessage());
             e.printStackTrace();
             // Don't throw - email failure shouldn't break account creation
-        } catch (ResendException e) {
-            System.err.println("❌ Failed to send account created email: " + e.getMessage());
-            e.printStackTrace();
-            // Don't throw - email failure shouldn't break account creation
         } catch (Exception e) {
             System.err.println("❌ Unexpected error sending account created email: " + e.getMessage());
             e.printStackTrace();
@@ -254,23 +329,19 @@ public class EmailService {
             
             // Load template from resources
             Map<String, String> variables = new HashMap<>();
-            variables.put("doctorName", doctorName != null ? escapeHtml(doctorName) : "");
-            variables.put("email", toEmail != null ? escapeHtml(toEmail) : "");
-            variables.put("password", password != null ? escapeHtml(password) : "");
+            variables.put("doctorName", doctorName);
+            variables.put("email", toEmail);
+            variables.put("password", password);
             
             String htmlContent = templateLoader.loadTemplate("doctor-approval", variables);
             System.out.println("Email HTML content loaded from template, length: " + htmlContent.length());
             
-            String emailId = sendEmail(toEmail, "Chúc mừng! Hồ sơ bác sĩ đã được phê duyệt - MedConnect", htmlContent);
-            System.out.println("✅ Email sent successfully! Email ID: " + emailId);
+            String emailId = queueEmail(null, toEmail, "Chúc mừng! Hồ sơ bác sĩ đã được phê duyệt - MedConnect", htmlContent);
+            System.out.println("✅ Email queued! Outbox ID: " + emailId);
         } catch (IOException e) {
             System.err.println("❌ Failed to load doctor approval email template: " + e.getMessage());
             e.printStackTrace();
             throw new RuntimeException("Không thể tải template email phê duyệt: " + e.getMessage());
-        } catch (ResendException e) {
-            System.err.println("❌ Failed to send doctor approval email: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Không thể gửi email phê duyệt: " + e.getMessage());
         } catch (Exception e) {
             System.err.println("❌ Unexpected error sending doctor approval email: " + e.getMessage());
             e.printStackTrace();
@@ -278,8 +349,19 @@ public class EmailService {
         }
     }
     
+    private static String contentKey(String to, String subject, String html) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((to + "\n" + subject + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(String.valueOf(html).getBytes(StandardCharsets.UTF_8));
+            return "content:" + HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     /**
-     * Escape HTML special characters to prevent injection
+     * Escape HTML special characters to prevent injection (inline HTML only; template values are escaped by EmailTemplateLoader)
      */
     private String escapeHtml(String text) {
         if (text == null) return "";
@@ -372,7 +454,7 @@ public class EmailService {
                     </div>
                 </body>
                 </html>
-                """.formatted(doctorName, email, phone);
+                """.formatted(escapeHtml(doctorName), escapeHtml(email), escapeHtml(phone));
     }
 
 }
@@ -0,0 +1,142 @@
+package se1961.g1.medconnect.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import se1961.g1.medconnect.enums.Role;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of already verified Firebase ID tokens.
+ * Key = SHA-256 of the raw token (the token itself is never stored),
+ * value = uid/email/role resolved at verification time, valid until the token's exp.
+ * Bounded LRU: the least recently used entry is evicted when the cache is full.
+ */
+@Service
+public class FirebaseTokenCache {
+
+    /**
+     * Verified identity for one token. role == null means the user is not in DB yet.
+     */
+    public record CachedToken(String uid, String email, Role role, long expiresAtMillis) {
+        boolean isExpired(long now) {
+            return now >= expiresAtMillis;
+        }
+    }
+
+    private final int maxSize;
+    private final Map<String, CachedToken> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public FirebaseTokenCache(@Value("${auth.token-cache.max-size:10000}") int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedToken> eldest) {
+                if (size() > FirebaseTokenCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get cached identity for a raw token, or null if absent/expired
+     */
+    public CachedToken get(String token) {
+        String key = hash(token);
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            CachedToken cached = entries.get(key);
+            if (cached != null && !cached.isExpired(now)) {
+                hits.incrementAndGet();
+                return cached;
+            }
+            if (cached != null) {
+                entries.remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Cache a verified token until its exp (epoch seconds)
+     */
+    public void put(String token, String uid, String email, Role role, long expEpochSeconds) {
+        long expiresAt = expEpochSeconds * 1000L;
+        if (expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        CachedToken cached = new CachedToken(uid, email, role, expiresAt);
+        synchronized (entries) {
+            entries.put(hash(token), cached);
+        }
+    }
+
+    /**
+     * Drop every cached token of a user (role changed, user deleted, user registered...)
+     */
+    public void invalidateUser(String firebaseUid) {
+        if (firebaseUid == null) {
+            return;
+        }
+        synchronized (entries) {
+            if (entries.values().removeIf(c -> firebaseUid.equals(c.uid()))) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        invalidations.incrementAndGet();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Hit/miss metrics for monitoring
+     */
+    public Map<String, Object> getStats() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", size());
+        stats.put("maxSize", maxSize);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRate", (h + m) == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
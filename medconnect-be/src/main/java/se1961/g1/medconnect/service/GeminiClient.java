@@ -0,0 +1,527 @@
+package se1961.g1.medconnect.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking Gemini generateContent client.
+ * - One HttpClient (HTTP/2, pooled keep-alive connections) and the application ObjectMapper for every call.
+ * - sendAsync: no servlet thread waits for the model, the answer completes the returned future.
+ * - Circuit breaker on 429: the delay from RetryInfo / "Please retry in" (+50%) keeps the circuit open and
+ *   calls fail immediately without reaching Gemini; after it one probe call decides whether to close it again.
+ * - stream: streamGenerateContent (SSE) read line by line, one line requested at a time, so a slow client
+ *   slows the upstream read instead of buffering it; cancel() drops the upstream connection.
+ */
+@Service
+public class GeminiClient {
+
+    /**
+     * Gemini quota exceeded (or circuit still open); retryAfterMillis is when a new call may succeed
+     */
+    public static class RateLimitedException extends RuntimeException {
+        private final long retryAfterMillis;
+
+        public RateLimitedException(long retryAfterMillis) {
+            super("Đã vượt quá giới hạn API. Vui lòng đợi " + formatDelay(retryAfterMillis) + " trước khi thử lại.");
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public long getRetryAfterMillis() {
+            return retryAfterMillis;
+        }
+
+        public long getRetryAfterSeconds() {
+            return Math.max(1, (retryAfterMillis + 999) / 1000);
+        }
+    }
+
+    /**
+     * Running streamGenerateContent call: done() completes after the last chunk, cancel() drops the upstream connection
+     */
+    public static final class StreamCall {
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile Flow.Subscription subscription;
+        private volatile CompletableFuture<?> exchange;
+        private volatile boolean cancelled;
+
+        public static StreamCall completed() {
+            StreamCall call = new StreamCall();
+            call.done.complete(null);
+            return call;
+        }
+
+        public CompletableFuture<Void> done() {
+            return done;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public void cancel() {
+            if (done.isDone()) {
+                return;
+            }
+            cancelled = true;
+            done.cancel(false);
+            abort();
+        }
+
+        // done first: aborting the exchange runs its completion callback, which must see the stream as finished
+        private void fail(Throwable error) {
+            done.completeExceptionally(error);
+            abort();
+        }
+
+        private void abort() {
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+            CompletableFuture<?> running = exchange;
+            if (running != null) {
+                running.cancel(true);
+            }
+        }
+    }
+
+    // Delay used when a 429 carries no parsable retry hint
+    static final long DEFAULT_RETRY_MILLIS = 300_000;
+    // Safety margin on top of the delay Gemini asks for
+    static final double RETRY_BUFFER = 1.5;
+
+    @Value("${gemini.api-key:}")
+    private String apiKey;
+
+    @Value("${gemini.model:gemini-2.5-pro}")
+    private String model = "gemini-2.5-pro";
+
+    @Value("${gemini.base-url:https://generativelanguage.googleapis.com/v1beta}")
+    private String baseUrl = "https://generativelanguage.googleapis.com/v1beta";
+
+    @Value("${gemini.connect-timeout:5s}")
+    private String connectTimeoutValue = "5s";
+
+    @Value("${gemini.timeout:60s}")
+    private String timeoutValue = "60s";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private HttpClient httpClient;
+    private Duration timeout;
+
+    // Circuit breaker: 0 = closed, otherwise open until this time, then half-open (one probe)
+    private volatile long openUntilMillis;
+    private final AtomicBoolean probeInFlight = new AtomicBoolean();
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong shortCircuited = new AtomicLong();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLong callNanos = new AtomicLong();
+    private final AtomicLong streams = new AtomicLong();
+    private final AtomicLong streamsCancelled = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        timeout = DurationStyle.detectAndParse(timeoutValue);
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(DurationStyle.detectAndParse(connectTimeoutValue))
+                .build();
+    }
+
+    @PreDestroy
+    void stop() {
+        httpClient.shutdown();
+    }
+
+    public boolean isConfigured() {
+        return apiKey != null && !apiKey.isEmpty();
+    }
+
+    /**
+     * Text of the first candidate for the prompt; fails with RateLimitedException while the circuit is open
+     */
+    public CompletableFuture<String> generate(String prompt) {
+        boolean probe;
+        try {
+            probe = acquireCircuit();
+        } catch (RateLimitedException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(baseUrl + "/models/" + model + ":generateContent"))
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .header("x-goog-api-key", apiKey)
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requestBody(prompt))))
+                    .build();
+        } catch (Exception e) {
+            releaseCircuit(probe);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        calls.incrementAndGet();
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> readAnswer(response, probe))
+                .handle((text, error) -> {
+                    inFlight.decrementAndGet();
+                    callNanos.addAndGet(System.nanoTime() - start);
+                    releaseCircuit(probe);
+                    if (error == null) {
+                        return text;
+                    }
+                    failures.incrementAndGet();
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    System.err.println("[GeminiClient] Call failed: " + cause.getMessage());
+                    if (cause instanceof RuntimeException runtime) {
+                        throw runtime;
+                    }
+                    throw new RuntimeException("Lỗi khi gọi Gemini API: " + cause.getMessage(), cause);
+                });
+    }
+
+    /**
+     * Stream the answer: onText gets each text chunk as Gemini produces it, on an HttpClient thread.
+     * An exception from onText (client gone) stops the stream.
+     */
+    public StreamCall stream(String prompt, Consumer<String> onText) {
+        StreamCall call = new StreamCall();
+        boolean probe;
+        try {
+            probe = acquireCircuit();
+        } catch (RateLimitedException e) {
+            call.done.completeExceptionally(e);
+            return call;
+        }
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(baseUrl + "/models/" + model + ":streamGenerateContent?alt=sse"))
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .header("Accept", "text/event-stream")
+                    .header("x-goog-api-key", apiKey)
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requestBody(prompt))))
+                    .build();
+        } catch (Exception e) {
+            releaseCircuit(probe);
+            call.done.completeExceptionally(e);
+            return call;
+        }
+
+        streams.incrementAndGet();
+        inFlight.incrementAndGet();
+        ChunkSubscriber subscriber = new ChunkSubscriber(call, onText);
+        // 200: SSE lines to the subscriber; anything else: read the error body for checkStatus
+        HttpResponse.BodyHandler<String> handler = info -> info.statusCode() == 200
+                ? HttpResponse.BodySubscribers.fromLineSubscriber(subscriber, s -> "", StandardCharsets.UTF_8, null)
+                : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+        CompletableFuture<HttpResponse<String>> exchange = httpClient.sendAsync(request, handler);
+        call.exchange = exchange;
+        if (call.cancelled) {
+            exchange.cancel(true);
+        }
+        exchange.whenComplete((response, error) -> {
+            inFlight.decrementAndGet();
+            releaseCircuit(probe);
+            if (call.cancelled) {
+                streamsCancelled.incrementAndGet();
+                return;
+            }
+            if (call.done.isDone()) {
+                return;
+            }
+            try {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    throw new RuntimeException("Lỗi khi gọi Gemini API: " + cause.getMessage(), cause);
+                }
+                checkStatus(response.statusCode(), response.body(), probe);
+                call.done.complete(null);
+            } catch (RuntimeException e) {
+                failures.incrementAndGet();
+                System.err.println("[GeminiClient] Stream failed: " + e.getMessage());
+                call.done.completeExceptionally(e);
+            }
+        });
+        return call;
+    }
+
+    /**
+     * SSE lines of streamGenerateContent; the next line is requested only after onText returned
+     */
+    private class ChunkSubscriber implements Flow.Subscriber<String> {
+        private final StreamCall call;
+        private final Consumer<String> onText;
+
+        ChunkSubscriber(StreamCall call, Consumer<String> onText) {
+            this.call = call;
+            this.onText = onText;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            call.subscription = subscription;
+            if (call.cancelled) {
+                subscription.cancel();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onNext(String line) {
+            try {
+                if (line.startsWith("data:")) {
+                    String text = chunkText(objectMapper.readTree(line.substring(5).trim()));
+                    if (!text.isEmpty()) {
+                        onText.accept(text);
+                    }
+                }
+                call.subscription.request(1);
+            } catch (Exception e) {
+                if (!call.cancelled) {
+                    failures.incrementAndGet();
+                    call.fail(e);
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            if (!call.done.isDone()) {
+                call.fail(error);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            // The exchange future completes right after and checks the status
+        }
+    }
+
+    /**
+     * generateContent / streamGenerateContent request body
+     */
+    Map<String, Object> requestBody(String prompt) {
+        Map<String, Object> part = new HashMap<>();
+        part.put("text", prompt);
+        List<Map<String, Object>> parts = new ArrayList<>();
+        parts.add(part);
+        Map<String, Object> content = new HashMap<>();
+        content.put("parts", parts);
+        List<Map<String, Object>> contents = new ArrayList<>();
+        contents.add(content);
+
+        Map<String, Object> generationConfig = new HashMap<>();
+        generationConfig.put("temperature", 0.7);
+        generationConfig.put("topK", 40);
+        generationConfig.put("topP", 0.95);
+        generationConfig.put("maxOutputTokens", 1024);
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("contents", contents);
+        requestBody.put("generationConfig", generationConfig);
+        return requestBody;
+    }
+
+    /**
+     * Throws while the circuit is open; returns true when this call is the half-open probe
+     */
+    boolean acquireCircuit() {
+        long until = openUntilMillis;
+        if (until == 0) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now < until) {
+            shortCircuited.incrementAndGet();
+            throw new RateLimitedException(until - now);
+        }
+        if (!probeInFlight.compareAndSet(false, true)) {
+            // Another request is already probing; its answer reopens or closes the circuit
+            shortCircuited.incrementAndGet();
+            throw new RateLimitedException(1000);
+        }
+        return true;
+    }
+
+    private void releaseCircuit(boolean probe) {
+        if (probe) {
+            probeInFlight.set(false);
+        }
+    }
+
+    private void openCircuit(long delayMillis) {
+        openUntilMillis = System.currentTimeMillis() + delayMillis;
+        System.err.println("[GeminiClient] Rate limited (429), circuit open for " + formatDelay(delayMillis));
+    }
+
+    private String readAnswer(HttpResponse<String> response, boolean probe) {
+        checkStatus(response.statusCode(), response.body(), probe);
+        try {
+            return extractText(objectMapper.readTree(response.body()));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Invalid Gemini response: " + e.getMessage(), e);
+        }
+    }
+
+    private void checkStatus(int status, String body, boolean probe) {
+        if (status == 429) {
+            rateLimited.incrementAndGet();
+            long delayMillis = (long) Math.ceil(retryDelayMillis(body) * RETRY_BUFFER);
+            openCircuit(delayMillis);
+            throw new RateLimitedException(delayMillis);
+        }
+        // The half-open probe got through without a quota error: close the circuit.
+        // Other calls may have been sent before it opened; their answers say nothing about the quota now.
+        if (probe) {
+            openUntilMillis = 0;
+        }
+        if (status != 200) {
+            throw new RuntimeException("Gemini API error: " + status + " - " + body);
+        }
+    }
+
+    /**
+     * Text of the first candidate of a generateContent answer
+     */
+    String extractText(JsonNode root) {
+        if (root.hasNonNull("error")) {
+            throw new RuntimeException("Gemini API error in response: " + root.path("error").path("message").asText("Unknown error"));
+        }
+        JsonNode candidates = root.path("candidates");
+        if (!candidates.isArray() || candidates.isEmpty()) {
+            String reason = root.path("promptFeedback").path("blockReason").asText(null);
+            if (reason != null) {
+                throw new RuntimeException("Gemini API blocked the request: " + reason);
+            }
+            throw new RuntimeException("No candidates in Gemini response. Response may have been blocked by safety filters.");
+        }
+        JsonNode candidate = candidates.get(0);
+        String finishReason = candidate.path("finishReason").asText(null);
+        if ("SAFETY".equals(finishReason) || "RECITATION".equals(finishReason)) {
+            throw new RuntimeException("Gemini API blocked the response due to safety filters. Finish reason: " + finishReason);
+        }
+        JsonNode parts = candidate.path("content").path("parts");
+        if (!parts.isArray() || parts.isEmpty()) {
+            throw new RuntimeException("No parts in Gemini response. The response may have been blocked or filtered.");
+        }
+        String text = parts.get(0).path("text").asText("");
+        if (text.trim().isEmpty()) {
+            throw new RuntimeException("Empty response from Gemini");
+        }
+        return text.trim();
+    }
+
+    /**
+     * Text of one streamGenerateContent chunk; may be empty (e.g. the last chunk only carries finishReason)
+     */
+    String chunkText(JsonNode root) {
+        if (root.hasNonNull("error")) {
+            throw new RuntimeException("Gemini API error in response: " + root.path("error").path("message").asText("Unknown error"));
+        }
+        String blockReason = root.path("promptFeedback").path("blockReason").asText(null);
+        if (blockReason != null) {
+            throw new RuntimeException("Gemini API blocked the request: " + blockReason);
+        }
+        JsonNode candidate = root.path("candidates").path(0);
+        String finishReason = candidate.path("finishReason").asText(null);
+        if ("SAFETY".equals(finishReason) || "RECITATION".equals(finishReason)) {
+            throw new RuntimeException("Gemini API blocked the response due to safety filters. Finish reason: " + finishReason);
+        }
+        StringBuilder text = new StringBuilder();
+        for (JsonNode part : candidate.path("content").path("parts")) {
+            text.append(part.path("text").asText(""));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Delay asked for by a 429 body: RetryInfo.retryDelay ("25s" or {seconds}) wins over "Please retry in 25.7s"
+     */
+    long retryDelayMillis(String body) {
+        long delayMillis = DEFAULT_RETRY_MILLIS;
+        try {
+            JsonNode error = objectMapper.readTree(body).path("error");
+            String message = error.path("message").asText("");
+            int at = message.indexOf("Please retry in ");
+            if (at >= 0) {
+                String delay = message.substring(at + "Please retry in ".length()).split("s", 2)[0].trim();
+                delayMillis = (long) Math.ceil(Double.parseDouble(delay) * 1000);
+            }
+            for (JsonNode detail : error.path("details")) {
+                if (!"type.googleapis.com/google.rpc.RetryInfo".equals(detail.path("@type").asText())) {
+                    continue;
+                }
+                JsonNode retryDelay = detail.path("retryDelay");
+                if (retryDelay.isTextual()) {
+                    delayMillis = (long) Math.ceil(Double.parseDouble(retryDelay.asText().replace("s", "").trim()) * 1000);
+                } else if (retryDelay.has("seconds")) {
+                    delayMillis = retryDelay.path("seconds").asLong() * 1000 + retryDelay.path("nanos").asLong() / 1_000_000;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("[GeminiClient] Could not parse retry delay, using default: " + e.getMessage());
+        }
+        return delayMillis;
+    }
+
+    static String formatDelay(long millis) {
+        long seconds = Math.max(1, (millis + 999) / 1000);
+        return seconds >= 60
+                ? String.format("%d phút %d giây", seconds / 60, seconds % 60)
+                : String.format("%d giây", seconds);
+    }
+
+    public Map<String, Object> getStats() {
+        long until = openUntilMillis;
+        long now = System.currentTimeMillis();
+        long n = calls.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("configured", isConfigured());
+        stats.put("model", model);
+        stats.put("circuit", until == 0 ? "CLOSED" : now < until ? "OPEN" : "HALF_OPEN");
+        stats.put("openForMillis", until == 0 ? 0 : Math.max(0, until - now));
+        stats.put("calls", n);
+        stats.put("inFlight", inFlight.get());
+        stats.put("failures", failures.get());
+        stats.put("rateLimited", rateLimited.get());
+        stats.put("shortCircuited", shortCircuited.get());
+        stats.put("avgCallMillis", n == 0 ? 0 : callNanos.get() / n / 1_000_000);
+        stats.put("streams", streams.get());
+        stats.put("streamsCancelled", streamsCancelled.get());
+        return stats;
+    }
+}
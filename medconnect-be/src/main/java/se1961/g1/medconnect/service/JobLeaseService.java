@@ -0,0 +1,69 @@
+package se1961.g1.medconnect.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import se1961.g1.medconnect.pojo.JobLease;
+import se1961.g1.medconnect.repository.JobLeaseRepository;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Lease rows for @Scheduled jobs that must run on one node at a time (see JobLease).
+ * Leases are renewed on every run by the holder and taken over by another node once expired.
+ */
+@Service
+public class JobLeaseService {
+
+    @Autowired
+    private JobLeaseRepository jobLeaseRepository;
+
+    // Unique per JVM: host name for readability + random suffix for several nodes on one host
+    private final String nodeId = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    /**
+     * Take or renew the lease on a job for the given duration. Returns false when another node holds it.
+     */
+    public boolean tryAcquire(String job, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        if (jobLeaseRepository.acquire(job, nodeId, now, now.plus(lease)) == 1) {
+            return true;
+        }
+        if (jobLeaseRepository.existsById(job)) {
+            return false;
+        }
+        // First run of this job anywhere: create the row, then compete for it like everyone else
+        try {
+            jobLeaseRepository.saveAndFlush(new JobLease(job));
+        } catch (DataIntegrityViolationException e) {
+            // Another node created it first
+        }
+        return jobLeaseRepository.acquire(job, nodeId, now, now.plus(lease)) == 1;
+    }
+
+    public LocalDateTime getCursor(String job) {
+        return jobLeaseRepository.findCursor(job);
+    }
+
+    /**
+     * Record progress; ignored if the lease was lost to another node in the meantime
+     */
+    public boolean advanceCursor(String job, LocalDateTime cursorAt) {
+        return jobLeaseRepository.advanceCursor(job, nodeId, cursorAt) == 1;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "node";
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package se1961.g1.medconnect.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Local stand-in for Resend (email.transport=log): prints the message instead of sending it
+ */
+@Service
+@ConditionalOnProperty(name = "email.transport", havingValue = "log")
+public class LoggingEmailSender implements EmailSender {
+
+    @Override
+    public String send(Message message) {
+        String id = "local-" + UUID.randomUUID();
+        System.out.println("[LoggingEmailSender] " + id + " to=" + message.to()
+                + " subject=" + message.subject() + " html=" + message.html().length() + " chars");
+        return id;
+    }
+
+    @Override
+    public List<String> sendBatch(List<Message> messages) {
+        List<String> ids = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            ids.add(send(message));
+        }
+        return ids;
+    }
+}
@@ -1,18 +1,34 @@
 package se1961.g1.medconnect.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import se1961.g1.medconnect.pojo.MedicalRecord;
+import se1961.g1.medconnect.pojo.MedicalRecordEntry;
 import se1961.g1.medconnect.pojo.Patient;
 import se1961.g1.medconnect.pojo.User;
+import se1961.g1.medconnect.repository.MedicalRecordEntryRepository;
 import se1961.g1.medconnect.repository.MedicalRecordRepository;
+import se1961.g1.medconnect.repository.PatientPhotoRow;
 import se1961.g1.medconnect.repository.PatientRepository;
 import se1961.g1.medconnect.repository.UserRepository;
+import se1961.g1.medconnect.util.EmrJsonStreams;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @Service
 public class MedicalRecordService {
@@ -26,8 +42,17 @@ public class MedicalRecordService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private MedicalRecordEntryRepository medicalRecordEntryRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // SQL Server allows at most 2100 parameters per statement
+    private static final int IN_BATCH_SIZE = 1000;
+
     /**
      * Get medical record by patient's Firebase UID
      */
@@ -51,6 +76,8 @@ public class MedicalRecordService {
      * Create new medical record for patient
      * Auto-sync basic info from Patient entity
      */
+    @Transactional
+    @SuppressWarnings("unchecked")
     public MedicalRecord createForPatient(String firebaseUid, String detail) {
         User user = userRepository.findByFirebaseUid(firebaseUid)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
@@ -64,8 +91,12 @@ public class MedicalRecordService {
         }
 
         // Parse incoming detail and merge with Patient data
+        List<Object> initialEntries = null;
         try {
             Map<String, Object> emrData = objectMapper.readValue(detail, Map.class);
+
+            // Visit entries are stored as MedicalRecordEntry rows, not inside detail
+            Object entries = emrData.remove("medical_records");
             @SuppressWarnings("unchecked")
             Map<String, Object> patientProfile = (Map<String, Object>) emrData.get("patient_profile");
             
@@ -101,6 +132,7 @@ public class MedicalRecordService {
             
             // Convert back to JSON
             detail = objectMapper.writeValueAsString(emrData);
+            initialEntries = entries instanceof List<?> ? (List<Object>) entries : new ArrayList<>();
         } catch (Exception e) {
             System.err.println("Warning: Could not auto-sync patient data: " + e.getMessage());
             // Continue with original detail if sync fails
@@ -111,58 +143,250 @@ public class MedicalRecordService {
         record.setDetail(detail);
         record.setCreatedAt(LocalDateTime.now());
         record.setUpdatedAt(LocalDateTime.now());
+        record.setEntriesMigrated(initialEntries != null ? true : null);
+        extractProfileFields(record);
 
-        return medicalRecordRepository.save(record);
+        MedicalRecord saved = medicalRecordRepository.save(record);
+        if (initialEntries != null) {
+            for (Object entry : initialEntries) {
+                appendEntry(saved, entry);
+            }
+        }
+        return saved;
     }
 
     /**
-     * Update patient profile section only
+     * Update patient profile section only.
+     * expectedVersion (optional) is the version the client read; a stale version is rejected
+     * instead of silently overwriting another update. Visit entries in the payload are ignored:
+     * they are append-only rows managed by addMedicalRecordEntry.
      */
-    public MedicalRecord updatePatientProfile(String firebaseUid, String newDetail) {
+    public MedicalRecord updatePatientProfile(String firebaseUid, String newDetail, Long expectedVersion) {
         MedicalRecord record = getByPatientFirebaseUid(firebaseUid);
         if (record == null) {
             throw new IllegalArgumentException("Medical record not found");
         }
+        if (expectedVersion != null && !expectedVersion.equals(record.getVersion())) {
+            throw new OptimisticLockingFailureException("Medical record was modified by someone else, please reload");
+        }
+
+        try {
+            JsonNode root = objectMapper.readTree(newDetail);
+            if (root instanceof ObjectNode profile) {
+                profile.remove("medical_records");
+                newDetail = objectMapper.writeValueAsString(profile);
+            }
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid medical record detail");
+        }
 
         record.setDetail(newDetail);
         record.setUpdatedAt(LocalDateTime.now());
+        extractProfileFields(record);
 
+        // @Version also rejects a concurrent save between our read and this write
         return medicalRecordRepository.save(record);
     }
 
     /**
-     * Add a new medical record entry (doctor adds after consultation)
+     * Add a new medical record entry (doctor adds after consultation).
+     * Appends one row; the profile blob is neither read nor rewritten.
      */
-    @SuppressWarnings("unchecked")
-    public MedicalRecord addMedicalRecordEntry(Long patientUserId, Object entryData) {
+    public MedicalRecordEntry addMedicalRecordEntry(Long patientUserId, Object entryData) {
         MedicalRecord record = getByPatientUserId(patientUserId);
         if (record == null) {
             throw new IllegalArgumentException("Medical record not found");
         }
+        return appendEntry(record, entryData);
+    }
 
+    private MedicalRecordEntry appendRawEntry(MedicalRecord record, String entryJson) {
         try {
-            // Parse existing detail
-            String currentDetail = record.getDetail();
-            Map<String, Object> emrData = objectMapper.readValue(currentDetail, Map.class);
-
-            // Get medical_records array
-            List<Object> medicalRecords = (List<Object>) emrData.get("medical_records");
-            if (medicalRecords == null) {
-                medicalRecords = new java.util.ArrayList<>();
-                emrData.put("medical_records", medicalRecords);
+            return appendEntry(record, objectMapper.readTree(entryJson));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to add medical record entry", e);
+        }
+    }
+
+    private MedicalRecordEntry appendEntry(MedicalRecord record, Object entryData) {
+        try {
+            JsonNode node = entryData instanceof JsonNode n ? n : objectMapper.valueToTree(entryData);
+            MedicalRecordEntry entry = new MedicalRecordEntry();
+            entry.setRecordId(record.getRecordId());
+            entry.setPatientUserId(record.getPatient().getUserId());
+            entry.setAppointmentId(appointmentIdOf(node));
+            entry.setContent(objectMapper.writeValueAsString(node));
+            return medicalRecordEntryRepository.save(entry);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to add medical record entry", e);
+        }
+    }
+
+    private static Long appointmentIdOf(JsonNode entry) {
+        JsonNode id = entry.path("appointment_id");
+        if (id.isIntegralNumber()) {
+            return id.asLong();
+        }
+        if (id.isTextual()) {
+            try {
+                return Long.parseLong(id.asText().trim());
+            } catch (NumberFormatException e) {
+                return null;
             }
+        }
+        return null;
+    }
+
+    /**
+     * Whether the patient has an EMR (without loading its detail)
+     */
+    public boolean hasRecord(Long patientUserId) {
+        return medicalRecordRepository.existsByPatientUserId(patientUserId);
+    }
 
-            // Add new entry
-            medicalRecords.add(entryData);
+    /**
+     * All visit entries of a patient as raw JSON, oldest first (indexed seek on patientUserId).
+     * Entries are stored serialized, so callers can stream them out without parsing.
+     */
+    public List<String> getEntryContents(Long patientUserId) {
+        List<String> contents = new ArrayList<>();
+        for (MedicalRecordEntry entry : medicalRecordEntryRepository.findByPatientUserIdOrderByEntryIdAsc(patientUserId)) {
+            contents.add(entry.getContent());
+        }
+        return contents;
+    }
 
-            // Convert back to JSON
-            String updatedDetail = objectMapper.writeValueAsString(emrData);
-            record.setDetail(updatedDetail);
-            record.setUpdatedAt(LocalDateTime.now());
+    /**
+     * Raw JSON of the entry written for an appointment; falls back to the patient's latest entry
+     */
+    public String getEntryContentForAppointment(Long appointmentId, Long patientUserId) {
+        Optional<MedicalRecordEntry> entry = medicalRecordEntryRepository.findFirstByAppointmentIdOrderByEntryIdDesc(appointmentId);
+        if (entry.isEmpty()) {
+            entry = medicalRecordEntryRepository.findFirstByPatientUserIdOrderByEntryIdDesc(patientUserId);
+        }
+        return entry.map(MedicalRecordEntry::getContent).orElse(null);
+    }
 
-            return medicalRecordRepository.save(record);
+    /**
+     * Full EMR JSON as clients know it: profile detail + medical_records rebuilt from entry rows
+     */
+    public String composeDetail(MedicalRecord record) throws Exception {
+        Long patientUserId = record.getPatient() != null ? record.getPatient().getUserId() : null;
+        List<String> entries = patientUserId != null ? getEntryContents(patientUserId) : List.of();
+        return EmrJsonStreams.composeDetail(record.getDetail(), entries);
+    }
+
+    /**
+     * Detached copy of the record whose detail includes medical_records (for API responses)
+     */
+    public MedicalRecord withEntries(MedicalRecord record) throws Exception {
+        MedicalRecord view = new MedicalRecord();
+        view.setRecordId(record.getRecordId());
+        view.setPatient(record.getPatient());
+        view.setDetail(composeDetail(record));
+        view.setIdPhotoUrl(record.getIdPhotoUrl());
+        view.setProfileIndexed(record.getProfileIndexed());
+        view.setEntriesMigrated(record.getEntriesMigrated());
+        view.setVersion(record.getVersion());
+        view.setCreatedAt(record.getCreatedAt());
+        view.setUpdatedAt(record.getUpdatedAt());
+        return view;
+    }
+
+    /**
+     * ID photo URL per patient user ID, batch-fetched from the extracted column (no JSON parsing)
+     */
+    public Map<Long, String> getIdPhotoUrls(Collection<Long> patientUserIds) {
+        Map<Long, String> photos = new HashMap<>();
+        List<Long> ids = new ArrayList<>(patientUserIds);
+        for (int i = 0; i < ids.size(); i += IN_BATCH_SIZE) {
+            List<Long> batch = ids.subList(i, Math.min(i + IN_BATCH_SIZE, ids.size()));
+            for (PatientPhotoRow row : medicalRecordRepository.findIdPhotoUrls(batch)) {
+                if (row.getIdPhotoUrl() != null) {
+                    photos.put(row.getPatientId(), row.getIdPhotoUrl());
+                }
+            }
+        }
+        return photos;
+    }
+
+    /**
+     * Copy hot fields out of detail.patient_profile into their own columns
+     */
+    void extractProfileFields(MedicalRecord record) {
+        String idPhotoUrl = null;
+        try {
+            if (record.getDetail() != null) {
+                JsonNode photo = objectMapper.readTree(record.getDetail()).path("patient_profile").path("id_photo_url");
+                if (photo.isTextual() && !photo.asText().isBlank()) {
+                    idPhotoUrl = photo.asText();
+                }
+            }
         } catch (Exception e) {
-            throw new RuntimeException("Failed to add medical record entry", e);
+            System.err.println("Warning: Could not extract profile fields from EMR: " + e.getMessage());
+        }
+        record.setIdPhotoUrl(idPhotoUrl);
+        record.setProfileIndexed(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyRecords() {
+        migrateLegacyEntries();
+        backfillProfileFields();
+    }
+
+    /**
+     * One-off move of medical_records arrays from detail into MedicalRecordEntry rows
+     */
+    @SuppressWarnings("unchecked")
+    public void migrateLegacyEntries() {
+        try {
+            List<Long> ids = medicalRecordRepository.findUnmigratedIds();
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            for (Long id : ids) {
+                try {
+                    tx.executeWithoutResult(status -> medicalRecordRepository.findById(id).ifPresent(record -> {
+                        try {
+                            if (record.getDetail() != null) {
+                                EmrJsonStreams.forEachArrayElement(record.getDetail(), EmrJsonStreams.MEDICAL_RECORDS,
+                                        entry -> appendRawEntry(record, entry));
+                                record.setDetail(EmrJsonStreams.withoutField(record.getDetail(), EmrJsonStreams.MEDICAL_RECORDS));
+                            }
+                            record.setEntriesMigrated(true);
+                            medicalRecordRepository.save(record);
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }));
+                } catch (Exception e) {
+                    System.err.println("[MedicalRecordService] Entry migration failed for record " + id + ": " + e.getMessage());
+                }
+            }
+            if (!ids.isEmpty()) {
+                System.out.println("[MedicalRecordService] Migrated entries of " + ids.size() + " records");
+            }
+        } catch (Exception e) {
+            System.err.println("[MedicalRecordService] Entry migration failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * One-off backfill of records written before profile fields were extracted
+     */
+    public void backfillProfileFields() {
+        try {
+            List<Long> ids = medicalRecordRepository.findUnindexedIds();
+            for (Long id : ids) {
+                medicalRecordRepository.findById(id).ifPresent(record -> {
+                    extractProfileFields(record);
+                    medicalRecordRepository.updateProfileFields(id, record.getIdPhotoUrl());
+                });
+            }
+            if (!ids.isEmpty()) {
+                System.out.println("[MedicalRecordService] Backfilled profile fields of " + ids.size() + " records");
+            }
+        } catch (Exception e) {
+            System.err.println("[MedicalRecordService] Profile backfill failed: " + e.getMessage());
         }
     }
 
@@ -176,13 +400,20 @@ public class MedicalRecordService {
     /**
      * Delete medical record
      */
+    @Transactional
     public void deleteRecord(Long recordId) {
-        medicalRecordRepository.deleteById(recordId);
+        medicalRecordRepository.findById(recordId).ifPresent(record -> {
+            if (record.getPatient() != null) {
+                medicalRecordEntryRepository.deleteByPatientUserId(record.getPatient().getUserId());
+            }
+            medicalRecordRepository.delete(record);
+        });
     }
 
     /**
      * Delete EMR by patient Firebase UID
      */
+    @Transactional
     public void deleteByPatientFirebaseUid(String firebaseUid) {
         User user = userRepository.findByFirebaseUid(firebaseUid)
             .orElseThrow(() -> new IllegalArgumentException("User not found"));
@@ -193,6 +424,7 @@ public class MedicalRecordService {
         MedicalRecord mr = medicalRecordRepository.findByPatient(patient)
             .orElseThrow(() -> new IllegalArgumentException("Medical record not found"));
 
+        medicalRecordEntryRepository.deleteByPatientUserId(patient.getUserId());
         medicalRecordRepository.delete(mr);
     }
 }
@@ -8,6 +8,7 @@ import org.springframework.transaction.annotation.Transactional;
 import se1961.g1.medconnect.pojo.Patient;
 import se1961.g1.medconnect.pojo.Appointment;
 import se1961.g1.medconnect.pojo.Payment;
+import se1961.g1.medconnect.repository.MedicalRecordEntryRepository;
 import se1961.g1.medconnect.repository.PatientRepository;
 import se1961.g1.medconnect.repository.AppointmentRepository;
 import se1961.g1.medconnect.repository.PaymentRepository;
@@ -39,6 +40,18 @@ public class PatientService {
     @Autowired
     private FirebaseService firebaseService;
 
+    @Autowired
+    private FirebaseTokenCache tokenCache;
+
+    @Autowired
+    private MedicalRecordEntryRepository medicalRecordEntryRepository;
+
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private SlotBookingService slotBookingService;
+
     /**
      * Get patient by Firebase UID
      */
@@ -91,11 +104,17 @@ public class PatientService {
 
         // 4. Delete appointments (cascade will handle video call sessions)
         appointmentRepository.deleteAll(appointments);
+        appointments.forEach(availabilityIndex::evict);
+        appointments.stream()
+                .filter(a -> AvailabilityIndex.isActive(a.getStatus()))
+                .forEach(slotBookingService::release);
 
         // 5. Delete feedbacks - handled by cascade or JPA will handle orphan removal
         // Feedbacks don't have cascade, but Patient entity has @OneToMany with mappedBy
 
         // 6. Delete MR (MedicalRecord) - handled by cascade in Patient entity (@OneToOne cascade = CascadeType.ALL)
+        //    EMR visit entries are plain rows keyed by patient, delete them explicitly
+        medicalRecordEntryRepository.deleteByPatientUserId(patient.getUserId());
 
         // 7. Delete Firebase user
         if (patient.getFirebaseUid() != null && !patient.getFirebaseUid().isEmpty()) {
@@ -114,6 +133,7 @@ public class PatientService {
 
         // 8. Delete patient (this will cascade delete MR due to @OneToOne cascade = CascadeType.ALL)
         patientRepository.delete(patient);
+        tokenCache.invalidateUser(patient.getFirebaseUid());
     }
 
     /**
@@ -0,0 +1,27 @@
+package se1961.g1.medconnect.service;
+
+import java.util.Map;
+
+/**
+ * Asks the payment gateway what happened to a checkout, used by PaymentReconciliationService.
+ * VnpayGatewayClient (querydr API) in production; tests plug in a fake.
+ */
+public interface PaymentGatewayClient {
+
+    enum Result {
+        PAID,
+        FAILED,
+        // Still being processed by the gateway: look again on the next run
+        PENDING,
+        // Gateway has no such transaction (patient never paid / closed the tab)
+        NOT_FOUND
+    }
+
+    /**
+     * amount in VND x 100 as the gateway reports it (null when unknown);
+     * fields = the gateway's answer in vnp_* form, kept for audit
+     */
+    record GatewayStatus(Result result, Long amount, Map<String, String> fields) {}
+
+    GatewayStatus queryStatus(String txnRef) throws Exception;
+}
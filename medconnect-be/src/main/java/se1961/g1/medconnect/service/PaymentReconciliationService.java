@@ -0,0 +1,291 @@
+package se1961.g1.medconnect.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se1961.g1.medconnect.dto.ReconcileRow;
+import se1961.g1.medconnect.enums.PaymentStatus;
+import se1961.g1.medconnect.pojo.Payment;
+import se1961.g1.medconnect.repository.PaymentRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Settles payments left PENDING (IPN lost, patient closed the tab) by asking the gateway.
+ * - PENDING rows older than payment.reconcile.older-than are read in keyset pages on paymentId
+ *   (projection only, no locks held while the gateway is queried).
+ * - Each page is queried on a small bounded pool, then applied in one short transaction
+ *   through PaymentService.applyGatewayStatus, the same transitions as the IPN.
+ * - Runs on one node at a time (JobLease); an admin can also trigger a run.
+ */
+@Service
+public class PaymentReconciliationService {
+
+    static final String JOB = "payment-reconciliation";
+
+    /**
+     * Outcome of one run
+     */
+    public record RunReport(int checked, int paid, int failed, int unchanged, int errors, long millis) {
+        public double perSecond() {
+            return millis == 0 ? checked : checked * 1000.0 / millis;
+        }
+    }
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentGatewayClient gatewayClient;
+
+    @Autowired
+    private JobLeaseService jobLeaseService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${payment.reconcile.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${payment.reconcile.older-than:30m}")
+    private String olderThanValue = "30m";
+
+    @Value("${payment.reconcile.batch-size:200}")
+    private int batchSize = 200;
+
+    @Value("${payment.reconcile.concurrency:8}")
+    private int concurrency = 8;
+
+    @Value("${payment.reconcile.lease:30m}")
+    private String leaseValue = "30m";
+
+    private Duration olderThan;
+    private Duration lease;
+    private ExecutorService executor;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong totalChecked = new AtomicLong();
+    private final AtomicLong totalPaid = new AtomicLong();
+    private final AtomicLong totalFailed = new AtomicLong();
+    private final AtomicLong totalErrors = new AtomicLong();
+    private volatile RunReport lastRun;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @PostConstruct
+    void init() {
+        olderThan = DurationStyle.detectAndParse(olderThanValue);
+        lease = DurationStyle.detectAndParse(leaseValue);
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread thread = new Thread(r, "payment-reconcile-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Scheduled(fixedDelayString = "${payment.reconcile.interval-ms:600000}", initialDelayString = "${payment.reconcile.initial-delay-ms:120000}")
+    public void scheduledRun() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            runIfLeader();
+        } catch (Exception e) {
+            System.err.println("[Reconcile] Run failed: " + e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Admin "reconcile now": runs in the background (a run can take minutes).
+     * Returns false when a run is already in progress on this node.
+     */
+    public boolean triggerNow() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                runIfLeader();
+            } catch (Exception e) {
+                System.err.println("[Reconcile] Run failed: " + e.getMessage());
+            } finally {
+                running.set(false);
+            }
+        }, "payment-reconcile-manual");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Run now unless another node is already reconciling (returns null then)
+     */
+    public RunReport runIfLeader() {
+        if (!jobLeaseService.tryAcquire(JOB, lease)) {
+            return null;
+        }
+        return reconcile(LocalDateTime.now().minus(olderThan));
+    }
+
+    RunReport reconcile(LocalDateTime before) {
+        long start = System.currentTimeMillis();
+        int checked = 0, paid = 0, failed = 0, errors = 0;
+        long afterId = 0;
+        while (true) {
+            List<ReconcileRow> rows = paymentRepository.findPendingForReconcile(before, afterId, PageRequest.of(0, batchSize));
+            if (rows.isEmpty()) {
+                break;
+            }
+            afterId = rows.get(rows.size() - 1).getPaymentId();
+
+            List<ReconcileRow> queryable = rows.stream().filter(row -> row.getTransactionId() != null).toList();
+            Map<Long, PaymentGatewayClient.GatewayStatus> statuses = queryAll(queryable);
+            errors += queryable.size() - statuses.size();
+            // The txnRef each answer is about: a new checkout attempt may replace it before the answer is applied
+            Map<Long, String> txnRefs = new HashMap<>();
+            for (ReconcileRow row : queryable) {
+                txnRefs.put(row.getPaymentId(), row.getTransactionId());
+            }
+            Map<PaymentStatus, Integer> applied = apply(statuses, txnRefs);
+            paid += applied.getOrDefault(PaymentStatus.PAID, 0);
+            failed += applied.getOrDefault(PaymentStatus.FAILED, 0);
+            checked += rows.size();
+
+            if (rows.size() < batchSize) {
+                break;
+            }
+        }
+
+        RunReport report = new RunReport(checked, paid, failed, checked - paid - failed - errors, errors,
+                System.currentTimeMillis() - start);
+        lastRun = report;
+        runs.incrementAndGet();
+        totalChecked.addAndGet(checked);
+        totalPaid.addAndGet(paid);
+        totalFailed.addAndGet(failed);
+        totalErrors.addAndGet(errors);
+        if (checked > 0) {
+            System.out.printf("[Reconcile] %d pending payment(s) checked in %d ms (%.1f/s): %d paid, %d failed, %d errors%n",
+                    checked, report.millis(), report.perSecond(), paid, failed, errors);
+        }
+        return report;
+    }
+
+    /**
+     * Ask the gateway about one page in parallel; payments whose query failed are left out.
+     * Rows without a txnRef never reach here: with nothing to ask the gateway about, they stay
+     * PENDING (unchanged) rather than being cancelled on a guess; the slot hold expiry frees the slot.
+     */
+    private Map<Long, PaymentGatewayClient.GatewayStatus> queryAll(List<ReconcileRow> rows) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(rows.size());
+        Map<Long, PaymentGatewayClient.GatewayStatus> statuses = new ConcurrentHashMap<>();
+        for (ReconcileRow row : rows) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    statuses.put(row.getPaymentId(), gatewayClient.queryStatus(row.getTransactionId()));
+                } catch (Exception e) {
+                    System.err.println("[Reconcile] Query failed for " + row.getTransactionId() + ": " + e.getMessage());
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        return statuses;
+    }
+
+    /**
+     * Apply one page in a single short transaction. If an IPN for the same txnRef commits meanwhile
+     * (unique key), fall back to one transaction per payment so the rest of the page still goes through.
+     */
+    private Map<PaymentStatus, Integer> apply(Map<Long, PaymentGatewayClient.GatewayStatus> statuses, Map<Long, String> txnRefs) {
+        Map<PaymentStatus, Integer> counts = new HashMap<>();
+        if (statuses.isEmpty()) {
+            return counts;
+        }
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        try {
+            tx.executeWithoutResult(status -> applyAll(paymentRepository.findAllById(statuses.keySet()), statuses, txnRefs, counts));
+        } catch (DataIntegrityViolationException e) {
+            counts.clear();
+            for (Long paymentId : statuses.keySet()) {
+                try {
+                    tx.executeWithoutResult(status -> applyAll(
+                            paymentRepository.findAllById(List.of(paymentId)), statuses, txnRefs, counts));
+                } catch (DataIntegrityViolationException raced) {
+                    // Applied by the IPN
+                }
+            }
+        }
+        return counts;
+    }
+
+    private void applyAll(List<Payment> payments, Map<Long, PaymentGatewayClient.GatewayStatus> statuses,
+                          Map<Long, String> txnRefs, Map<PaymentStatus, Integer> counts) {
+        Map<PaymentStatus, Integer> applied = new HashMap<>();
+        for (Payment payment : payments) {
+            PaymentStatus result = paymentService.applyGatewayStatus(payment, txnRefs.get(payment.getPaymentId()),
+                    statuses.get(payment.getPaymentId()));
+            if (result != null) {
+                applied.merge(result, 1, Integer::sum);
+            }
+        }
+        // Only counted once the transaction body went through
+        applied.forEach((status, n) -> counts.merge(status, n, Integer::sum));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("olderThan", olderThan.toString());
+        stats.put("running", running.get());
+        stats.put("runs", runs.get());
+        stats.put("checked", totalChecked.get());
+        stats.put("paid", totalPaid.get());
+        stats.put("failed", totalFailed.get());
+        stats.put("errors", totalErrors.get());
+        RunReport last = lastRun;
+        if (last != null) {
+            Map<String, Object> lastStats = new HashMap<>();
+            lastStats.put("checked", last.checked());
+            lastStats.put("paid", last.paid());
+            lastStats.put("failed", last.failed());
+            lastStats.put("unchanged", last.unchanged());
+            lastStats.put("errors", last.errors());
+            lastStats.put("millis", last.millis());
+            lastStats.put("perSecond", last.perSecond());
+            stats.put("lastRun", lastStats);
+        }
+        return stats;
+    }
+}
@@ -1,11 +1,18 @@
 package se1961.g1.medconnect.service;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se1961.g1.medconnect.dto.AdminPaymentRow;
+import se1961.g1.medconnect.dto.KeysetPage;
 import se1961.g1.medconnect.dto.PaymentRequest;
 import se1961.g1.medconnect.dto.PaymentResponse;
 import se1961.g1.medconnect.enums.PaymentStatus;
@@ -13,16 +20,18 @@ import se1961.g1.medconnect.pojo.Appointment;
 import se1961.g1.medconnect.pojo.Doctor;
 import se1961.g1.medconnect.pojo.Patient;
 import se1961.g1.medconnect.pojo.Payment;
+import se1961.g1.medconnect.pojo.PaymentIpnLog;
 import se1961.g1.medconnect.repository.AppointmentRepository;
 import se1961.g1.medconnect.repository.PatientRepository;
+import se1961.g1.medconnect.repository.PaymentIpnLogRepository;
 import se1961.g1.medconnect.repository.PaymentRepository;
+import se1961.g1.medconnect.util.HmacSigner;
+import se1961.g1.medconnect.util.KeysetCursor;
+import se1961.g1.medconnect.util.VnpayQuery;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Getter
@@ -41,17 +50,57 @@ public class PaymentService {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private SlotBookingService slotBookingService;
+
+    @Autowired
+    private SlotHoldService slotHoldService;
+
     @Value("${vnpay.tmnCode}")
     private String vnpTmnCode;
 
     @Value("${vnpay.hashSecret}")
     private String vnpHashSecret;
 
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile HmacSigner signer;
+
     @Value("${vnpay.url}")
     private String vnpPayUrl;
 
     @Value("${vnpay.returnUrl}")
-    private String vnpReturnUrl;    public PaymentResponse initiatePayment(String firebaseUid, PaymentRequest request) throws Exception {
+    private String vnpReturnUrl;
+
+    @Autowired
+    private PaymentIpnLogRepository ipnLogRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Fields kept in Payment.gatewayResponse
+    private static final List<String> GATEWAY_RESPONSE_FIELDS = List.of(
+            "vnp_ResponseCode", "vnp_TransactionStatus", "vnp_TransactionNo", "vnp_BankCode",
+            "vnp_BankTranNo", "vnp_CardType", "vnp_PayDate", "vnp_Amount", "vnp_TxnRef");
+
+    // TxnRefs applied recently on this node: VNPay retry storms are answered without a DB round trip
+    private static final int RECENT_TXN_REFS = 10000;
+    private final Map<String, Boolean> recentTxnRefs = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > RECENT_TXN_REFS;
+        }
+    };
+
+    private final AtomicLong ipnReceived = new AtomicLong();
+    private final AtomicLong ipnApplied = new AtomicLong();
+    private final AtomicLong ipnDuplicates = new AtomicLong();
+    private final AtomicLong ipnRejected = new AtomicLong();
+
+    public PaymentResponse initiatePayment(String firebaseUid, PaymentRequest request) throws Exception {
         // Get appointment
         Appointment appointment = appointmentRepository.findById(request.getAppointmentId())
                 .orElseThrow(() -> new Exception("Appointment not found"));
@@ -66,6 +115,9 @@ public class PaymentService {
         if (existingPayment.isPresent() && existingPayment.get().getStatus() == PaymentStatus.PAID) {
             throw new Exception("Appointment already paid");
         }
+        if (appointment.getStatus() == se1961.g1.medconnect.enums.AppointmentStatus.CANCELLED) {
+            throw new Exception("Lịch hẹn đã hết thời gian giữ chỗ hoặc đã bị hủy, vui lòng đặt lịch lại");
+        }
         
         // Calculate consultation fee based on appointment type and doctor's speciality
         double consultationFee = calculateConsultationFee(appointment);
@@ -83,12 +135,17 @@ public class PaymentService {
             payment.setPaymentMethod("BANK_TRANSFER");
         }
         
+        // TxnRef and vnp_CreateDate share one instant: querydr derives vnp_TransactionDate from the TxnRef
+        long createdAtMillis = System.currentTimeMillis();
+        LocalDateTime createDate = LocalDateTime.ofInstant(java.time.Instant.ofEpochMilli(createdAtMillis), java.time.ZoneId.systemDefault());
         payment.setStatus(PaymentStatus.PENDING);
+        // Reconciliation measures staleness from here, not from createdAt
+        payment.setAttemptedAt(createDate);
         payment.setDescription("Thanh toán khám bệnh - " + appointment.getDoctor().getName());
         payment = paymentRepository.save(payment);
         
         // Generate invoice number
-        String vnpTxnRef = String.valueOf(payment.getPaymentId()) + "-" + System.currentTimeMillis();
+        String vnpTxnRef = String.valueOf(payment.getPaymentId()) + "-" + createdAtMillis;
 
 
         // Prepare checkout request
@@ -104,13 +161,15 @@ public class PaymentService {
         vnpParams.put("vnp_Locale", "vn");
         vnpParams.put("vnp_ReturnUrl", request.getReturnUrl() != null ? request.getReturnUrl() : vnpReturnUrl);
         vnpParams.put("vnp_IpAddr", "127.0.0.1");
-        vnpParams.put("vnp_CreateDate", LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMddHHmmss")));
+        // Keep the slot for the payment window and let VNPay refuse payments after it
+        java.time.format.DateTimeFormatter vnpDateFormat = java.time.format.DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+        LocalDateTime holdUntil = slotHoldService.extendForPayment(appointment);
+        vnpParams.put("vnp_CreateDate", createDate.format(vnpDateFormat));
+        vnpParams.put("vnp_ExpireDate", (holdUntil != null ? holdUntil : createDate.plus(slotHoldService.getPaymentTtl())).format(vnpDateFormat));
 
-        // ✅ Generate VNPAY signature
-        String vnpSecureHash = generateVnpSignature(vnpParams);
-        vnpParams.put("vnp_SecureHash", vnpSecureHash);
-
-        String paymentUrl = vnpPayUrl + "?" + buildQuery(vnpParams);
+        // ✅ Sign the canonical query and reuse it as the URL query
+        String query = VnpayQuery.canonical(vnpParams);
+        String paymentUrl = vnpPayUrl + "?" + query + "&vnp_SecureHash=" + signer().signHex(query);
 
         payment.setTransactionId(vnpTxnRef);
         paymentRepository.save(payment);
@@ -122,137 +181,337 @@ public class PaymentService {
         );
     }
 
-    private String generateVnpSignature(Map<String, String> params) {
+    String generateVnpSignature(Map<String, String> params) {
+        return signer().signHex(VnpayQuery.canonical(params));
+    }
+
+    // Keyed once per secret; the secret only changes in tests (setter)
+    private HmacSigner signer() {
+        HmacSigner current = signer;
+        if (current == null) {
+            current = HmacSigner.sha512(vnpHashSecret);
+            signer = current;
+        }
+        return current;
+    }
+
+    public void setVnpHashSecret(String vnpHashSecret) {
+        this.vnpHashSecret = vnpHashSecret;
+        this.signer = null;
+    }
+
+    /**
+     * Outcome of one IPN, with VNPay's RspCode (00 applied, 01 order not found, 02 already applied,
+     * 04 invalid amount, 97 invalid signature, 99 other error). payment is null unless the IPN was applied now.
+     */
+    public record IpnResult(String rspCode, String message, Long paymentId, Payment payment) {}
+
+    /**
+     * Verify, deduplicate and apply a VNPay notification (IPN or return URL).
+     * Retries of an IPN already applied are answered from memory / the PaymentIpnLog unique key
+     * without touching the payment again. The state change runs in one short transaction;
+     * emails go through the outbox and are sent after commit.
+     */
+    public IpnResult processIpn(Map<String, String> vnpResponse) {
+        ipnReceived.incrementAndGet();
+        String txnRef = vnpResponse.get("vnp_TxnRef");
+        if (txnRef == null || !verifySignature(vnpResponse)) {
+            ipnRejected.incrementAndGet();
+            System.err.println("⚠️ VNPay IPN rejected: invalid signature (TxnRef: " + txnRef + ")");
+            return new IpnResult("97", "Invalid signature", null, null);
+        }
+
+        Long paymentId = parsePaymentId(txnRef);
+        if (paymentId == null) {
+            ipnRejected.incrementAndGet();
+            return new IpnResult("01", "Order not found", null, null);
+        }
+        if (isRecentTxnRef(txnRef)) {
+            ipnDuplicates.incrementAndGet();
+            return new IpnResult("02", "Order already confirmed", paymentId, null);
+        }
+
         try {
-            List<String> fieldNames = new ArrayList<>(params.keySet());
-            Collections.sort(fieldNames);
-
-            StringBuilder hashData = new StringBuilder();
-            for (int i = 0; i < fieldNames.size(); i++) {
-                String fieldName = fieldNames.get(i);
-                String fieldValue = params.get(fieldName);
-                if (fieldValue != null && !fieldValue.isEmpty()) {
-                    hashData.append(URLEncoder.encode(fieldName, StandardCharsets.UTF_8));
-                    hashData.append('=');
-                    hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.UTF_8));
-                    if (i != fieldNames.size() - 1) {
-                        hashData.append('&');
-                    }
-                }
+            IpnResult result = new TransactionTemplate(transactionManager)
+                    .execute(status -> applyIpn(vnpResponse, txnRef, paymentId));
+            if ("00".equals(result.rspCode())) {
+                ipnApplied.incrementAndGet();
+                rememberTxnRef(txnRef);
+            } else if ("02".equals(result.rspCode())) {
+                ipnDuplicates.incrementAndGet();
+            } else {
+                ipnRejected.incrementAndGet();
             }
+            return result;
+        } catch (DataIntegrityViolationException e) {
+            // Same txnRef applied concurrently (other thread or node): its transaction won
+            if (ipnLogRepository.existsByTxnRef(txnRef)) {
+                ipnDuplicates.incrementAndGet();
+                rememberTxnRef(txnRef);
+                return new IpnResult("02", "Order already confirmed", paymentId, null);
+            }
+            System.err.println("❌ VNPay IPN failed for " + txnRef + ": " + e.getMessage());
+            return new IpnResult("99", "Unknown error", paymentId, null);
+        } catch (Exception e) {
+            System.err.println("❌ VNPay IPN failed for " + txnRef + ": " + e.getMessage());
+            return new IpnResult("99", "Unknown error", paymentId, null);
+        }
+    }
+
+    /**
+     * Return-URL flow: same pipeline, but the caller wants the payment itself
+     */
+    public Payment handleIPN(Map<String, String> vnpResponse) throws Exception {
+        IpnResult result = processIpn(vnpResponse);
+        switch (result.rspCode()) {
+            case "00":
+                return result.payment();
+            case "02":
+                // Already applied by the IPN: report the current state
+                return paymentRepository.findById(result.paymentId())
+                        .orElseThrow(() -> new Exception("Payment not found"));
+            default:
+                throw new Exception("Invalid IPN: " + result.message());
+        }
+    }
 
-            Mac hmac = Mac.getInstance("HmacSHA512");
-            SecretKeySpec secretKey = new SecretKeySpec(vnpHashSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA512");
-            hmac.init(secretKey);
-            byte[] hashBytes = hmac.doFinal(hashData.toString().getBytes(StandardCharsets.UTF_8));
+    private IpnResult applyIpn(Map<String, String> vnpResponse, String txnRef, Long paymentId) {
+        Payment payment = paymentRepository.findById(paymentId).orElse(null);
+        if (payment == null) {
+            return new IpnResult("01", "Order not found", paymentId, null);
+        }
+        Long amount = parseLong(vnpResponse.get("vnp_Amount"));
+        if (amount == null || payment.getAmount() == null || amount != Math.round(payment.getAmount() * 100)) {
+            System.err.println("⚠️ VNPay IPN amount mismatch for payment " + paymentId + ": " + amount);
+            return new IpnResult("04", "Invalid amount", paymentId, null);
+        }
 
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hashBytes) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
+        if (payment.getStatus() == PaymentStatus.PAID) {
+            // Paid through another checkout attempt (or by reconciliation): nothing left to apply
+            return new IpnResult("02", "Order already confirmed", paymentId, null);
+        }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Cannot generate VNPAY signature", e);
+        // Claim the txnRef first: concurrent retries of the same IPN fail here on the unique key
+        recordTxnRef(txnRef, paymentId, amount, vnpResponse);
+
+        String responseCode = vnpResponse.get("vnp_ResponseCode");
+        System.out.println("VNPay IPN " + txnRef + " ResponseCode=" + responseCode + " (payment " + paymentId + " was " + payment.getStatus() + ")");
+        if ("00".equals(responseCode)) {
+            markPaid(payment, vnpResponse);
+        } else {
+            markFailed(payment, txnRef, vnpResponse);
         }
+        return new IpnResult("00", "Confirm Success", paymentId, payment);
     }
 
-    private String buildQuery(Map<String, String> params) {
-        List<String> keys = new ArrayList<>(params.keySet());
-        Collections.sort(keys);
+    private void markPaid(Payment payment, Map<String, String> vnpResponse) {
+        if (payment.getStatus() == PaymentStatus.PAID) {
+            return; // paid through another checkout attempt already
+        }
+        payment.setStatus(PaymentStatus.PAID);
+        payment.setPaidAt(LocalDateTime.now());
+        payment.setGatewayResponse(gatewayResponse(vnpResponse));
+
+        // Don't auto-confirm appointment - let doctor confirm manually after payment
+        // Appointment status remains PENDING until doctor confirms
+        paymentRepository.save(payment);
+        convertHold(payment.getAppointment());
 
-        StringBuilder query = new StringBuilder();
-        for (String key : keys) {
-            String value = params.get(key);
-            if (query.length() > 0) query.append('&');
-            query.append(URLEncoder.encode(key, StandardCharsets.UTF_8))
-                    .append('=')
-                    .append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+        // 📧 "Pending Confirmation" email to patient (ORANGE/CAM), queued in this transaction
+        try {
+            Appointment appointment = payment.getAppointment();
+            Patient patient = appointment.getPatient();
+            Doctor doctor = appointment.getDoctor();
+
+            emailService.sendAppointmentPendingConfirmation(
+                "appointment-pending:" + appointment.getAppointmentId(),
+                patient.getEmail(),
+                patient.getName(),
+                doctor.getName(),
+                appointment.getDate().toString(),
+                appointment.getSlot().name(), // SLOT_1, SLOT_2, etc.
+                appointment.getType().name()
+            );
+        } catch (Exception emailError) {
+            System.err.println("⚠️ Failed to queue pending email: " + emailError.getMessage());
+            // Don't fail the payment if email fails
         }
-        return query.toString();
     }
 
-    public Payment handleIPN(Map<String, String> vnpResponse) throws Exception {
-        System.out.println("=== VNPAY CALLBACK RECEIVED ===");
-        System.out.println("Response params: " + vnpResponse);
-        
-        String txnRef = vnpResponse.get("vnp_TxnRef");
-        String responseCode = vnpResponse.get("vnp_ResponseCode");
-        
-        System.out.println("TxnRef: " + txnRef);
-        System.out.println("ResponseCode: " + responseCode);
+    private void markFailed(Payment payment, String txnRef, Map<String, String> vnpResponse) {
+        // A failure of an old or superseded checkout attempt must not undo a newer attempt
+        if (!txnRef.equals(payment.getTransactionId())) {
+            System.out.println("Ignoring failed IPN " + txnRef + " (payment " + payment.getPaymentId() + " is " + payment.getStatus() + ")");
+            return;
+        }
+        failPayment(payment, vnpResponse);
+    }
 
-        if (txnRef == null) {
-            System.err.println("ERROR: Missing transaction reference");
-            throw new Exception("Invalid IPN: missing transaction reference");
+    private void failPayment(Payment payment, Map<String, String> vnpResponse) {
+        payment.setStatus(PaymentStatus.FAILED);
+        payment.setGatewayResponse(gatewayResponse(vnpResponse));
+
+        // If payment failed/cancelled, auto-cancel the appointment so doctors cannot confirm it
+        Appointment appointment = payment.getAppointment();
+        if (appointment != null) {
+            boolean wasActive = AvailabilityIndex.isActive(appointment.getStatus());
+            appointment.setStatus(se1961.g1.medconnect.enums.AppointmentStatus.CANCELLED);
+            appointment.setHoldExpiresAt(null);
+            appointmentRepository.save(appointment);
+            if (wasActive) {
+                availabilityIndex.release(appointment);
+                slotBookingService.release(appointment);
+            }
         }
 
-        Long paymentId = Long.parseLong(txnRef.split("-")[0]);
-        System.out.println("Extracted PaymentId: " + paymentId);
-        
-        Payment payment = paymentRepository.findById(paymentId)
-                .orElseThrow(() -> new Exception("Payment not found"));
-
-        System.out.println("Current payment status: " + payment.getStatus());
-
-        if ("00".equals(responseCode)) { // success
-            System.out.println("Payment SUCCESS - updating to PAID");
-            payment.setStatus(PaymentStatus.PAID);
-            payment.setPaidAt(LocalDateTime.now());
-            payment.setGatewayResponse(vnpResponse.toString());
-
-            // Don't auto-confirm appointment - let doctor confirm manually after payment
-            // Appointment status remains PENDING until doctor confirms
-            System.out.println("Payment marked as PAID. Appointment remains PENDING for doctor confirmation.");
-
-            paymentRepository.save(payment);
-            System.out.println("Payment saved with status: " + payment.getStatus());
-            
-            // 📧 Send "Pending Confirmation" email to patient (ORANGE/CAM)
-            try {
-                Appointment appointment = payment.getAppointment();
-                Patient patient = appointment.getPatient();
-                Doctor doctor = appointment.getDoctor();
-                
-                String patientEmail = patient.getEmail();
-                String patientName = patient.getName();
-                String doctorName = doctor.getName();
-                String appointmentDate = appointment.getDate().toString();
-                String appointmentTime = appointment.getSlot().name(); // SLOT_1, SLOT_2, etc.
-                String appointmentType = appointment.getType().name();
-                
-                emailService.sendAppointmentPendingConfirmation(
-                    patientEmail,
-                    patientName,
-                    doctorName,
-                    appointmentDate,
-                    appointmentTime,
-                    appointmentType
-                );
-                
-                System.out.println("✅ Pending confirmation email sent to: " + patientEmail);
-            } catch (Exception emailError) {
-                System.err.println("⚠️ Failed to send pending email: " + emailError.getMessage());
-                // Don't fail the payment if email fails
+        paymentRepository.save(payment);
+    }
+
+    private void recordTxnRef(String txnRef, Long paymentId, Long amount, Map<String, String> vnpResponse) {
+        PaymentIpnLog log = new PaymentIpnLog();
+        log.setTxnRef(txnRef);
+        log.setPaymentId(paymentId);
+        log.setResponseCode(vnpResponse.get("vnp_ResponseCode"));
+        log.setTransactionNo(vnpResponse.get("vnp_TransactionNo"));
+        log.setAmount(amount);
+        log.setPayload(VnpayQuery.canonical(vnpResponse));
+        ipnLogRepository.saveAndFlush(log);
+    }
+
+    /**
+     * Reconciliation: apply what the gateway reports about checkout txnRef for a payment still PENDING here
+     * (runs inside the caller's transaction). Returns the new status, or null when nothing changed.
+     */
+    public PaymentStatus applyGatewayStatus(Payment payment, String txnRef, PaymentGatewayClient.GatewayStatus status) {
+        if (payment.getStatus() != PaymentStatus.PENDING || status == null) {
+            return null; // IPN (or an admin) got there first
+        }
+        if (txnRef == null || !txnRef.equals(payment.getTransactionId())) {
+            return null; // the answer is about a checkout attempt that has since been replaced
+        }
+        switch (status.result()) {
+            case PAID:
+                if (status.amount() == null || payment.getAmount() == null
+                        || status.amount() != Math.round(payment.getAmount() * 100)) {
+                    System.err.println("⚠️ Reconcile: amount mismatch for payment " + payment.getPaymentId() + ": " + status.amount());
+                    return null;
+                }
+                // Same dedup row as the IPN: a late IPN for this txnRef is then answered 02
+                recordTxnRef(txnRef, payment.getPaymentId(), status.amount(), status.fields());
+                markPaid(payment, status.fields());
+                return PaymentStatus.PAID;
+            case FAILED:
+            case NOT_FOUND:
+                // Conditional write: an IPN that marked it PAID (or a new checkout attempt) since the
+                // payment was read wins, and the appointment is left alone
+                if (paymentRepository.failIfPending(payment.getPaymentId(), txnRef) != 1) {
+                    return null;
+                }
+                // No dedup row: should the gateway still report a success later, the IPN can apply it
+                failPayment(payment, status.fields());
+                return PaymentStatus.FAILED;
+            default:
+                return null;
+        }
+    }
+
+    boolean verifySignature(Map<String, String> vnpResponse) {
+        String received = vnpResponse.get("vnp_SecureHash");
+        if (received == null || received.isEmpty()) {
+            return false;
+        }
+        Map<String, String> signed = new HashMap<>();
+        for (Map.Entry<String, String> e : vnpResponse.entrySet()) {
+            String key = e.getKey();
+            if (key.startsWith("vnp_") && !key.equals("vnp_SecureHash") && !key.equals("vnp_SecureHashType")) {
+                signed.put(key, e.getValue());
             }
-        } else {
-            System.out.println("Payment FAILED with code: " + responseCode);
-            payment.setStatus(PaymentStatus.FAILED);
-            payment.setGatewayResponse(vnpResponse.toString());
+        }
+        return signer().verifyHex(VnpayQuery.canonical(signed), received);
+    }
 
-            // If payment failed/cancelled, auto-cancel the appointment so doctors cannot confirm it
-            Appointment appointment = payment.getAppointment();
-            if (appointment != null) {
-                appointment.setStatus(se1961.g1.medconnect.enums.AppointmentStatus.CANCELLED);
-                appointmentRepository.save(appointment);
+    // Compact, bounded copy of the gateway answer (the full payload is in PaymentIpnLog)
+    private String gatewayResponse(Map<String, String> vnpResponse) {
+        StringBuilder sb = new StringBuilder();
+        for (String key : GATEWAY_RESPONSE_FIELDS) {
+            String value = vnpResponse.get(key);
+            if (value != null) {
+                if (sb.length() > 0) sb.append('&');
+                sb.append(key).append('=').append(value);
             }
+        }
+        return sb.length() > 1000 ? sb.substring(0, 1000) : sb.toString();
+    }
+
+    private static Long parsePaymentId(String txnRef) {
+        int dash = txnRef.indexOf('-');
+        return parseLong(dash < 0 ? txnRef : txnRef.substring(0, dash));
+    }
 
-            paymentRepository.save(payment);
+    private static Long parseLong(String value) {
+        try {
+            return value == null ? null : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
         }
+    }
 
-        return payment;
+    private boolean isRecentTxnRef(String txnRef) {
+        synchronized (recentTxnRefs) {
+            return recentTxnRefs.containsKey(txnRef);
+        }
+    }
+
+    private void rememberTxnRef(String txnRef) {
+        synchronized (recentTxnRefs) {
+            recentTxnRefs.put(txnRef, Boolean.TRUE);
+        }
+    }
+
+    public Map<String, Object> getIpnStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("received", ipnReceived.get());
+        stats.put("applied", ipnApplied.get());
+        stats.put("duplicates", ipnDuplicates.get());
+        stats.put("rejected", ipnRejected.get());
+        synchronized (recentTxnRefs) {
+            stats.put("recentTxnRefs", recentTxnRefs.size());
+        }
+        return stats;
+    }
+
+    /**
+     * Paid: the slot hold becomes a normal booking. If the hold already expired (IPN arrived after the
+     * sweeper cancelled the appointment), take the slot back when it is still free.
+     */
+    private void convertHold(Appointment appointment) {
+        if (appointment == null) {
+            return;
+        }
+        if (appointmentRepository.clearHold(appointment.getAppointmentId()) == 1) {
+            appointment.setHoldExpiresAt(null);
+            return;
+        }
+        se1961.g1.medconnect.enums.AppointmentStatus current = appointmentRepository.findStatusById(appointment.getAppointmentId());
+        if (current != se1961.g1.medconnect.enums.AppointmentStatus.CANCELLED) {
+            return; // already past PENDING (duplicate IPN) - nothing to do
+        }
+        if (appointment.getStatus() != current) {
+            // Cancelled by the sweeper while this IPN was being processed
+            System.err.println("⚠️ Appointment " + appointment.getAppointmentId() + " expired during payment - needs manual review/refund");
+            return;
+        }
+        try {
+            slotBookingService.claim(appointment.getDoctor().getUserId(), appointment.getDate(), appointment.getSlot());
+            appointment.setStatus(se1961.g1.medconnect.enums.AppointmentStatus.PENDING);
+            appointment.setHoldExpiresAt(null);
+            appointmentRepository.save(appointment);
+            availabilityIndex.book(appointment);
+            System.out.println("Late payment: appointment " + appointment.getAppointmentId() + " reinstated");
+        } catch (Exception e) {
+            System.err.println("⚠️ Late payment for expired appointment " + appointment.getAppointmentId()
+                    + ", slot no longer available - needs refund: " + e.getMessage());
+        }
     }
 
     public Payment getPaymentByAppointment(Long appointmentId) {
@@ -268,6 +527,23 @@ public class PaymentService {
         return paymentRepository.findAll();
     }
 
+    /**
+     * Admin list, newest first, one keyset page at a time (cursor == null: first page)
+     */
+    public KeysetPage<AdminPaymentRow> getAdminPaymentPage(String cursor, int limit) throws Exception {
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<AdminPaymentRow> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = paymentRepository.findAdminPage(page);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            rows = after.createdAt() == null
+                    ? paymentRepository.findAdminPageAfterUndated(after.id(), page)
+                    : paymentRepository.findAdminPageAfter(LocalDateTime.parse(after.createdAt()), after.id(), page);
+        }
+        return KeysetPage.of(rows, limit, r -> KeysetCursor.encode(r.getCreatedAt(), r.getId()));
+    }
+
     public Optional<Payment> getPaymentById(Long id) {
         return paymentRepository.findById(id);
     }
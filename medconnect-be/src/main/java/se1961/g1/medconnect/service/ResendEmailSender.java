@@ -0,0 +1,67 @@
+package se1961.g1.medconnect.service;
+
+import com.resend.Resend;
+import com.resend.core.exception.ResendException;
+import com.resend.services.batch.model.BatchEmail;
+import com.resend.services.batch.model.CreateBatchEmailsResponse;
+import com.resend.services.emails.model.CreateEmailOptions;
+import com.resend.services.emails.model.CreateEmailResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@ConditionalOnProperty(name = "email.transport", havingValue = "resend", matchIfMissing = true)
+public class ResendEmailSender implements EmailSender {
+
+    private final Resend resend;
+
+    @Value("${resend.from-email}")
+    private String fromEmail;
+
+    public ResendEmailSender(@Value("${resend.api-key}") String apiKey) {
+        this.resend = new Resend(apiKey);
+    }
+
+    @Override
+    public String send(Message message) throws ResendException {
+        CreateEmailResponse response = resend.emails().send(toOptions(message));
+        return response.getId();
+    }
+
+    @Override
+    public List<String> sendBatch(List<Message> messages) throws ResendException {
+        if (messages.size() == 1) {
+            return List.of(send(messages.get(0)));
+        }
+        List<CreateEmailOptions> batch = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            batch.add(toOptions(message));
+        }
+        CreateBatchEmailsResponse response = resend.batch().send(batch);
+
+        List<String> ids = new ArrayList<>(messages.size());
+        if (response != null && response.getData() != null) {
+            for (BatchEmail sent : response.getData()) {
+                ids.add(sent.getId());
+            }
+        }
+        // Provider ids are informational only; pad if the response was shorter than the batch
+        while (ids.size() < messages.size()) {
+            ids.add(null);
+        }
+        return ids;
+    }
+
+    private CreateEmailOptions toOptions(Message message) {
+        return CreateEmailOptions.builder()
+                .from(fromEmail)
+                .to(message.to())
+                .subject(message.subject())
+                .html(message.html())
+                .build();
+    }
+}
@@ -2,20 +2,19 @@ package se1961.g1.medconnect.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import se1961.g1.medconnect.dto.AppointmentDTO;
 import se1961.g1.medconnect.dto.ScheduleDTO;
+import se1961.g1.medconnect.dto.ScheduleRangeDTO;
 import se1961.g1.medconnect.enums.ScheduleStatus;
-import se1961.g1.medconnect.enums.Slot;
 import se1961.g1.medconnect.pojo.Appointment;
 import se1961.g1.medconnect.pojo.Doctor;
 import se1961.g1.medconnect.pojo.Schedule;
 import se1961.g1.medconnect.pojo.User;
 import se1961.g1.medconnect.repository.ScheduleRepository;
 import se1961.g1.medconnect.repository.DoctorRepository;
+import se1961.g1.medconnect.util.ScheduleGrid;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 @Service
@@ -33,94 +32,51 @@ public class ScheduleService {
     @Autowired
     private DoctorRepository doctorRepository;
 
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private SlotBookingService slotBookingService;
+
+    public static final int MAX_RANGE_DAYS = 92;
+
     /**
      * Get weekly schedule with appointments merged in
      */
     public List<ScheduleDTO> getWeeklySchedule(Long userId, LocalDate start, LocalDate end) throws Exception {
-        System.out.println("[getWeeklySchedule] ========== START ==========");
-        System.out.println("[getWeeklySchedule] Doctor UserID: " + userId);
-        System.out.println("[getWeeklySchedule] Date range: " + start + " to " + end);
-        
-        // 1. Validate user exists
-        if (!userService.findById(userId).isPresent()) {
-            throw new Exception("User not found");
+        validateRange(start, end);
+        return loadGrid(userId, start, end).fullGrid(start, end);
+    }
+
+    /**
+     * Get schedule for an arbitrary range (month, quarter) in compact form
+     */
+    public ScheduleRangeDTO getScheduleRange(Long userId, LocalDate start, LocalDate end) throws Exception {
+        validateRange(start, end);
+        return loadGrid(userId, start, end).compact(start, end);
+    }
+
+    private void validateRange(LocalDate start, LocalDate end) throws Exception {
+        if (end.isBefore(start)) {
+            throw new Exception("Invalid date range");
         }
+        // Inclusive range: start..end covers DAYS.between + 1 days
+        if (ChronoUnit.DAYS.between(start, end) >= MAX_RANGE_DAYS) {
+            throw new Exception("Date range must not exceed " + MAX_RANGE_DAYS + " days");
+        }
+    }
 
-        // 2. Get doctor's schedules (slots doctor has opened)
-        List<Schedule> scheduleList = scheduleRepository.findByUserUserIdAndDateBetween(userId, start, end);
-        System.out.println("[getWeeklySchedule] Found " + scheduleList.size() + " schedules (opened slots)");
-        
-        // 3. Get doctor's appointments
+    private ScheduleGrid loadGrid(Long userId, LocalDate start, LocalDate end) throws Exception {
+        // 1. Validate doctor exists
         Doctor doctor = doctorRepository.findById(userId)
                 .orElseThrow(() -> new Exception("Doctor not found"));
+
+        // 2. Doctor's schedules (slots doctor has opened) + appointments, one query each
+        List<Schedule> scheduleList = scheduleRepository.findByUserUserIdAndDateBetween(userId, start, end);
         List<Appointment> appointmentList = appointmentService.findByDoctorAndDateBetween(doctor, start, end);
-        System.out.println("[getWeeklySchedule] Found " + appointmentList.size() + " appointments");
-        
-        if (!appointmentList.isEmpty()) {
-            System.out.println("[getWeeklySchedule] Appointment details:");
-            appointmentList.forEach(a -> {
-                System.out.println("  - ID: " + a.getAppointmentId() + 
-                                 ", Date: " + a.getDate() + 
-                                 ", Slot: " + a.getSlot() + 
-                                 ", Status: " + a.getStatus() +
-                                 ", Patient: " + (a.getPatient() != null ? a.getPatient().getName() : "null"));
-            });
-        }
-        
-        // 4. Generate full week grid (7 days x 12 slots)
-        List<LocalDate> dates = start.datesUntil(end.plusDays(1)).toList();
-        List<Slot> slots = Arrays.asList(Slot.values());
-        List<ScheduleDTO> fullWeek = new ArrayList<>();
-        
-        System.out.println("[getWeeklySchedule] Generating grid for " + dates.size() + " days x " + slots.size() + " slots");
-        
-        for (LocalDate date : dates) {
-            for (Slot slot : slots) {
-                // Check if doctor has opened this slot
-                Schedule schedule = scheduleList.stream()
-                        .filter(s -> s.getDate().equals(date) && s.getSlot() == slot)
-                        .findFirst()
-                        .orElse(null);
-                
-                ScheduleDTO scheduleDTO;
-                
-                if (schedule != null) {
-                    // Doctor has opened this slot
-                    scheduleDTO = new ScheduleDTO(schedule);
-                } else {
-                    // Doctor has NOT opened this slot (empty)
-                    scheduleDTO = new ScheduleDTO();
-                    scheduleDTO.setDate(date);
-                    scheduleDTO.setSlot(slot);
-                    scheduleDTO.setStatus(ScheduleStatus.EMPTY);
-                }
-                
-                // Check if there's an appointment for this slot
-                Appointment appointment = appointmentList.stream()
-                        .filter(a -> a.getDate().equals(date) && a.getSlot() == slot)
-                        .filter(a -> {
-                            // Only consider active appointments
-                            String status = a.getStatus().name();
-                            return !status.equals("CANCELLED") && !status.equals("DENIED");
-                        })
-                        .findFirst()
-                        .orElse(null);
-                
-                if (appointment != null) {
-                    // There's an appointment -> mark as BUSY
-                    scheduleDTO.setStatus(ScheduleStatus.BUSY);
-                    scheduleDTO.setAppointment(new AppointmentDTO(appointment));
-                    System.out.println("  [BUSY] " + date + " " + slot + " -> Appointment #" + appointment.getAppointmentId());
-                }
-                
-                fullWeek.add(scheduleDTO);
-            }
-        }
-        
-        System.out.println("[getWeeklySchedule] Total slots in grid: " + fullWeek.size());
-        System.out.println("[getWeeklySchedule] ========== END ==========");
-        
-        return fullWeek;
+
+        // 3. Index both by date/slot once
+        return ScheduleGrid.of(scheduleList, appointmentList);
     }
 
     /**
@@ -133,11 +89,18 @@ public class ScheduleService {
         if(status == ScheduleStatus.EMPTY) {
             // Delete schedule (doctor closes this slot)
             scheduleRepository.delete(schedule);
+            availabilityIndex.closeSlot(schedule.getUser().getUserId(), schedule.getDate(), schedule.getSlot());
             return null;
         }
 
         schedule.setStatus(status);
         scheduleRepository.save(schedule);
+        // Only RESERVED rows are bookable (ScheduleRepository.claimSlot)
+        if (status == ScheduleStatus.RESERVED) {
+            availabilityIndex.openSlot(schedule.getUser().getUserId(), schedule.getDate(), schedule.getSlot());
+        } else {
+            availabilityIndex.closeSlot(schedule.getUser().getUserId(), schedule.getDate(), schedule.getSlot());
+        }
         return new ScheduleDTO(schedule);
     }
 
@@ -172,8 +135,13 @@ public class ScheduleService {
         schedule.setSlot(dto.getSlot());
         schedule.setStatus(dto.getStatus());
         schedule.setUser(user);
+        // Slot closed and reopened while an appointment is still active: keep it taken
+        schedule.setBooked(slotBookingService.hasActiveBooking(userId, dto.getDate(), dto.getSlot()));
         
         scheduleRepository.save(schedule);
+        if (schedule.getStatus() == ScheduleStatus.RESERVED) {
+            availabilityIndex.openSlot(userId, schedule.getDate(), schedule.getSlot());
+        }
         
         System.out.println("[addSchedule] ✅ Schedule created with ID: " + schedule.getScheduleId());
         System.out.println("[addSchedule] ========== END ==========");
@@ -0,0 +1,122 @@
+package se1961.g1.medconnect.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import se1961.g1.medconnect.enums.Slot;
+import se1961.g1.medconnect.pojo.Appointment;
+import se1961.g1.medconnect.repository.AppointmentRepository;
+import se1961.g1.medconnect.repository.ScheduleRepository;
+import se1961.g1.medconnect.util.AfterCommit;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Slot-level booking guard for (doctor, date, slot).
+ * 1. In-process: at most one booking per slot in flight on this node; concurrent attempts are
+ *    rejected at once, without touching the DB. Held until the booking transaction completes.
+ * 2. DB (all nodes): the Schedule row is claimed with UPDATE ... SET booked = true WHERE booked = false.
+ *    Exactly one transaction gets an update count of 1; the others get 0 and are rejected.
+ * The flag is cleared when the appointment is cancelled/denied and recomputed after admin edits.
+ */
+@Service
+public class SlotBookingService {
+
+    public record SlotKey(Long doctorId, LocalDate date, Slot slot) {}
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    private final ConcurrentHashMap<SlotKey, Boolean> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong claims = new AtomicLong();
+    private final AtomicLong rejectedInFlight = new AtomicLong();
+    private final AtomicLong rejectedTaken = new AtomicLong();
+
+    /**
+     * Claim a doctor's opened slot for a new booking (call inside the booking transaction)
+     */
+    public void claim(Long doctorId, LocalDate date, Slot slot) throws Exception {
+        SlotKey key = new SlotKey(doctorId, date, slot);
+        if (inFlight.putIfAbsent(key, Boolean.TRUE) != null) {
+            rejectedInFlight.incrementAndGet();
+            throw new Exception("Khung giờ này đang được người khác đặt, vui lòng chọn khung giờ khác");
+        }
+
+        boolean held = false;
+        try {
+            if (scheduleRepository.claimSlot(doctorId, date, slot) != 1) {
+                rejectedTaken.incrementAndGet();
+                throw new Exception("Slot is not available");
+            }
+            claims.incrementAndGet();
+            // Keep the in-flight marker until the surrounding transaction commits or rolls back;
+            // without a transaction it is dropped right away
+            held = AfterCommit.onCompletion(() -> inFlight.remove(key));
+        } finally {
+            if (!held) {
+                inFlight.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Free the slot of a cancelled/denied appointment
+     */
+    public void release(Appointment appointment) {
+        if (!hasKey(appointment)) return;
+        scheduleRepository.setBooked(appointment.getDoctor().getUserId(), appointment.getDate(), appointment.getSlot(), false);
+    }
+
+    /**
+     * Recompute the flag from the appointments of this slot (after arbitrary admin edits / deletes)
+     */
+    public void resync(Appointment appointment) {
+        if (!hasKey(appointment)) return;
+        Long doctorId = appointment.getDoctor().getUserId();
+        scheduleRepository.setBooked(doctorId, appointment.getDate(), appointment.getSlot(),
+                hasActiveBooking(doctorId, appointment.getDate(), appointment.getSlot()));
+    }
+
+    public boolean hasActiveBooking(Long doctorId, LocalDate date, Slot slot) {
+        return appointmentRepository.countActiveInSlot(doctorId, date, slot) > 0;
+    }
+
+    /**
+     * Fill the booked flag of schedules created before it existed
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillBookedFlags() {
+        try {
+            int booked = scheduleRepository.markBookedFromAppointments();
+            int free = scheduleRepository.markRemainingFree();
+            if (booked + free > 0) {
+                System.out.println("[SlotBooking] Backfilled booked flag: " + booked + " booked, " + free + " free");
+            }
+        } catch (Exception e) {
+            System.err.println("[SlotBooking] Backfill failed: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("inFlight", inFlight.size());
+        stats.put("claims", claims.get());
+        stats.put("rejectedInFlight", rejectedInFlight.get());
+        stats.put("rejectedTaken", rejectedTaken.get());
+        return stats;
+    }
+
+    private boolean hasKey(Appointment appointment) {
+        return appointment != null && appointment.getDoctor() != null
+                && appointment.getDate() != null && appointment.getSlot() != null;
+    }
+}
@@ -0,0 +1,187 @@
+package se1961.g1.medconnect.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se1961.g1.medconnect.enums.AppointmentStatus;
+import se1961.g1.medconnect.enums.PaymentStatus;
+import se1961.g1.medconnect.pojo.Appointment;
+import se1961.g1.medconnect.pojo.Payment;
+import se1961.g1.medconnect.repository.AppointmentRepository;
+import se1961.g1.medconnect.repository.PaymentRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Temporary slot holds for unpaid bookings.
+ * A new appointment holds its slot for booking.hold.ttl; starting the VNPay checkout extends the hold
+ * to booking.hold.payment-ttl (the hold end is sent to VNPay as vnp_ExpireDate). Re-initiating the
+ * checkout never keeps a slot longer than booking.hold.ttl + booking.hold.payment-ttl after the booking.
+ * A successful IPN clears the hold. Otherwise the sweeper cancels the appointment and its pending
+ * payment in batches and frees the slot, so abandoned checkouts never need a manual cleanup.
+ */
+@Service
+public class SlotHoldService {
+
+    static final String JOB = "slot-hold-sweeper";
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private SlotBookingService slotBookingService;
+
+    @Autowired
+    private JobLeaseService jobLeaseService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${booking.hold.ttl:15m}")
+    private String holdTtlValue = "15m";
+
+    @Value("${booking.hold.payment-ttl:15m}")
+    private String paymentTtlValue = "15m";
+
+    @Value("${booking.hold.batch-size:100}")
+    private int batchSize = 100;
+
+    private Duration holdTtl;
+    private Duration paymentTtl;
+
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong extensionsCapped = new AtomicLong();
+    private final AtomicLong sweeps = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        holdTtl = DurationStyle.detectAndParse(holdTtlValue);
+        paymentTtl = DurationStyle.detectAndParse(paymentTtlValue);
+    }
+
+    /**
+     * Hold end for a booking created now
+     */
+    public LocalDateTime newHoldExpiry() {
+        return LocalDateTime.now().plus(holdTtl);
+    }
+
+    /**
+     * Patient is sent to VNPay: keep the slot for the payment window, capped at
+     * holdStartedAt + booking.hold.ttl + booking.hold.payment-ttl so repeated checkouts cannot hold it forever.
+     * Returns the hold end in effect, or null when the appointment has no active hold (nothing to extend).
+     */
+    public LocalDateTime extendForPayment(Appointment appointment) {
+        LocalDateTime current = appointment.getHoldExpiresAt();
+        if (current == null) {
+            return null;
+        }
+        LocalDateTime until = LocalDateTime.now().plus(paymentTtl);
+        // Holds taken before holdStartedAt existed are not extended
+        LocalDateTime cap = appointment.getHoldStartedAt() != null
+                ? appointment.getHoldStartedAt().plus(holdTtl).plus(paymentTtl)
+                : current;
+        if (until.isAfter(cap)) {
+            extensionsCapped.incrementAndGet();
+            until = cap;
+        }
+        if (!until.isAfter(current)) {
+            return current; // cap reached: the hold runs out as it is
+        }
+        if (appointmentRepository.extendHold(appointment.getAppointmentId(), until) == 1) {
+            appointment.setHoldExpiresAt(until);
+            return until;
+        }
+        return null;
+    }
+
+    public Duration getPaymentTtl() {
+        return paymentTtl;
+    }
+
+    @Scheduled(fixedDelayString = "${booking.hold.sweep-interval-ms:30000}", initialDelayString = "${booking.hold.initial-delay-ms:20000}")
+    public void sweep() {
+        if (!jobLeaseService.tryAcquire(JOB, Duration.ofMinutes(2))) {
+            return;
+        }
+        try {
+            int total = 0;
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            while (true) {
+                LocalDateTime now = LocalDateTime.now();
+                List<Long> ids = appointmentRepository.findExpiredHoldIds(now, PageRequest.of(0, batchSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                Integer n = tx.execute(status -> expireBatch(ids, now));
+                total += n != null ? n : 0;
+                if (ids.size() < batchSize) {
+                    break;
+                }
+            }
+            sweeps.incrementAndGet();
+            if (total > 0) {
+                System.out.println("[SlotHold] Expired " + total + " unpaid booking(s)");
+            }
+        } catch (Exception e) {
+            System.err.println("[SlotHold] Sweep failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Cancel one batch of expired holds (inside a transaction, rows locked)
+     */
+    int expireBatch(List<Long> ids, LocalDateTime now) {
+        List<Appointment> appointments = appointmentRepository.lockExpiredHolds(ids, now);
+        if (appointments.isEmpty()) {
+            return 0;
+        }
+        for (Appointment appointment : appointments) {
+            appointment.setStatus(AppointmentStatus.CANCELLED);
+            appointment.setHoldExpiresAt(null);
+        }
+        appointmentRepository.saveAll(appointments);
+
+        List<Payment> payments = paymentRepository.findByAppointmentIn(appointments).stream()
+                .filter(p -> p.getStatus() == PaymentStatus.PENDING)
+                .toList();
+        for (Payment payment : payments) {
+            payment.setStatus(PaymentStatus.CANCELLED);
+        }
+        paymentRepository.saveAll(payments);
+
+        for (Appointment appointment : appointments) {
+            availabilityIndex.release(appointment);
+            slotBookingService.release(appointment);
+        }
+        expired.addAndGet(appointments.size());
+        return appointments.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("holdTtl", holdTtl.toString());
+        stats.put("paymentTtl", paymentTtl.toString());
+        stats.put("sweeps", sweeps.get());
+        stats.put("expired", expired.get());
+        stats.put("extensionsCapped", extensionsCapped.get());
+        return stats;
+    }
+}
@@ -1,16 +1,32 @@
 package se1961.g1.medconnect.service;
 
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.stereotype.Service;
 import se1961.g1.medconnect.pojo.Speciality;
 import se1961.g1.medconnect.repository.SpecialityRepository;
 import se1961.g1.medconnect.repository.DoctorRepository;
+import se1961.g1.medconnect.util.VersionedSnapshot;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class SpecialityService {
+
+    /**
+     * Specialities + doctor count per speciality, shared by the list / dropdown / homepage endpoints
+     */
+    public record Catalog(long version, List<Speciality> specialities, Map<Integer, Long> doctorCounts) {
+        public long doctorCount(Integer specialityId) {
+            return doctorCounts.getOrDefault(specialityId, 0L);
+        }
+    }
     
     @Autowired
     private SpecialityRepository specialityRepository;
@@ -18,6 +34,46 @@ public class SpecialityService {
     @Autowired
     private DoctorRepository doctorRepository;
 
+    @Value("${speciality.catalog.ttl:5m}")
+    private String catalogTtlValue = "5m";
+
+    private final VersionedSnapshot<Catalog> catalog = new VersionedSnapshot<>(0);
+
+    @PostConstruct
+    void init() {
+        catalog.setTtlMillis(DurationStyle.detectAndParse(catalogTtlValue).toMillis());
+    }
+
+    /**
+     * Snapshot rebuilt with two queries (specialities + one GROUP BY count) when a write committed or the TTL ran out
+     */
+    public Catalog getCatalog() {
+        return catalog.get(this::buildCatalog);
+    }
+
+    private Catalog buildCatalog(long version) {
+        List<Speciality> specialities = specialityRepository.findAll();
+        Map<Integer, Long> counts = new HashMap<>();
+        for (Object[] row : doctorRepository.countGroupBySpeciality()) {
+            counts.put((Integer) row[0], (Long) row[1]);
+        }
+        return new Catalog(version, Collections.unmodifiableList(specialities), Collections.unmodifiableMap(counts));
+    }
+
+    /**
+     * Called by DoctorCatalogListener on doctor (create / delete / speciality change) and speciality writes
+     */
+    public void invalidateCatalog() {
+        catalog.invalidate();
+    }
+
+    public Map<String, Object> getCatalogStats() {
+        Catalog current = catalog.peek();
+        Map<String, Object> stats = catalog.getStats();
+        stats.put("specialities", current != null ? current.specialities().size() : 0);
+        return stats;
+    }
+
     /**
      * Get speciality by ID
      */
@@ -67,13 +123,6 @@ public class SpecialityService {
         return specialityRepository.existsByNameAndSpecialityIdNot(name, id);
     }
 
-    /**
-     * Get all specialities with doctor count for public display
-     */
-    public List<Speciality> getAllSpecialitiesWithDoctorCount() {
-        return specialityRepository.findAll();
-    }
-
     /**
      * Get doctor count for a speciality
      */
@@ -14,6 +14,9 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private FirebaseTokenCache tokenCache;
+
     public Optional<User> getUser(String firebaseUid) {
         return userRepository.findByFirebaseUid(firebaseUid);
     }
@@ -33,7 +36,10 @@ public class UserService {
         patient.setFirebaseUid(firebaseUid);
         patient.setName((name != null && !name.isBlank()) ? name : "Unknown User");
         patient.setRole(Role.PATIENT);
-        return userRepository.save(patient);
+        Patient saved = userRepository.save(patient);
+        // Tokens cached while the user was not in DB yet must pick up the new role
+        tokenCache.invalidateUser(firebaseUid);
+        return saved;
     }
 
     public String getEmail(String firebaseUid) {
@@ -41,6 +47,8 @@ public class UserService {
     }
 
     public User saveUser(User user) {
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        tokenCache.invalidateUser(saved.getFirebaseUid());
+        return saved;
     }
 }
@@ -0,0 +1,139 @@
+package se1961.g1.medconnect.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import se1961.g1.medconnect.util.HmacSigner;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * VNPay querydr (merchant_webapi/api/transaction). Both the request and the answer are signed
+ * with the merchant secret; an answer whose checksum does not match is treated as an error
+ * (whatever its response code), so the payment stays PENDING and is queried again on the next run.
+ */
+@Service
+@ConditionalOnProperty(name = "payment.gateway-client", havingValue = "vnpay", matchIfMissing = true)
+public class VnpayGatewayClient implements PaymentGatewayClient {
+
+    private static final DateTimeFormatter VNP_DATE = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${vnpay.tmnCode}")
+    private String vnpTmnCode;
+
+    @Value("${vnpay.hashSecret}")
+    private String vnpHashSecret;
+
+    @Value("${vnpay.apiUrl:https://sandbox.vnpayment.vn/merchant_webapi/api/transaction}")
+    private String vnpApiUrl;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private volatile HmacSigner signer;
+
+    @Override
+    public GatewayStatus queryStatus(String txnRef) throws Exception {
+        String requestId = UUID.randomUUID().toString().replace("-", "");
+        String createDate = LocalDateTime.now().format(VNP_DATE);
+        String orderInfo = "Truy van giao dich " + txnRef;
+
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("vnp_RequestId", requestId);
+        body.put("vnp_Version", "2.1.0");
+        body.put("vnp_Command", "querydr");
+        body.put("vnp_TmnCode", vnpTmnCode);
+        body.put("vnp_TxnRef", txnRef);
+        body.put("vnp_OrderInfo", orderInfo);
+        body.put("vnp_TransactionDate", transactionDate(txnRef));
+        body.put("vnp_CreateDate", createDate);
+        body.put("vnp_IpAddr", "127.0.0.1");
+        body.put("vnp_SecureHash", signer().signHex(String.join("|", requestId, "2.1.0", "querydr", vnpTmnCode,
+                txnRef, body.get("vnp_TransactionDate"), createDate, "127.0.0.1", orderInfo)));
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(vnpApiUrl))
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new Exception("VNPay querydr HTTP " + response.statusCode());
+        }
+
+        Map<String, String> fields = objectMapper.readValue(response.body(), new TypeReference<Map<String, String>>() {});
+        // Checked before any code is read: NOT_FOUND cancels the appointment, so it must come from VNPay
+        if (!verifyResponse(fields)) {
+            throw new Exception("VNPay querydr: invalid response checksum (" + fields.get("vnp_ResponseCode") + ")");
+        }
+        String responseCode = fields.get("vnp_ResponseCode");
+        if ("91".equals(responseCode)) {
+            return new GatewayStatus(Result.NOT_FOUND, null, fields);
+        }
+        if (!"00".equals(responseCode)) {
+            throw new Exception("VNPay querydr failed: " + responseCode + " " + fields.get("vnp_Message"));
+        }
+
+        Long amount = fields.get("vnp_Amount") != null ? Long.parseLong(fields.get("vnp_Amount")) : null;
+        Result result = switch (String.valueOf(fields.get("vnp_TransactionStatus"))) {
+            case "00" -> Result.PAID;
+            case "01" -> Result.PENDING;
+            case "02" -> Result.FAILED;
+            // Reversed / refunding / refunded / suspicious: needs a human, leave the payment as is
+            default -> Result.PENDING;
+        };
+        return new GatewayStatus(result, amount, fields);
+    }
+
+    // Documented field order of the querydr answer checksum
+    private boolean verifyResponse(Map<String, String> f) {
+        String data = String.join("|",
+                v(f, "vnp_ResponseId"), v(f, "vnp_Command"), v(f, "vnp_ResponseCode"), v(f, "vnp_Message"),
+                v(f, "vnp_TmnCode"), v(f, "vnp_TxnRef"), v(f, "vnp_Amount"), v(f, "vnp_BankCode"),
+                v(f, "vnp_PayDate"), v(f, "vnp_TransactionNo"), v(f, "vnp_TransactionType"),
+                v(f, "vnp_TransactionStatus"), v(f, "vnp_OrderInfo"), v(f, "vnp_PromotionCode"),
+                v(f, "vnp_PromotionAmount"));
+        String received = f.get("vnp_SecureHash");
+        return received != null && signer().verifyHex(data, received);
+    }
+
+    private static String v(Map<String, String> fields, String key) {
+        String value = fields.get(key);
+        return value != null ? value : "";
+    }
+
+    /**
+     * TxnRef is "{paymentId}-{epochMillis}" and vnp_CreateDate of the checkout was taken from the same instant
+     */
+    static String transactionDate(String txnRef) {
+        long millis = Long.parseLong(txnRef.substring(txnRef.indexOf('-') + 1));
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()).format(VNP_DATE);
+    }
+
+    private HmacSigner signer() {
+        HmacSigner current = signer;
+        if (current == null) {
+            current = HmacSigner.sha512(vnpHashSecret);
+            signer = current;
+        }
+        return current;
+    }
+}
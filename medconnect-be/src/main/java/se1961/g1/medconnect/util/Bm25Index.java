@@ -0,0 +1,185 @@
+package se1961.g1.medconnect.util;
+
+import java.util.*;
+
+/**
+ * Immutable BM25 index over a fixed list of passages.
+ * Terms are diacritic-folded syllables plus adjacent-syllable bigrams ("huyết áp" -> "huyet", "ap", "huyet ap"),
+ * since most Vietnamese words are two syllables. Per-posting BM25 weights (idf x saturated tf with the
+ * document length norm) are computed once at build time, so a query only sums the postings of its terms.
+ */
+public final class Bm25Index {
+
+    static final float K1 = 1.2f;
+    static final float B = 0.75f;
+
+    // Function words (folded) that carry no topic: dropped as unigrams, kept inside bigrams ("tu van")
+    private static final Set<String> STOPWORDS = Set.of(
+            "la", "va", "cua", "co", "khong", "duoc", "cho", "cac", "nhung", "nay", "toi", "the", "nao", "gi",
+            "de", "voi", "trong", "mot", "khi", "thi", "se", "da", "o", "tu", "den", "lam", "sao", "nhu", "hay",
+            "hoac", "neu", "phai", "nen", "bi", "ve", "tai", "vi", "ma", "rat", "cung", "con", "hon", "a", "thuong",
+            "bao", "nhieu");
+
+    public record Hit(int doc, float score) {
+    }
+
+    private final Map<String, Integer> termIds;
+    private final int[][] postingDocs;
+    private final float[][] postingWeights;
+    private final int docCount;
+    private final int postingCount;
+
+    // Per-thread score accumulator, reset only where a query touched it
+    private final ThreadLocal<float[]> scratch;
+
+    private Bm25Index(Map<String, Integer> termIds, int[][] postingDocs, float[][] postingWeights, int docCount) {
+        this.termIds = termIds;
+        this.postingDocs = postingDocs;
+        this.postingWeights = postingWeights;
+        this.docCount = docCount;
+        int postings = 0;
+        for (int[] docs : postingDocs) {
+            postings += docs.length;
+        }
+        this.postingCount = postings;
+        this.scratch = ThreadLocal.withInitial(() -> new float[docCount]);
+    }
+
+    public static Bm25Index build(List<String> docs) {
+        Map<String, Integer> termIds = new HashMap<>();
+        // Per term: docs and tf, in doc order
+        List<int[]> docsByTerm = new ArrayList<>();
+        List<int[]> tfsByTerm = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        int[] lengths = new int[docs.size()];
+        long totalLength = 0;
+
+        for (int d = 0; d < docs.size(); d++) {
+            List<String> terms = analyze(docs.get(d));
+            lengths[d] = terms.size();
+            totalLength += terms.size();
+            Map<Integer, Integer> tf = new LinkedHashMap<>();
+            for (String term : terms) {
+                Integer id = termIds.get(term);
+                if (id == null) {
+                    id = termIds.size();
+                    termIds.put(term, id);
+                    docsByTerm.add(new int[4]);
+                    tfsByTerm.add(new int[4]);
+                    sizes.add(0);
+                }
+                tf.merge(id, 1, Integer::sum);
+            }
+            for (Map.Entry<Integer, Integer> e : tf.entrySet()) {
+                int id = e.getKey();
+                int n = sizes.get(id);
+                if (n == docsByTerm.get(id).length) {
+                    docsByTerm.set(id, Arrays.copyOf(docsByTerm.get(id), n * 2));
+                    tfsByTerm.set(id, Arrays.copyOf(tfsByTerm.get(id), n * 2));
+                }
+                docsByTerm.get(id)[n] = d;
+                tfsByTerm.get(id)[n] = e.getValue();
+                sizes.set(id, n + 1);
+            }
+        }
+
+        float avgLength = docs.isEmpty() ? 1 : Math.max(1, (float) totalLength / docs.size());
+        float[] norms = new float[docs.size()];
+        for (int d = 0; d < norms.length; d++) {
+            norms[d] = K1 * (1 - B + B * lengths[d] / avgLength);
+        }
+
+        int[][] postingDocs = new int[termIds.size()][];
+        float[][] postingWeights = new float[termIds.size()][];
+        for (int id = 0; id < termIds.size(); id++) {
+            int n = sizes.get(id);
+            int[] termDocs = Arrays.copyOf(docsByTerm.get(id), n);
+            int[] tfs = tfsByTerm.get(id);
+            float idf = (float) Math.log(1 + (docs.size() - n + 0.5) / (n + 0.5));
+            float[] weights = new float[n];
+            for (int i = 0; i < n; i++) {
+                weights[i] = idf * tfs[i] * (K1 + 1) / (tfs[i] + norms[termDocs[i]]);
+            }
+            postingDocs[id] = termDocs;
+            postingWeights[id] = weights;
+        }
+        return new Bm25Index(termIds, postingDocs, postingWeights, docs.size());
+    }
+
+    /**
+     * Top passages for the query, best first; cost is proportional to the postings of the query terms
+     */
+    public List<Hit> search(String query, int k) {
+        float[] scores = scratch.get();
+        int[] touched = new int[Math.min(docCount, 64)];
+        int touchedCount = 0;
+        for (String term : new LinkedHashSet<>(analyze(query))) {
+            Integer id = termIds.get(term);
+            if (id == null) {
+                continue;
+            }
+            int[] docs = postingDocs[id];
+            float[] weights = postingWeights[id];
+            for (int i = 0; i < docs.length; i++) {
+                if (scores[docs[i]] == 0f) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, Math.min(docCount, touched.length * 2));
+                    }
+                    touched[touchedCount++] = docs[i];
+                }
+                scores[docs[i]] += weights[i];
+            }
+        }
+
+        // Bounded min-heap for the top k
+        PriorityQueue<Hit> top = new PriorityQueue<>(Math.max(1, k), Comparator.comparingDouble(Hit::score));
+        for (int i = 0; i < touchedCount; i++) {
+            int doc = touched[i];
+            Hit hit = new Hit(doc, scores[doc]);
+            scores[doc] = 0f;
+            if (top.size() < k) {
+                top.add(hit);
+            } else if (k > 0 && hit.score() > top.peek().score()) {
+                top.poll();
+                top.add(hit);
+            }
+        }
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed().thenComparingInt(Hit::doc));
+        return hits;
+    }
+
+    /**
+     * Index / query terms: folded syllables without stopwords, plus bigrams of adjacent syllables
+     */
+    static List<String> analyze(String text) {
+        List<String> tokens = VietnameseText.tokens(text);
+        List<String> terms = new ArrayList<>(tokens.size() * 2);
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            boolean stop = STOPWORDS.contains(token);
+            if (!stop && (token.length() > 1 || Character.isDigit(token.charAt(0)))) {
+                terms.add(token);
+            }
+            if (i + 1 < tokens.size()) {
+                String next = tokens.get(i + 1);
+                if (!stop || !STOPWORDS.contains(next)) {
+                    terms.add(token + " " + next);
+                }
+            }
+        }
+        return terms;
+    }
+
+    public int docCount() {
+        return docCount;
+    }
+
+    public int termCount() {
+        return termIds.size();
+    }
+
+    public int postingCount() {
+        return postingCount;
+    }
+}
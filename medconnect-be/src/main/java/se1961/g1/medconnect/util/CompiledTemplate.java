@@ -0,0 +1,118 @@
+package se1961.g1.medconnect.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Email template parsed once into literal segments and {{placeholder}} slots:
+ * literals[0] slot[0] literals[1] slot[1] ... literals[n].
+ * Rendering is one pass into a StringBuilder sized up front; values are HTML-escaped.
+ */
+public final class CompiledTemplate {
+
+    private final String name;
+    private final String[] literals;
+    private final String[] slots;
+    private final int literalLength;
+    private final Set<String> placeholders;
+
+    private CompiledTemplate(String name, List<String> literals, List<String> slots) {
+        this.name = name;
+        this.literals = literals.toArray(new String[0]);
+        this.slots = slots.toArray(new String[0]);
+        int length = 0;
+        for (String literal : this.literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+        this.placeholders = Collections.unmodifiableSet(new LinkedHashSet<>(slots));
+    }
+
+    /**
+     * Split source on {{name}} tokens (name = letters/digits/_). Anything else, including a lone "{{", stays literal.
+     */
+    public static CompiledTemplate compile(String name, String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        int literalStart = 0;
+        int i = source.indexOf("{{");
+        while (i >= 0) {
+            int end = source.indexOf("}}", i + 2);
+            if (end < 0) {
+                break;
+            }
+            String slot = source.substring(i + 2, end);
+            if (isIdentifier(slot)) {
+                literals.add(source.substring(literalStart, i));
+                slots.add(slot);
+                literalStart = end + 2;
+                i = source.indexOf("{{", literalStart);
+            } else {
+                i = source.indexOf("{{", i + 2);
+            }
+        }
+        literals.add(source.substring(literalStart));
+        return new CompiledTemplate(name, literals, slots);
+    }
+
+    public String render(Map<String, String> variables) {
+        // Size for the literals plus the raw values; escaping rarely adds more than the slack
+        int capacity = literalLength + 16;
+        for (String slot : slots) {
+            String value = variables.get(slot);
+            if (value != null) {
+                capacity += value.length();
+            }
+        }
+
+        StringBuilder out = new StringBuilder(capacity);
+        for (int i = 0; i < slots.length; i++) {
+            out.append(literals[i]);
+            appendEscaped(out, variables.get(slots[i]));
+        }
+        out.append(literals[slots.length]);
+        return out.toString();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Set<String> getPlaceholders() {
+        return placeholders;
+    }
+
+    static void appendEscaped(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    private static boolean isIdentifier(String s) {
+        if (s.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
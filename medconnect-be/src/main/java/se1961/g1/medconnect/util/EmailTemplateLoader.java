@@ -1,52 +1,91 @@
 package se1961.g1.medconnect.util;
 
-import org.springframework.core.io.ClassPathResource;
+import jakarta.annotation.PostConstruct;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
+/**
+ * Email templates under templates/email/*.html, read and compiled once at startup.
+ * Rendering never touches the classpath again.
+ */
 @Component
 public class EmailTemplateLoader {
 
     private static final String TEMPLATE_BASE_PATH = "templates/email/";
 
+    private final Map<String, CompiledTemplate> templates = new HashMap<>();
+
+    @PostConstruct
+    void compileAll() throws IOException {
+        // ONLY load via classpath resources -- don't use Paths.get(resource.getURI()) (breaks inside the jar)
+        Resource[] resources = new PathMatchingResourcePatternResolver()
+                .getResources("classpath*:" + TEMPLATE_BASE_PATH + "*.html");
+        for (Resource resource : resources) {
+            String fileName = resource.getFilename();
+            if (fileName == null) {
+                continue;
+            }
+            String name = fileName.substring(0, fileName.length() - ".html".length());
+            try (InputStream in = resource.getInputStream()) {
+                String content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                templates.put(name, CompiledTemplate.compile(name, content));
+            }
+        }
+        System.out.println("[EmailTemplateLoader] Compiled " + templates.size() + " email templates: " + templates.keySet());
+    }
+
     /**
-     * Load email template from file and replace placeholders
-     * 
+     * Render a compiled template. Values are HTML-escaped; a missing variable renders as empty.
+     *
      * @param templateName Name of the template file (without .html extension)
      * @param variables Map of variables to replace (e.g., {"userName": "John"})
      * @return Processed HTML content
      * @throws IOException if template file not found
      */
     public String loadTemplate(String templateName, Map<String, String> variables) throws IOException {
-        if (!templateExists(templateName)) {
+        CompiledTemplate template = templates.get(templateName);
+        if (template == null) {
             throw new IOException("Template does not exist.");
         }
-        String templatePath = TEMPLATE_BASE_PATH + templateName + ".html";
-        
-        // ONLY load via ClassPathResource safely -- don't use Paths.get(resource.getURI())
-        ClassPathResource resource = new ClassPathResource(templatePath);
-        String content = new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-        
-        // Replace all placeholders
-        for (Map.Entry<String, String> entry : variables.entrySet()) {
-            String placeholder = "{{" + entry.getKey() + "}}";
-            String value = entry.getValue() != null ? entry.getValue() : "";
-            content = content.replace(placeholder, value);
-        }
-        
-        return content;
+        return template.render(variables);
     }
 
     /**
      * Check if template exists
      */
     public boolean templateExists(String templateName) {
-        String templatePath = TEMPLATE_BASE_PATH + templateName + ".html";
-        ClassPathResource resource = new ClassPathResource(templatePath);
-        return resource.exists();
+        return templates.containsKey(templateName);
     }
-}
 
+    /**
+     * Startup check: each template exists and every placeholder in it is one the caller supplies.
+     * Fails fast instead of sending emails with empty fields.
+     */
+    public void validate(Map<String, Set<String>> suppliedVariables) {
+        Set<String> problems = new TreeSet<>();
+        for (Map.Entry<String, Set<String>> entry : suppliedVariables.entrySet()) {
+            CompiledTemplate template = templates.get(entry.getKey());
+            if (template == null) {
+                problems.add(entry.getKey() + ": template not found");
+                continue;
+            }
+            for (String placeholder : template.getPlaceholders()) {
+                if (!entry.getValue().contains(placeholder)) {
+                    problems.add(entry.getKey() + ": no value for {{" + placeholder + "}}");
+                }
+            }
+        }
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Invalid email templates: " + problems);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package se1961.g1.medconnect.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Streaming (JsonParser/JsonGenerator) helpers for EMR JSON.
+ * Nothing here builds a Map/JsonNode tree: irrelevant subtrees are skipped and
+ * wanted values are copied token by token (or as raw JSON) straight to the output.
+ */
+public final class EmrJsonStreams {
+
+    public static final String MEDICAL_RECORDS = "medical_records";
+
+    // Callers own the output stream (e.g. the servlet response): never close it from here
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    private EmrJsonStreams() {}
+
+    /**
+     * Write already-serialized JSON values as one array: [a,b,c]
+     */
+    public static void writeRawArray(List<String> rawElements, OutputStream out) throws IOException {
+        out.write('[');
+        for (int i = 0; i < rawElements.size(); i++) {
+            if (i > 0) out.write(',');
+            out.write(rawElements.get(i).getBytes(StandardCharsets.UTF_8));
+        }
+        out.write(']');
+    }
+
+    /**
+     * Prescription view of one entry: {"medications": prescriptions, "note": notes, "diagnosis": diagnosis}.
+     * entryJson == null writes the empty view.
+     */
+    public static void writeEntrySummary(String entryJson, OutputStream out) throws IOException {
+        try (JsonGenerator gen = FACTORY.createGenerator(out)) {
+            gen.writeStartObject();
+            if (entryJson == null) {
+                gen.writeArrayFieldStart("medications");
+                gen.writeEndArray();
+                gen.writeStringField("note", "");
+                gen.writeNullField("diagnosis");
+            } else {
+                boolean medications = false, note = false, diagnosis = false;
+                try (JsonParser p = FACTORY.createParser(entryJson)) {
+                    if (p.nextToken() == JsonToken.START_OBJECT) {
+                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                            String name = p.currentName();
+                            p.nextToken();
+                            String target = switch (name) {
+                                case "prescriptions" -> "medications";
+                                case "notes" -> "note";
+                                case "diagnosis" -> "diagnosis";
+                                default -> null;
+                            };
+                            if (target == null) {
+                                p.skipChildren();
+                                continue;
+                            }
+                            gen.writeFieldName(target);
+                            gen.copyCurrentStructure(p);
+                            medications |= target.equals("medications");
+                            note |= target.equals("note");
+                            diagnosis |= target.equals("diagnosis");
+                        }
+                    }
+                }
+                if (!medications) gen.writeNullField("medications");
+                if (!note) gen.writeNullField("note");
+                if (!diagnosis) gen.writeNullField("diagnosis");
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    /**
+     * Profile document with medical_records replaced by the given raw entries
+     */
+    public static String composeDetail(String profileJson, List<String> rawEntries) throws IOException {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator gen = FACTORY.createGenerator(writer)) {
+            gen.writeStartObject();
+            if (profileJson != null) {
+                try (JsonParser p = FACTORY.createParser(profileJson)) {
+                    if (p.nextToken() == JsonToken.START_OBJECT) {
+                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                            String name = p.currentName();
+                            p.nextToken();
+                            if (MEDICAL_RECORDS.equals(name)) {
+                                p.skipChildren();
+                                continue;
+                            }
+                            gen.writeFieldName(name);
+                            gen.copyCurrentStructure(p);
+                        }
+                    }
+                }
+            }
+            gen.writeArrayFieldStart(MEDICAL_RECORDS);
+            for (String entry : rawEntries) {
+                gen.writeRawValue(entry);
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Hand each element of a top-level array field to the consumer as raw JSON, one at a time
+     */
+    public static void forEachArrayElement(String json, String field, Consumer<String> consumer) throws IOException {
+        try (JsonParser p = FACTORY.createParser(json)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String name = p.currentName();
+                JsonToken value = p.nextToken();
+                if (!field.equals(name) || value != JsonToken.START_ARRAY) {
+                    p.skipChildren();
+                    continue;
+                }
+                while (p.nextToken() != JsonToken.END_ARRAY) {
+                    StringWriter element = new StringWriter();
+                    try (JsonGenerator gen = FACTORY.createGenerator(element)) {
+                        gen.copyCurrentStructure(p);
+                    }
+                    consumer.accept(element.toString());
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Same top-level object without one field
+     */
+    public static String withoutField(String json, String field) throws IOException {
+        StringWriter writer = new StringWriter();
+        try (JsonParser p = FACTORY.createParser(json);
+             JsonGenerator gen = FACTORY.createGenerator(writer)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                return json;
+            }
+            gen.writeStartObject();
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String name = p.currentName();
+                p.nextToken();
+                if (field.equals(name)) {
+                    p.skipChildren();
+                    continue;
+                }
+                gen.writeFieldName(name);
+                gen.copyCurrentStructure(p);
+            }
+            gen.writeEndObject();
+        }
+        return writer.toString();
+    }
+}
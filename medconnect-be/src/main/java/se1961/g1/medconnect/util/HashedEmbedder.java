@@ -0,0 +1,75 @@
+package se1961.g1.medconnect.util;
+
+/**
+ * Deterministic, model-free text embedding: features are hashed into a fixed number of dimensions
+ * (signed feature hashing) and the vector is L2-normalised, so cosine similarity is a dot product.
+ * Features: the BM25 terms (folded syllables + bigrams, stopwords removed) plus character trigrams of each
+ * syllable, which tolerate typos and missing tone marks better than whole words.
+ * Same text -> same vector on every node and every run, so vectors can be computed offline and cached.
+ */
+public final class HashedEmbedder {
+
+    public static final int DEFAULT_DIM = 512;
+    // Bump when features change: cached vector files are keyed on it
+    public static final int VERSION = 1;
+
+    private static final float TERM_WEIGHT = 1.0f;
+    private static final float TRIGRAM_WEIGHT = 0.35f;
+
+    private final int dim;
+
+    public HashedEmbedder(int dim) {
+        this.dim = dim;
+    }
+
+    public int dim() {
+        return dim;
+    }
+
+    public float[] embed(String text) {
+        float[] v = new float[dim];
+        for (String term : Bm25Index.analyze(text)) {
+            add(v, term, TERM_WEIGHT);
+            if (term.indexOf(' ') < 0) {
+                String padded = " " + term + " ";
+                for (int i = 0; i + 3 <= padded.length(); i++) {
+                    add(v, padded.substring(i, i + 3), TRIGRAM_WEIGHT);
+                }
+            }
+        }
+        double norm = 0;
+        for (float x : v) {
+            norm += x * x;
+        }
+        if (norm > 0) {
+            float inv = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < dim; i++) {
+                v[i] *= inv;
+            }
+        }
+        return v;
+    }
+
+    private void add(float[] v, String feature, float weight) {
+        int h = fnv1a(feature);
+        int bucket = Math.floorMod(h, dim);
+        // Independent bit for the sign, so colliding features cancel out instead of piling up
+        v[bucket] += (mix(h) & 1) == 0 ? weight : -weight;
+    }
+
+    private static int fnv1a(String s) {
+        int h = 0x811c9dc5;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x01000193;
+        }
+        return h;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h >>> 31;
+    }
+}
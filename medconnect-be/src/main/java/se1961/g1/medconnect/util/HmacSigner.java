@@ -0,0 +1,63 @@
+package se1961.g1.medconnect.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * HMAC with the key set up once: each thread keeps its own initialized Mac
+ * (Mac is not thread-safe, doFinal resets it for the next call).
+ */
+public final class HmacSigner {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final ThreadLocal<Mac> mac;
+
+    public HmacSigner(String algorithm, String secret) {
+        SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), algorithm);
+        init(algorithm, key); // fail fast on a bad algorithm/key rather than on first use
+        this.mac = ThreadLocal.withInitial(() -> init(algorithm, key));
+    }
+
+    public static HmacSigner sha512(String secret) {
+        return new HmacSigner("HmacSHA512", secret);
+    }
+
+    /**
+     * Lowercase hex HMAC of the UTF-8 bytes of data
+     */
+    public String signHex(String data) {
+        return HEX.formatHex(sign(data));
+    }
+
+    /**
+     * Constant-time check of a hex signature (either case)
+     */
+    public boolean verifyHex(String data, String signatureHex) {
+        byte[] received;
+        try {
+            received = HEX.parseHex(signatureHex);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(sign(data), received);
+    }
+
+    private byte[] sign(String data) {
+        return mac.get().doFinal(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Mac init(String algorithm, SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(algorithm);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + algorithm, e);
+        }
+    }
+}
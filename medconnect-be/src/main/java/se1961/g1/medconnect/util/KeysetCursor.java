@@ -0,0 +1,27 @@
+package se1961.g1.medconnect.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque cursor for keyset pagination ordered by (createdAt DESC, id DESC).
+ * Encodes the sort key of the last row of a page; createdAt == null for legacy rows without timestamp.
+ */
+public record KeysetCursor(String createdAt, Long id) {
+
+    public static String encode(Object createdAt, Long id) {
+        String raw = (createdAt != null ? createdAt.toString() : "") + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String cursor) throws Exception {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            String createdAt = raw.substring(0, sep);
+            return new KeysetCursor(createdAt.isEmpty() ? null : createdAt, Long.parseLong(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new Exception("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package se1961.g1.medconnect.util;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntFunction;
+
+/**
+ * Flat (exact) cosine index over unit vectors stored in a memory-mapped file:
+ * [magic, dim, count] header then count x dim floats, row-major, native byte order.
+ * The OS page cache holds the vectors, not the heap; a query is one sequential scan (dot products) plus
+ * a bounded top-k heap. Exact search stays in the tens of milliseconds up to ~100k x 512 floats,
+ * which is far above the size of the chatbot corpus.
+ */
+public final class MappedVectorIndex {
+
+    private static final int MAGIC = 0x4D435631; // "MCV1"
+    private static final int HEADER_BYTES = 12;
+    // Rows copied out of the mapping per bulk read
+    private static final int BLOCK_ROWS = 256;
+
+    public record Hit(int doc, float score) {
+    }
+
+    private final Path file;
+    private final int dim;
+    private final int count;
+    private final FloatBuffer vectors;
+
+    private MappedVectorIndex(Path file, int dim, int count, FloatBuffer vectors) {
+        this.file = file;
+        this.dim = dim;
+        this.count = count;
+        this.vectors = vectors;
+    }
+
+    /**
+     * Write the vectors to the file (via a temp file + atomic move, so readers never see a partial file) and map it
+     */
+    public static MappedVectorIndex write(Path file, int dim, List<float[]> rows) throws IOException {
+        return write(file, dim, rows.size(), rows::get);
+    }
+
+    /**
+     * Same, producing row i on demand so large indexes never sit on the heap as a whole
+     */
+    public static MappedVectorIndex write(Path file, int dim, int count, IntFunction<float[]> rows) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        long size = HEADER_BYTES + (long) count * dim * Float.BYTES;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.order(ByteOrder.nativeOrder());
+            out.putInt(MAGIC).putInt(dim).putInt(count);
+            FloatBuffer floats = out.asFloatBuffer();
+            for (int i = 0; i < count; i++) {
+                float[] row = rows.apply(i);
+                if (row.length != dim) {
+                    throw new IllegalArgumentException("Vector of size " + row.length + ", expected " + dim);
+                }
+                floats.put(row);
+            }
+            out.force();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(file, dim);
+    }
+
+    /**
+     * Map an existing file; returns null when it is missing or was written with another dimension
+     */
+    public static MappedVectorIndex open(Path file, int dim) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            in.order(ByteOrder.nativeOrder());
+            int count = in.getInt(8);
+            if (in.getInt(0) != MAGIC || in.getInt(4) != dim
+                    || channel.size() != HEADER_BYTES + (long) count * dim * Float.BYTES) {
+                return null;
+            }
+            // The mapping stays valid after the channel is closed
+            FloatBuffer vectors = in.position(HEADER_BYTES).slice().order(ByteOrder.nativeOrder()).asFloatBuffer();
+            return new MappedVectorIndex(file, dim, count, vectors);
+        }
+    }
+
+    /**
+     * Top k rows by cosine similarity to the (unit) query vector, best first
+     */
+    public List<Hit> search(float[] query, int k) {
+        PriorityQueue<Hit> top = new PriorityQueue<>(Math.max(1, k), Comparator.comparingDouble(Hit::score));
+        float[] block = new float[BLOCK_ROWS * dim];
+        for (int start = 0; start < count && k > 0; start += BLOCK_ROWS) {
+            int rows = Math.min(BLOCK_ROWS, count - start);
+            vectors.get(start * dim, block, 0, rows * dim);
+            for (int r = 0; r < rows; r++) {
+                float dot = dot(block, r * dim, query);
+                if (top.size() < k) {
+                    top.add(new Hit(start + r, dot));
+                } else if (dot > top.peek().score()) {
+                    top.poll();
+                    top.add(new Hit(start + r, dot));
+                }
+            }
+        }
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed().thenComparingInt(Hit::doc));
+        return hits;
+    }
+
+    /**
+     * Four independent accumulators: a single running sum is a dependency chain the JIT cannot vectorise
+     */
+    private static float dot(float[] block, int offset, float[] query) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int n = query.length;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            s0 += block[offset + i] * query[i];
+            s1 += block[offset + i + 1] * query[i + 1];
+            s2 += block[offset + i + 2] * query[i + 2];
+            s3 += block[offset + i + 3] * query[i + 3];
+        }
+        for (; i < n; i++) {
+            s0 += block[offset + i] * query[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public int dim() {
+        return dim;
+    }
+
+    public int count() {
+        return count;
+    }
+}
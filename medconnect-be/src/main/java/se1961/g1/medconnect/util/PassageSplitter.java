@@ -0,0 +1,72 @@
+package se1961.g1.medconnect.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the chatbot's markdown / FAQ documents into short retrievable passages.
+ * A passage starts at every heading and every "Q:" line (one question + its answer), long sections are cut
+ * at blank lines. Each passage is prefixed with its heading path so it still makes sense on its own in a prompt.
+ */
+public final class PassageSplitter {
+
+    // Body limit; with its heading path a passage stays under ChatbotService's 800-char per-context cut
+    public static final int MAX_PASSAGE_CHARS = 650;
+
+    private PassageSplitter() {
+    }
+
+    public static List<String> split(String text) {
+        List<String> passages = new ArrayList<>();
+        String[] headings = new String[7];
+        StringBuilder body = new StringBuilder();
+        for (String line : text.split("\n")) {
+            String trimmed = line.trim();
+            int level = headingLevel(trimmed);
+            if (level > 0) {
+                flush(passages, headings, body);
+                headings[level] = trimmed.substring(level).trim();
+                for (int i = level + 1; i < headings.length; i++) {
+                    headings[i] = null;
+                }
+                continue;
+            }
+            if (trimmed.startsWith("Q:")
+                    || (trimmed.isEmpty() && body.length() > MAX_PASSAGE_CHARS / 2)
+                    || body.length() + trimmed.length() > MAX_PASSAGE_CHARS) {
+                flush(passages, headings, body);
+            }
+            if (!trimmed.isEmpty() || body.length() > 0) {
+                body.append(line).append('\n');
+            }
+        }
+        flush(passages, headings, body);
+        return passages;
+    }
+
+    private static int headingLevel(String line) {
+        int level = 0;
+        while (level < line.length() && level < 6 && line.charAt(level) == '#') {
+            level++;
+        }
+        return level > 0 && level < line.length() && line.charAt(level) == ' ' ? level : 0;
+    }
+
+    private static void flush(List<String> passages, String[] headings, StringBuilder body) {
+        String content = body.toString().trim();
+        body.setLength(0);
+        if (content.isEmpty()) {
+            return;
+        }
+        StringBuilder path = new StringBuilder();
+        for (String heading : headings) {
+            if (heading != null) {
+                if (path.length() > 0) {
+                    path.append(" > ");
+                }
+                path.append(heading);
+            }
+        }
+        passages.add(path.length() > 0 ? "[" + path + "]\n" + content : content);
+    }
+}
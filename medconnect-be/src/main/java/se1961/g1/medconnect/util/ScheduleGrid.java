@@ -0,0 +1,113 @@
+package se1961.g1.medconnect.util;
+
+import se1961.g1.medconnect.dto.AppointmentDTO;
+import se1961.g1.medconnect.dto.ScheduleDTO;
+import se1961.g1.medconnect.dto.ScheduleRangeDTO;
+import se1961.g1.medconnect.enums.AppointmentStatus;
+import se1961.g1.medconnect.enums.ScheduleStatus;
+import se1961.g1.medconnect.enums.Slot;
+import se1961.g1.medconnect.pojo.Appointment;
+import se1961.g1.medconnect.pojo.Schedule;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a doctor's schedule grid (days x 12 slots) from schedules and appointments.
+ * Rows are indexed once by date -> EnumMap<Slot, ...>, so every cell is an O(1) lookup
+ * instead of scanning both lists per cell.
+ */
+public final class ScheduleGrid {
+
+    private final Map<LocalDate, EnumMap<Slot, Schedule>> schedules = new HashMap<>();
+    private final Map<LocalDate, EnumMap<Slot, Appointment>> appointments = new HashMap<>();
+
+    private ScheduleGrid(List<Schedule> scheduleList, List<Appointment> appointmentList) {
+        for (Schedule s : scheduleList) {
+            schedules.computeIfAbsent(s.getDate(), d -> new EnumMap<>(Slot.class))
+                    .putIfAbsent(s.getSlot(), s);
+        }
+        for (Appointment a : appointmentList) {
+            // Only active appointments occupy a cell; first one wins as before
+            if (a.getStatus() == AppointmentStatus.CANCELLED || a.getStatus() == AppointmentStatus.DENIED) {
+                continue;
+            }
+            appointments.computeIfAbsent(a.getDate(), d -> new EnumMap<>(Slot.class))
+                    .putIfAbsent(a.getSlot(), a);
+        }
+    }
+
+    public static ScheduleGrid of(List<Schedule> scheduleList, List<Appointment> appointmentList) {
+        return new ScheduleGrid(scheduleList, appointmentList);
+    }
+
+    /**
+     * Full grid: one cell per (date, slot), EMPTY when nothing is there
+     */
+    public List<ScheduleDTO> fullGrid(LocalDate start, LocalDate end) {
+        Slot[] slots = Slot.values();
+        List<ScheduleDTO> grid = new ArrayList<>((int) (end.toEpochDay() - start.toEpochDay() + 1) * slots.length);
+        for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+            EnumMap<Slot, Schedule> daySchedules = schedules.get(date);
+            EnumMap<Slot, Appointment> dayAppointments = appointments.get(date);
+            for (Slot slot : slots) {
+                Schedule schedule = daySchedules != null ? daySchedules.get(slot) : null;
+                Appointment appointment = dayAppointments != null ? dayAppointments.get(slot) : null;
+                grid.add(cell(date, slot, schedule, appointment));
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Compact range: per day an opened/busy slot mask, plus only the populated cells
+     */
+    public ScheduleRangeDTO compact(LocalDate start, LocalDate end) {
+        List<ScheduleRangeDTO.DayMask> days = new ArrayList<>();
+        List<ScheduleDTO> cells = new ArrayList<>();
+        for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+            EnumMap<Slot, Schedule> daySchedules = schedules.get(date);
+            EnumMap<Slot, Appointment> dayAppointments = appointments.get(date);
+            if (daySchedules == null && dayAppointments == null) {
+                continue;
+            }
+            int openMask = 0;
+            int busyMask = 0;
+            for (Slot slot : Slot.values()) {
+                Schedule schedule = daySchedules != null ? daySchedules.get(slot) : null;
+                Appointment appointment = dayAppointments != null ? dayAppointments.get(slot) : null;
+                if (schedule == null && appointment == null) {
+                    continue;
+                }
+                if (schedule != null) openMask |= slot.bit();
+                if (appointment != null) busyMask |= slot.bit();
+                cells.add(cell(date, slot, schedule, appointment));
+            }
+            days.add(new ScheduleRangeDTO.DayMask(date, openMask, busyMask));
+        }
+        return new ScheduleRangeDTO(start, end, days, cells);
+    }
+
+    private static ScheduleDTO cell(LocalDate date, Slot slot, Schedule schedule, Appointment appointment) {
+        ScheduleDTO dto;
+        if (schedule != null) {
+            // Doctor has opened this slot
+            dto = new ScheduleDTO(schedule);
+        } else {
+            dto = new ScheduleDTO();
+            dto.setDate(date);
+            dto.setSlot(slot);
+            dto.setStatus(ScheduleStatus.EMPTY);
+        }
+        if (appointment != null) {
+            // There's an appointment -> mark as BUSY
+            dto.setStatus(ScheduleStatus.BUSY);
+            dto.setAppointment(new AppointmentDTO(appointment));
+        }
+        return dto;
+    }
+}
@@ -0,0 +1,96 @@
+package se1961.g1.medconnect.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+
+/**
+ * Lazily rebuilt immutable snapshot shared by the read-mostly catalogues.
+ * - invalidate() bumps a write version after the transaction commits; the next read rebuilds.
+ * - A snapshot older than the TTL is rebuilt too: invalidation is in-process only, so the TTL bounds how long
+ *   a write made on another node stays unseen.
+ * - One thread rebuilds at a time; readers keep serving the previous snapshot without locking.
+ */
+public class VersionedSnapshot<T> {
+
+    private record Built<T>(long version, T value, long builtAtMillis) {
+    }
+
+    private volatile Built<T> current;
+    private volatile long ttlMillis;
+
+    private final AtomicLong writeVersion = new AtomicLong();
+    private final Object rebuildLock = new Object();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+
+    public VersionedSnapshot(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public T get(LongFunction<T> builder) {
+        return get(value -> true, builder);
+    }
+
+    /**
+     * Current snapshot, rebuilt (builder gets the write version it reflects) when a write committed since,
+     * the TTL ran out or stillValid rejects it
+     */
+    public T get(Predicate<T> stillValid, LongFunction<T> builder) {
+        Built<T> built = current;
+        if (isCurrent(built, stillValid)) {
+            hits.incrementAndGet();
+            return built.value();
+        }
+        synchronized (rebuildLock) {
+            built = current;
+            if (isCurrent(built, stillValid)) {
+                return built.value();
+            }
+            long version = writeVersion.get();
+            built = new Built<>(version, builder.apply(version), System.currentTimeMillis());
+            current = built;
+            rebuilds.incrementAndGet();
+            return built.value();
+        }
+    }
+
+    private boolean isCurrent(Built<T> built, Predicate<T> stillValid) {
+        return built != null && built.version() == writeVersion.get()
+                && System.currentTimeMillis() - built.builtAtMillis() < ttlMillis
+                && stillValid.test(built.value());
+    }
+
+    /**
+     * Next read rebuilds once the current transaction (if any) commits
+     */
+    public void invalidate() {
+        AfterCommit.run(writeVersion::incrementAndGet);
+    }
+
+    /**
+     * Last built value without rebuilding (null before the first read)
+     */
+    public T peek() {
+        Built<T> built = current;
+        return built != null ? built.value() : null;
+    }
+
+    public Map<String, Object> getStats() {
+        Built<T> built = current;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("version", built != null ? built.version() : -1);
+        stats.put("writeVersion", writeVersion.get());
+        stats.put("ttlMillis", ttlMillis);
+        stats.put("hits", hits.get());
+        stats.put("rebuilds", rebuilds.get());
+        return stats;
+    }
+}
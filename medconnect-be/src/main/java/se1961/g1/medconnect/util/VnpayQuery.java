@@ -0,0 +1,37 @@
+package se1961.g1.medconnect.util;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * VNPay canonical query: keys sorted, null/empty values skipped, keys and values URL-encoded.
+ * The same string is both the HMAC input and the query of the checkout URL, so it is built once.
+ */
+public final class VnpayQuery {
+
+    private VnpayQuery() {
+    }
+
+    public static String canonical(Map<String, String> params) {
+        String[] keys = params.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+
+        StringBuilder sb = new StringBuilder(keys.length * 32);
+        for (String key : keys) {
+            String value = params.get(key);
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append('&');
+            }
+            // URLEncoder returns its input unchanged when nothing needs escaping (vnp_* keys, amounts, dates)
+            sb.append(URLEncoder.encode(key, StandardCharsets.UTF_8))
+                    .append('=')
+                    .append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,149 @@
+package se1961.g1.medconnect.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+import se1961.g1.medconnect.service.ChatbotKnowledgeBase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Chatbot context retrievals per second: old whole-file keyword count (toLowerCase + split(word) per file
+ * per query word) vs BM25 over passages. main() also prints top-2 hits on the evaluation set (rag-eval.tsv).
+ * Run: mvn test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=se1961.g1.medconnect.benchmark.ChatbotRetrievalBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChatbotRetrievalBenchmark {
+
+    // ChatbotService keeps only the first 800 chars of each context
+    public static final int PROMPT_CHARS_PER_CONTEXT = 800;
+
+    /**
+     * One evaluation question and the texts (any of) a useful context contains
+     */
+    public record EvalCase(String question, List<String> expected) {
+        public boolean hitBy(List<String> contexts) {
+            for (String context : contexts) {
+                String prompted = context.length() > PROMPT_CHARS_PER_CONTEXT
+                        ? context.substring(0, PROMPT_CHARS_PER_CONTEXT) : context;
+                for (String text : expected) {
+                    if (prompted.contains(text)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private List<String> legacyDataset;
+    private ChatbotKnowledgeBase knowledgeBase;
+    private String[] questions;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        legacyDataset = loadLegacyDataset();
+        knowledgeBase = new ChatbotKnowledgeBase();
+        questions = loadEvalSet().stream().map(EvalCase::question).toArray(String[]::new);
+        knowledgeBase.search(questions[0], 2);
+    }
+
+    @Benchmark
+    public List<String> legacy() {
+        return legacySearch(legacyDataset, questions[next++ % questions.length], 2);
+    }
+
+    @Benchmark
+    public List<String> bm25() {
+        return knowledgeBase.search(questions[next++ % questions.length], 2);
+    }
+
+    public static List<EvalCase> loadEvalSet() throws IOException {
+        List<EvalCase> cases = new ArrayList<>();
+        for (String line : read("rag-eval.tsv").split("\n")) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\t");
+            cases.add(new EvalCase(parts[0].trim(), List.of(parts[1].trim().split("\\|"))));
+        }
+        return cases;
+    }
+
+    /**
+     * Whole files, as the old ChatbotService.loadDataset kept them
+     */
+    public static List<String> loadLegacyDataset() throws IOException {
+        List<String> dataset = new ArrayList<>();
+        for (String file : new String[]{"faq/patient-faq.txt", "faq/doctor-faq.txt", "faq/system-faq.txt",
+                "policies/cancellation-policy.txt", "policies/payment-policy.txt",
+                "guides/video-call-guide.md", "guides/technical-specs.md"}) {
+            dataset.add(read("dataset/" + file));
+        }
+        dataset.add("Thông tin y tế: " + read("dataset/medical/diseases-symptoms.json"));
+        return dataset;
+    }
+
+    /**
+     * The old ChatbotService.searchRelevantContext
+     */
+    public static List<String> legacySearch(List<String> dataset, String query, int maxResults) {
+        String queryLower = query.toLowerCase();
+        List<Map.Entry<String, Integer>> scored = new ArrayList<>();
+        for (String content : dataset) {
+            String contentLower = content.toLowerCase();
+            int score = 0;
+            for (String word : queryLower.split("\\s+")) {
+                if (word.length() > 2 && contentLower.contains(word)) {
+                    score += contentLower.split(word, -1).length - 1;
+                }
+            }
+            if (score > 0) {
+                scored.add(new AbstractMap.SimpleEntry<>(content, score));
+            }
+        }
+        return scored.stream()
+                .sorted((a, b) -> b.getValue().compareTo(a.getValue()))
+                .limit(maxResults)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private static String read(String path) throws IOException {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        List<String> legacyDataset = loadLegacyDataset();
+        ChatbotKnowledgeBase knowledgeBase = new ChatbotKnowledgeBase();
+        int legacyHits = 0, bm25Hits = 0;
+        List<EvalCase> cases = loadEvalSet();
+        for (EvalCase c : cases) {
+            if (c.hitBy(legacySearch(legacyDataset, c.question(), 2))) legacyHits++;
+            if (c.hitBy(knowledgeBase.search(c.question(), 2))) bm25Hits++;
+        }
+        System.out.printf("top-2 hits on %d questions: legacy=%d bm25=%d%n", cases.size(), legacyHits, bm25Hits);
+
+        Options opt = new OptionsBuilder()
+                .include(ChatbotRetrievalBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
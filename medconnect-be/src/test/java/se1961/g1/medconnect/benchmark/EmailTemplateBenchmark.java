@@ -0,0 +1,80 @@
+package se1961.g1.medconnect.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+import se1961.g1.medconnect.util.CompiledTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Email renders per second: old loader (classpath read + String.replace per variable) vs compiled template.
+ * Run: mvn test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=se1961.g1.medconnect.benchmark.EmailTemplateBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmailTemplateBenchmark {
+
+    @Param({"appointment-confirmation", "account-created"})
+    private String template;
+
+    private Map<String, String> variables;
+    private CompiledTemplate compiled;
+
+    @Setup
+    public void setup() throws IOException {
+        variables = new HashMap<>();
+        variables.put("patientName", "Nguyễn Văn A");
+        variables.put("doctorName", "BS. Trần Thị B");
+        variables.put("appointmentDate", "2025-11-20");
+        variables.put("appointmentTime", "SLOT_3");
+        variables.put("specialization", "Tim mạch");
+        variables.put("userName", "Nguyễn Văn A");
+        variables.put("email", "nguyenvana@gmail.com");
+        variables.put("password", "Tmp#2025<x>");
+        variables.put("roleName", "Bệnh nhân");
+        compiled = CompiledTemplate.compile(template, read(template));
+    }
+
+    private static String read(String name) throws IOException {
+        ClassPathResource resource = new ClassPathResource("templates/email/" + name + ".html");
+        return new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String legacyLoadAndReplace() throws IOException {
+        ClassPathResource resource = new ClassPathResource("templates/email/" + template + ".html");
+        if (!resource.exists()) {
+            throw new IOException("Template does not exist.");
+        }
+        String content = new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        for (Map.Entry<String, String> entry : variables.entrySet()) {
+            content = content.replace("{{" + entry.getKey() + "}}", entry.getValue());
+        }
+        return content;
+    }
+
+    @Benchmark
+    public String compiledRender() {
+        return compiled.render(variables);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(EmailTemplateBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,152 @@
+package se1961.g1.medconnect.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import se1961.g1.medconnect.util.EmrJsonStreams;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EMR reads: old full-tree parse of MedicalRecord.detail vs streaming extraction / entry rows.
+ * Run: mvn test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=se1961.g1.medconnect.benchmark.EmrJsonBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmrJsonBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int entries;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Legacy document: profile + medical_records array in one blob
+    private String detail;
+    // New storage: profile only + one serialized entry per row
+    private String profile;
+    private List<String> entryRows;
+    private long lastAppointmentId;
+
+    @Setup
+    public void setup() throws Exception {
+        Map<String, Object> patientProfile = new LinkedHashMap<>();
+        patientProfile.put("full_name", "Nguyễn Văn A");
+        patientProfile.put("dob", "1990-01-01");
+        patientProfile.put("blood_type", "O+");
+        patientProfile.put("allergies", "Penicillin");
+        patientProfile.put("id_photo_url", "https://res.cloudinary.com/demo/image/upload/id.png");
+
+        List<Object> records = new ArrayList<>();
+        entryRows = new ArrayList<>();
+        for (int i = 1; i <= entries; i++) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("visit_id", "V" + i);
+            entry.put("visit_date", "2025-01-01");
+            entry.put("doctor_name", "BS. Trần Thị B");
+            entry.put("chief_complaint", "Ho, sốt nhẹ kéo dài 3 ngày, đau họng");
+            entry.put("diagnosis", Map.of("primary", "Viêm họng cấp", "icd10", "J02.9"));
+            entry.put("notes", "Uống nhiều nước, tái khám sau 5 ngày nếu không đỡ");
+            entry.put("vital_signs", Map.of("temperature", 37.8, "pulse", 88, "bp", "120/80"));
+            entry.put("prescriptions", List.of(
+                    Map.of("name", "Paracetamol 500mg", "dosage", "1 viên x 3 lần/ngày", "duration", "5 ngày"),
+                    Map.of("name", "Amoxicillin 500mg", "dosage", "1 viên x 2 lần/ngày", "duration", "7 ngày")));
+            entry.put("appointment_id", (long) i);
+            records.add(entry);
+            entryRows.add(objectMapper.writeValueAsString(entry));
+        }
+        lastAppointmentId = entries;
+
+        Map<String, Object> emr = new LinkedHashMap<>();
+        emr.put("patient_profile", patientProfile);
+        emr.put("medical_records", records);
+        detail = objectMapper.writeValueAsString(emr);
+        profile = objectMapper.writeValueAsString(Map.of("patient_profile", patientProfile));
+    }
+
+    // ---------- /patient/{id}/entries ----------
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public byte[] entriesTreeParse() throws Exception {
+        Map<String, Object> emr = objectMapper.readValue(detail, Map.class);
+        Object list = emr.get("medical_records");
+        if (!(list instanceof List<?>)) {
+            list = new ArrayList<>();
+        }
+        return objectMapper.writeValueAsBytes(list);
+    }
+
+    @Benchmark
+    public byte[] entriesStreamFromDocument() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(detail.length());
+        List<String> raw = new ArrayList<>();
+        EmrJsonStreams.forEachArrayElement(detail, EmrJsonStreams.MEDICAL_RECORDS, raw::add);
+        EmrJsonStreams.writeRawArray(raw, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] entriesFromRows() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(detail.length());
+        EmrJsonStreams.writeRawArray(entryRows, out);
+        return out.toByteArray();
+    }
+
+    // ---------- /appointment/{id} ----------
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public byte[] appointmentTreeParse() throws Exception {
+        Map<String, Object> emr = objectMapper.readValue(detail, Map.class);
+        List<Map<String, Object>> list = (List<Map<String, Object>>) emr.get("medical_records");
+        Map<String, Object> match = null;
+        for (Map<String, Object> entry : list) {
+            Object id = entry.get("appointment_id");
+            if (id instanceof Number n && n.longValue() == lastAppointmentId) {
+                match = entry;
+                break;
+            }
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("medications", match.get("prescriptions"));
+        response.put("note", match.get("notes"));
+        response.put("diagnosis", match.get("diagnosis"));
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] appointmentFromRow() throws Exception {
+        // Row is located by the appointmentId index; only its own fields are streamed
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        EmrJsonStreams.writeEntrySummary(entryRows.get(entryRows.size() - 1), out);
+        return out.toByteArray();
+    }
+
+    // ---------- full EMR (/my-profile) ----------
+
+    @Benchmark
+    public String composeDetailFromRows() throws Exception {
+        return EmrJsonStreams.composeDetail(profile, entryRows);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(EmrJsonBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
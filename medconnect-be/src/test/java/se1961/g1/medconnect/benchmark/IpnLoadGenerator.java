@@ -0,0 +1,136 @@
+package se1961.g1.medconnect.benchmark;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Local VNPay IPN generator: replays signed IPNs against a running backend the way VNPay does
+ * during a retry storm (every notification sent `retries` times, concurrently), then prints
+ * throughput, latency percentiles and the RspCode mix.
+ * Payments firstId..lastId must exist and be PENDING with the given amount; expect one 00 per
+ * payment and 02 for every retry.
+ * Run against a local instance (never production):
+ *   mvn test-compile exec:java -Dexec.classpathScope=test
+ *       -Dexec.mainClass=se1961.g1.medconnect.benchmark.IpnLoadGenerator
+ *       -Dexec.args="url=http://localhost:8080/api/payment/ipn secret=... firstId=1 lastId=500 amount=200000 retries=20 threads=64"
+ */
+public class IpnLoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) opts.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        String url = opts.getOrDefault("url", "http://localhost:8080/api/payment/ipn");
+        String secret = opts.getOrDefault("secret", System.getenv("VNPAY_HASH_SECRET"));
+        long firstId = Long.parseLong(opts.getOrDefault("firstId", "1"));
+        long lastId = Long.parseLong(opts.getOrDefault("lastId", "100"));
+        long amount = Long.parseLong(opts.getOrDefault("amount", "200000"));
+        String txnSuffix = opts.getOrDefault("txnSuffix", "1730189283123");
+        int retries = Integer.parseInt(opts.getOrDefault("retries", "10"));
+        int threads = Integer.parseInt(opts.getOrDefault("threads", "32"));
+        if (secret == null) {
+            throw new IllegalArgumentException("secret=... (vnpay.hashSecret of the target) is required");
+        }
+
+        // Each IPN is repeated `retries` times and the whole list shuffled, so duplicates race each other
+        List<String> bodies = new ArrayList<>();
+        for (long id = firstId; id <= lastId; id++) {
+            String body = signedBody(id + "-" + txnSuffix, amount * 100, secret);
+            for (int r = 0; r < retries; r++) {
+                bodies.add(body);
+            }
+        }
+        Collections.shuffle(bodies, new Random(42));
+
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newFixedThreadPool(threads)).build();
+        AtomicLongArray latencies = new AtomicLongArray(bodies.size());
+        AtomicLong next = new AtomicLong();
+        Map<String, AtomicLong> codes = new ConcurrentHashMap<>();
+
+        long start = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            workers.submit(() -> {
+                int i;
+                while ((i = (int) next.getAndIncrement()) < bodies.size()) {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                            .header("Content-Type", "application/x-www-form-urlencoded")
+                            .POST(HttpRequest.BodyPublishers.ofString(bodies.get(i)))
+                            .build();
+                    long t0 = System.nanoTime();
+                    String code;
+                    try {
+                        String response = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+                        int at = response.indexOf("\"RspCode\":\"");
+                        code = at < 0 ? "?" : response.substring(at + 11, at + 13);
+                    } catch (Exception e) {
+                        code = "ERR";
+                    }
+                    latencies.set(i, System.nanoTime() - t0);
+                    codes.computeIfAbsent(code, k -> new AtomicLong()).incrementAndGet();
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.HOURS);
+        long elapsed = System.nanoTime() - start;
+
+        long[] sorted = new long[bodies.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+        System.out.printf("%d IPNs (%d distinct x %d) in %.2fs = %.0f req/s%n",
+                sorted.length, lastId - firstId + 1, retries, elapsed / 1e9, sorted.length / (elapsed / 1e9));
+        System.out.printf("latency ms: p50=%.2f p90=%.2f p99=%.2f max=%.2f%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), sorted[sorted.length - 1] / 1e6);
+        System.out.println("RspCode: " + new TreeMap<>(codes));
+        System.exit(0);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6;
+    }
+
+    /**
+     * Same canonical form as PaymentService.generateVnpSignature: sorted keys, URL-encoded, HMAC-SHA512 hex
+     */
+    private static String signedBody(String txnRef, long vnpAmount, String secret) throws Exception {
+        Map<String, String> params = new TreeMap<>();
+        params.put("vnp_Amount", String.valueOf(vnpAmount));
+        params.put("vnp_BankCode", "NCB");
+        params.put("vnp_PayDate", "20250101120000");
+        params.put("vnp_ResponseCode", "00");
+        params.put("vnp_TmnCode", "LOADTEST");
+        params.put("vnp_TransactionNo", String.valueOf(Math.abs(txnRef.hashCode())));
+        params.put("vnp_TransactionStatus", "00");
+        params.put("vnp_TxnRef", txnRef);
+
+        StringBuilder query = new StringBuilder();
+        for (Map.Entry<String, String> e : params.entrySet()) {
+            if (query.length() > 0) query.append('&');
+            query.append(URLEncoder.encode(e.getKey(), StandardCharsets.UTF_8))
+                    .append('=')
+                    .append(URLEncoder.encode(e.getValue(), StandardCharsets.UTF_8));
+        }
+        Mac hmac = Mac.getInstance("HmacSHA512");
+        hmac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA512"));
+        String hash = HexFormat.of().formatHex(hmac.doFinal(query.toString().getBytes(StandardCharsets.UTF_8)));
+        return query + "&vnp_SecureHash=" + hash;
+    }
+}
@@ -0,0 +1,133 @@
+package se1961.g1.medconnect.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import se1961.g1.medconnect.dto.AppointmentDTO;
+import se1961.g1.medconnect.dto.ScheduleDTO;
+import se1961.g1.medconnect.dto.ScheduleRangeDTO;
+import se1961.g1.medconnect.enums.AppointmentStatus;
+import se1961.g1.medconnect.enums.ScheduleStatus;
+import se1961.g1.medconnect.enums.Slot;
+import se1961.g1.medconnect.pojo.Appointment;
+import se1961.g1.medconnect.pojo.Schedule;
+import se1961.g1.medconnect.util.ScheduleGrid;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedule grid build: old per-cell list scan vs keyed EnumMap grid.
+ * Run: mvn test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=se1961.g1.medconnect.benchmark.ScheduleGridBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScheduleGridBenchmark {
+
+    @Param({"7", "31", "90"})
+    private int days;
+
+    private LocalDate start;
+    private LocalDate end;
+    private List<Schedule> schedules;
+    private List<Appointment> appointments;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        start = LocalDate.of(2025, 1, 6);
+        end = start.plusDays(days - 1);
+        schedules = new ArrayList<>();
+        appointments = new ArrayList<>();
+
+        long id = 1;
+        for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+            for (Slot slot : Slot.values()) {
+                // ~60% of slots opened, ~half of those booked, some cancelled
+                if (random.nextInt(10) >= 6) continue;
+                Schedule schedule = new Schedule();
+                schedule.setScheduleId(id);
+                schedule.setDate(date);
+                schedule.setSlot(slot);
+                schedule.setStatus(ScheduleStatus.RESERVED);
+                schedules.add(schedule);
+
+                if (random.nextBoolean()) {
+                    Appointment appointment = new Appointment();
+                    appointment.setAppointmentId(id);
+                    appointment.setDate(date);
+                    appointment.setSlot(slot);
+                    appointment.setStatus(random.nextInt(5) == 0 ? AppointmentStatus.CANCELLED : AppointmentStatus.CONFIRMED);
+                    appointments.add(appointment);
+                }
+                id++;
+            }
+        }
+    }
+
+    @Benchmark
+    public List<ScheduleDTO> legacyScan() {
+        List<ScheduleDTO> grid = new ArrayList<>();
+        for (LocalDate date : start.datesUntil(end.plusDays(1)).toList()) {
+            for (Slot slot : Slot.values()) {
+                Schedule schedule = schedules.stream()
+                        .filter(s -> s.getDate().equals(date) && s.getSlot() == slot)
+                        .findFirst()
+                        .orElse(null);
+
+                ScheduleDTO dto;
+                if (schedule != null) {
+                    dto = new ScheduleDTO(schedule);
+                } else {
+                    dto = new ScheduleDTO();
+                    dto.setDate(date);
+                    dto.setSlot(slot);
+                    dto.setStatus(ScheduleStatus.EMPTY);
+                }
+
+                Appointment appointment = appointments.stream()
+                        .filter(a -> a.getDate().equals(date) && a.getSlot() == slot)
+                        .filter(a -> {
+                            String status = a.getStatus().name();
+                            return !status.equals("CANCELLED") && !status.equals("DENIED");
+                        })
+                        .findFirst()
+                        .orElse(null);
+
+                if (appointment != null) {
+                    dto.setStatus(ScheduleStatus.BUSY);
+                    dto.setAppointment(new AppointmentDTO(appointment));
+                }
+                grid.add(dto);
+            }
+        }
+        return grid;
+    }
+
+    @Benchmark
+    public List<ScheduleDTO> keyedGrid() {
+        return ScheduleGrid.of(schedules, appointments).fullGrid(start, end);
+    }
+
+    @Benchmark
+    public ScheduleRangeDTO compactRange() {
+        return ScheduleGrid.of(schedules, appointments).compact(start, end);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ScheduleGridBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,96 @@
+package se1961.g1.medconnect.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+import se1961.g1.medconnect.util.HashedEmbedder;
+import se1961.g1.medconnect.util.MappedVectorIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Semantic retrieval latency (embed the question + exact cosine scan of the memory-mapped vectors, top 5)
+ * at 10k and 100k passages. Passages are synthetic: 3-6 random dataset lines each, embedded with the
+ * same HashedEmbedder as the chatbot.
+ * Run: mvn test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=se1961.g1.medconnect.benchmark.VectorSearchBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class VectorSearchBenchmark {
+
+    @Param({"10000", "100000"})
+    private int passages;
+
+    private final HashedEmbedder embedder = new HashedEmbedder(HashedEmbedder.DEFAULT_DIM);
+    private Path file;
+    private MappedVectorIndex index;
+    private String[] questions;
+    private float[] questionVector;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String path : new String[]{"faq/patient-faq.txt", "faq/doctor-faq.txt", "faq/system-faq.txt",
+                "policies/cancellation-policy.txt", "policies/payment-policy.txt",
+                "guides/video-call-guide.md", "guides/technical-specs.md"}) {
+            try (InputStream in = new ClassPathResource("dataset/" + path).getInputStream()) {
+                for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                    if (line.trim().length() > 20) {
+                        lines.add(line.trim());
+                    }
+                }
+            }
+        }
+        Random random = new Random(42);
+        file = Files.createTempFile("vector-bench-", ".f32");
+        index = MappedVectorIndex.write(file, embedder.dim(), passages, i -> {
+            StringBuilder passage = new StringBuilder();
+            for (int n = 3 + random.nextInt(4); n > 0; n--) {
+                passage.append(lines.get(random.nextInt(lines.size()))).append('\n');
+            }
+            return embedder.embed(passage.toString());
+        });
+        questions = ChatbotRetrievalBenchmark.loadEvalSet().stream()
+                .map(ChatbotRetrievalBenchmark.EvalCase::question).toArray(String[]::new);
+        questionVector = embedder.embed(questions[0]);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<MappedVectorIndex.Hit> embedAndSearch() {
+        return index.search(embedder.embed(questions[next++ % questions.length]), 5);
+    }
+
+    @Benchmark
+    public List<MappedVectorIndex.Hit> scanOnly() {
+        return index.search(questionVector, 5);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(VectorSearchBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,117 @@
+package se1961.g1.medconnect.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import se1961.g1.medconnect.util.HmacSigner;
+import se1961.g1.medconnect.util.VnpayQuery;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signed checkout URLs per second: old path (sort + encode twice, Mac.getInstance/init per call,
+ * Integer.toHexString per byte) vs single canonical query + pre-keyed thread-local Mac.
+ * Run: mvn test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=se1961.g1.medconnect.benchmark.VnpaySignatureBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VnpaySignatureBenchmark {
+
+    private static final String SECRET = "5Y1HPSXD6LV9XV58PD4C02YYFK";
+    private static final String PAY_URL = "https://sandbox.vnpayment.vn/paymentv2/vpcpay.html";
+
+    private Map<String, String> params;
+    private HmacSigner signer;
+
+    @Setup
+    public void setup() {
+        params = new HashMap<>();
+        params.put("vnp_Version", "2.1.0");
+        params.put("vnp_Command", "pay");
+        params.put("vnp_TmnCode", "W9VOZMDN");
+        params.put("vnp_Amount", "30000000");
+        params.put("vnp_CurrCode", "VND");
+        params.put("vnp_TxnRef", "1234-1730189283123");
+        params.put("vnp_OrderInfo", "Thanh toán khám bệnh - BS. Trần Thị B");
+        params.put("vnp_OrderType", "other");
+        params.put("vnp_Locale", "vn");
+        params.put("vnp_ReturnUrl", "https://medconnect.vn/thanh-toan/callback");
+        params.put("vnp_IpAddr", "127.0.0.1");
+        params.put("vnp_CreateDate", "20251018101500");
+        params.put("vnp_ExpireDate", "20251018103000");
+        signer = HmacSigner.sha512(SECRET);
+    }
+
+    @Benchmark
+    public String legacy() throws Exception {
+        Map<String, String> signed = new HashMap<>(params);
+        signed.put("vnp_SecureHash", legacySignature(params));
+        return PAY_URL + "?" + legacyQuery(signed);
+    }
+
+    @Benchmark
+    public String canonical() {
+        String query = VnpayQuery.canonical(params);
+        return PAY_URL + "?" + query + "&vnp_SecureHash=" + signer.signHex(query);
+    }
+
+    private static String legacySignature(Map<String, String> params) throws Exception {
+        List<String> fieldNames = new ArrayList<>(params.keySet());
+        Collections.sort(fieldNames);
+        StringBuilder hashData = new StringBuilder();
+        for (int i = 0; i < fieldNames.size(); i++) {
+            String fieldName = fieldNames.get(i);
+            String fieldValue = params.get(fieldName);
+            if (fieldValue != null && !fieldValue.isEmpty()) {
+                hashData.append(URLEncoder.encode(fieldName, StandardCharsets.UTF_8));
+                hashData.append('=');
+                hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.UTF_8));
+                if (i != fieldNames.size() - 1) {
+                    hashData.append('&');
+                }
+            }
+        }
+        Mac hmac = Mac.getInstance("HmacSHA512");
+        hmac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA512"));
+        byte[] hashBytes = hmac.doFinal(hashData.toString().getBytes(StandardCharsets.UTF_8));
+        StringBuilder hexString = new StringBuilder();
+        for (byte b : hashBytes) {
+            String hex = Integer.toHexString(0xff & b);
+            if (hex.length() == 1) hexString.append('0');
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+
+    private static String legacyQuery(Map<String, String> params) {
+        List<String> keys = new ArrayList<>(params.keySet());
+        Collections.sort(keys);
+        StringBuilder query = new StringBuilder();
+        for (String key : keys) {
+            if (query.length() > 0) query.append('&');
+            query.append(URLEncoder.encode(key, StandardCharsets.UTF_8))
+                    .append('=')
+                    .append(URLEncoder.encode(params.get(key), StandardCharsets.UTF_8));
+        }
+        return query.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(VnpaySignatureBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
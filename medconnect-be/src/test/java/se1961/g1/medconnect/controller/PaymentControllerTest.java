@@ -62,7 +62,8 @@ class PaymentControllerTest {
         Payment mockPayment = new Payment();
         mockPayment.setStatus(PaymentStatus.PAID);
 
-        when(paymentService.handleIPN(ipnParams)).thenReturn(mockPayment);
+        when(paymentService.processIpn(ipnParams))
+                .thenReturn(new PaymentService.IpnResult("00", "Confirm Success", 10L, mockPayment));
 
         ResponseEntity<?> response = paymentController.handleIPN(ipnParams);
 
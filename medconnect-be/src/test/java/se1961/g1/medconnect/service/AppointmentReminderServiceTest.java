@@ -0,0 +1,117 @@
+package se1961.g1.medconnect.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import se1961.g1.medconnect.dto.ReminderRow;
+import se1961.g1.medconnect.enums.Slot;
+import se1961.g1.medconnect.repository.AppointmentRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class AppointmentReminderServiceTest {
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private JobLeaseService jobLeaseService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private AppointmentReminderService reminderService;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        reminderService.init();
+    }
+
+    @Test
+    public void testSlotsStartingInBucket() {
+        LocalDate day = LocalDate.of(2025, 11, 20);
+
+        Map<LocalDate, EnumSet<Slot>> buckets = AppointmentReminderService.slotsStartingIn(
+                day.atTime(8, 15), day.atTime(9, 45));
+
+        // 08:15 excluded (already covered by the previous bucket), 09:45 included
+        assertEquals(Map.of(day, EnumSet.of(Slot.SLOT_3, Slot.SLOT_4)), buckets);
+    }
+
+    @Test
+    public void testBucketAcrossMidnight() {
+        LocalDate day = LocalDate.of(2025, 11, 20);
+
+        Map<LocalDate, EnumSet<Slot>> buckets = AppointmentReminderService.slotsStartingIn(
+                day.atTime(16, 50), day.plusDays(1).atTime(7, 30));
+
+        assertEquals(Map.of(day.plusDays(1), EnumSet.of(Slot.SLOT_1)), buckets);
+    }
+
+    @Test
+    public void testRunQueuesOneReminderPerOffsetAndAdvancesCursor() throws Exception {
+        // 24h catch-up window: the 24h-offset bucket is (now, now + 24h], the 1h-offset bucket (now, now + 1h]
+        ReflectionTestUtils.setField(reminderService, "maxLagValue", "24h");
+        reminderService.init();
+        LocalDateTime now = LocalDate.of(2025, 11, 20).atTime(7, 0);
+        when(jobLeaseService.tryAcquire(eq(AppointmentReminderService.JOB), any(Duration.class))).thenReturn(true);
+        when(jobLeaseService.getCursor(AppointmentReminderService.JOB)).thenReturn(null);
+        List<ReminderRow> appointments = List.of(
+                // 07:30 today: in both buckets
+                new ReminderRow(7L, now.toLocalDate(), Slot.SLOT_1, "a@gmail.com", "A", "BS. B"),
+                // 08:15 today: 24h bucket only
+                new ReminderRow(8L, now.toLocalDate(), Slot.SLOT_2, "c@gmail.com", "C", "BS. B"),
+                // 08:15 tomorrow: outside both buckets
+                new ReminderRow(9L, now.toLocalDate().plusDays(1), Slot.SLOT_2, "d@gmail.com", "D", "BS. B"));
+        // Stand-in for the query: date + slot set + keyset on id
+        when(appointmentRepository.findReminderBatch(any(), any(), anyLong(), any())).thenAnswer(inv -> {
+            LocalDate date = inv.getArgument(0);
+            Collection<Slot> slots = inv.getArgument(1);
+            long afterId = inv.getArgument(2);
+            return appointments.stream()
+                    .filter(r -> r.getDate().equals(date) && slots.contains(r.getSlot()) && r.getAppointmentId() > afterId)
+                    .toList();
+        });
+
+        reminderService.run(now);
+
+        verify(emailService, times(1)).sendAppointmentReminder(
+                eq("appointment-reminder:7:1440m"), eq("a@gmail.com"), eq("A"), eq("BS. B"), anyString(), eq("07:30 - 08:00"));
+        verify(emailService, times(1)).sendAppointmentReminder(
+                eq("appointment-reminder:7:60m"), eq("a@gmail.com"), eq("A"), eq("BS. B"), anyString(), eq("07:30 - 08:00"));
+        verify(emailService, times(1)).sendAppointmentReminder(
+                eq("appointment-reminder:8:1440m"), anyString(), anyString(), anyString(), anyString(), anyString());
+        verify(emailService, never()).sendAppointmentReminder(
+                eq("appointment-reminder:8:60m"), anyString(), anyString(), anyString(), anyString(), anyString());
+        verify(emailService, never()).sendAppointmentReminder(
+                startsWith("appointment-reminder:9:"), anyString(), anyString(), anyString(), anyString(), anyString());
+        verify(jobLeaseService).advanceCursor(AppointmentReminderService.JOB, now);
+    }
+
+    @Test
+    public void testSkipsWhenAnotherNodeHoldsLease() {
+        when(jobLeaseService.tryAcquire(anyString(), any(Duration.class))).thenReturn(false);
+
+        reminderService.run();
+
+        verifyNoInteractions(appointmentRepository, emailService);
+    }
+}
@@ -0,0 +1,51 @@
+package se1961.g1.medconnect.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import se1961.g1.medconnect.enums.AppointmentType;
+import se1961.g1.medconnect.enums.DoctorStatus;
+import se1961.g1.medconnect.repository.DoctorRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class AppointmentServiceTest {
+
+    @Mock
+    private DoctorRepository doctorRepository;
+
+    @InjectMocks
+    private AppointmentService appointmentService;
+
+    private final LocalDate from = LocalDate.now().plusDays(1);
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(doctorRepository.findForAvailabilitySearch(any(), any(), eq(DoctorStatus.ACTIVE))).thenReturn(List.of());
+    }
+
+    @Test
+    public void testSearchAcceptsMaxSearchDaysInclusive() throws Exception {
+        LocalDate to = from.plusDays(AppointmentService.MAX_SEARCH_DAYS - 1);
+
+        assertTrue(appointmentService.searchAvailableSlots(1, null, from, to, AppointmentType.ONLINE, 10).isEmpty());
+    }
+
+    @Test
+    public void testSearchRejectsOneDayOverMaxSearchDays() {
+        LocalDate to = from.plusDays(AppointmentService.MAX_SEARCH_DAYS);
+
+        Exception e = assertThrows(Exception.class,
+                () -> appointmentService.searchAvailableSlots(1, null, from, to, AppointmentType.ONLINE, 10));
+        assertEquals("Date range must not exceed " + AppointmentService.MAX_SEARCH_DAYS + " days", e.getMessage());
+        verifyNoInteractions(doctorRepository);
+    }
+}
@@ -0,0 +1,119 @@
+package se1961.g1.medconnect.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import se1961.g1.medconnect.enums.AppointmentStatus;
+import se1961.g1.medconnect.enums.ScheduleStatus;
+import se1961.g1.medconnect.enums.Slot;
+import se1961.g1.medconnect.pojo.Appointment;
+import se1961.g1.medconnect.pojo.Doctor;
+import se1961.g1.medconnect.pojo.Schedule;
+import se1961.g1.medconnect.repository.AppointmentRepository;
+import se1961.g1.medconnect.repository.DoctorRepository;
+import se1961.g1.medconnect.repository.ScheduleRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class AvailabilityIndexTest {
+    @Mock
+    private DoctorRepository doctorRepository;
+
+    @Mock
+    private ScheduleRepository scheduleRepository;
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @InjectMocks
+    private AvailabilityIndex availabilityIndex;
+
+    private Doctor doctor;
+    private final LocalDate date = LocalDate.now().plusDays(1);
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        availabilityIndex.init();
+
+        doctor = new Doctor();
+        doctor.setUserId(1L);
+
+        Schedule s1 = schedule(Slot.SLOT_1, ScheduleStatus.RESERVED);
+        Schedule s2 = schedule(Slot.SLOT_2, ScheduleStatus.RESERVED);
+        Schedule s3 = schedule(Slot.SLOT_3, ScheduleStatus.RESERVED);
+        // Closed slot kept as a row: not bookable
+        Schedule s4 = schedule(Slot.SLOT_4, ScheduleStatus.EMPTY);
+
+        Appointment booked = appointment(Slot.SLOT_2, AppointmentStatus.PENDING);
+        Appointment cancelled = appointment(Slot.SLOT_3, AppointmentStatus.CANCELLED);
+
+        when(doctorRepository.findById(1L)).thenReturn(Optional.of(doctor));
+        when(scheduleRepository.findByUserAndDate(doctor, date)).thenReturn(List.of(s1, s2, s3, s4));
+        when(appointmentRepository.findByDoctorAndDate(doctor, date)).thenReturn(List.of(booked, cancelled));
+    }
+
+    private static Schedule schedule(Slot slot, ScheduleStatus status) {
+        Schedule schedule = new Schedule();
+        schedule.setSlot(slot);
+        schedule.setStatus(status);
+        return schedule;
+    }
+
+    private Appointment appointment(Slot slot, AppointmentStatus status) {
+        Appointment appointment = new Appointment();
+        appointment.setDoctor(doctor);
+        appointment.setDate(date);
+        appointment.setSlot(slot);
+        appointment.setStatus(status);
+        return appointment;
+    }
+
+    @Test
+    public void testLoadOnceThenServeFromMemory() throws Exception {
+        int mask = availabilityIndex.getAvailableMask(1L, date);
+        availabilityIndex.getAvailableMask(1L, date);
+
+        assertEquals(List.of("SLOT_1", "SLOT_3"), AvailabilityIndex.toSlotNames(mask));
+        verify(scheduleRepository, times(1)).findByUserAndDate(doctor, date);
+    }
+
+    @Test
+    public void testWritesKeepIndexCurrent() throws Exception {
+        availabilityIndex.getAvailableMask(1L, date);
+
+        availabilityIndex.book(appointment(Slot.SLOT_1, AppointmentStatus.PENDING));
+        availabilityIndex.openSlot(1L, date, Slot.SLOT_5);
+        availabilityIndex.release(appointment(Slot.SLOT_2, AppointmentStatus.CANCELLED));
+        availabilityIndex.closeSlot(1L, date, Slot.SLOT_3);
+
+        int mask = availabilityIndex.getAvailableMask(1L, date);
+        assertEquals(List.of("SLOT_2", "SLOT_5"), AvailabilityIndex.toSlotNames(mask));
+        verify(scheduleRepository, times(1)).findByUserAndDate(doctor, date);
+    }
+
+    @Test
+    public void testDayReloadedAfterTtl() throws Exception {
+        // A booking on another node never reaches this index: the TTL bounds how long it is missed
+        ReflectionTestUtils.setField(availabilityIndex, "ttlValue", "50ms");
+        availabilityIndex.init();
+        availabilityIndex.getAvailableMask(1L, date);
+
+        when(appointmentRepository.findByDoctorAndDate(doctor, date)).thenReturn(List.of(
+                appointment(Slot.SLOT_1, AppointmentStatus.PENDING), appointment(Slot.SLOT_2, AppointmentStatus.PENDING)));
+        assertEquals(List.of("SLOT_1", "SLOT_3"), AvailabilityIndex.toSlotNames(availabilityIndex.getAvailableMask(1L, date)));
+
+        Thread.sleep(80);
+
+        assertEquals(List.of("SLOT_3"), AvailabilityIndex.toSlotNames(availabilityIndex.getAvailableMask(1L, date)));
+        verify(scheduleRepository, times(2)).findByUserAndDate(doctor, date);
+    }
+}
@@ -0,0 +1,82 @@
+package se1961.g1.medconnect.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import se1961.g1.medconnect.benchmark.ChatbotRetrievalBenchmark;
+import se1961.g1.medconnect.util.MappedVectorIndex;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChatbotKnowledgeBaseTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private final ChatbotKnowledgeBase knowledgeBase = new ChatbotKnowledgeBase();
+
+    @BeforeEach
+    public void setup() {
+        ReflectionTestUtils.setField(knowledgeBase, "embeddingCacheDir", cacheDir.toString());
+    }
+
+    private int hits(ChatbotKnowledgeBase.Mode mode) throws Exception {
+        int hits = 0;
+        for (ChatbotRetrievalBenchmark.EvalCase c : ChatbotRetrievalBenchmark.loadEvalSet()) {
+            if (c.hitBy(knowledgeBase.search(c.question(), 2, mode))) {
+                hits++;
+            } else {
+                System.out.println("Missed (" + mode + "): " + c.question());
+            }
+        }
+        return hits;
+    }
+
+    @Test
+    public void testTop2RelevanceOnEvalSet() throws Exception {
+        List<String> legacyDataset = ChatbotRetrievalBenchmark.loadLegacyDataset();
+        int legacyHits = 0;
+        for (ChatbotRetrievalBenchmark.EvalCase c : ChatbotRetrievalBenchmark.loadEvalSet()) {
+            if (c.hitBy(ChatbotRetrievalBenchmark.legacySearch(legacyDataset, c.question(), 2))) legacyHits++;
+        }
+        int cases = ChatbotRetrievalBenchmark.loadEvalSet().size();
+
+        int keyword = hits(ChatbotKnowledgeBase.Mode.KEYWORD);
+        assertTrue(keyword >= legacyHits, "BM25 " + keyword + " < legacy " + legacyHits);
+        assertEquals(cases, keyword);
+        // Measured on this set: semantic 12/14, hybrid 13/14 ("Bác sĩ nhận tiền khi nào?" is missed by both)
+        int semantic = hits(ChatbotKnowledgeBase.Mode.SEMANTIC);
+        assertTrue(semantic >= legacyHits, "semantic " + semantic + " < legacy " + legacyHits);
+        assertTrue(semantic >= Math.ceil(cases * 0.85), "semantic top-2 hit rate " + semantic + "/" + cases);
+        int hybrid = hits(ChatbotKnowledgeBase.Mode.HYBRID);
+        assertTrue(hybrid >= Math.ceil(cases * 0.9), "hybrid top-2 hit rate " + hybrid + "/" + cases);
+    }
+
+    @Test
+    public void testUnaccentedQueryMatchesPassages() {
+        ChatbotKnowledgeBase.Corpus corpus = knowledgeBase.getCorpus();
+
+        assertTrue(corpus.passages().size() > 100);
+        List<String> results = knowledgeBase.search("huy lich hen", 2);
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).contains("Hủy"));
+        assertTrue(knowledgeBase.search("xyzxyz", 2).isEmpty());
+    }
+
+    @Test
+    public void testPassageVectorsAreWrittenOnceAndMapped() {
+        MappedVectorIndex vectors = knowledgeBase.getVectors(knowledgeBase.getCorpus());
+        assertEquals(knowledgeBase.getCorpus().passages().size(), vectors.count());
+
+        // A restart (new instance) maps the same file instead of embedding again
+        ChatbotKnowledgeBase restarted = new ChatbotKnowledgeBase();
+        ReflectionTestUtils.setField(restarted, "embeddingCacheDir", cacheDir.toString());
+        MappedVectorIndex mapped = restarted.getVectors(restarted.getCorpus());
+        assertEquals(vectors.file(), mapped.file());
+        assertEquals(vectors.count(), mapped.count());
+    }
+}
@@ -0,0 +1,128 @@
+package se1961.g1.medconnect.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChatbotResponseCacheTest {
+    private ChatbotResponseCache responseCache;
+    private AtomicInteger upstreamCalls;
+
+    @BeforeEach
+    public void setup() {
+        responseCache = new ChatbotResponseCache();
+        upstreamCalls = new AtomicInteger();
+        responseCache.init();
+    }
+
+    private String ask(String question) {
+        return responseCache.getOrCompute(question, () -> {
+            upstreamCalls.incrementAndGet();
+            return CompletableFuture.completedFuture("answer " + upstreamCalls.get());
+        }).join();
+    }
+
+    @Test
+    public void testNormalizedQuestionHitsCache() {
+        assertEquals("answer 1", ask("Làm sao để hủy lịch khám?"));
+        assertEquals("answer 1", ask("  lam sao de HUY lich   kham "));
+        assertEquals("answer 2", ask("Làm sao để đổi lịch khám?"));
+
+        assertEquals(2, upstreamCalls.get());
+        Map<String, Object> stats = responseCache.getStats();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(2L, stats.get("misses"));
+        assertEquals(1.0 / 3, (double) stats.get("hitRate"), 1e-9);
+    }
+
+    @Test
+    public void testQuestionWithoutWordsIsNeverCached() {
+        // "???" and "!!!" both normalise to "": sharing that key would answer one with the other
+        assertEquals("answer 1", ask("???"));
+        assertEquals("answer 2", ask("!!!"));
+
+        responseCache.put("🙂", "cached");
+        assertNull(responseCache.getIfPresent("🙂"));
+        assertEquals(0, responseCache.size());
+        assertEquals(2, upstreamCalls.get());
+        assertEquals(3L, responseCache.getStats().get("bypassed"));
+    }
+
+    @Test
+    public void testExpiredAnswerIsRecomputed() {
+        ReflectionTestUtils.setField(responseCache, "ttlValue", "0s");
+        responseCache.init();
+
+        ask("Phí khám bao nhiêu?");
+        ask("Phí khám bao nhiêu?");
+
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        ReflectionTestUtils.setField(responseCache, "maxSize", 2);
+
+        ask("câu hỏi một");
+        ask("câu hỏi hai");
+        ask("câu hỏi một");
+        ask("câu hỏi ba");
+
+        assertEquals(2, responseCache.size());
+        assertEquals(1L, responseCache.getStats().get("evictions"));
+        ask("câu hỏi một");
+        assertEquals(3, upstreamCalls.get());
+    }
+
+    @Test
+    public void testConcurrentIdenticalQuestionsShareOneCall() {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        CompletableFuture<String> first = responseCache.getOrCompute("Giờ làm việc?", () -> {
+            upstreamCalls.incrementAndGet();
+            return upstream;
+        });
+        CompletableFuture<String> second = responseCache.getOrCompute("giờ làm việc", () -> {
+            upstreamCalls.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+        assertFalse(second.isDone());
+
+        upstream.complete("8h - 17h");
+
+        assertEquals("8h - 17h", first.join());
+        assertEquals("8h - 17h", second.join());
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(1L, responseCache.getStats().get("coalesced"));
+        assertEquals(0, responseCache.getStats().get("inFlight"));
+    }
+
+    @Test
+    public void testFailureIsNotCached() {
+        CompletableFuture<String> failed = responseCache.getOrCompute("Phí khám?",
+                () -> CompletableFuture.failedFuture(new RuntimeException("429")));
+
+        assertThrows(CompletionException.class, failed::join);
+        assertEquals(0, responseCache.size());
+        assertEquals("answer 1", ask("Phí khám?"));
+        assertEquals(1L, responseCache.getStats().get("upstreamErrors"));
+    }
+
+    @Test
+    public void testNearDuplicateQuestionWhenEnabled() {
+        ReflectionTestUtils.setField(responseCache, "similarity", 0.8);
+
+        ask("Triệu chứng của bệnh tiểu đường là gì?");
+        assertEquals("answer 1", ask("Triệu chứng bệnh tiểu đường"));
+        assertEquals("answer 2", ask("Cách thanh toán bằng VNPay"));
+
+        assertEquals(1L, responseCache.getStats().get("nearHits"));
+    }
+}
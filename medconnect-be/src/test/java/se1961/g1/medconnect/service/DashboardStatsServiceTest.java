@@ -0,0 +1,89 @@
+package se1961.g1.medconnect.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+import se1961.g1.medconnect.enums.AppointmentStatus;
+import se1961.g1.medconnect.enums.DoctorStatus;
+import se1961.g1.medconnect.enums.PaymentStatus;
+import se1961.g1.medconnect.pojo.StatCounter;
+import se1961.g1.medconnect.repository.AppointmentRepository;
+import se1961.g1.medconnect.repository.DoctorRepository;
+import se1961.g1.medconnect.repository.PatientRepository;
+import se1961.g1.medconnect.repository.PaymentRepository;
+import se1961.g1.medconnect.repository.StatCounterRepository;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class DashboardStatsServiceTest {
+    @Mock
+    private StatCounterRepository statCounterRepository;
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private DoctorRepository doctorRepository;
+
+    @Mock
+    private PatientRepository patientRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private DashboardStatsService statsService;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testGetDashboardStatsFromCounters() {
+        when(statCounterRepository.findAll()).thenReturn(List.of(
+                new StatCounter("APPOINTMENT.PENDING", 3L, 0.0),
+                new StatCounter("APPOINTMENT.FINISHED", 5L, 0.0),
+                new StatCounter("APPOINTMENT.CANCELLED", 2L, 0.0),
+                new StatCounter("PAYMENT.PAID", 4L, 800000.0),
+                new StatCounter("PAYMENT.PENDING", 1L, 200000.0)));
+        when(doctorRepository.count()).thenReturn(7L);
+        when(doctorRepository.countByStatus(DoctorStatus.ACTIVE)).thenReturn(6L);
+        when(patientRepository.count()).thenReturn(20L);
+
+        Map<String, Object> stats = statsService.getDashboardStats();
+
+        assertEquals(10L, stats.get("totalAppointments"));
+        assertEquals(3L, stats.get("pendingAppointments"));
+        assertEquals(5L, stats.get("completedAppointments"));
+        assertEquals(800000.0, stats.get("totalRevenue"));
+        assertEquals(6L, stats.get("activeDoctors"));
+        assertEquals(20L, stats.get("totalPatients"));
+        verify(appointmentRepository, never()).findAll();
+        verify(paymentRepository, never()).findAll();
+    }
+
+    @Test
+    public void testTransitionsApplyDeltas() {
+        statsService.appointmentChanged(AppointmentStatus.PENDING, AppointmentStatus.CONFIRMED);
+        statsService.paymentChanged(PaymentStatus.PENDING, 200000.0, PaymentStatus.PAID, 200000.0);
+        statsService.appointmentChanged(AppointmentStatus.FINISHED, AppointmentStatus.FINISHED);
+
+        verify(statCounterRepository).increment("APPOINTMENT.PENDING", -1, 0);
+        verify(statCounterRepository).increment("APPOINTMENT.CONFIRMED", 1, 0);
+        verify(statCounterRepository).increment("PAYMENT.PENDING", -1, -200000.0);
+        verify(statCounterRepository).increment("PAYMENT.PAID", 1, 200000.0);
+        verify(statCounterRepository, never()).increment(eq("APPOINTMENT.FINISHED"), anyLong(), anyDouble());
+    }
+}
@@ -0,0 +1,96 @@
+package se1961.g1.medconnect.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import se1961.g1.medconnect.dto.DoctorCatalogRow;
+import se1961.g1.medconnect.enums.DoctorStatus;
+import se1961.g1.medconnect.pojo.License;
+import se1961.g1.medconnect.repository.DoctorRepository;
+import se1961.g1.medconnect.repository.LicenseRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class DoctorCatalogServiceTest {
+    @Mock
+    private DoctorRepository doctorRepository;
+
+    @Mock
+    private LicenseRepository licenseRepository;
+
+    @InjectMocks
+    private DoctorCatalogService catalogService;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        catalogService.init();
+
+        License expired = license(1, LocalDate.now().minusDays(1));
+        License valid = license(2, null);
+        when(doctorRepository.findCatalogRows()).thenAnswer(inv -> List.of(row(1L, "BS. An")));
+        when(licenseRepository.findAllActiveWithDoctorId())
+                .thenReturn(List.of(new Object[]{1L, expired}, new Object[]{1L, valid}));
+    }
+
+    private static DoctorCatalogRow row(Long id, String name) {
+        return new DoctorCatalogRow(id, name, "an@gmail.com", null, null, DoctorStatus.ACTIVE, 5, null, null,
+                null, 1, "Hà Nội", null, null, null, 3, "Tim mạch", 200000, 300000);
+    }
+
+    private static License license(int id, LocalDate expiry) {
+        License license = new License();
+        license.setLicenseId(id);
+        license.setLicenseNumber("00000" + id + "/BYT-GPHN");
+        license.setIssuedDate(LocalDate.of(2020, 1, 1));
+        license.setExpiryDate(expiry);
+        return license;
+    }
+
+    @Test
+    public void testSnapshotReusedUntilInvalidated() {
+        DoctorCatalogService.Snapshot first = catalogService.getSnapshot();
+        assertSame(first, catalogService.getSnapshot());
+        verify(doctorRepository, times(1)).findCatalogRows();
+
+        // First valid licence wins, the expired one is skipped
+        assertEquals(2, first.doctors().get(0).getActiveLicense().getLicenseId());
+
+        catalogService.invalidate();
+        DoctorCatalogService.Snapshot second = catalogService.getSnapshot();
+        assertNotSame(first, second);
+        // Same content, same ETag
+        assertEquals(first.etag("public"), second.etag("public"));
+        assertNotEquals(first.etag("public"), first.etag("admin"));
+    }
+
+    @Test
+    public void testSnapshotRebuiltAfterTtl() throws Exception {
+        // A write on another node never calls invalidate() here: the TTL bounds how long it stays unseen
+        ReflectionTestUtils.setField(catalogService, "ttlValue", "50ms");
+        catalogService.init();
+        DoctorCatalogService.Snapshot first = catalogService.getSnapshot();
+
+        Thread.sleep(80);
+
+        assertNotSame(first, catalogService.getSnapshot());
+        verify(doctorRepository, times(2)).findCatalogRows();
+    }
+
+    @Test
+    public void testEtagChangesWithContent() {
+        String before = catalogService.getSnapshot().etag("public");
+
+        when(doctorRepository.findCatalogRows()).thenAnswer(inv -> List.of(row(1L, "BS. An Nguyễn")));
+        catalogService.invalidate();
+
+        assertNotEquals(before, catalogService.getSnapshot().etag("public"));
+    }
+}
@@ -0,0 +1,109 @@
+package se1961.g1.medconnect.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import se1961.g1.medconnect.dto.DoctorCatalogRow;
+import se1961.g1.medconnect.enums.DoctorStatus;
+import se1961.g1.medconnect.repository.DoctorRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class DoctorSearchIndexTest {
+    @Mock
+    private DoctorRepository doctorRepository;
+
+    @InjectMocks
+    private DoctorSearchIndex searchIndex;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        searchIndex.init();
+        when(doctorRepository.findCatalogRows()).thenReturn(List.of(
+                row(1L, "Nguyễn Văn An", 3, "Tim mạch", 1, "Hà Nội", "Quận Đống Đa", "Chuyên điều trị tăng huyết áp"),
+                row(2L, "Trần Thị Ngọc", 3, "Tim mạch", 79, "Hồ Chí Minh", "Quận 1", null),
+                row(3L, "Lê Minh Đức", 5, "Nhi khoa", 1, "Hà Nội", "Quận Cầu Giấy", "Từng công tác tại bệnh viện Nguyễn Trãi")));
+    }
+
+    private static DoctorCatalogRow row(Long id, String name, Integer specialityId, String specialityName,
+                                        Integer provinceCode, String provinceName, String districtName, String bio) {
+        return new DoctorCatalogRow(id, name, null, null, null, DoctorStatus.ACTIVE, 5, bio, null, null,
+                provinceCode, provinceName, null, districtName, null, specialityId, specialityName, 200000, 300000);
+    }
+
+    private DoctorSearchIndex.Result search(String q, Integer specialityId, Integer provinceCode) {
+        return searchIndex.search(new DoctorSearchIndex.Query(q, specialityId, provinceCode, DoctorStatus.ACTIVE, 0, 20));
+    }
+
+    @Test
+    public void testUnaccentedPrefixMatchesAndNameRanksFirst() {
+        DoctorSearchIndex.Result result = search("nguy", null, null);
+
+        // 1 by name, 3 by bio ("Nguyễn Trãi")
+        assertEquals(2, result.total());
+        assertEquals(1L, result.items().get(0).getUserId());
+        assertEquals(3L, result.items().get(1).getUserId());
+        assertEquals(1, search("duc ha noi", null, null).total());
+        assertEquals(0, search("nguyen nhi", null, 79).total());
+    }
+
+    @Test
+    public void testFiltersAndDisjunctiveFacets() {
+        DoctorSearchIndex.Result result = search(null, 3, 1);
+
+        assertEquals(List.of(1L), result.items().stream().map(DoctorCatalogRow::getUserId).toList());
+        // Speciality counts ignore the speciality filter (province 1 only): Tim mạch 1, Nhi khoa 1
+        assertEquals(2, result.specialities().size());
+        // Province counts ignore the province filter (Tim mạch only): Hà Nội 1, Hồ Chí Minh 1
+        assertEquals(2, result.provinces().size());
+        assertTrue(result.provinces().stream().allMatch(f -> f.count() == 1));
+    }
+
+    @Test
+    public void testDoctorWriteIsReindexedIncrementally() {
+        assertEquals(1, search("ngoc", null, null).total());
+
+        when(doctorRepository.findCatalogRow(2L)).thenReturn(Optional.of(
+                row(2L, "Trần Thị Hoa", 3, "Tim mạch", 79, "Hồ Chí Minh", "Quận 1", null)));
+        searchIndex.markDirty(2L);
+
+        assertEquals(0, search("ngoc", null, null).total());
+        assertEquals(1, search("hoa", null, null).total());
+        verify(doctorRepository, times(1)).findCatalogRows();
+    }
+
+    @Test
+    public void testIndexRebuiltAfterTtl() throws Exception {
+        // A write on another node never calls markDirty() here: the TTL bounds how long it stays unseen
+        ReflectionTestUtils.setField(searchIndex, "ttlValue", "50ms");
+        searchIndex.init();
+        assertEquals(1, search("ngoc", null, null).total());
+
+        when(doctorRepository.findCatalogRows()).thenReturn(List.of(
+                row(2L, "Trần Thị Hoa", 3, "Tim mạch", 79, "Hồ Chí Minh", "Quận 1", null)));
+        Thread.sleep(80);
+
+        assertEquals(0, search("ngoc", null, null).total());
+        assertEquals(1, search("hoa", null, null).total());
+        verify(doctorRepository, times(2)).findCatalogRows();
+    }
+
+    @Test
+    public void testPagingPastTheEndIsEmpty() {
+        DoctorSearchIndex.Result second = searchIndex.search(new DoctorSearchIndex.Query(null, null, null, DoctorStatus.ACTIVE, 1, 2));
+        assertEquals(1, second.items().size());
+
+        // page * size overflows int: still an empty page with the right total
+        DoctorSearchIndex.Result far = searchIndex.search(new DoctorSearchIndex.Query(null, null, null, DoctorStatus.ACTIVE, Integer.MAX_VALUE, 50));
+        assertTrue(far.items().isEmpty());
+        assertEquals(3, far.total());
+    }
+}
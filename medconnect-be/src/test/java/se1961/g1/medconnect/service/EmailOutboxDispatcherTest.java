@@ -0,0 +1,128 @@
+package se1961.g1.medconnect.service;
+
+import com.resend.core.exception.ResendException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import se1961.g1.medconnect.enums.EmailOutboxStatus;
+import se1961.g1.medconnect.pojo.EmailOutbox;
+import se1961.g1.medconnect.repository.EmailOutboxRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class EmailOutboxDispatcherTest {
+
+    /**
+     * Local stand-in for Resend: records every provider call, optionally failing
+     */
+    static class StubEmailSender implements EmailSender {
+        final List<List<Message>> calls = new ArrayList<>();
+        boolean failing;
+
+        @Override
+        public String send(Message message) throws ResendException {
+            return sendBatch(List.of(message)).get(0);
+        }
+
+        @Override
+        public List<String> sendBatch(List<Message> messages) throws ResendException {
+            calls.add(messages);
+            if (failing) {
+                throw new ResendException("429 rate limited");
+            }
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < messages.size(); i++) {
+                ids.add("stub-" + calls.size() + "-" + i);
+            }
+            return ids;
+        }
+    }
+
+    @Mock
+    private EmailOutboxRepository outboxRepository;
+
+    @Spy
+    private StubEmailSender emailSender = new StubEmailSender();
+
+    @InjectMocks
+    private EmailOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private EmailOutbox row(long id, int attempts) {
+        EmailOutbox row = new EmailOutbox();
+        row.setId(id);
+        row.setIdempotencyKey("key-" + id);
+        row.setRecipient("patient" + id + "@gmail.com");
+        row.setSubject("Xác nhận đặt lịch khám - MedConnect");
+        row.setHtml("<p>temporary password</p>");
+        row.setAttempts(attempts);
+        row.setNextAttemptAt(LocalDateTime.now());
+        return row;
+    }
+
+    @Test
+    public void testFirstAttemptsSentAsOneBatch() {
+        EmailOutbox a = row(1, 0);
+        EmailOutbox b = row(2, 0);
+        when(outboxRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(a, b));
+
+        dispatcher.deliver(List.of(1L, 2L));
+
+        assertEquals(1, emailSender.calls.size());
+        assertEquals(2, emailSender.calls.get(0).size());
+        assertEquals(EmailOutboxStatus.SENT, a.getStatus());
+        assertEquals("stub-1-1", b.getProviderMessageId());
+        assertEquals("", a.getHtml());
+        verify(outboxRepository).saveAll(anyList());
+    }
+
+    @Test
+    public void testFailureSchedulesRetryWithBackoff() {
+        emailSender.failing = true;
+        EmailOutbox a = row(1, 0);
+        when(outboxRepository.findAllById(List.of(1L))).thenReturn(List.of(a));
+
+        LocalDateTime before = LocalDateTime.now();
+        dispatcher.deliver(List.of(1L));
+
+        assertEquals(EmailOutboxStatus.PENDING, a.getStatus());
+        assertEquals(1, a.getAttempts());
+        assertEquals("429 rate limited", a.getLastError());
+        assertTrue(a.getNextAttemptAt().isAfter(before.plusSeconds(29)));
+        assertEquals(1L, dispatcher.getStats().get("retried"));
+    }
+
+    @Test
+    public void testRetriesSentOneByOneAndGiveUpAtMaxAttempts() {
+        emailSender.failing = true;
+        EmailOutbox a = row(1, 7);
+        EmailOutbox b = row(2, 3);
+        when(outboxRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(a, b));
+
+        dispatcher.deliver(List.of(1L, 2L));
+
+        assertEquals(2, emailSender.calls.size());
+        assertEquals(EmailOutboxStatus.FAILED, a.getStatus());
+        assertEquals(EmailOutboxStatus.PENDING, b.getStatus());
+    }
+
+    @Test
+    public void testBackoffGrowsAndIsCapped() {
+        assertTrue(EmailOutboxDispatcher.backoffSeconds(1, 30) >= 30);
+        assertTrue(EmailOutboxDispatcher.backoffSeconds(3, 30) >= 120);
+        assertTrue(EmailOutboxDispatcher.backoffSeconds(30, 30) <= EmailOutboxDispatcher.MAX_BACKOFF_SECONDS * 6 / 5);
+    }
+}
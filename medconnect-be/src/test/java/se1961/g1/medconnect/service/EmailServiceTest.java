@@ -0,0 +1,53 @@
+package se1961.g1.medconnect.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import se1961.g1.medconnect.repository.EmailOutboxRepository;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class EmailServiceTest {
+
+    @Mock
+    private EmailOutboxRepository outboxRepository;
+
+    @Mock
+    private EmailOutboxDispatcher outboxDispatcher;
+
+    @InjectMocks
+    private EmailService emailService;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(outboxRepository.findIdByIdempotencyKey("appointment-confirmed:42")).thenReturn(Optional.of(7L));
+    }
+
+    @Test
+    public void testQueueEmailInsertsAndWakesDispatcher() {
+        when(outboxRepository.insertIfAbsent(eq("appointment-confirmed:42"), eq("a@b.c"), eq("Subject"), eq("<p>x</p>"), any()))
+                .thenReturn(1);
+
+        assertEquals("7", emailService.queueEmail("appointment-confirmed:42", "a@b.c", "Subject", "<p>x</p>"));
+
+        verify(outboxDispatcher).wakeUp();
+    }
+
+    @Test
+    public void testQueueEmailAlreadyQueuedReturnsExistingId() {
+        // Lost the race (or a retry): nothing inserted, no constraint violation, existing row returned
+        when(outboxRepository.insertIfAbsent(any(), any(), any(), any(), any())).thenReturn(0);
+
+        assertEquals("7", emailService.queueEmail("appointment-confirmed:42", "a@b.c", "Subject", "<p>x</p>"));
+
+        verify(outboxRepository, never()).save(any());
+        verifyNoInteractions(outboxDispatcher);
+    }
+}
@@ -0,0 +1,68 @@
+package se1961.g1.medconnect.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se1961.g1.medconnect.enums.Role;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FirebaseTokenCacheTest {
+    private FirebaseTokenCache tokenCache;
+
+    private long inOneHour() {
+        return System.currentTimeMillis() / 1000 + 3600;
+    }
+
+    @BeforeEach
+    public void setup() {
+        tokenCache = new FirebaseTokenCache(2);
+    }
+
+    @Test
+    public void testHitAfterPut() {
+        tokenCache.put("token-a", "uid1", "a@gmail.com", Role.DOCTOR, inOneHour());
+
+        FirebaseTokenCache.CachedToken cached = tokenCache.get("token-a");
+
+        assertNotNull(cached);
+        assertEquals("uid1", cached.uid());
+        assertEquals(Role.DOCTOR, cached.role());
+        assertNull(tokenCache.get("token-b"));
+
+        Map<String, Object> stats = tokenCache.getStats();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+    }
+
+    @Test
+    public void testExpiredTokenNotCached() {
+        tokenCache.put("token-a", "uid1", "a@gmail.com", Role.PATIENT, System.currentTimeMillis() / 1000 - 1);
+
+        assertNull(tokenCache.get("token-a"));
+        assertEquals(0, tokenCache.size());
+    }
+
+    @Test
+    public void testInvalidateUser() {
+        tokenCache.put("token-a", "uid1", "a@gmail.com", null, inOneHour());
+        tokenCache.put("token-b", "uid2", "b@gmail.com", Role.PATIENT, inOneHour());
+
+        tokenCache.invalidateUser("uid1");
+
+        assertNull(tokenCache.get("token-a"));
+        assertNotNull(tokenCache.get("token-b"));
+    }
+
+    @Test
+    public void testBoundedSize() {
+        tokenCache.put("token-a", "uid1", "a@gmail.com", Role.PATIENT, inOneHour());
+        tokenCache.put("token-b", "uid2", "b@gmail.com", Role.PATIENT, inOneHour());
+        tokenCache.put("token-c", "uid3", "c@gmail.com", Role.PATIENT, inOneHour());
+
+        assertEquals(2, tokenCache.size());
+        assertNull(tokenCache.get("token-a"));
+        assertEquals(1L, tokenCache.getStats().get("evictions"));
+    }
+}
@@ -0,0 +1,275 @@
+package se1961.g1.medconnect.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * GeminiClient against a local fake Gemini endpoint
+ */
+public class GeminiClientTest {
+    private static final String ANSWER = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\" Xin chào \"}]},\"finishReason\":\"STOP\"}]}";
+
+    private HttpServer server;
+    private GeminiClient geminiClient;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicReference<String> lastPath = new AtomicReference<>();
+    private final AtomicReference<String> lastApiKey = new AtomicReference<>();
+    private volatile int status = 200;
+    private volatile String body = ANSWER;
+    // Stream endpoint: chunks sent before / after the gate opens
+    private final List<String> chunksBeforeGate = new ArrayList<>();
+    private final List<String> chunksAfterGate = new ArrayList<>();
+    private final CountDownLatch gate = new CountDownLatch(1);
+    // Holds the answer to the first request until counted down (a call still in flight)
+    private volatile CountDownLatch firstRequestHold;
+    private final ExecutorService serverThreads = Executors.newCachedThreadPool();
+
+    @BeforeEach
+    public void setup() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            int n = requests.incrementAndGet();
+            // Answer decided on arrival, even when held back
+            int code = status;
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            lastPath.set(exchange.getRequestURI().getPath());
+            lastApiKey.set(exchange.getRequestHeaders().getFirst("x-goog-api-key"));
+            exchange.getRequestBody().readAllBytes();
+            CountDownLatch hold = firstRequestHold;
+            if (n == 1 && hold != null) {
+                try {
+                    hold.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.sendResponseHeaders(code, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.createContext("/models/gemini-2.5-pro:streamGenerateContent", exchange -> {
+            requests.incrementAndGet();
+            lastPath.set(exchange.getRequestURI().getPath() + "?" + exchange.getRequestURI().getQuery());
+            exchange.getRequestBody().readAllBytes();
+            if (status != 200) {
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (String chunk : chunksBeforeGate) {
+                    writeChunk(out, chunk);
+                }
+                if (!chunksAfterGate.isEmpty()) {
+                    gate.await(5, TimeUnit.SECONDS);
+                    for (String chunk : chunksAfterGate) {
+                        writeChunk(out, chunk);
+                    }
+                }
+            } catch (Exception e) {
+                // Client cancelled the stream
+            }
+        });
+        server.setExecutor(serverThreads);
+        server.start();
+
+        geminiClient = new GeminiClient();
+        ReflectionTestUtils.setField(geminiClient, "apiKey", "test-key");
+        ReflectionTestUtils.setField(geminiClient, "baseUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(geminiClient, "objectMapper", new ObjectMapper());
+        geminiClient.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        gate.countDown();
+        geminiClient.stop();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private static void writeChunk(OutputStream out, String text) throws IOException {
+        String json = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + text + "\"}],\"role\":\"model\"}}]}";
+        out.write(("data: " + json + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static String rateLimited(String retryDelay) {
+        return "{\"error\":{\"code\":429,\"message\":\"Quota exceeded\",\"details\":[{\"@type\":"
+                + "\"type.googleapis.com/google.rpc.RetryInfo\",\"retryDelay\":\"" + retryDelay + "\"}]}}";
+    }
+
+    @Test
+    public void testGenerateReturnsFirstCandidateText() {
+        assertEquals("Xin chào", geminiClient.generate("prompt").join());
+
+        assertEquals("/models/gemini-2.5-pro:generateContent", lastPath.get());
+        assertEquals("test-key", lastApiKey.get());
+        assertEquals("CLOSED", geminiClient.getStats().get("circuit"));
+    }
+
+    @Test
+    public void testRateLimitOpensCircuitForRetryDelay() {
+        status = 429;
+        body = rateLimited("20s");
+
+        CompletionException first = assertThrows(CompletionException.class, () -> geminiClient.generate("prompt").join());
+        GeminiClient.RateLimitedException limited = assertInstanceOf(GeminiClient.RateLimitedException.class, first.getCause());
+        assertEquals(30_000, limited.getRetryAfterMillis());
+
+        // Open circuit: fails without reaching Gemini
+        CompletionException second = assertThrows(CompletionException.class, () -> geminiClient.generate("prompt").join());
+        assertInstanceOf(GeminiClient.RateLimitedException.class, second.getCause());
+        assertEquals(1, requests.get());
+        assertEquals("OPEN", geminiClient.getStats().get("circuit"));
+        assertEquals(1L, geminiClient.getStats().get("shortCircuited"));
+    }
+
+    @Test
+    public void testCircuitClosesAfterSuccessfulProbe() throws Exception {
+        status = 429;
+        body = rateLimited("0.1s");
+        assertThrows(CompletionException.class, () -> geminiClient.generate("prompt").join());
+
+        Thread.sleep(200);
+        status = 200;
+        body = ANSWER;
+
+        assertEquals("Xin chào", geminiClient.generate("prompt").join());
+        assertEquals("CLOSED", geminiClient.getStats().get("circuit"));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testInFlightSuccessDoesNotCloseOpenCircuit() throws Exception {
+        firstRequestHold = new CountDownLatch(1);
+        // Sent while the circuit is closed, answered 200 only after the quota ran out
+        CompletableFuture<String> inFlight = geminiClient.generate("prompt");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (requests.get() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        status = 429;
+        body = rateLimited("20s");
+        assertThrows(CompletionException.class, () -> geminiClient.generate("prompt").join());
+        assertEquals("OPEN", geminiClient.getStats().get("circuit"));
+
+        firstRequestHold.countDown();
+        assertEquals("Xin chào", inFlight.join());
+        // Only the half-open probe may close the circuit
+        assertEquals("OPEN", geminiClient.getStats().get("circuit"));
+    }
+
+    @Test
+    public void testServerErrorDoesNotOpenCircuit() {
+        status = 500;
+        body = "{\"error\":{\"message\":\"internal\"}}";
+
+        assertThrows(CompletionException.class, () -> geminiClient.generate("prompt").join());
+        assertThrows(CompletionException.class, () -> geminiClient.generate("prompt").join());
+
+        assertEquals(2, requests.get());
+        assertEquals("CLOSED", geminiClient.getStats().get("circuit"));
+    }
+
+    @Test
+    public void testRetryDelayParsing() {
+        assertEquals(25_797, geminiClient.retryDelayMillis(
+                "{\"error\":{\"message\":\"Quota exceeded. Please retry in 25.796353428s.\"}}"));
+        assertEquals(7_000, geminiClient.retryDelayMillis(
+                "{\"error\":{\"details\":[{\"@type\":\"type.googleapis.com/google.rpc.RetryInfo\",\"retryDelay\":{\"seconds\":7}}]}}"));
+        assertEquals(GeminiClient.DEFAULT_RETRY_MILLIS, geminiClient.retryDelayMillis("not json"));
+    }
+
+    @Test
+    public void testStreamDeliversChunksInOrder() {
+        chunksBeforeGate.addAll(List.of("Xin ", "chào", "!"));
+        List<String> received = new CopyOnWriteArrayList<>();
+
+        GeminiClient.StreamCall call = geminiClient.stream("prompt", received::add);
+        call.done().join();
+
+        assertEquals(List.of("Xin ", "chào", "!"), received);
+        assertEquals("/models/gemini-2.5-pro:streamGenerateContent?alt=sse", lastPath.get());
+        assertEquals(1L, geminiClient.getStats().get("streams"));
+    }
+
+    @Test
+    public void testStreamCancelStopsReading() throws Exception {
+        chunksBeforeGate.add("first");
+        chunksAfterGate.add("second");
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch firstChunk = new CountDownLatch(1);
+
+        GeminiClient.StreamCall call = geminiClient.stream("prompt", chunk -> {
+            received.add(chunk);
+            firstChunk.countDown();
+        });
+        assertTrue(firstChunk.await(5, TimeUnit.SECONDS));
+        call.cancel();
+        gate.countDown();
+        Thread.sleep(100);
+
+        assertTrue(call.isCancelled());
+        assertTrue(call.done().isCancelled());
+        assertEquals(List.of("first"), received);
+        assertEquals(1L, geminiClient.getStats().get("streamsCancelled"));
+    }
+
+    @Test
+    public void testStreamStopsWhenListenerFails() {
+        chunksBeforeGate.addAll(List.of("first", "second"));
+        AtomicInteger delivered = new AtomicInteger();
+
+        GeminiClient.StreamCall call = geminiClient.stream("prompt", chunk -> {
+            delivered.incrementAndGet();
+            throw new UncheckedIOException(new IOException("Broken pipe"));
+        });
+
+        CompletionException error = assertThrows(CompletionException.class, () -> call.done().join());
+        assertInstanceOf(UncheckedIOException.class, error.getCause());
+        assertEquals(1, delivered.get());
+    }
+
+    @Test
+    public void testStreamRateLimitedOpensCircuit() {
+        status = 429;
+        body = rateLimited("20s");
+
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> geminiClient.stream("prompt", chunk -> fail("no chunk expected")).done().join());
+
+        assertInstanceOf(GeminiClient.RateLimitedException.class, error.getCause());
+        assertEquals("OPEN", geminiClient.getStats().get("circuit"));
+    }
+}
@@ -0,0 +1,102 @@
+package se1961.g1.medconnect.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.ArgumentCaptor;
+import se1961.g1.medconnect.pojo.MedicalRecord;
+import se1961.g1.medconnect.pojo.MedicalRecordEntry;
+import se1961.g1.medconnect.pojo.Patient;
+import se1961.g1.medconnect.repository.MedicalRecordEntryRepository;
+import se1961.g1.medconnect.repository.MedicalRecordRepository;
+import se1961.g1.medconnect.repository.PatientPhotoRow;
+import se1961.g1.medconnect.repository.PatientRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+public class MedicalRecordServiceTest {
+    @Mock
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Mock
+    private MedicalRecordEntryRepository medicalRecordEntryRepository;
+
+    @Mock
+    private PatientRepository patientRepository;
+
+    @InjectMocks
+    private MedicalRecordService medicalRecordService;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testExtractProfileFields() {
+        MedicalRecord record = new MedicalRecord();
+        record.setDetail("{\"patient_profile\":{\"full_name\":\"A\",\"id_photo_url\":\"https://img/1.png\"},\"medical_records\":[]}");
+
+        medicalRecordService.extractProfileFields(record);
+
+        assertEquals("https://img/1.png", record.getIdPhotoUrl());
+        assertTrue(record.getProfileIndexed());
+    }
+
+    @Test
+    public void testExtractProfileFieldsWithoutPhoto() {
+        MedicalRecord record = new MedicalRecord();
+        record.setIdPhotoUrl("https://img/old.png");
+        record.setDetail("{\"patient_profile\":{\"full_name\":\"A\"}}");
+
+        medicalRecordService.extractProfileFields(record);
+
+        assertNull(record.getIdPhotoUrl());
+        assertTrue(record.getProfileIndexed());
+    }
+
+    @Test
+    public void testGetIdPhotoUrlsSingleQuery() {
+        PatientPhotoRow row = mock(PatientPhotoRow.class);
+        when(row.getPatientId()).thenReturn(1L);
+        when(row.getIdPhotoUrl()).thenReturn("https://img/1.png");
+        when(medicalRecordRepository.findIdPhotoUrls(anyCollection())).thenReturn(List.of(row));
+
+        Map<Long, String> photos = medicalRecordService.getIdPhotoUrls(Set.of(1L, 2L, 3L));
+
+        assertEquals(Map.of(1L, "https://img/1.png"), photos);
+        verify(medicalRecordRepository, times(1)).findIdPhotoUrls(anyCollection());
+    }
+
+    @Test
+    public void testAddEntryAppendsRowWithoutRewritingRecord() {
+        Patient patient = new Patient();
+        patient.setUserId(5L);
+        MedicalRecord record = new MedicalRecord();
+        record.setRecordId(9L);
+        record.setPatient(patient);
+        when(patientRepository.findByUserId(5L)).thenReturn(Optional.of(patient));
+        when(medicalRecordRepository.findByPatient(patient)).thenReturn(Optional.of(record));
+        when(medicalRecordEntryRepository.save(any(MedicalRecordEntry.class))).thenAnswer(i -> i.getArgument(0));
+
+        medicalRecordService.addMedicalRecordEntry(5L, Map.of("appointment_id", 42, "diagnosis", "Cảm cúm"));
+
+        ArgumentCaptor<MedicalRecordEntry> saved = ArgumentCaptor.forClass(MedicalRecordEntry.class);
+        verify(medicalRecordEntryRepository).save(saved.capture());
+        assertEquals(9L, saved.getValue().getRecordId());
+        assertEquals(5L, saved.getValue().getPatientUserId());
+        assertEquals(42L, saved.getValue().getAppointmentId());
+        assertTrue(saved.getValue().getContent().contains("Cảm cúm"));
+        verify(medicalRecordRepository, never()).save(any());
+    }
+}
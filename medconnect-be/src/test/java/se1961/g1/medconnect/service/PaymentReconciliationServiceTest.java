@@ -0,0 +1,123 @@
+package se1961.g1.medconnect.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import se1961.g1.medconnect.dto.ReconcileRow;
+import se1961.g1.medconnect.enums.PaymentStatus;
+import se1961.g1.medconnect.pojo.Payment;
+import se1961.g1.medconnect.repository.PaymentRepository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class PaymentReconciliationServiceTest {
+
+    /**
+     * Local stand-in for VNPay querydr: fixed answers per txnRef, unknown refs fail like a timeout
+     */
+    static class FakeGatewayClient implements PaymentGatewayClient {
+        final Map<String, GatewayStatus> answers = new HashMap<>();
+        final List<String> queried = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public GatewayStatus queryStatus(String txnRef) throws Exception {
+            queried.add(txnRef);
+            GatewayStatus status = answers.get(txnRef);
+            if (status == null) {
+                throw new Exception("timeout");
+            }
+            return status;
+        }
+    }
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private FakeGatewayClient gatewayClient = new FakeGatewayClient();
+
+    @InjectMocks
+    private PaymentReconciliationService reconciliationService;
+
+    private final Map<Long, Payment> payments = new HashMap<>();
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(reconciliationService, "batchSize", 2);
+        reconciliationService.init();
+
+        for (long id = 1; id <= 4; id++) {
+            Payment payment = new Payment();
+            payment.setPaymentId(id);
+            payment.setStatus(PaymentStatus.PENDING);
+            payments.put(id, payment);
+        }
+        // Two keyset pages: ids 1-2, then 3-4
+        when(paymentRepository.findPendingForReconcile(any(), eq(0L), any())).thenReturn(List.of(
+                new ReconcileRow(1L, "1-1730189283123"), new ReconcileRow(2L, "2-1730189283123")));
+        when(paymentRepository.findPendingForReconcile(any(), eq(2L), any())).thenReturn(List.of(
+                new ReconcileRow(3L, "3-1730189283123"), new ReconcileRow(4L, null)));
+        when(paymentRepository.findPendingForReconcile(any(), eq(4L), any())).thenReturn(List.of());
+        when(paymentRepository.findAllById(any())).thenAnswer(inv -> {
+            List<Payment> found = new ArrayList<>();
+            for (Object id : (Iterable<?>) inv.getArgument(0)) {
+                found.add(payments.get((Long) id));
+            }
+            return found;
+        });
+        when(paymentService.applyGatewayStatus(any(), any(), any())).thenAnswer(inv -> {
+            PaymentGatewayClient.GatewayStatus status = inv.getArgument(2);
+            return switch (status.result()) {
+                case PAID -> PaymentStatus.PAID;
+                case FAILED, NOT_FOUND -> PaymentStatus.FAILED;
+                default -> null;
+            };
+        });
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        reconciliationService.stop();
+    }
+
+    @Test
+    public void testReconcilePagesAndAppliesResults() {
+        gatewayClient.answers.put("1-1730189283123", new PaymentGatewayClient.GatewayStatus(
+                PaymentGatewayClient.Result.PAID, 20000000L, Map.of("vnp_TransactionStatus", "00")));
+        gatewayClient.answers.put("2-1730189283123", new PaymentGatewayClient.GatewayStatus(
+                PaymentGatewayClient.Result.PENDING, null, Map.of()));
+        // 3 has no answer: query fails and the payment is left for the next run
+
+        PaymentReconciliationService.RunReport report = reconciliationService.reconcile(LocalDateTime.now());
+
+        assertEquals(4, report.checked());
+        assertEquals(1, report.paid());
+        assertEquals(0, report.failed());
+        // 2 still pending at the gateway; 4 never got a checkout link and is left PENDING, not cancelled
+        assertEquals(2, report.unchanged());
+        assertEquals(1, report.errors());
+        assertFalse(gatewayClient.queried.contains(null));
+        verify(paymentService, never()).applyGatewayStatus(eq(payments.get(3L)), any(), any());
+        verify(paymentService, never()).applyGatewayStatus(eq(payments.get(4L)), any(), any());
+        verify(paymentService).applyGatewayStatus(eq(payments.get(1L)), eq("1-1730189283123"), any());
+        verify(paymentRepository).findPendingForReconcile(any(), eq(2L), any());
+    }
+}
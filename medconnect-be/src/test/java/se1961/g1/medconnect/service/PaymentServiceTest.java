@@ -3,10 +3,14 @@ package se1961.g1.medconnect.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.transaction.PlatformTransactionManager;
 import se1961.g1.medconnect.dto.PaymentRequest;
+import se1961.g1.medconnect.enums.PaymentStatus;
 import se1961.g1.medconnect.pojo.*;
 import se1961.g1.medconnect.repository.*;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -28,6 +32,21 @@ class PaymentServiceTest {
     @Mock
     private PatientRepository patientRepository;
 
+    @Mock
+    private AvailabilityIndex availabilityIndex;
+
+    @Mock
+    private SlotBookingService slotBookingService;
+
+    @Mock
+    private SlotHoldService slotHoldService;
+
+    @Mock
+    private PaymentIpnLogRepository ipnLogRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     private Appointment appointment;
     private Patient patient;
 
@@ -49,6 +68,8 @@ class PaymentServiceTest {
         appointment.setPatient(patient);
         appointment.setDoctor(new Doctor());
         appointment.getDoctor().setName("Dr. Nguyen");
+
+        when(slotHoldService.getPaymentTtl()).thenReturn(Duration.ofMinutes(15));
     }
 
     @Test
@@ -77,28 +98,134 @@ class PaymentServiceTest {
         assertThat(response.getCheckoutUrl()).contains("vnp_TmnCode=W9VOZMDN");
         assertThat(response.getOrderId()).isEqualTo("999");
         assertThat(response.getInvoiceNumber()).contains("999-");
+        // Staleness for reconciliation is measured from this attempt, not from when the row was created
+        long txnMillis = Long.parseLong(response.getInvoiceNumber().substring(response.getInvoiceNumber().indexOf('-') + 1));
+        verify(paymentRepository, atLeastOnce()).save(argThat(p -> p.getAttemptedAt() != null
+                && p.getAttemptedAt().equals(LocalDateTime.ofInstant(java.time.Instant.ofEpochMilli(txnMillis), java.time.ZoneId.systemDefault()))));
     }
 
     @Test
     void testHandleIPN_Success() throws Exception {
         // Arrange
-        Payment payment = new Payment();
-        payment.setPaymentId(10L);
-        payment.setAppointment(appointment);
+        Payment payment = pendingPayment();
+
+        appointment.setHoldExpiresAt(LocalDateTime.now().plusMinutes(10));
 
         when(paymentRepository.findById(10L)).thenReturn(Optional.of(payment));
+        when(appointmentRepository.clearHold(1L)).thenReturn(1);
         when(appointmentRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
         when(paymentRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
 
-        Map<String, String> ipnData = new HashMap<>();
-        ipnData.put("vnp_TxnRef", "10-1730189283123");
-        ipnData.put("vnp_ResponseCode", "00");
+        Map<String, String> ipnData = signedIpn("00");
 
         // Act
         Payment updated = paymentService.handleIPN(ipnData);
 
-        // Assert
-        assertThat(updated.getStatus().name()).isEqualTo("PAID");
-        assertThat(updated.getAppointment().getStatus().name()).isEqualTo("CONFIRMED");
+        // Assert: paid and the slot hold converted; the doctor still confirms the appointment manually
+        assertThat(updated.getStatus()).isEqualTo(PaymentStatus.PAID);
+        assertThat(updated.getPaidAt()).isNotNull();
+        assertThat(updated.getAppointment().getHoldExpiresAt()).isNull();
+        verify(appointmentRepository).clearHold(1L);
+    }
+
+    @Test
+    void testIpnForAlreadyPaidPaymentAnswered02() {
+        Payment payment = pendingPayment();
+        payment.setStatus(PaymentStatus.PAID);
+        when(paymentRepository.findById(10L)).thenReturn(Optional.of(payment));
+
+        var result = paymentService.processIpn(signedIpn("00"));
+
+        assertThat(result.rspCode()).isEqualTo("02");
+        verify(ipnLogRepository, never()).saveAndFlush(any());
+        verify(paymentRepository, never()).save(any());
+    }
+
+    @Test
+    void testIpnRetryAppliedOnce() {
+        Payment payment = pendingPayment();
+        when(paymentRepository.findById(10L)).thenReturn(Optional.of(payment));
+
+        Map<String, String> ipnData = signedIpn("00");
+        var first = paymentService.processIpn(ipnData);
+        var retry = paymentService.processIpn(ipnData);
+
+        assertThat(first.rspCode()).isEqualTo("00");
+        assertThat(retry.rspCode()).isEqualTo("02");
+        verify(ipnLogRepository, times(1)).saveAndFlush(any());
+        verify(paymentRepository, times(1)).save(payment);
+    }
+
+    @Test
+    void testIpnWithBadSignatureRejected() {
+        Map<String, String> ipnData = signedIpn("00");
+        ipnData.put("vnp_Amount", "1");
+
+        var result = paymentService.processIpn(ipnData);
+
+        assertThat(result.rspCode()).isEqualTo("97");
+        verifyNoInteractions(paymentRepository, ipnLogRepository);
+    }
+
+    @Test
+    void testReconcileFailCancelsAppointmentWhenStillPending() {
+        Payment payment = pendingPayment();
+        when(paymentRepository.failIfPending(10L, "10-1730189283123")).thenReturn(1);
+
+        PaymentStatus result = paymentService.applyGatewayStatus(payment, "10-1730189283123", notFound());
+
+        assertThat(result).isEqualTo(PaymentStatus.FAILED);
+        assertThat(appointment.getStatus()).isEqualTo(se1961.g1.medconnect.enums.AppointmentStatus.CANCELLED);
+        verify(appointmentRepository).save(appointment);
+    }
+
+    @Test
+    void testReconcileFailLosesToConcurrentIpn() {
+        // The IPN marked it PAID after the reconciler read the row: nothing is cancelled
+        Payment payment = pendingPayment();
+        when(paymentRepository.failIfPending(10L, "10-1730189283123")).thenReturn(0);
+
+        PaymentStatus result = paymentService.applyGatewayStatus(payment, "10-1730189283123", notFound());
+
+        assertThat(result).isNull();
+        assertThat(payment.getStatus()).isEqualTo(PaymentStatus.PENDING);
+        verify(appointmentRepository, never()).save(any());
+        verify(paymentRepository, never()).save(any());
+    }
+
+    @Test
+    void testReconcileAnswerForReplacedAttemptIgnored() {
+        Payment payment = pendingPayment();
+
+        PaymentStatus result = paymentService.applyGatewayStatus(payment, "10-1730180000000", notFound());
+
+        assertThat(result).isNull();
+        verify(paymentRepository, never()).failIfPending(any(), any());
+        verifyNoInteractions(appointmentRepository);
+    }
+
+    private PaymentGatewayClient.GatewayStatus notFound() {
+        return new PaymentGatewayClient.GatewayStatus(PaymentGatewayClient.Result.NOT_FOUND, null,
+                Map.of("vnp_ResponseCode", "91"));
+    }
+
+    private Payment pendingPayment() {
+        Payment payment = new Payment();
+        payment.setPaymentId(10L);
+        payment.setAppointment(appointment);
+        payment.setAmount(200000.0);
+        payment.setTransactionId("10-1730189283123");
+        payment.setStatus(PaymentStatus.PENDING);
+        return payment;
+    }
+
+    private Map<String, String> signedIpn(String responseCode) {
+        Map<String, String> ipnData = new HashMap<>();
+        ipnData.put("vnp_TxnRef", "10-1730189283123");
+        ipnData.put("vnp_ResponseCode", responseCode);
+        ipnData.put("vnp_Amount", "20000000");
+        ipnData.put("vnp_TransactionNo", "14512345");
+        ipnData.put("vnp_SecureHash", paymentService.generateVnpSignature(ipnData));
+        return ipnData;
     }
 }
@@ -0,0 +1,61 @@
+package se1961.g1.medconnect.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import se1961.g1.medconnect.pojo.Doctor;
+import se1961.g1.medconnect.repository.DoctorRepository;
+import se1961.g1.medconnect.repository.ScheduleRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ScheduleServiceTest {
+
+    @Mock
+    private ScheduleRepository scheduleRepository;
+
+    @Mock
+    private DoctorRepository doctorRepository;
+
+    @Mock
+    private AppointmentService appointmentService;
+
+    @InjectMocks
+    private ScheduleService scheduleService;
+
+    private final LocalDate start = LocalDate.of(2026, 1, 1);
+
+    @BeforeEach
+    public void setup() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        Doctor doctor = new Doctor();
+        doctor.setUserId(1L);
+        when(doctorRepository.findById(1L)).thenReturn(Optional.of(doctor));
+        when(scheduleRepository.findByUserUserIdAndDateBetween(eq(1L), any(), any())).thenReturn(List.of());
+        when(appointmentService.findByDoctorAndDateBetween(any(), any(), any())).thenReturn(List.of());
+    }
+
+    @Test
+    public void testRangeOfMaxRangeDaysInclusiveAccepted() throws Exception {
+        LocalDate end = start.plusDays(ScheduleService.MAX_RANGE_DAYS - 1);
+
+        assertNotNull(scheduleService.getScheduleRange(1L, start, end));
+    }
+
+    @Test
+    public void testRangeOneDayOverMaxRangeDaysRejected() {
+        LocalDate end = start.plusDays(ScheduleService.MAX_RANGE_DAYS);
+
+        Exception e = assertThrows(Exception.class, () -> scheduleService.getScheduleRange(1L, start, end));
+        assertEquals("Date range must not exceed " + ScheduleService.MAX_RANGE_DAYS + " days", e.getMessage());
+        verifyNoInteractions(scheduleRepository);
+    }
+}
@@ -0,0 +1,108 @@
+package se1961.g1.medconnect.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import se1961.g1.medconnect.enums.Slot;
+import se1961.g1.medconnect.repository.AppointmentRepository;
+import se1961.g1.medconnect.repository.ScheduleRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class SlotBookingServiceTest {
+    private static final int THREADS = 64;
+
+    @Mock
+    private ScheduleRepository scheduleRepository;
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @InjectMocks
+    private SlotBookingService slotBookingService;
+
+    private final LocalDate date = LocalDate.now().plusDays(1);
+
+    // Stand-in for the Schedule row: UPDATE ... SET booked = true WHERE booked = false
+    private final AtomicBoolean booked = new AtomicBoolean();
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(scheduleRepository.claimSlot(eq(1L), eq(date), eq(Slot.SLOT_3))).thenAnswer(inv -> {
+            // Widen the race window like a real round trip would
+            Thread.sleep(2);
+            return booked.compareAndSet(false, true) ? 1 : 0;
+        });
+    }
+
+    @Test
+    public void testSixtyFourThreadsOneWinner() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger winners = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    slotBookingService.claim(1L, date, Slot.SLOT_3);
+                    winners.incrementAndGet();
+                } catch (Exception e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(1, winners.get());
+        assertEquals(THREADS - 1, rejected.get());
+        assertEquals(1L, slotBookingService.getStats().get("claims"));
+        assertEquals(0, slotBookingService.getStats().get("inFlight"));
+        long rejectedTotal = (long) slotBookingService.getStats().get("rejectedInFlight")
+                + (long) slotBookingService.getStats().get("rejectedTaken");
+        assertEquals(THREADS - 1, rejectedTotal);
+    }
+
+    @Test
+    public void testTakenSlotRejected() {
+        booked.set(true);
+
+        Exception e = assertThrows(Exception.class, () -> slotBookingService.claim(1L, date, Slot.SLOT_3));
+
+        assertEquals("Slot is not available", e.getMessage());
+        assertEquals(0, slotBookingService.getStats().get("inFlight"));
+    }
+
+    @Test
+    public void testOtherSlotsNotBlocked() throws Exception {
+        when(scheduleRepository.claimSlot(eq(1L), eq(date), eq(Slot.SLOT_4))).thenReturn(1);
+
+        slotBookingService.claim(1L, date, Slot.SLOT_3);
+        slotBookingService.claim(1L, date, Slot.SLOT_4);
+
+        verify(scheduleRepository).claimSlot(1L, date, Slot.SLOT_4);
+    }
+}
@@ -0,0 +1,114 @@
+package se1961.g1.medconnect.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import se1961.g1.medconnect.enums.AppointmentStatus;
+import se1961.g1.medconnect.enums.PaymentStatus;
+import se1961.g1.medconnect.pojo.Appointment;
+import se1961.g1.medconnect.pojo.Payment;
+import se1961.g1.medconnect.repository.AppointmentRepository;
+import se1961.g1.medconnect.repository.PaymentRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class SlotHoldServiceTest {
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private AvailabilityIndex availabilityIndex;
+
+    @Mock
+    private SlotBookingService slotBookingService;
+
+    @InjectMocks
+    private SlotHoldService slotHoldService;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        slotHoldService.init();
+    }
+
+    @Test
+    public void testExpireBatchCancelsAppointmentAndPendingPayment() {
+        LocalDateTime now = LocalDateTime.now();
+        Appointment appointment = new Appointment();
+        appointment.setAppointmentId(1L);
+        appointment.setStatus(AppointmentStatus.PENDING);
+        appointment.setHoldExpiresAt(now.minusMinutes(1));
+
+        Payment payment = new Payment();
+        payment.setAppointment(appointment);
+        payment.setStatus(PaymentStatus.PENDING);
+
+        when(appointmentRepository.lockExpiredHolds(List.of(1L), now)).thenReturn(List.of(appointment));
+        when(paymentRepository.findByAppointmentIn(any())).thenReturn(List.of(payment));
+
+        int expired = slotHoldService.expireBatch(List.of(1L), now);
+
+        assertEquals(1, expired);
+        assertEquals(AppointmentStatus.CANCELLED, appointment.getStatus());
+        assertNull(appointment.getHoldExpiresAt());
+        assertEquals(PaymentStatus.CANCELLED, payment.getStatus());
+        verify(availabilityIndex).release(appointment);
+        verify(slotBookingService).release(appointment);
+    }
+
+    @Test
+    public void testPaidMeanwhileIsNotExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        // Locked re-check finds nothing: the IPN cleared the hold first
+        when(appointmentRepository.lockExpiredHolds(List.of(1L), now)).thenReturn(List.of());
+
+        assertEquals(0, slotHoldService.expireBatch(List.of(1L), now));
+        verify(appointmentRepository, never()).saveAll(any());
+        verifyNoInteractions(slotBookingService);
+    }
+
+    @Test
+    public void testExtendForPaymentWithinCap() {
+        LocalDateTime now = LocalDateTime.now();
+        Appointment appointment = heldAppointment(now.minusMinutes(1), now.plusMinutes(14));
+        when(appointmentRepository.extendHold(eq(1L), any())).thenReturn(1);
+
+        LocalDateTime until = slotHoldService.extendForPayment(appointment);
+
+        assertTrue(until.isAfter(now.plusMinutes(14)));
+        assertEquals(until, appointment.getHoldExpiresAt());
+    }
+
+    @Test
+    public void testRepeatedCheckoutCannotExtendPastCap() {
+        LocalDateTime now = LocalDateTime.now();
+        // Booked 25 min ago, already extended once: cap = start + 15m hold + 15m payment = now + 5m
+        Appointment appointment = heldAppointment(now.minusMinutes(25), now.plusMinutes(5));
+
+        LocalDateTime until = slotHoldService.extendForPayment(appointment);
+
+        assertEquals(now.plusMinutes(5), until);
+        verify(appointmentRepository, never()).extendHold(any(), any());
+        assertEquals(1L, slotHoldService.getStats().get("extensionsCapped"));
+    }
+
+    private static Appointment heldAppointment(LocalDateTime startedAt, LocalDateTime expiresAt) {
+        Appointment appointment = new Appointment();
+        appointment.setAppointmentId(1L);
+        appointment.setStatus(AppointmentStatus.PENDING);
+        appointment.setHoldStartedAt(startedAt);
+        appointment.setHoldExpiresAt(expiresAt);
+        return appointment;
+    }
+}
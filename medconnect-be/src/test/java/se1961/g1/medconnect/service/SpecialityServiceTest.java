@@ -0,0 +1,59 @@
+package se1961.g1.medconnect.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import se1961.g1.medconnect.pojo.Speciality;
+import se1961.g1.medconnect.repository.DoctorRepository;
+import se1961.g1.medconnect.repository.SpecialityRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class SpecialityServiceTest {
+    @Mock
+    private SpecialityRepository specialityRepository;
+
+    @Mock
+    private DoctorRepository doctorRepository;
+
+    @InjectMocks
+    private SpecialityService specialityService;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        specialityService.init();
+        when(specialityRepository.findAll()).thenReturn(List.of(
+                new Speciality(1, "Tim mạch", null), new Speciality(2, "Nhi khoa", null)));
+        when(doctorRepository.countGroupBySpeciality()).thenReturn(List.<Object[]>of(new Object[]{1, 4L}));
+    }
+
+    @Test
+    public void testCatalogCountsAllSpecialitiesInOneQuery() {
+        SpecialityService.Catalog catalog = specialityService.getCatalog();
+        specialityService.getCatalog();
+
+        assertEquals(2, catalog.specialities().size());
+        assertEquals(4L, catalog.doctorCount(1));
+        assertEquals(0L, catalog.doctorCount(2));
+        verify(doctorRepository, times(1)).countGroupBySpeciality();
+        verify(doctorRepository, never()).countBySpecialitySpecialityId(anyInt());
+    }
+
+    @Test
+    public void testDoctorWriteRefreshesCounts() {
+        specialityService.getCatalog();
+        when(doctorRepository.countGroupBySpeciality()).thenReturn(List.<Object[]>of(new Object[]{1, 4L}, new Object[]{2, 1L}));
+
+        specialityService.invalidateCatalog();
+
+        assertEquals(1L, specialityService.getCatalog().doctorCount(2));
+        verify(specialityRepository, times(2)).findAll();
+    }
+}
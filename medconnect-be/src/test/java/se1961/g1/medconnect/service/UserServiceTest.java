@@ -18,6 +18,9 @@ public class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private FirebaseTokenCache tokenCache;
+
     @InjectMocks
     private UserService userService;
 
@@ -0,0 +1,106 @@
+package se1961.g1.medconnect.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import se1961.g1.medconnect.util.HmacSigner;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * VnpayGatewayClient against a local fake querydr endpoint
+ */
+public class VnpayGatewayClientTest {
+    private static final String SECRET = "5Y1HPSXD6LV9XV58PD4C02YYFK";
+    private static final String TXN_REF = "10-1730189283123";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HttpServer server;
+    private VnpayGatewayClient client;
+    private volatile String body;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+
+        client = new VnpayGatewayClient();
+        ReflectionTestUtils.setField(client, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(client, "vnpTmnCode", "W9VOZMDN");
+        ReflectionTestUtils.setField(client, "vnpHashSecret", SECRET);
+        ReflectionTestUtils.setField(client, "vnpApiUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private String answer(String responseCode, String transactionStatus, String secret) throws Exception {
+        Map<String, String> f = new LinkedHashMap<>();
+        f.put("vnp_ResponseId", "r1");
+        f.put("vnp_Command", "querydr");
+        f.put("vnp_ResponseCode", responseCode);
+        f.put("vnp_Message", "msg");
+        f.put("vnp_TmnCode", "W9VOZMDN");
+        f.put("vnp_TxnRef", TXN_REF);
+        if (transactionStatus != null) {
+            f.put("vnp_Amount", "20000000");
+            f.put("vnp_TransactionStatus", transactionStatus);
+        }
+        String data = String.join("|", f.get("vnp_ResponseId"), "querydr", responseCode, "msg", "W9VOZMDN", TXN_REF,
+                f.getOrDefault("vnp_Amount", ""), "", "", "", "", f.getOrDefault("vnp_TransactionStatus", ""), "", "", "");
+        f.put("vnp_SecureHash", HmacSigner.sha512(secret).signHex(data));
+        return objectMapper.writeValueAsString(f);
+    }
+
+    @Test
+    public void testSignedPaidAnswer() throws Exception {
+        body = answer("00", "00", SECRET);
+
+        PaymentGatewayClient.GatewayStatus status = client.queryStatus(TXN_REF);
+
+        assertEquals(PaymentGatewayClient.Result.PAID, status.result());
+        assertEquals(20000000L, status.amount());
+    }
+
+    @Test
+    public void testSignedNotFoundAnswer() throws Exception {
+        body = answer("91", null, SECRET);
+
+        assertEquals(PaymentGatewayClient.Result.NOT_FOUND, client.queryStatus(TXN_REF).result());
+    }
+
+    @Test
+    public void testForgedNotFoundAnswerRejected() throws Exception {
+        // Must not reach failPayment (which cancels the appointment): an error leaves the payment PENDING
+        body = answer("91", null, "not-the-merchant-secret");
+
+        Exception e = assertThrows(Exception.class, () -> client.queryStatus(TXN_REF));
+        assertTrue(e.getMessage().contains("invalid response checksum"));
+    }
+
+    @Test
+    public void testUnsignedNotFoundAnswerRejected() {
+        body = "{\"vnp_ResponseCode\":\"91\",\"vnp_Message\":\"Transaction not found\"}";
+
+        assertThrows(Exception.class, () -> client.queryStatus(TXN_REF));
+    }
+}
@@ -0,0 +1,41 @@
+package se1961.g1.medconnect.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompiledTemplateTest {
+
+    @Test
+    public void testRenderEscapesValues() {
+        CompiledTemplate template = CompiledTemplate.compile("t", "<p>Xin chào {{userName}}, mã {{code}}.</p>");
+
+        String html = template.render(Map.of("userName", "<b>An & \"Bình\"</b>", "code", "42"));
+
+        assertEquals("<p>Xin chào &lt;b&gt;An &amp; &quot;Bình&quot;&lt;/b&gt;, mã 42.</p>", html);
+        assertEquals(Set.of("userName", "code"), template.getPlaceholders());
+    }
+
+    @Test
+    public void testMissingValueAndNonPlaceholderBraces() {
+        CompiledTemplate template = CompiledTemplate.compile("t", "{{a}}-{{ not a slot }}-{{b}}-{{");
+
+        assertEquals("x-{{ not a slot }}--{{", template.render(Map.of("a", "x")));
+        assertEquals(Set.of("a", "b"), template.getPlaceholders());
+    }
+
+    @Test
+    public void testValidateReportsUnsuppliedPlaceholder() throws Exception {
+        EmailTemplateLoader loader = new EmailTemplateLoader();
+        loader.compileAll();
+
+        loader.validate(Map.of("welcome", Set.of("userName")));
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> loader.validate(Map.of("password-reset", Set.of("userName"))));
+        assertTrue(e.getMessage().contains("{{resetLink}}"));
+        assertThrows(IllegalStateException.class, () -> loader.validate(Map.of("missing", Set.of())));
+    }
+}
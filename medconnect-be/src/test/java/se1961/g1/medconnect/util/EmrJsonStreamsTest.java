@@ -0,0 +1,50 @@
+package se1961.g1.medconnect.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmrJsonStreamsTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testWriteEntrySummary() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EmrJsonStreams.writeEntrySummary(
+                "{\"visit_id\":\"V1\",\"vital_signs\":{\"pulse\":80},\"prescriptions\":[{\"name\":\"Paracetamol\"}],\"notes\":\"Nghỉ ngơi\"}", out);
+
+        JsonNode summary = objectMapper.readTree(out.toString(StandardCharsets.UTF_8));
+        assertEquals("Paracetamol", summary.path("medications").path(0).path("name").asText());
+        assertEquals("Nghỉ ngơi", summary.path("note").asText());
+        assertTrue(summary.path("diagnosis").isNull());
+        assertFalse(summary.has("vital_signs"));
+    }
+
+    @Test
+    public void testWriteEmptySummary() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EmrJsonStreams.writeEntrySummary(null, out);
+
+        assertEquals("{\"medications\":[],\"note\":\"\",\"diagnosis\":null}", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSplitAndComposeDocument() throws Exception {
+        String detail = "{\"patient_profile\":{\"full_name\":\"A\"},\"medical_records\":[{\"appointment_id\":1},{\"appointment_id\":2}]}";
+
+        List<String> entries = new ArrayList<>();
+        EmrJsonStreams.forEachArrayElement(detail, EmrJsonStreams.MEDICAL_RECORDS, entries::add);
+        String profile = EmrJsonStreams.withoutField(detail, EmrJsonStreams.MEDICAL_RECORDS);
+
+        assertEquals(List.of("{\"appointment_id\":1}", "{\"appointment_id\":2}"), entries);
+        assertEquals("{\"patient_profile\":{\"full_name\":\"A\"}}", profile);
+        assertEquals(objectMapper.readTree(detail), objectMapper.readTree(EmrJsonStreams.composeDetail(profile, entries)));
+    }
+}
@@ -0,0 +1,44 @@
+package se1961.g1.medconnect.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HmacSignerTest {
+
+    @Test
+    public void testCanonicalQuerySortedEncodedSkipsEmpty() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("vnp_TxnRef", "10-1730189283123");
+        params.put("vnp_BankCode", "");
+        params.put("vnp_OrderInfo", "Thanh toán khám bệnh");
+        params.put("vnp_Amount", "20000000");
+
+        assertEquals("vnp_Amount=20000000&vnp_OrderInfo=Thanh+to%C3%A1n+kh%C3%A1m+b%E1%BB%87nh&vnp_TxnRef=10-1730189283123",
+                VnpayQuery.canonical(params));
+    }
+
+    @Test
+    public void testSignMatchesFreshMacAndVerifies() throws Exception {
+        String data = "vnp_Amount=20000000&vnp_TxnRef=10-1730189283123";
+        HmacSigner signer = HmacSigner.sha512("secret");
+
+        Mac mac = Mac.getInstance("HmacSHA512");
+        mac.init(new SecretKeySpec("secret".getBytes(StandardCharsets.UTF_8), "HmacSHA512"));
+        String expected = HexFormat.of().formatHex(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+
+        // Reused Mac must give the same result on every call
+        assertEquals(expected, signer.signHex(data));
+        assertEquals(expected, signer.signHex(data));
+        assertTrue(signer.verifyHex(data, expected.toUpperCase()));
+        assertFalse(signer.verifyHex(data + "0", expected));
+        assertFalse(signer.verifyHex(data, "not-hex"));
+    }
+}
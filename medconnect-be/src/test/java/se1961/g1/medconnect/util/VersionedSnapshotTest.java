@@ -0,0 +1,64 @@
+package se1961.g1.medconnect.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VersionedSnapshotTest {
+
+    private final AtomicInteger builds = new AtomicInteger();
+    private final VersionedSnapshot<String> snapshot = new VersionedSnapshot<>(60_000);
+
+    private String read() {
+        return snapshot.get(version -> "v" + version + "#" + builds.incrementAndGet());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testServedUntilInvalidated() {
+        assertEquals("v0#1", read());
+        assertEquals("v0#1", read());
+
+        snapshot.invalidate();
+
+        assertEquals("v1#2", read());
+        assertEquals(1L, snapshot.getStats().get("hits"));
+    }
+
+    @Test
+    public void testInvalidateWaitsForCommit() {
+        assertEquals("v0#1", read());
+        TransactionSynchronizationManager.initSynchronization();
+
+        snapshot.invalidate();
+        // Not committed yet: other readers must not rebuild from uncommitted data
+        assertEquals("v0#1", read());
+
+        for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+            sync.afterCommit();
+        }
+        assertEquals("v1#2", read());
+    }
+
+    @Test
+    public void testRebuiltAfterTtlOrWhenRejected() throws Exception {
+        assertEquals("v0#1", read());
+        assertEquals("v0#2", snapshot.get(value -> false, version -> "v" + version + "#" + builds.incrementAndGet()));
+
+        snapshot.setTtlMillis(20);
+        Thread.sleep(40);
+
+        assertEquals("v0#3", read());
+    }
+}